@@ -0,0 +1,55 @@
+package com.slimgears.rxrepo.queries;
+
+import com.slimgears.rxrepo.util.Expressions;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.function.Function;
+import java.util.function.Predicate;
+
+import static com.slimgears.rxrepo.queries.TestEntities.*;
+
+public class MethodHandleExpressionsTest extends ExpressionsTest {
+    private Expressions.CompileMode previousMode;
+
+    @Before
+    public void setUp() {
+        previousMode = Expressions.compileMode();
+        Expressions.compileMode(Expressions.CompileMode.MethodHandles);
+    }
+
+    @After
+    public void tearDown() {
+        Expressions.compileMode(previousMode);
+    }
+
+    @Test
+    public void testPrimitiveComparisonPredicate() {
+        Predicate<TestEntity> predicate = Expressions.compilePredicate(TestEntity.$.number.greaterThan(5).and(TestEntity.$.number.lessThan(10)));
+        Assert.assertFalse(predicate.test(testEntity1));
+        Assert.assertTrue(predicate.test(testEntity2));
+    }
+
+    @Test
+    public void testCompiledExpressionIsCached() {
+        Assert.assertSame(
+                Expressions.compile(TestEntity.$.number.eq(3)),
+                Expressions.compile(TestEntity.$.number.eq(3)));
+    }
+
+    @Test
+    public void testNullArgumentFallsBackToClosures() {
+        Function<TestEntity, Boolean> exp = Expressions.compile(TestEntity.$.number.eq(3));
+        Assert.assertTrue(exp.apply(testEntity1));
+        Assert.assertFalse(exp.apply(null));
+    }
+
+    @Test
+    public void testNullArgumentForPrimitivePropertyFallsBackToClosures() {
+        Function<TestEntity, Integer> exp = Expressions.compile(TestEntity.$.number);
+        Assert.assertEquals(Integer.valueOf(testEntity1.number()), exp.apply(testEntity1));
+        Assert.assertNull(exp.apply(null));
+    }
+}
@@ -0,0 +1,59 @@
+package com.slimgears.rxrepo.benchmarks;
+
+import com.slimgears.rxrepo.query.EntitySet;
+import com.slimgears.rxrepo.query.Repository;
+import com.slimgears.rxrepo.test.Product;
+import com.slimgears.rxrepo.test.Products;
+import com.slimgears.rxrepo.test.UniqueId;
+import com.slimgears.util.stream.Streams;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.util.List;
+import java.util.stream.Collectors;
+
+@State(Scope.Benchmark)
+public abstract class AbstractRepositoryBenchmark {
+    @Param({"Memory", "OrientDbMemory", "OrientDbPersistent", "MongoDb"})
+    public Backend backend;
+
+    private AutoCloseable service;
+    private Repository repository;
+
+    @Setup(Level.Trial)
+    public void setUpTrial() {
+        service = backend.startService();
+        repository = backend.createRepository();
+        onSetUp();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDownTrial() throws Exception {
+        try {
+            repository.clearAndClose();
+        } finally {
+            service.close();
+        }
+    }
+
+    protected void onSetUp() {
+    }
+
+    protected EntitySet<UniqueId, Product> products() {
+        return repository.entities(Product.metaClass);
+    }
+
+    protected void populate(int count) {
+        products().update(Products.createMany(count)).ignoreElement().blockingAwait();
+    }
+
+    static List<Product> withPriceOffset(Iterable<Product> products, int offset) {
+        return Streams.fromIterable(products)
+                .map(p -> p.toBuilder().price(p.price() + offset).build())
+                .collect(Collectors.toList());
+    }
+}
@@ -0,0 +1,67 @@
+package com.slimgears.rxrepo.benchmarks;
+
+import com.slimgears.rxrepo.mem.MemoryRepository;
+import com.slimgears.rxrepo.mongodb.MongoRepository;
+import com.slimgears.rxrepo.mongodb.embed.MongoService;
+import com.slimgears.rxrepo.orientdb.OrientDbRepository;
+import com.slimgears.rxrepo.query.Repository;
+import com.slimgears.rxrepo.query.decorator.SchedulingQueryProviderDecorator;
+
+public enum Backend {
+    Memory {
+        @Override
+        Repository createRepository() {
+            return MemoryRepository.create();
+        }
+    },
+    OrientDbMemory {
+        @Override
+        Repository createRepository() {
+            return createOrientDbRepository(OrientDbRepository.Type.Memory);
+        }
+    },
+    OrientDbPersistent {
+        @Override
+        Repository createRepository() {
+            return createOrientDbRepository(OrientDbRepository.Type.Persistent);
+        }
+    },
+    MongoDb {
+        @Override
+        AutoCloseable startService() {
+            return MongoService.builder()
+                    .port(mongoPort)
+                    .version("4.0.12")
+                    .enableReplica()
+                    .build()
+                    .start();
+        }
+
+        @Override
+        Repository createRepository() {
+            return MongoRepository.builder()
+                    .port(mongoPort)
+                    .dbName("benchmark")
+                    .decorate(SchedulingQueryProviderDecorator.createDefault())
+                    .build();
+        }
+    };
+
+    private final static String orientDbUrl = "embedded:db";
+    private final static int mongoPort = 27019;
+
+    abstract Repository createRepository();
+
+    AutoCloseable startService() {
+        return () -> {};
+    }
+
+    private static Repository createOrientDbRepository(OrientDbRepository.Type type) {
+        return OrientDbRepository.builder()
+                .url(orientDbUrl)
+                .type(type)
+                .name("benchmark_" + type)
+                .decorate(SchedulingQueryProviderDecorator.createDefault())
+                .build();
+    }
+}
@@ -0,0 +1,94 @@
+package com.slimgears.rxrepo.benchmarks;
+
+import com.slimgears.rxrepo.test.Product;
+import com.slimgears.rxrepo.test.UniqueId;
+import io.reactivex.Observable;
+import io.reactivex.disposables.CompositeDisposable;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class LiveQueryBenchmark extends AbstractRepositoryBenchmark {
+    private final static long timeoutSeconds = 30;
+
+    @Param({"1000"})
+    public int entityCount;
+
+    @Param({"1", "100"})
+    public int subscriberCount;
+
+    @Param({"toList", "observeAs"})
+    public String mode;
+
+    private final CompositeDisposable subscriptions = new CompositeDisposable();
+    private final AtomicReference<Product> expected = new AtomicReference<>();
+    private final AtomicReference<CountDownLatch> pending = new AtomicReference<>(new CountDownLatch(0));
+    private final AtomicInteger version = new AtomicInteger();
+
+    @Override
+    protected void onSetUp() {
+        populate(entityCount);
+        for (int i = 0; i < subscriberCount; ++i) {
+            AtomicReference<Product> lastSeen = new AtomicReference<>();
+            subscriptions.add(observeList().subscribe(list -> onList(list, lastSeen)));
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDownSubscriptions() {
+        subscriptions.dispose();
+    }
+
+    @Benchmark
+    public Product updateAndAwaitSubscribers() throws InterruptedException, TimeoutException {
+        int nextVersion = version.incrementAndGet();
+        Product product = products()
+                .find(UniqueId.productId(nextVersion % entityCount))
+                .blockingGet()
+                .toBuilder()
+                .price(nextVersion)
+                .build();
+
+        CountDownLatch latch = new CountDownLatch(subscriberCount);
+        pending.set(latch);
+        expected.set(product);
+        products().update(product).blockingGet();
+
+        if (!latch.await(timeoutSeconds, TimeUnit.SECONDS)) {
+            throw new TimeoutException("Only " + (subscriberCount - latch.getCount()) + " of " + subscriberCount + " subscribers received the update");
+        }
+        return product;
+    }
+
+    private Observable<List<Product>> observeList() {
+        return "toList".equals(mode)
+                ? products().query().liveSelect().toList()
+                : products().query().observeAsList();
+    }
+
+    private void onList(List<Product> list, AtomicReference<Product> lastSeen) {
+        Product product = expected.get();
+        if (product != null && list.contains(product) && lastSeen.getAndSet(product) != product) {
+            pending.get().countDown();
+        }
+    }
+}
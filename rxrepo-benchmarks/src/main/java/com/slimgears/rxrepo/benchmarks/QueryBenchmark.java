@@ -0,0 +1,81 @@
+package com.slimgears.rxrepo.benchmarks;
+
+import com.slimgears.rxrepo.expressions.Aggregator;
+import com.slimgears.rxrepo.test.Product;
+import com.slimgears.rxrepo.test.UniqueId;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class QueryBenchmark extends AbstractRepositoryBenchmark {
+    @Param({"10000"})
+    public int entityCount;
+
+    @Override
+    protected void onSetUp() {
+        populate(entityCount);
+    }
+
+    @Benchmark
+    public List<Product> queryWithPredicate() {
+        return products()
+                .query()
+                .where(Product.$.price.greaterThan(200))
+                .select()
+                .retrieve()
+                .toList()
+                .blockingGet();
+    }
+
+    @Benchmark
+    public List<Product> queryWithSortingAndLimit() {
+        return products()
+                .query()
+                .orderBy(Product.$.price)
+                .limit(50)
+                .select()
+                .retrieve()
+                .toList()
+                .blockingGet();
+    }
+
+    @Benchmark
+    public Product findByKey() {
+        return products()
+                .find(UniqueId.productId(ThreadLocalRandom.current().nextInt(entityCount)))
+                .blockingGet();
+    }
+
+    @Benchmark
+    public Long aggregateCount() {
+        return products()
+                .query()
+                .where(Product.$.price.greaterThan(200))
+                .select()
+                .aggregate(Aggregator.count())
+                .blockingGet();
+    }
+
+    @Benchmark
+    public Integer aggregateSum() {
+        return products()
+                .query()
+                .select(Product.$.price)
+                .aggregate(Aggregator.sum())
+                .blockingGet();
+    }
+}
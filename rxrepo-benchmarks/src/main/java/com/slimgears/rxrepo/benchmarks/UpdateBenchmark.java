@@ -0,0 +1,46 @@
+package com.slimgears.rxrepo.benchmarks;
+
+import com.slimgears.rxrepo.test.Product;
+import com.slimgears.rxrepo.test.Products;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class UpdateBenchmark extends AbstractRepositoryBenchmark {
+    @Param({"100", "1000"})
+    public int batchSize;
+
+    private Iterable<Product> products;
+    private List<Product> batch;
+    private int iteration;
+
+    @Override
+    protected void onSetUp() {
+        products = Products.createMany(batchSize);
+    }
+
+    @Setup(Level.Invocation)
+    public void setUpInvocation() {
+        batch = withPriceOffset(products, ++iteration);
+    }
+
+    @Benchmark
+    public List<Product> updateIterable() {
+        return products().update(batch).blockingGet();
+    }
+}
@@ -0,0 +1,193 @@
+package com.slimgears.rxrepo.query;
+
+import io.reactivex.Observable;
+import io.reactivex.ObservableEmitter;
+import io.reactivex.ObservableTransformer;
+import io.reactivex.Scheduler;
+import io.reactivex.disposables.CompositeDisposable;
+import io.reactivex.disposables.SerialDisposable;
+import io.reactivex.functions.Function;
+import io.reactivex.schedulers.Schedulers;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+
+class AdaptiveEmissionPolicy implements EmissionPolicy {
+    private final long minWindowNanos;
+    private final long maxWindowNanos;
+    private final long maxWaitNanos;
+    private final boolean leadingEdge;
+    private final Scheduler scheduler;
+
+    private AdaptiveEmissionPolicy(Duration minWindow, Duration maxWindow, Duration maxWait, boolean leadingEdge, Scheduler scheduler) {
+        this.minWindowNanos = minWindow.toNanos();
+        this.maxWindowNanos = Math.max(minWindowNanos, maxWindow.toNanos());
+        this.maxWaitNanos = Math.max(minWindowNanos, maxWait.toNanos());
+        this.leadingEdge = leadingEdge;
+        this.scheduler = scheduler;
+    }
+
+    static AdaptiveEmissionPolicy create(Duration minWindow, Duration maxWindow, Duration maxWait, boolean leadingEdge) {
+        return new AdaptiveEmissionPolicy(minWindow, maxWindow, maxWait, leadingEdge, Schedulers.computation());
+    }
+
+    @Override
+    public <T, R> ObservableTransformer<T, R> apply(Function<List<T>, Observable<R>> handler) {
+        return source -> Observable.create(emitter -> new Emission<>(emitter.serialize(), handler).subscribe(source));
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof AdaptiveEmissionPolicy)) return false;
+        AdaptiveEmissionPolicy that = (AdaptiveEmissionPolicy)o;
+        return minWindowNanos == that.minWindowNanos &&
+                maxWindowNanos == that.maxWindowNanos &&
+                maxWaitNanos == that.maxWaitNanos &&
+                leadingEdge == that.leadingEdge &&
+                scheduler == that.scheduler;
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(minWindowNanos, maxWindowNanos, maxWaitNanos, leadingEdge);
+    }
+
+    private class Emission<T, R> {
+        private final ObservableEmitter<R> emitter;
+        private final Function<List<T>, Observable<R>> handler;
+        private final CompositeDisposable disposable = new CompositeDisposable();
+        private final SerialDisposable timer = new SerialDisposable();
+        private final SerialDisposable handling = new SerialDisposable();
+        private List<T> pending = new ArrayList<>();
+        private long firstPendingNanos;
+        private long lastEmissionNanos;
+        private long windowNanos = minWindowNanos;
+        private boolean emitted;
+        private boolean busy;
+        private boolean completed;
+
+        private Emission(ObservableEmitter<R> emitter, Function<List<T>, Observable<R>> handler) {
+            this.emitter = emitter;
+            this.handler = handler;
+            disposable.add(timer);
+            disposable.add(handling);
+            emitter.setDisposable(disposable);
+        }
+
+        void subscribe(Observable<T> source) {
+            disposable.add(source.subscribe(this::onNext, emitter::onError, this::onComplete));
+        }
+
+        private void onNext(T item) {
+            List<T> batch = null;
+            synchronized (this) {
+                long now = System.nanoTime();
+                pending.add(item);
+                if (pending.size() == 1) {
+                    firstPendingNanos = now;
+                }
+                if (busy) {
+                    return;
+                }
+                if ((leadingEdge && pending.size() == 1 && (!emitted || now - lastEmissionNanos >= windowNanos))
+                        || now - firstPendingNanos >= maxWaitNanos) {
+                    batch = takePending();
+                } else {
+                    schedule(Math.min(windowNanos, maxWaitNanos - (now - firstPendingNanos)));
+                }
+            }
+            emit(batch);
+        }
+
+        private void onComplete() {
+            List<T> batch = null;
+            synchronized (this) {
+                completed = true;
+                if (busy) {
+                    return;
+                }
+                if (pending.isEmpty()) {
+                    emitter.onComplete();
+                    return;
+                }
+                batch = takePending();
+            }
+            emit(batch);
+        }
+
+        private void onTimer() {
+            List<T> batch;
+            synchronized (this) {
+                if (busy || pending.isEmpty()) {
+                    return;
+                }
+                batch = takePending();
+            }
+            emit(batch);
+        }
+
+        private void onHandled(long startNanos, int batchSize) {
+            List<T> batch = null;
+            synchronized (this) {
+                long now = System.nanoTime();
+                busy = false;
+                emitted = true;
+                lastEmissionNanos = now;
+                adaptWindow(now - startNanos, batchSize);
+                if (pending.isEmpty()) {
+                    if (completed) {
+                        emitter.onComplete();
+                    }
+                    return;
+                }
+                if (completed || now - firstPendingNanos >= maxWaitNanos) {
+                    batch = takePending();
+                } else {
+                    schedule(Math.min(windowNanos, maxWaitNanos - (now - firstPendingNanos)));
+                }
+            }
+            emit(batch);
+        }
+
+        private void adaptWindow(long costNanos, int batchSize) {
+            if (minWindowNanos == maxWindowNanos) {
+                return;
+            }
+            long window = batchSize > 1 ? windowNanos * 2 : windowNanos / 2;
+            windowNanos = Math.min(maxWindowNanos, Math.max(minWindowNanos, Math.max(window, costNanos)));
+        }
+
+        private List<T> takePending() {
+            List<T> batch = pending;
+            pending = new ArrayList<>();
+            busy = true;
+            timer.set(null);
+            return batch;
+        }
+
+        private void schedule(long delayNanos) {
+            timer.set(scheduler.scheduleDirect(this::onTimer, Math.max(0, delayNanos), TimeUnit.NANOSECONDS));
+        }
+
+        private void emit(List<T> batch) {
+            if (batch == null) {
+                return;
+            }
+            long startNanos = System.nanoTime();
+            try {
+                handler.apply(batch)
+                        .doOnSubscribe(handling::set)
+                        .subscribe(
+                                emitter::onNext,
+                                emitter::onError,
+                                () -> onHandled(startNanos, batch.size()));
+            } catch (Exception e) {
+                emitter.onError(e);
+            }
+        }
+    }
+}
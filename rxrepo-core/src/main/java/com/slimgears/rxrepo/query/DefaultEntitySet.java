@@ -2,6 +2,7 @@ package com.slimgears.rxrepo.query;
 
 import com.google.common.collect.ImmutableList;
 import com.slimgears.rxrepo.expressions.Aggregator;
+import com.slimgears.rxrepo.expressions.ArgumentExpression;
 import com.slimgears.rxrepo.expressions.BooleanExpression;
 import com.slimgears.rxrepo.expressions.ObjectExpression;
 import com.slimgears.rxrepo.expressions.PropertyExpression;
@@ -11,7 +12,6 @@ import com.slimgears.rxrepo.query.provider.*;
 import com.slimgears.util.autovalue.annotations.HasMetaClass;
 import com.slimgears.util.autovalue.annotations.MetaClassWithKey;
 import com.slimgears.util.rx.Maybes;
-import com.slimgears.util.rx.Observables;
 import com.slimgears.util.rx.Singles;
 import io.reactivex.Maybe;
 import io.reactivex.Observable;
@@ -25,7 +25,7 @@ import org.slf4j.LoggerFactory;
 
 import java.time.Duration;
 import java.util.*;
-import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.atomic.AtomicReference;
 
@@ -120,7 +120,7 @@ public class DefaultEntitySet<K, S> implements EntitySet<K, S> {
                                 .predicate(predicate.get())
                                 .build()))
                         .compose(Singles.backOffDelayRetry(
-                                DefaultEntitySet::isConcurrencyException,
+                                DefaultEntitySet.this::isRetried,
                                 Duration.ofMillis(config.retryInitialDurationMillis()),
                                 config.retryCount()));
             }
@@ -220,6 +220,7 @@ public class DefaultEntitySet<K, S> implements EntitySet<K, S> {
                             .metaClass(metaClass)
                             .predicate(predicate.get())
                             .mapping(expression);
+                    private EmissionPolicy emissionPolicy = config.emissionPolicy();
 
                     @Override
                     public Observable<T> first() {
@@ -230,14 +231,23 @@ public class DefaultEntitySet<K, S> implements EntitySet<K, S> {
                     }
 
                     @Override
+                    @SuppressWarnings("unchecked")
                     public Observable<List<T>> toList() {
                         QueryInfo<K, S, T> query = builder.build();
-                        return queryProvider
-                                .liveQuery(query)
-                                .debounce(config.debounceTimeoutMillis(), TimeUnit.MILLISECONDS)
-                                .concatMapSingle(n -> queryProvider
-                                        .query(query)
-                                        .toList());
+                        if (!(expression instanceof ArgumentExpression)) {
+                            return queryProvider.liveQueryAsList(query, listEmissionPolicy());
+                        }
+
+                        return Observable.defer(() -> {
+                            AtomicBoolean loaded = new AtomicBoolean();
+                            return queryProvider
+                                    .liveQuery(query)
+                                    .compose(listEmissionPolicy().<Notification<T>>batch())
+                                    .concatMapSingle(notifications -> loaded.getAndSet(true)
+                                            ? Single.just(notifications)
+                                            : queryProvider.query(query).map(Notification::ofCreated).toList())
+                                    .compose(NotificationsToListTransformer.createUnpaged((MetaClassWithKey<K, T>)metaClass, ImmutableList.of(), null));
+                        });
                     }
 
                     @Override
@@ -246,12 +256,20 @@ public class DefaultEntitySet<K, S> implements EntitySet<K, S> {
                         return this;
                     }
 
+                    @Override
+                    public LiveSelectQuery<T> emissionPolicy(EmissionPolicy emissionPolicy) {
+                        this.emissionPolicy = emissionPolicy;
+                        return this;
+                    }
+
                     @Override
                     public <R> Observable<R> aggregate(Aggregator<T, T, R> aggregator) {
                         QueryInfo<K, S, T> query = builder.build();
                         return queryProvider.aggregate(query, aggregator)
                                 .toObservable()
-                                .concatWith(queryProvider.liveAggregate(query, aggregator))
+                                .concatWith(emissionPolicy != null
+                                        ? queryProvider.liveAggregate(query, aggregator, emissionPolicy)
+                                        : queryProvider.liveAggregate(query, aggregator))
                                 .distinctUntilChanged();
                     }
 
@@ -278,11 +296,16 @@ public class DefaultEntitySet<K, S> implements EntitySet<K, S> {
                                             .compose(transformer)
                                             .concatWith(queryProvider.liveQuery(observeQuery)
                                                     .doOnNext(n -> updateCount(n, count))
-                                                    .compose(Observables.bufferUntilIdle(Duration.ofMillis(config.debounceTimeoutMillis())))
+                                                    .compose(listEmissionPolicy().<Notification<T>>batch())
                                                     .compose(transformer));
                                 });
                     }
 
+                    private EmissionPolicy listEmissionPolicy() {
+                        return Optional.ofNullable(emissionPolicy)
+                                .orElseGet(() -> EmissionPolicy.debounce(Duration.ofMillis(config.debounceTimeoutMillis())));
+                    }
+
                     private void updateCount(Notification<T> notification, AtomicLong count) {
                         if (notification.isDelete()) {
                             count.decrementAndGet();
@@ -308,6 +331,11 @@ public class DefaultEntitySet<K, S> implements EntitySet<K, S> {
                     public Observable<Notification<T>> observe() {
                         return queryProvider.liveQuery(builder.build());
                     }
+
+                    @Override
+                    public Observable<Notification<T>> observeFrom(long sequenceNum) {
+                        return queryProvider.liveQuery(builder.build(), sequenceNum);
+                    }
                 };
             }
 
@@ -347,7 +375,7 @@ public class DefaultEntitySet<K, S> implements EntitySet<K, S> {
                         isConcurrencyException(e)
                         ? Single.defer(() -> queryProvider.insertOrUpdate(metaClass, entity))
                                 .compose(Singles.backOffDelayRetry(
-                                        DefaultEntitySet::isConcurrencyException,
+                                        DefaultEntitySet.this::isRetried,
                                         Duration.ofMillis(config.retryInitialDurationMillis()),
                                         config.retryCount()))
                         : Single.error(e));
@@ -357,6 +385,10 @@ public class DefaultEntitySet<K, S> implements EntitySet<K, S> {
     public Single<List<S>> update(Iterable<S> entities) {
         return queryProvider.insert(metaClass, entities)
                 .andThen(Single.<List<S>>fromCallable(() -> ImmutableList.copyOf(entities)))
+                .onErrorResumeNext(e -> isConcurrencyException(e)
+                        ? Single.defer(() -> queryProvider.insertOrUpdateAll(metaClass, entities)
+                                .andThen(Single.<List<S>>fromCallable(() -> ImmutableList.copyOf(entities))))
+                        : Single.error(e))
                 .onErrorResumeNext(e -> isConcurrencyException(e)
                         ? Single.defer(() -> Observable
                                 .fromIterable(entities)
@@ -377,11 +409,19 @@ public class DefaultEntitySet<K, S> implements EntitySet<K, S> {
         };
         return Maybe.defer(() -> queryProvider.insertOrUpdate(metaClass, key, filteredUpdater))
                 .compose(Maybes.backOffDelayRetry(
-                        DefaultEntitySet::isConcurrencyException,
+                        DefaultEntitySet.this::isRetried,
                         Duration.ofMillis(config.retryInitialDurationMillis()),
                         config.retryCount()));
     }
 
+    private boolean isRetried(Throwable exception) {
+        if (!isConcurrencyException(exception)) {
+            return false;
+        }
+        queryProvider.onRetry(metaClass, exception);
+        return true;
+    }
+
     private static boolean isConcurrencyException(Throwable exception) {
         log.debug("Checking exception: {}", exception.getMessage(), exception);
         return exception instanceof ConcurrentModificationException ||
@@ -0,0 +1,28 @@
+package com.slimgears.rxrepo.query;
+
+import io.reactivex.Observable;
+import io.reactivex.ObservableTransformer;
+import io.reactivex.functions.Function;
+
+import java.time.Duration;
+import java.util.List;
+
+public interface EmissionPolicy {
+    <T, R> ObservableTransformer<T, R> apply(Function<List<T>, Observable<R>> handler);
+
+    default <T> ObservableTransformer<T, List<T>> batch() {
+        return apply(Observable::just);
+    }
+
+    static EmissionPolicy debounce(Duration window) {
+        return AdaptiveEmissionPolicy.create(window, window, window.multipliedBy(10), false);
+    }
+
+    static EmissionPolicy adaptive(Duration minWindow, Duration maxWindow, Duration maxWait) {
+        return AdaptiveEmissionPolicy.create(minWindow, maxWindow, maxWait, true);
+    }
+
+    static EmissionPolicy adaptive(Duration minWindow) {
+        return adaptive(minWindow, minWindow.multipliedBy(20), minWindow.multipliedBy(20));
+    }
+}
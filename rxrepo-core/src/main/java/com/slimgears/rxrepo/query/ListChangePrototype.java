@@ -0,0 +1,37 @@
+package com.slimgears.rxrepo.query;
+
+import com.slimgears.rxrepo.annotations.PrototypeWithBuilder;
+
+import javax.annotation.Nullable;
+
+@PrototypeWithBuilder
+public interface ListChangePrototype<T> {
+    enum Type {
+        Insert,
+        Remove,
+        Move,
+        Update
+    }
+
+    Type type();
+    int fromIndex();
+    int toIndex();
+    @Nullable T oldValue();
+    @Nullable T newValue();
+
+    static <T> ListChange<T> ofInserted(int index, T item) {
+        return ListChange.create(Type.Insert, -1, index, null, item);
+    }
+
+    static <T> ListChange<T> ofRemoved(int index, T item) {
+        return ListChange.create(Type.Remove, index, -1, item, null);
+    }
+
+    static <T> ListChange<T> ofMoved(int fromIndex, int toIndex, T oldItem, T newItem) {
+        return ListChange.create(Type.Move, fromIndex, toIndex, oldItem, newItem);
+    }
+
+    static <T> ListChange<T> ofUpdated(int index, T oldItem, T newItem) {
+        return ListChange.create(Type.Update, index, index, oldItem, newItem);
+    }
+}
@@ -13,15 +13,21 @@ public abstract class LiveSelectQuery<T> {
     public abstract Observable<T> first();
     public abstract Observable<List<T>> toList();
     public abstract LiveSelectQuery<T> properties(Iterable<PropertyExpression<T, ?, ?>> properties);
+    public abstract LiveSelectQuery<T> emissionPolicy(EmissionPolicy emissionPolicy);
     public abstract <R> Observable<R> aggregate(Aggregator<T, T, R> aggregator);
     public abstract <R> Observable<R> observeAs(QueryTransformer<T, R> transformer);
     public abstract Observable<Notification<T>> queryAndObserve();
     public abstract Observable<Notification<T>> observe();
+    public abstract Observable<Notification<T>> observeFrom(long sequenceNum);
 
     public Observable<Long> count() {
         return aggregate(Aggregator.count());
     }
 
+    public Observable<List<ListChange<T>>> toListChanges() {
+        return observeAs(Notifications.toListChanges());
+    }
+
     public Observable<T[]> toArray(IntFunction<T[]> arrayCreator) {
         return toList().map(list -> list.toArray(arrayCreator.apply(list.size())));
     }
@@ -10,6 +10,7 @@ import java.util.function.Function;
 public interface NotificationPrototype<T> {
     @Nullable T oldValue();
     @Nullable T newValue();
+    @Nullable Long sequenceNum();
 
     default boolean isDelete() {
         return oldValue() != null && newValue() == null;
@@ -26,18 +27,35 @@ public interface NotificationPrototype<T> {
     default <R> Notification<R> map(Function<T, R> mapper) {
         return Notification.ofModified(
                 Optional.ofNullable(oldValue()).map(mapper).orElse(null),
-                Optional.ofNullable(newValue()).map(mapper).orElse(null));
+                Optional.ofNullable(newValue()).map(mapper).orElse(null),
+                sequenceNum());
+    }
+
+    default Notification<T> withSequenceNum(@Nullable Long sequenceNum) {
+        return Notification.ofModified(oldValue(), newValue(), sequenceNum);
     }
 
     static <T> NotificationPrototype<T> ofCreated(T object) {
         return ofModified(null, object);
     }
 
+    static <T> NotificationPrototype<T> ofCreated(T object, @Nullable Long sequenceNum) {
+        return ofModified(null, object, sequenceNum);
+    }
+
     static <T> NotificationPrototype<T> ofDeleted(T object) {
         return ofModified(object, null);
     }
 
+    static <T> NotificationPrototype<T> ofDeleted(T object, @Nullable Long sequenceNum) {
+        return ofModified(object, null, sequenceNum);
+    }
+
     static <T> NotificationPrototype<T> ofModified(T oldObject, T newObject) {
-        return Notification.create(oldObject, newObject);
+        return ofModified(oldObject, newObject, null);
+    }
+
+    static <T> NotificationPrototype<T> ofModified(T oldObject, T newObject, @Nullable Long sequenceNum) {
+        return Notification.create(oldObject, newObject, sequenceNum);
     }
 }
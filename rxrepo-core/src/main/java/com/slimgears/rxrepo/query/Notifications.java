@@ -37,7 +37,30 @@ public class Notifications {
     public static <S> QueryTransformer<S, List<S>> toList() {
         return (queryInfo, count) -> {
             QueryInfo<?, S, S> queryInfo1 = (QueryInfo<?, S, S>)queryInfo;
-            return toList(queryInfo1.metaClass(), queryInfo1.sorting(), queryInfo1.limit());
+            return isPaged(queryInfo1)
+                    ? toList(queryInfo1.metaClass(), queryInfo1.sorting(), queryInfo1.limit())
+                    : NotificationsToListTransformer.createUnpaged(queryInfo1.metaClass(), queryInfo1.sorting(), queryInfo1.limit());
+        };
+    }
+
+    private static boolean isPaged(QueryInfo<?, ?, ?> queryInfo) {
+        return queryInfo.skip() != null && queryInfo.skip() > 0;
+    }
+
+    public static <K, S> ObservableTransformer<List<Notification<S>>, List<ListChange<S>>> toListChanges(
+            MetaClassWithKey<K, S> metaClass,
+            ImmutableList<SortingInfo<S, ?, ? extends Comparable<?>>> sortingInfos,
+            @Nullable Long limit) {
+        return NotificationsToListChangesTransformer.create(metaClass, sortingInfos, limit);
+    }
+
+    @SuppressWarnings("unchecked")
+    public static <S> QueryTransformer<S, List<ListChange<S>>> toListChanges() {
+        return (queryInfo, count) -> {
+            QueryInfo<?, S, S> queryInfo1 = (QueryInfo<?, S, S>)queryInfo;
+            return isPaged(queryInfo1)
+                    ? NotificationsToListChangesTransformer.create(queryInfo1.metaClass(), queryInfo1.sorting(), queryInfo1.limit(), new AtomicLong())
+                    : toListChanges(queryInfo1.metaClass(), queryInfo1.sorting(), queryInfo1.limit());
         };
     }
 
@@ -51,19 +74,19 @@ public class Notifications {
                 .flatMapMaybe(notification -> {
                     if (notification.isCreate()) {
                         if (compiledPredicate.test(notification.newValue())) {
-                            return Maybe.just(Notification.ofCreated(notification.newValue()));
+                            return Maybe.just(Notification.ofCreated(notification.newValue(), notification.sequenceNum()));
                         }
                     } else if (notification.isDelete()) {
                         if (compiledPredicate.test(notification.oldValue())) {
-                            return Maybe.just(Notification.ofDeleted(notification.oldValue()));
+                            return Maybe.just(Notification.ofDeleted(notification.oldValue(), notification.sequenceNum()));
                         }
                     } else {
                         boolean oldMatch = compiledPredicate.test(notification.oldValue());
                         boolean newMatch = compiledPredicate.test(notification.newValue());
                         if (oldMatch && !newMatch) {
-                            return Maybe.just(Notification.ofDeleted(notification.oldValue()));
+                            return Maybe.just(Notification.ofDeleted(notification.oldValue(), notification.sequenceNum()));
                         } else if (!oldMatch && newMatch) {
-                            return Maybe.just(Notification.ofCreated(notification.newValue()));
+                            return Maybe.just(Notification.ofCreated(notification.newValue(), notification.sequenceNum()));
                         } else if (oldMatch) {
                             return Maybe.just(notification);
                         }
@@ -72,6 +95,17 @@ public class Notifications {
                 });
     }
 
+    public static <S> java.util.function.Predicate<Notification<S>> affects(ObjectExpression<S, Boolean> predicate) {
+        if (predicate == null) {
+            return notification -> true;
+        }
+
+        java.util.function.Predicate<S> compiledPredicate = Expressions.compilePredicate(predicate);
+        return notification -> (notification.oldValue() == null && notification.newValue() == null)
+                || (notification.oldValue() != null && compiledPredicate.test(notification.oldValue()))
+                || (notification.newValue() != null && compiledPredicate.test(notification.newValue()));
+    }
+
     public static <K, S, T> ObservableTransformer<Notification<S>, Notification<T>> applyQuery(QueryInfo<K, S, T> query) {
         return src -> src
                 .doOnNext(n -> log.debug("Notification: {}", n))
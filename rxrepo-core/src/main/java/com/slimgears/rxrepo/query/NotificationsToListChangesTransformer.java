@@ -0,0 +1,165 @@
+package com.slimgears.rxrepo.query;
+
+import com.google.common.collect.ImmutableList;
+import com.slimgears.rxrepo.query.provider.SortingInfo;
+import com.slimgears.rxrepo.query.provider.SortingInfos;
+import com.slimgears.util.autovalue.annotations.MetaClassWithKey;
+import io.reactivex.Observable;
+import io.reactivex.ObservableSource;
+import io.reactivex.ObservableTransformer;
+
+import javax.annotation.Nullable;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Changes are positional and apply in order: each index refers to the list
+// as left by the preceding change (for Move, toIndex is the final position).
+// When paged, items sorting before the window's first item belong to earlier
+// pages: they shift firstItemIndex and are never reported as inserts.
+public class NotificationsToListChangesTransformer<K, T> implements ObservableTransformer<List<Notification<T>>, List<ListChange<T>>> {
+    private final @Nullable Long limit;
+    private final @Nullable AtomicLong firstItemIndex;
+    private final Comparator<T> comparator;
+    private final Map<K, T> map = new HashMap<>();
+    private final List<T> items = new ArrayList<>();
+    private final MetaClassWithKey<K, T> metaClass;
+    private @Nullable T firstItem;
+
+    private NotificationsToListChangesTransformer(MetaClassWithKey<K, T> metaClass,
+                                                  ImmutableList<SortingInfo<T, ?, ? extends Comparable<?>>> sortingInfos,
+                                                  @Nullable Long limit,
+                                                  @Nullable AtomicLong firstItemIndex) {
+        this.metaClass = metaClass;
+        this.limit = limit;
+        this.firstItemIndex = firstItemIndex;
+        this.comparator = Optional
+                .ofNullable(SortingInfos.toComparator(sortingInfos))
+                .orElseGet(() -> Comparator.<T, String>comparing((item -> metaClass.keyOf(item).toString())))
+                .thenComparing(metaClass::keyOf, NotificationsToListChangesTransformer::compareKeys);
+    }
+
+    public static <K, T> NotificationsToListChangesTransformer<K, T> create(
+            MetaClassWithKey<K, T> metaClass,
+            ImmutableList<SortingInfo<T, ?, ? extends Comparable<?>>> sortingInfos,
+            @Nullable Long limit) {
+        return new NotificationsToListChangesTransformer<>(metaClass, sortingInfos, limit, null);
+    }
+
+    public static <K, T> NotificationsToListChangesTransformer<K, T> create(
+            MetaClassWithKey<K, T> metaClass,
+            ImmutableList<SortingInfo<T, ?, ? extends Comparable<?>>> sortingInfos,
+            @Nullable Long limit,
+            AtomicLong firstItemIndex) {
+        return new NotificationsToListChangesTransformer<>(metaClass, sortingInfos, limit, firstItemIndex);
+    }
+
+    @Override
+    public ObservableSource<List<ListChange<T>>> apply(Observable<List<Notification<T>>> src) {
+        return src.map(this::applyNotifications);
+    }
+
+    private synchronized ImmutableList<ListChange<T>> applyNotifications(List<Notification<T>> notifications) {
+        ImmutableList.Builder<ListChange<T>> changes = ImmutableList.builder();
+        notifications.forEach(notification -> {
+            updateStartIndex(notification);
+            onNotification(notification, changes);
+        });
+        removeAfterLast(changes);
+        updateFirst();
+        return changes.build();
+    }
+
+    private void updateFirst() {
+        if (firstItemIndex != null && !items.isEmpty()) {
+            firstItem = items.get(0);
+        }
+    }
+
+    private void updateStartIndex(Notification<T> notification) {
+        if (firstItemIndex == null) {
+            return;
+        }
+        if (notification.isDelete() && isBeforeFirst(notification.oldValue())) {
+            firstItemIndex.decrementAndGet();
+        } else if (notification.isCreate() && isBeforeFirst(notification.newValue())) {
+            firstItemIndex.incrementAndGet();
+        } else if (notification.isModify()) {
+            if (isBeforeFirst(notification.newValue()) && !isBeforeFirst(notification.oldValue())) {
+                firstItemIndex.incrementAndGet();
+            } else if (!isBeforeFirst(notification.newValue()) && isBeforeFirst(notification.oldValue())) {
+                firstItemIndex.decrementAndGet();
+            }
+        }
+    }
+
+    private boolean isBeforeFirst(@Nullable T item) {
+        return firstItem != null && item != null && comparator.compare(item, firstItem) < 0;
+    }
+
+    private void remove(T previous, ImmutableList.Builder<ListChange<T>> changes) {
+        int index = indexOf(previous);
+        items.remove(index);
+        changes.add(ListChange.ofRemoved(index, previous));
+    }
+
+    private void onNotification(Notification<T> notification, ImmutableList.Builder<ListChange<T>> changes) {
+        if (notification.isDelete()) {
+            Optional.ofNullable(notification.oldValue())
+                    .map(metaClass::keyOf)
+                    .map(map::remove)
+                    .ifPresent(previous -> remove(previous, changes));
+            return;
+        }
+
+        T item = notification.newValue();
+        if (item == null) {
+            return;
+        }
+
+        if (isBeforeFirst(item)) {
+            Optional.ofNullable(map.remove(metaClass.keyOf(item)))
+                    .ifPresent(previous -> remove(previous, changes));
+            return;
+        }
+
+        T previous = map.put(metaClass.keyOf(item), item);
+        int fromIndex = previous != null ? indexOf(previous) : -1;
+        if (fromIndex >= 0) {
+            items.remove(fromIndex);
+        }
+        int toIndex = -Collections.binarySearch(items, item, comparator) - 1;
+        items.add(toIndex, item);
+
+        if (previous == null) {
+            changes.add(ListChange.ofInserted(toIndex, item));
+        } else if (fromIndex == toIndex) {
+            changes.add(ListChange.ofUpdated(toIndex, previous, item));
+        } else {
+            changes.add(ListChange.ofMoved(fromIndex, toIndex, previous, item));
+        }
+    }
+
+    private void removeAfterLast(ImmutableList.Builder<ListChange<T>> changes) {
+        if (limit == null) {
+            return;
+        }
+        while (items.size() > limit) {
+            int index = items.size() - 1;
+            T item = items.remove(index);
+            map.remove(metaClass.keyOf(item));
+            changes.add(ListChange.ofRemoved(index, item));
+        }
+    }
+
+    private int indexOf(T item) {
+        return Collections.binarySearch(items, item, comparator);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <K> int compareKeys(K first, K second) {
+        if (first instanceof Comparable && first.getClass() == second.getClass()) {
+            return ((Comparable<K>)first).compareTo(second);
+        }
+        return first.toString().compareTo(second.toString());
+    }
+}
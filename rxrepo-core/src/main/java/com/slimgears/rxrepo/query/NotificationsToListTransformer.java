@@ -12,28 +12,28 @@ import javax.annotation.Nullable;
 import java.util.*;
 import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.atomic.AtomicReference;
-import java.util.stream.Collectors;
-import java.util.stream.Stream;
 
 public class NotificationsToListTransformer<K, T> implements ObservableTransformer<List<Notification<T>>, List<T>> {
     private final @Nullable Long limit;
-    private final AtomicLong firstItemIndex;
+    private final @Nullable AtomicLong firstItemIndex;
     private final AtomicReference<T> firstItem = new AtomicReference<>();
     private final Comparator<T> comparator;
-    private final Map<K, T> map = Collections.synchronizedMap(new HashMap<>());
+    private final Map<K, T> map = new HashMap<>();
+    private final NavigableSet<T> sortedItems;
     private final MetaClassWithKey<K, T> metaClass;
 
 
     private NotificationsToListTransformer(MetaClassWithKey<K, T> metaClass,
                                            ImmutableList<SortingInfo<T, ?, ? extends Comparable<?>>> sortingInfos,
                                            @Nullable Long limit,
-                                           AtomicLong firstItemIndex) {
+                                           @Nullable AtomicLong firstItemIndex) {
         this.metaClass = metaClass;
         this.limit = limit;
         this.firstItemIndex = firstItemIndex;
         this.comparator = Optional
                 .ofNullable(SortingInfos.toComparator(sortingInfos))
                 .orElseGet(() -> Comparator.<T, String>comparing((item -> metaClass.keyOf(item).toString())));
+        this.sortedItems = new TreeSet<>(comparator.thenComparing(metaClass::keyOf, NotificationsToListTransformer::compareKeys));
     }
 
     public static <K, T> NotificationsToListTransformer<K, T> create(
@@ -51,6 +51,13 @@ public class NotificationsToListTransformer<K, T> implements ObservableTransform
         return create(metaClass, sortingInfos, limit, new AtomicLong());
     }
 
+    public static <K, S> NotificationsToListTransformer<K, S> createUnpaged(
+            MetaClassWithKey<K, S> metaClass,
+            ImmutableList<SortingInfo<S, ?, ? extends Comparable<?>>> sortingInfos,
+            @Nullable Long limit) {
+        return new NotificationsToListTransformer<>(metaClass, sortingInfos, limit, null);
+    }
+
     @Override
     public ObservableSource<List<T>> apply(Observable<List<Notification<T>>> src) {
         return src
@@ -58,14 +65,17 @@ public class NotificationsToListTransformer<K, T> implements ObservableTransform
                 .map(n -> toList());
     }
 
-    private ImmutableList<T> toList() {
-        return map.values()
-                .stream()
-                .sorted(comparator)
-                .collect(ImmutableList.toImmutableList());
+    private synchronized ImmutableList<T> toList() {
+        return ImmutableList.copyOf(sortedItems);
     }
 
-    private void updateMap(List<Notification<T>> notifications) {
+    private synchronized void updateMap(List<Notification<T>> notifications) {
+        if (firstItemIndex == null) {
+            notifications.forEach(this::onNotification);
+            removeAfterLast();
+            return;
+        }
+
         notifications
                 .stream()
                 .peek(this::updateStartIndex)
@@ -77,33 +87,28 @@ public class NotificationsToListTransformer<K, T> implements ObservableTransform
     }
 
     private void updateFirst() {
-        map.values()
-                .stream()
-                .min(comparator)
-                .ifPresent(firstItem::set);
+        if (!sortedItems.isEmpty()) {
+            firstItem.set(sortedItems.first());
+        }
     }
 
     private void removeAfterLast() {
-        Optional.ofNullable(limit)
-                .map(l -> map.values()
-                        .stream()
-                        .sorted(comparator)
-                        .skip(l))
-                .orElse(Stream.empty())
-                .map(val -> metaClass.keyProperty().getValue(val))
-                .collect(Collectors.toList())
-                .forEach(map::remove);
+        if (limit == null) {
+            return;
+        }
+        while (sortedItems.size() > limit) {
+            map.remove(metaClass.keyOf(sortedItems.pollLast()));
+        }
     }
 
     private void removeBeforeFirst() {
-        Optional.ofNullable(firstItem.get())
-                .map(m -> map.values()
-                        .stream()
-                        .filter(val -> comparator.compare(m, val) > 0))
-                .orElse(Stream.empty())
-                .map(val -> metaClass.keyProperty().getValue(val))
-                .collect(Collectors.toList())
-                .forEach(map::remove);
+        T first = firstItem.get();
+        if (first == null) {
+            return;
+        }
+        while (!sortedItems.isEmpty() && comparator.compare(first, sortedItems.first()) > 0) {
+            map.remove(metaClass.keyOf(sortedItems.pollFirst()));
+        }
     }
 
     private void updateStartIndex(Notification<T> notification) {
@@ -129,12 +134,26 @@ public class NotificationsToListTransformer<K, T> implements ObservableTransform
     private void onNotification(Notification<T> notification) {
         if (notification.isDelete()) {
             Optional.ofNullable(notification.oldValue())
-                    .map(val -> metaClass.keyProperty().getValue(val))
-                    .ifPresent(map::remove);
+                    .map(metaClass::keyOf)
+                    .map(map::remove)
+                    .ifPresent(sortedItems::remove);
         } else {
             Optional.ofNullable(notification.newValue())
-                    .map(val -> metaClass.keyProperty().getValue(val))
-                    .ifPresent(key -> map.put(key, notification.newValue()));
+                    .ifPresent(val -> {
+                        T previous = map.put(metaClass.keyOf(val), val);
+                        if (previous != null) {
+                            sortedItems.remove(previous);
+                        }
+                        sortedItems.add(val);
+                    });
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <K> int compareKeys(K first, K second) {
+        if (first instanceof Comparable && first.getClass() == second.getClass()) {
+            return ((Comparable<K>)first).compareTo(second);
         }
+        return first.toString().compareTo(second.toString());
     }
 }
@@ -0,0 +1,15 @@
+package com.slimgears.rxrepo.query;
+
+@SuppressWarnings("WeakerAccess")
+public class ReplayUnavailableException extends RuntimeException {
+    private final long sequenceNum;
+
+    public ReplayUnavailableException(long sequenceNum) {
+        super("Notifications after sequence number " + sequenceNum + " are no longer available");
+        this.sequenceNum = sequenceNum;
+    }
+
+    public long sequenceNum() {
+        return sequenceNum;
+    }
+}
@@ -4,6 +4,8 @@ import com.slimgears.util.autovalue.annotations.AutoValuePrototype;
 import com.slimgears.util.autovalue.annotations.UseAutoValueAnnotator;
 import com.slimgears.util.autovalue.annotations.UseBuilderExtension;
 
+import javax.annotation.Nullable;
+
 @AutoValuePrototype(value = "$1", pattern = "(.*)Model")
 @UseAutoValueAnnotator
 @UseBuilderExtension
@@ -11,4 +13,5 @@ public interface RepositoryConfigModel {
     int retryCount();
     int debounceTimeoutMillis();
     int retryInitialDurationMillis();
+    @Nullable EmissionPolicy emissionPolicy();
 }
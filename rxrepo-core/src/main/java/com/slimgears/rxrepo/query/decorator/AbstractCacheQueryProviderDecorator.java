@@ -0,0 +1,239 @@
+package com.slimgears.rxrepo.query.decorator;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheStats;
+import com.slimgears.rxrepo.query.Notification;
+import com.slimgears.rxrepo.query.provider.DeleteInfo;
+import com.slimgears.rxrepo.query.provider.QueryInfo;
+import com.slimgears.rxrepo.query.provider.QueryProvider;
+import com.slimgears.rxrepo.query.provider.UpdateInfo;
+import com.slimgears.util.autovalue.annotations.MetaClassWithKey;
+import io.reactivex.Completable;
+import io.reactivex.Maybe;
+import io.reactivex.Single;
+import io.reactivex.disposables.Disposable;
+import io.reactivex.functions.Function;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.stream.Collectors;
+import java.util.stream.StreamSupport;
+
+/**
+ * Base for decorators that cache per entity class and keep the cache coherent through a live query
+ * on that class. Writes made through the decorated provider invalidate right away, writes made
+ * elsewhere are seen through the live query.
+ *
+ * <p>Entries are only stored while the live query is subscribed, and only when no write or
+ * notification arrived since the cached read started. With an asynchronous notification scheduler
+ * the upstream live query may still be registering when it is reported as subscribed, so caches
+ * should also expire entries after write to bound how long a change missed in that window is served.
+ */
+public abstract class AbstractCacheQueryProviderDecorator implements QueryProvider.Decorator {
+    private final static Logger log = LoggerFactory.getLogger(AbstractCacheQueryProviderDecorator.class);
+    private final List<CachingProvider> providers = new CopyOnWriteArrayList<>();
+
+    @Override
+    public QueryProvider apply(QueryProvider queryProvider) {
+        CachingProvider provider = createProvider(queryProvider);
+        providers.add(provider);
+        return provider;
+    }
+
+    public CacheStats stats() {
+        return providers.stream()
+                .flatMap(p -> p.caches.values().stream())
+                .map(c -> c.entries.stats())
+                .reduce(new CacheStats(0, 0, 0, 0, 0, 0), CacheStats::plus);
+    }
+
+    public CacheStats stats(MetaClassWithKey<?, ?> metaClass) {
+        return providers.stream()
+                .map(p -> p.caches.get(metaClass))
+                .filter(c -> c != null)
+                .map(c -> c.entries.stats())
+                .reduce(new CacheStats(0, 0, 0, 0, 0, 0), CacheStats::plus);
+    }
+
+    protected abstract CachingProvider createProvider(QueryProvider underlyingProvider);
+
+    protected abstract <K, S> ClassCache<K, S, ?> createCache(MetaClassWithKey<K, S> metaClass);
+
+    protected class CachingProvider extends AbstractQueryProviderDecorator {
+        private final Map<MetaClassWithKey<?, ?>, ClassCache<?, ?, ?>> caches = new ConcurrentHashMap<>();
+
+        protected CachingProvider(QueryProvider underlyingProvider) {
+            super(underlyingProvider);
+        }
+
+        @Override
+        public <K, S> Maybe<S> insertOrUpdate(MetaClassWithKey<K, S> metaClass, K key, Function<Maybe<S>, Maybe<S>> entityUpdater) {
+            return super.insertOrUpdate(metaClass, key, entityUpdater)
+                    .doFinally(() -> invalidate(metaClass, Collections.singletonList(key)));
+        }
+
+        @Override
+        public <K, S> Single<S> insertOrUpdate(MetaClassWithKey<K, S> metaClass, S entity) {
+            return super.insertOrUpdate(metaClass, entity)
+                    .doFinally(() -> invalidate(metaClass, Collections.singletonList(metaClass.keyOf(entity))));
+        }
+
+        @Override
+        public <K, S> Completable insert(MetaClassWithKey<K, S> metaClass, Iterable<S> entities) {
+            return super.insert(metaClass, entities)
+                    .doFinally(() -> invalidate(metaClass, keysOf(metaClass, entities)));
+        }
+
+        @Override
+        public <K, S> Completable insertOrUpdateAll(MetaClassWithKey<K, S> metaClass, Iterable<S> entities) {
+            return super.insertOrUpdateAll(metaClass, entities)
+                    .doFinally(() -> invalidate(metaClass, keysOf(metaClass, entities)));
+        }
+
+        @Override
+        public <K, S> Single<Integer> update(UpdateInfo<K, S> update) {
+            return super.update(update)
+                    .doFinally(() -> invalidateAll(update.metaClass()));
+        }
+
+        @Override
+        public <K, S> Single<Integer> delete(DeleteInfo<K, S> delete) {
+            return super.delete(delete)
+                    .doFinally(() -> invalidateAll(delete.metaClass()));
+        }
+
+        @Override
+        public <K, S> Completable drop(MetaClassWithKey<K, S> metaClass) {
+            return super.drop(metaClass)
+                    .doFinally(() -> invalidateAll(metaClass));
+        }
+
+        @Override
+        public Completable dropAll() {
+            return super.dropAll()
+                    .doFinally(() -> caches.values().forEach(ClassCache::invalidateAll));
+        }
+
+        @Override
+        public void close() {
+            caches.values().forEach(ClassCache::close);
+            caches.clear();
+            super.close();
+        }
+
+        @SuppressWarnings("unchecked")
+        protected <K, S, C extends ClassCache<K, S, ?>> C cacheOf(MetaClassWithKey<K, S> metaClass) {
+            ClassCache<K, S, ?> existing = (ClassCache<K, S, ?>)caches.get(metaClass);
+            if (existing != null) {
+                return (C)existing;
+            }
+
+            ClassCache<K, S, ?> cache = createCache(metaClass);
+            existing = (ClassCache<K, S, ?>)caches.putIfAbsent(metaClass, cache);
+            if (existing != null) {
+                return (C)existing;
+            }
+
+            cache.subscription = super
+                    .liveQuery(QueryInfo.<K, S, S>builder().metaClass(metaClass).build())
+                    .subscribe(cache::onNotification, e -> onLiveQueryTerminated(cache, e), () -> onLiveQueryTerminated(cache, null));
+            cache.activate();
+            return (C)cache;
+        }
+
+        private void onLiveQueryTerminated(ClassCache<?, ?, ?> cache, Throwable error) {
+            log.debug("Live query for {} terminated, dropping cache", cache.metaClass.asType(), error);
+            caches.remove(cache.metaClass, cache);
+            cache.terminate();
+        }
+
+        @SuppressWarnings("unchecked")
+        private <K, S> void invalidate(MetaClassWithKey<K, S> metaClass, Iterable<K> keys) {
+            Optional.ofNullable((ClassCache<K, S, ?>)caches.get(metaClass)).ifPresent(cache -> cache.invalidate(keys));
+        }
+
+        private void invalidateAll(MetaClassWithKey<?, ?> metaClass) {
+            Optional.ofNullable(caches.get(metaClass)).ifPresent(ClassCache::invalidateAll);
+        }
+    }
+
+    private static <K, S> List<K> keysOf(MetaClassWithKey<K, S> metaClass, Iterable<S> entities) {
+        return StreamSupport.stream(entities.spliterator(), false)
+                .map(metaClass::keyOf)
+                .collect(Collectors.toList());
+    }
+
+    protected abstract static class ClassCache<K, S, V> {
+        protected final MetaClassWithKey<K, S> metaClass;
+        protected final Cache<Object, V> entries;
+        private long generation;
+        private boolean active;
+        private boolean terminated;
+        private Disposable subscription;
+
+        protected ClassCache(MetaClassWithKey<K, S> metaClass, Cache<Object, V> entries) {
+            this.metaClass = metaClass;
+            this.entries = entries;
+        }
+
+        protected abstract void evict(Notification<S> notification);
+
+        protected void evict(Iterable<K> keys) {
+            entries.invalidateAll();
+        }
+
+        V getIfPresent(Object key) {
+            return entries.getIfPresent(key);
+        }
+
+        synchronized long generation() {
+            return generation;
+        }
+
+        synchronized void putIfCurrent(Object key, V value, long expectedGeneration) {
+            if (active && generation == expectedGeneration) {
+                entries.put(key, value);
+            }
+        }
+
+        private synchronized void onNotification(Notification<S> notification) {
+            ++generation;
+            evict(notification);
+        }
+
+        private synchronized void invalidate(Iterable<K> keys) {
+            ++generation;
+            evict(keys);
+        }
+
+        private synchronized void invalidateAll() {
+            ++generation;
+            entries.invalidateAll();
+        }
+
+        // Reads that started before the live query was subscribed may have missed a change, so they are not stored
+        private synchronized void activate() {
+            if (!terminated) {
+                ++generation;
+                active = true;
+            }
+        }
+
+        private synchronized void terminate() {
+            terminated = true;
+            active = false;
+            invalidateAll();
+        }
+
+        private void close() {
+            Optional.ofNullable(subscription).ifPresent(Disposable::dispose);
+            terminate();
+        }
+    }
+}
@@ -1,6 +1,7 @@
 package com.slimgears.rxrepo.query.decorator;
 
 import com.slimgears.rxrepo.expressions.Aggregator;
+import com.slimgears.rxrepo.query.EmissionPolicy;
 import com.slimgears.rxrepo.query.Notification;
 import com.slimgears.rxrepo.query.provider.DeleteInfo;
 import com.slimgears.rxrepo.query.provider.QueryInfo;
@@ -13,6 +14,8 @@ import io.reactivex.Observable;
 import io.reactivex.Single;
 import io.reactivex.functions.Function;
 
+import java.util.List;
+
 public class AbstractQueryProviderDecorator implements QueryProvider {
     private final QueryProvider underlyingProvider;
 
@@ -25,6 +28,11 @@ public class AbstractQueryProviderDecorator implements QueryProvider {
         return underlyingProvider.insert(metaClass, entities);
     }
 
+    @Override
+    public <K, S> Completable insertOrUpdateAll(MetaClassWithKey<K, S> metaClass, Iterable<S> entities) {
+        return underlyingProvider.insertOrUpdateAll(metaClass, entities);
+    }
+
     @Override
     public <K, S> Single<S> insertOrUpdate(MetaClassWithKey<K, S> metaClass, S entity) {
         return underlyingProvider.insertOrUpdate(metaClass, entity);
@@ -45,14 +53,24 @@ public class AbstractQueryProviderDecorator implements QueryProvider {
         return underlyingProvider.liveQuery(query);
     }
 
+    @Override
+    public <K, S, T> Observable<Notification<T>> liveQuery(QueryInfo<K, S, T> query, long fromSequenceNum) {
+        return underlyingProvider.liveQuery(query, fromSequenceNum);
+    }
+
     @Override
     public <K, S, T, R> Maybe<R> aggregate(QueryInfo<K, S, T> query, Aggregator<T, T, R> aggregator) {
         return underlyingProvider.aggregate(query, aggregator);
     }
 
     @Override
-    public <K, S, T, R> Observable<R> liveAggregate(QueryInfo<K, S, T> query, Aggregator<T, T, R> aggregator) {
-        return underlyingProvider.liveAggregate(query, aggregator);
+    public <K, S, T, R> Observable<R> liveAggregate(QueryInfo<K, S, T> query, Aggregator<T, T, R> aggregator, EmissionPolicy emissionPolicy) {
+        return underlyingProvider.liveAggregate(query, aggregator, emissionPolicy);
+    }
+
+    @Override
+    public <K, S, T> Observable<List<T>> liveQueryAsList(QueryInfo<K, S, T> query, EmissionPolicy emissionPolicy) {
+        return underlyingProvider.liveQueryAsList(query, emissionPolicy);
     }
 
     @Override
@@ -75,6 +93,11 @@ public class AbstractQueryProviderDecorator implements QueryProvider {
         return underlyingProvider.dropAll();
     }
 
+    @Override
+    public <K, S> void onRetry(MetaClassWithKey<K, S> metaClass, Throwable error) {
+        underlyingProvider.onRetry(metaClass, error);
+    }
+
     @Override
     public void close() {
         underlyingProvider.close();
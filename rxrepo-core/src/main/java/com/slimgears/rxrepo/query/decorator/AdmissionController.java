@@ -0,0 +1,148 @@
+package com.slimgears.rxrepo.query.decorator;
+
+import io.reactivex.Completable;
+import io.reactivex.CompletableEmitter;
+import io.reactivex.Observable;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Queue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+class AdmissionController {
+    private final int maxConcurrentOperations;
+    private final Map<Object, Queue<Ticket>> queues = new HashMap<>();
+    private final Deque<Object> rotation = new ArrayDeque<>();
+    private final AtomicInteger wip = new AtomicInteger();
+    private int activeOperations;
+    private int queuedOperations;
+    private long admittedOperations;
+    private long totalWaitNanos;
+    private long maxWaitNanos;
+
+    private AdmissionController(int maxConcurrentOperations) {
+        this.maxConcurrentOperations = maxConcurrentOperations;
+    }
+
+    static AdmissionController create(int maxConcurrentOperations) {
+        return new AdmissionController(maxConcurrentOperations);
+    }
+
+    <T> Observable<T> admit(Object fairnessKey, Observable<T> operation) {
+        return Observable.defer(() -> {
+            Ticket ticket = new Ticket(fairnessKey);
+            return Completable.create(ticket::enqueue)
+                    .andThen(operation)
+                    .doFinally(ticket::release);
+        });
+    }
+
+    synchronized int activeOperations() {
+        return activeOperations;
+    }
+
+    synchronized int queuedOperations() {
+        return queuedOperations;
+    }
+
+    synchronized int queuedOperations(Object fairnessKey) {
+        return Optional.ofNullable(queues.get(fairnessKey)).map(Queue::size).orElse(0);
+    }
+
+    synchronized long admittedOperations() {
+        return admittedOperations;
+    }
+
+    synchronized long totalWaitNanos() {
+        return totalWaitNanos;
+    }
+
+    synchronized long maxWaitNanos() {
+        return maxWaitNanos;
+    }
+
+    private void drain() {
+        if (wip.getAndIncrement() != 0) {
+            return;
+        }
+        do {
+            for (Ticket ticket = poll(); ticket != null; ticket = poll()) {
+                ticket.emitter.onComplete();
+            }
+        } while (wip.decrementAndGet() != 0);
+    }
+
+    private synchronized Ticket poll() {
+        if (activeOperations >= maxConcurrentOperations || rotation.isEmpty()) {
+            return null;
+        }
+        Object key = rotation.poll();
+        Queue<Ticket> queue = queues.get(key);
+        Ticket ticket = queue.poll();
+        if (queue.isEmpty()) {
+            queues.remove(key);
+        } else {
+            rotation.add(key);
+        }
+
+        long waitNanos = System.nanoTime() - ticket.enqueuedNanos;
+        --queuedOperations;
+        ++activeOperations;
+        ++admittedOperations;
+        totalWaitNanos += waitNanos;
+        maxWaitNanos = Math.max(maxWaitNanos, waitNanos);
+        ticket.admitted = true;
+        return ticket;
+    }
+
+    private class Ticket {
+        private final Object fairnessKey;
+        private CompletableEmitter emitter;
+        private long enqueuedNanos;
+        private boolean admitted;
+        private boolean released;
+
+        private Ticket(Object fairnessKey) {
+            this.fairnessKey = fairnessKey;
+        }
+
+        private void enqueue(CompletableEmitter emitter) {
+            synchronized (AdmissionController.this) {
+                this.emitter = emitter;
+                this.enqueuedNanos = System.nanoTime();
+                queues.computeIfAbsent(fairnessKey, k -> {
+                    rotation.add(k);
+                    return new ArrayDeque<>();
+                }).add(this);
+                ++queuedOperations;
+            }
+            drain();
+        }
+
+        private void release() {
+            synchronized (AdmissionController.this) {
+                if (released || emitter == null) {
+                    return;
+                }
+                released = true;
+                if (admitted) {
+                    --activeOperations;
+                } else {
+                    Queue<Ticket> queue = queues.get(fairnessKey);
+                    if (queue != null && queue.remove(this)) {
+                        --queuedOperations;
+                        if (queue.isEmpty()) {
+                            queues.remove(fairnessKey);
+                            rotation.remove(fairnessKey);
+                        }
+                    }
+                    return;
+                }
+            }
+            drain();
+        }
+    }
+}
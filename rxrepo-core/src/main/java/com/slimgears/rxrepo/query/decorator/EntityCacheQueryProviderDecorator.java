@@ -0,0 +1,150 @@
+package com.slimgears.rxrepo.query.decorator;
+
+import com.google.common.cache.CacheBuilder;
+import com.slimgears.rxrepo.expressions.ArgumentExpression;
+import com.slimgears.rxrepo.expressions.BinaryOperationExpression;
+import com.slimgears.rxrepo.expressions.ConstantExpression;
+import com.slimgears.rxrepo.expressions.DelegateExpression;
+import com.slimgears.rxrepo.expressions.ObjectExpression;
+import com.slimgears.rxrepo.expressions.PropertyExpression;
+import com.slimgears.rxrepo.query.Notification;
+import com.slimgears.rxrepo.query.provider.QueryInfo;
+import com.slimgears.rxrepo.query.provider.QueryProvider;
+import com.slimgears.util.autovalue.annotations.MetaClassWithKey;
+import io.reactivex.Observable;
+
+import java.time.Duration;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+public class EntityCacheQueryProviderDecorator extends AbstractCacheQueryProviderDecorator {
+    private final long maxEntitiesPerClass;
+    private final Duration timeToLive;
+
+    private EntityCacheQueryProviderDecorator(long maxEntitiesPerClass, Duration timeToLive) {
+        this.maxEntitiesPerClass = maxEntitiesPerClass;
+        this.timeToLive = timeToLive;
+    }
+
+    public static EntityCacheQueryProviderDecorator create() {
+        return create(Properties.maxEntitiesPerClass());
+    }
+
+    public static EntityCacheQueryProviderDecorator create(long maxEntitiesPerClass) {
+        return create(maxEntitiesPerClass, Duration.ofMillis(Properties.timeToLiveMillis()));
+    }
+
+    public static EntityCacheQueryProviderDecorator create(long maxEntitiesPerClass, Duration timeToLive) {
+        return new EntityCacheQueryProviderDecorator(maxEntitiesPerClass, timeToLive);
+    }
+
+    @Override
+    protected CachingProvider createProvider(QueryProvider underlyingProvider) {
+        return new DecoratedProvider(underlyingProvider);
+    }
+
+    @Override
+    protected <K, S> ClassCache<K, S, ?> createCache(MetaClassWithKey<K, S> metaClass) {
+        return new EntityCache<>(metaClass, maxEntitiesPerClass, timeToLive);
+    }
+
+    private class DecoratedProvider extends CachingProvider {
+        private DecoratedProvider(QueryProvider underlyingProvider) {
+            super(underlyingProvider);
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public <K, S, T> Observable<T> query(QueryInfo<K, S, T> query) {
+            if (query.mapping() != null || (query.skip() != null && query.skip() > 0) || (query.limit() != null && query.limit() <= 0)) {
+                return super.query(query);
+            }
+
+            Optional<K> key = keyOf(query.metaClass(), query.predicate());
+            if (!key.isPresent() && !query.properties().isEmpty()) {
+                return super.query(query);
+            }
+
+            EntityCache<K, S> cache = cacheOf(query.metaClass());
+            return Observable.defer(() -> {
+                if (key.isPresent()) {
+                    S cached = cache.getIfPresent(key.get());
+                    if (cached != null) {
+                        return Observable.just((T)cached);
+                    }
+                }
+
+                if (!query.properties().isEmpty()) {
+                    return super.query(query);
+                }
+
+                long generation = cache.generation();
+                return super.query(query).doOnNext(entity -> cache.putIfCurrent(query.metaClass().keyOf((S)entity), (S)entity, generation));
+            });
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <K, S> Optional<K> keyOf(MetaClassWithKey<K, S> metaClass, ObjectExpression<S, Boolean> predicate) {
+        ObjectExpression<S, ?> expression = predicate;
+        while (expression instanceof DelegateExpression) {
+            expression = ((DelegateExpression<S, ?>)expression).delegate();
+        }
+        if (!(expression instanceof BinaryOperationExpression) || expression.type() != ObjectExpression.Type.Equals) {
+            return Optional.empty();
+        }
+        BinaryOperationExpression<S, ?, ?, ?> equals = (BinaryOperationExpression<S, ?, ?, ?>)expression;
+        if (!isKeyProperty(metaClass, equals.left()) || !(equals.right() instanceof ConstantExpression)) {
+            return Optional.empty();
+        }
+        return Optional.ofNullable((K)((ConstantExpression<S, ?>)equals.right()).value());
+    }
+
+    private static boolean isKeyProperty(MetaClassWithKey<?, ?> metaClass, ObjectExpression<?, ?> expression) {
+        return expression instanceof PropertyExpression
+                && ((PropertyExpression<?, ?, ?>)expression).target() instanceof ArgumentExpression
+                && ((PropertyExpression<?, ?, ?>)expression).property() == metaClass.keyProperty();
+    }
+
+    private static class EntityCache<K, S> extends ClassCache<K, S, S> {
+        private EntityCache(MetaClassWithKey<K, S> metaClass, long maxSize, Duration timeToLive) {
+            super(metaClass, CacheBuilder.newBuilder()
+                    .maximumSize(maxSize)
+                    .expireAfterWrite(timeToLive.toMillis(), TimeUnit.MILLISECONDS)
+                    .recordStats()
+                    .<Object, S>build());
+        }
+
+        @Override
+        protected void evict(Notification<S> notification) {
+            if (notification.newValue() != null) {
+                S newValue = notification.newValue();
+                entries.asMap().computeIfPresent(metaClass.keyOf(newValue), (key, value) -> newValue);
+            } else if (notification.oldValue() != null) {
+                entries.invalidate(metaClass.keyOf(notification.oldValue()));
+            } else {
+                entries.invalidateAll();
+            }
+        }
+
+        @Override
+        protected void evict(Iterable<K> keys) {
+            entries.invalidateAll(keys);
+        }
+    }
+
+    public static class Properties {
+        public static final String maxEntitiesPerClass = "rxrepo.entityCache.maxEntitiesPerClass";
+        public static final String timeToLiveMillis = "rxrepo.entityCache.timeToLiveMillis";
+        private static final long defaultMaxEntitiesPerClass = 10000;
+        private static final long defaultTimeToLiveMillis = 60000;
+
+        public static long maxEntitiesPerClass() {
+            return Long.getLong(Properties.maxEntitiesPerClass, defaultMaxEntitiesPerClass);
+        }
+
+        public static long timeToLiveMillis() {
+            return Long.getLong(Properties.timeToLiveMillis, defaultTimeToLiveMillis);
+        }
+    }
+}
@@ -0,0 +1,34 @@
+package com.slimgears.rxrepo.query.decorator;
+
+import com.google.common.collect.ImmutableList;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicReference;
+
+public class InMemoryMetricsExporter implements MetricsExporter {
+    private final AtomicReference<List<OperationMetrics>> lastMetrics = new AtomicReference<>(ImmutableList.of());
+
+    private InMemoryMetricsExporter() {
+    }
+
+    public static InMemoryMetricsExporter create() {
+        return new InMemoryMetricsExporter();
+    }
+
+    @Override
+    public void export(List<OperationMetrics> metrics) {
+        lastMetrics.set(ImmutableList.copyOf(metrics));
+    }
+
+    public List<OperationMetrics> metrics() {
+        return lastMetrics.get();
+    }
+
+    public Optional<OperationMetrics> metrics(String entityType, OperationMetrics.Operation operation) {
+        return lastMetrics.get()
+                .stream()
+                .filter(m -> m.entityType().equals(entityType) && m.operation() == operation)
+                .findFirst();
+    }
+}
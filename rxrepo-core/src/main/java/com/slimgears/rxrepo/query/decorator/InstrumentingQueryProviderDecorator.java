@@ -0,0 +1,334 @@
+package com.slimgears.rxrepo.query.decorator;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.collect.ImmutableList;
+import com.slimgears.rxrepo.expressions.Aggregator;
+import com.slimgears.rxrepo.query.Notification;
+import com.slimgears.rxrepo.query.provider.DeleteInfo;
+import com.slimgears.rxrepo.query.provider.QueryInfo;
+import com.slimgears.rxrepo.query.provider.QueryProvider;
+import com.slimgears.rxrepo.query.provider.UpdateInfo;
+import com.slimgears.util.autovalue.annotations.MetaClassWithKey;
+import io.reactivex.Completable;
+import io.reactivex.Maybe;
+import io.reactivex.Observable;
+import io.reactivex.Single;
+import io.reactivex.disposables.Disposable;
+import io.reactivex.disposables.Disposables;
+import io.reactivex.exceptions.CompositeException;
+import io.reactivex.functions.Function;
+import io.reactivex.schedulers.Schedulers;
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.ConcurrentModificationException;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Collectors;
+import java.util.stream.StreamSupport;
+
+public class InstrumentingQueryProviderDecorator implements QueryProvider.Decorator {
+    private final static Logger log = LoggerFactory.getLogger(InstrumentingQueryProviderDecorator.class);
+    private final static String allEntities = "*";
+    private final Map<List<Object>, OperationRecorder> recorders = new ConcurrentHashMap<>();
+    private final static long maxPendingWrites = 100000;
+    private final Cache<List<Object>, Long> pendingWrites = CacheBuilder.newBuilder()
+            .maximumSize(maxPendingWrites)
+            .expireAfterWrite(Properties.pendingWriteTimeoutMillis(), TimeUnit.MILLISECONDS)
+            .build();
+    private final Map<String, AtomicInteger> liveSubscriptions = new ConcurrentHashMap<>();
+    private final List<MetricsExporter> exporters;
+    private final Duration exportInterval;
+    private long lastExportNanos = System.nanoTime();
+
+    private InstrumentingQueryProviderDecorator(Duration exportInterval, List<MetricsExporter> exporters) {
+        this.exportInterval = exportInterval;
+        this.exporters = exporters;
+    }
+
+    public static InstrumentingQueryProviderDecorator create(MetricsExporter... exporters) {
+        return create(Duration.ofMillis(Properties.exportIntervalMillis()), exporters);
+    }
+
+    public static InstrumentingQueryProviderDecorator create(Duration exportInterval, MetricsExporter... exporters) {
+        return new InstrumentingQueryProviderDecorator(exportInterval, ImmutableList.copyOf(exporters));
+    }
+
+    @Override
+    public QueryProvider apply(QueryProvider queryProvider) {
+        return new DecoratedProvider(queryProvider);
+    }
+
+    public void export() {
+        List<OperationMetrics> metrics = collect();
+        exporters.forEach(exporter -> {
+            try {
+                exporter.export(metrics);
+            } catch (RuntimeException e) {
+                log.warn("Failed to export metrics using {}", exporter, e);
+            }
+        });
+    }
+
+    private synchronized List<OperationMetrics> collect() {
+        long now = System.nanoTime();
+        Duration interval = Duration.ofNanos(now - lastExportNanos);
+        lastExportNanos = now;
+        return recorders.values()
+                .stream()
+                .map(recorder -> recorder.collect(interval))
+                .collect(ImmutableList.toImmutableList());
+    }
+
+    private OperationRecorder recorder(String entityType, OperationMetrics.Operation operation) {
+        return recorders.computeIfAbsent(Arrays.asList(entityType, operation), k -> new OperationRecorder(entityType, operation));
+    }
+
+    private long pendingWriteNanos(String entityType, Object key) {
+        return Optional.ofNullable(pendingWrites.getIfPresent(Arrays.asList(entityType, key))).orElse(0L);
+    }
+
+    private AtomicInteger liveSubscriptions(String entityType) {
+        return liveSubscriptions.computeIfAbsent(entityType, k -> new AtomicInteger());
+    }
+
+    private static boolean isConcurrencyException(Throwable exception) {
+        return exception instanceof ConcurrentModificationException ||
+                (exception instanceof CompositeException && ((CompositeException)exception)
+                        .getExceptions()
+                        .stream()
+                        .anyMatch(InstrumentingQueryProviderDecorator::isConcurrencyException));
+    }
+
+    private class DecoratedProvider extends AbstractQueryProviderDecorator {
+        private final Disposable exportSubscription;
+
+        private DecoratedProvider(QueryProvider underlyingProvider) {
+            super(underlyingProvider);
+            this.exportSubscription = !exporters.isEmpty() && !exportInterval.isZero()
+                    ? Schedulers.computation().schedulePeriodicallyDirect(
+                            InstrumentingQueryProviderDecorator.this::export,
+                            exportInterval.toMillis(),
+                            exportInterval.toMillis(),
+                            TimeUnit.MILLISECONDS)
+                    : Disposables.disposed();
+        }
+
+        @Override
+        public <K, S> Completable insert(MetaClassWithKey<K, S> metaClass, Iterable<S> entities) {
+            return write(metaClass.simpleName(), OperationMetrics.Operation.Insert, keysOf(metaClass, entities), super.insert(metaClass, entities).toObservable()).ignoreElements();
+        }
+
+        @Override
+        public <K, S> Completable insertOrUpdateAll(MetaClassWithKey<K, S> metaClass, Iterable<S> entities) {
+            return write(metaClass.simpleName(), OperationMetrics.Operation.InsertOrUpdate, keysOf(metaClass, entities), super.insertOrUpdateAll(metaClass, entities).toObservable()).ignoreElements();
+        }
+
+        @Override
+        public <K, S> Single<S> insertOrUpdate(MetaClassWithKey<K, S> metaClass, S entity) {
+            return write(metaClass.simpleName(), OperationMetrics.Operation.InsertOrUpdate, Collections.singletonList(metaClass.keyOf(entity)), super.insertOrUpdate(metaClass, entity).toObservable()).singleOrError();
+        }
+
+        @Override
+        public <K, S> Maybe<S> insertOrUpdate(MetaClassWithKey<K, S> metaClass, K key, Function<Maybe<S>, Maybe<S>> entityUpdater) {
+            return write(metaClass.simpleName(), OperationMetrics.Operation.InsertOrUpdate, Collections.singletonList(key), super.insertOrUpdate(metaClass, key, entityUpdater).toObservable()).singleElement();
+        }
+
+        @Override
+        public <K, S> Single<Integer> update(UpdateInfo<K, S> update) {
+            return write(update.metaClass().simpleName(), OperationMetrics.Operation.Update, Collections.emptyList(), super.update(update).toObservable()).singleOrError();
+        }
+
+        @Override
+        public <K, S> Single<Integer> delete(DeleteInfo<K, S> delete) {
+            return write(delete.metaClass().simpleName(), OperationMetrics.Operation.Delete, Collections.emptyList(), super.delete(delete).toObservable()).singleOrError();
+        }
+
+        @Override
+        public <K, S> Completable drop(MetaClassWithKey<K, S> metaClass) {
+            return write(metaClass.simpleName(), OperationMetrics.Operation.Drop, Collections.emptyList(), super.drop(metaClass).toObservable()).ignoreElements();
+        }
+
+        @Override
+        public Completable dropAll() {
+            return write(allEntities, OperationMetrics.Operation.Drop, Collections.emptyList(), super.dropAll().toObservable()).ignoreElements();
+        }
+
+        @Override
+        public <K, S, T> Observable<T> query(QueryInfo<K, S, T> query) {
+            return timed(recorder(query.metaClass().simpleName(), OperationMetrics.Operation.Query), super.query(query));
+        }
+
+        @Override
+        public <K, S, T, R> Maybe<R> aggregate(QueryInfo<K, S, T> query, Aggregator<T, T, R> aggregator) {
+            return timed(recorder(query.metaClass().simpleName(), OperationMetrics.Operation.Aggregate), super.aggregate(query, aggregator).toObservable()).singleElement();
+        }
+
+        @Override
+        public <K, S, T> Observable<Notification<T>> liveQuery(QueryInfo<K, S, T> query) {
+            return live(query, super.liveQuery(query));
+        }
+
+        @Override
+        public <K, S, T> Observable<Notification<T>> liveQuery(QueryInfo<K, S, T> query, long fromSequenceNum) {
+            return live(query, super.liveQuery(query, fromSequenceNum));
+        }
+
+        @Override
+        public <K, S> void onRetry(MetaClassWithKey<K, S> metaClass, Throwable error) {
+            recorder(metaClass.simpleName(), OperationMetrics.Operation.Retry).onError(error);
+            super.onRetry(metaClass, error);
+        }
+
+        @Override
+        public void close() {
+            exportSubscription.dispose();
+            super.close();
+        }
+
+        // Writes mark the entities they touch, so that notifications on these entities
+        // can be timed from the write start. Each write replaces the marks of its entities,
+        // and marks that no notification matches expire. Writes by predicate have no keys,
+        // so their notifications are counted without latency.
+        private <T> Observable<T> write(String entityType, OperationMetrics.Operation operation, Iterable<?> keys, Observable<T> observable) {
+            return Observable.defer(() -> {
+                if (liveSubscriptions(entityType).get() > 0) {
+                    long startNanos = System.nanoTime();
+                    keys.forEach(key -> pendingWrites.put(Arrays.asList(entityType, key), startNanos));
+                }
+                return timed(recorder(entityType, operation), observable);
+            });
+        }
+
+        private <T> Observable<T> timed(OperationRecorder recorder, Observable<T> observable) {
+            return Observable.defer(() -> {
+                long startNanos = System.nanoTime();
+                LongAdder rows = new LongAdder();
+                return observable
+                        .doOnNext(item -> rows.increment())
+                        .doOnComplete(() -> recorder.onComplete(System.nanoTime() - startNanos, rows.sum()))
+                        .doOnError(recorder::onError)
+                        .doOnDispose(() -> recorder.onCancel(System.nanoTime() - startNanos, rows.sum()));
+            });
+        }
+
+        @SuppressWarnings("unchecked")
+        private <K, S, T> Observable<Notification<T>> live(QueryInfo<K, S, T> query, Observable<Notification<T>> notifications) {
+            MetaClassWithKey<K, S> metaClass = query.metaClass();
+            String entityType = metaClass.simpleName();
+            OperationRecorder liveRecorder = recorder(entityType, OperationMetrics.Operation.LiveQuery);
+            OperationRecorder notificationRecorder = recorder(entityType, OperationMetrics.Operation.Notification);
+            return Observable.defer(() -> {
+                long startNanos = System.nanoTime();
+                return notifications
+                        .doOnSubscribe(d -> liveSubscriptions(entityType).incrementAndGet())
+                        .doFinally(() -> liveSubscriptions(entityType).decrementAndGet())
+                        .doOnNext(n -> notificationRecorder.onNotification(query.mapping() == null
+                                ? pendingWriteNanos(metaClass, (Notification<S>)n)
+                                : 0))
+                        .doOnError(liveRecorder::onError)
+                        .doFinally(() -> liveRecorder.onComplete(System.nanoTime() - startNanos, 0));
+            });
+        }
+
+        private <K, S> long pendingWriteNanos(MetaClassWithKey<K, S> metaClass, Notification<S> notification) {
+            S entity = notification.newValue() != null ? notification.newValue() : notification.oldValue();
+            return entity != null ? InstrumentingQueryProviderDecorator.this.pendingWriteNanos(metaClass.simpleName(), metaClass.keyOf(entity)) : 0;
+        }
+    }
+
+    private static <K, S> List<K> keysOf(MetaClassWithKey<K, S> metaClass, Iterable<S> entities) {
+        return StreamSupport.stream(entities.spliterator(), false)
+                .map(metaClass::keyOf)
+                .collect(Collectors.toList());
+    }
+
+    private static class OperationRecorder {
+        private final String entityType;
+        private final OperationMetrics.Operation operation;
+        private final Recorder latency = new Recorder(3);
+        private final LongAdder count = new LongAdder();
+        private final LongAdder errorCount = new LongAdder();
+        private final LongAdder cancelledCount = new LongAdder();
+        private final LongAdder concurrencyConflictCount = new LongAdder();
+        private final LongAdder rowCount = new LongAdder();
+
+        private OperationRecorder(String entityType, OperationMetrics.Operation operation) {
+            this.entityType = entityType;
+            this.operation = operation;
+        }
+
+        void onComplete(long durationNanos, long rows) {
+            latency.recordValue(durationNanos);
+            count.increment();
+            rowCount.add(rows);
+        }
+
+        void onCancel(long durationNanos, long rows) {
+            latency.recordValue(durationNanos);
+            count.increment();
+            cancelledCount.increment();
+            rowCount.add(rows);
+        }
+
+        void onError(Throwable error) {
+            count.increment();
+            errorCount.increment();
+            if (isConcurrencyException(error)) {
+                concurrencyConflictCount.increment();
+            }
+        }
+
+        void onNotification(long pendingWriteNanos) {
+            count.increment();
+            if (pendingWriteNanos != 0) {
+                latency.recordValue(System.nanoTime() - pendingWriteNanos);
+            }
+        }
+
+        OperationMetrics collect(Duration interval) {
+            Histogram histogram = latency.getIntervalHistogram();
+            return OperationMetrics.builder()
+                    .entityType(entityType)
+                    .operation(operation)
+                    .interval(interval)
+                    .count(count.sumThenReset())
+                    .errorCount(errorCount.sumThenReset())
+                    .cancelledCount(cancelledCount.sumThenReset())
+                    .concurrencyConflictCount(concurrencyConflictCount.sumThenReset())
+                    .rowCount(rowCount.sumThenReset())
+                    .meanLatency(Duration.ofNanos((long)histogram.getMean()))
+                    .medianLatency(Duration.ofNanos(histogram.getValueAtPercentile(50)))
+                    .p90Latency(Duration.ofNanos(histogram.getValueAtPercentile(90)))
+                    .p99Latency(Duration.ofNanos(histogram.getValueAtPercentile(99)))
+                    .maxLatency(Duration.ofNanos(histogram.getMaxValue()))
+                    .build();
+        }
+    }
+
+    public static class Properties {
+        public static final String exportIntervalMillis = "rxrepo.metrics.exportIntervalMillis";
+        public static final String pendingWriteTimeoutMillis = "rxrepo.metrics.pendingWriteTimeoutMillis";
+        private static final long defaultExportIntervalMillis = 60000;
+        private static final long defaultPendingWriteTimeoutMillis = 10000;
+
+        public static long exportIntervalMillis() {
+            return Long.getLong(Properties.exportIntervalMillis, defaultExportIntervalMillis);
+        }
+
+        public static long pendingWriteTimeoutMillis() {
+            return Long.getLong(Properties.pendingWriteTimeoutMillis, defaultPendingWriteTimeoutMillis);
+        }
+    }
+}
@@ -42,6 +42,11 @@ public class InterceptingQueryProviderDecorator implements QueryProvider.Decorat
             return super.liveQuery(query).compose(applyOnLiveQuery(query));
         }
 
+        @Override
+        public <K, S, T> Observable<Notification<T>> liveQuery(QueryInfo<K, S, T> query, long fromSequenceNum) {
+            return super.liveQuery(query, fromSequenceNum).compose(applyOnLiveQuery(query));
+        }
+
         private <K, S, T> ObservableTransformer<T, T> applyOnQuery(QueryInfo<K, S, T> queryInfo) {
             return source -> {
                 AtomicReference<Observable<T>> observable = new AtomicReference<>(source);
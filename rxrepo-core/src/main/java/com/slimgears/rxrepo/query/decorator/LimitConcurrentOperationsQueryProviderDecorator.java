@@ -1,6 +1,8 @@
 package com.slimgears.rxrepo.query.decorator;
 
 import com.slimgears.rxrepo.expressions.Aggregator;
+import com.slimgears.rxrepo.query.EmissionPolicy;
+import com.slimgears.rxrepo.query.Notification;
 import com.slimgears.rxrepo.query.provider.DeleteInfo;
 import com.slimgears.rxrepo.query.provider.QueryInfo;
 import com.slimgears.rxrepo.query.provider.QueryProvider;
@@ -12,94 +14,178 @@ import io.reactivex.Observable;
 import io.reactivex.Single;
 import io.reactivex.functions.Function;
 
-import java.util.Collections;
-import java.util.concurrent.Semaphore;
+import java.time.Duration;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
 
-public class LimitConcurrentOperationsQueryProviderDecorator extends AbstractQueryProviderDecorator {
-    private final Semaphore availableOperations;
+public class LimitConcurrentOperationsQueryProviderDecorator implements QueryProvider.Decorator {
+    private final static Object allClasses = new Object();
+    private final Map<OperationType, AdmissionController> controllers = new EnumMap<>(OperationType.class);
 
-    private LimitConcurrentOperationsQueryProviderDecorator(QueryProvider underlyingProvider, int maxOperations) {
-        super(underlyingProvider);
-        this.availableOperations = new Semaphore(maxOperations);
+    public enum OperationType {
+        Read,
+        Write,
+        Live
     }
 
-    public static QueryProvider.Decorator create(int maxConcurrentOperations) {
-        return qp -> new LimitConcurrentOperationsQueryProviderDecorator(qp, maxConcurrentOperations);
+    private LimitConcurrentOperationsQueryProviderDecorator(int maxReads, int maxWrites, int maxLiveQueries) {
+        controllers.put(OperationType.Read, AdmissionController.create(maxReads));
+        controllers.put(OperationType.Write, AdmissionController.create(maxWrites));
+        controllers.put(OperationType.Live, AdmissionController.create(maxLiveQueries));
     }
 
-    @Override
-    public <K, S> Completable insert(MetaClassWithKey<K, S> metaClass, Iterable<S> entities) {
-        return Observable.fromIterable(entities)
-                .flatMapCompletable(e -> super.insert(metaClass, Collections.singleton(e))
-                        .doOnSubscribe(d -> doOnSubscribe())
-                        .doFinally(this::doFinally));
+    public static LimitConcurrentOperationsQueryProviderDecorator create(int maxConcurrentOperations) {
+        return create(maxConcurrentOperations, maxConcurrentOperations, Integer.MAX_VALUE);
     }
 
-    @Override
-    public <K, S> Single<S> insertOrUpdate(MetaClassWithKey<K, S> metaClass, S entity) {
-        return super.insertOrUpdate(metaClass, entity)
-                .doOnSubscribe(d -> doOnSubscribe())
-                .doFinally(this::doFinally);
+    public static LimitConcurrentOperationsQueryProviderDecorator create(int maxReads, int maxWrites, int maxLiveQueries) {
+        return new LimitConcurrentOperationsQueryProviderDecorator(maxReads, maxWrites, maxLiveQueries);
     }
 
     @Override
-    public <K, S> Maybe<S> insertOrUpdate(MetaClassWithKey<K, S> metaClass, K key, Function<Maybe<S>, Maybe<S>> entityUpdater) {
-        return super.insertOrUpdate(metaClass, key, entityUpdater)
-                .doOnSubscribe(d -> doOnSubscribe())
-                .doFinally(this::doFinally);
+    public QueryProvider apply(QueryProvider queryProvider) {
+        return new DecoratedProvider(queryProvider);
     }
 
-    @Override
-    public <K, S, T> Observable<T> query(QueryInfo<K, S, T> query) {
-        return super.query(query)
-                .doOnSubscribe(d -> doOnSubscribe())
-                .doFinally(this::doFinally);
+    public Stats stats(OperationType operationType) {
+        return new Stats(controllers.get(operationType));
     }
 
-    @Override
-    public <K, S, T, R> Maybe<R> aggregate(QueryInfo<K, S, T> query, Aggregator<T, T, R> aggregator) {
-        return super.aggregate(query, aggregator)
-                .doOnSubscribe(d -> doOnSubscribe())
-                .doFinally(this::doFinally);
+    public int queuedOperations(OperationType operationType, MetaClassWithKey<?, ?> metaClass) {
+        return controllers.get(operationType).queuedOperations(metaClass);
     }
 
-    @Override
-    public <K, S> Single<Integer> update(UpdateInfo<K, S> update) {
-        return super.update(update)
-                .doOnSubscribe(d -> doOnSubscribe())
-                .doFinally(this::doFinally);
-    }
+    public static class Stats {
+        private final int activeOperations;
+        private final int queuedOperations;
+        private final long admittedOperations;
+        private final long totalWaitNanos;
+        private final long maxWaitNanos;
+
+        private Stats(AdmissionController controller) {
+            synchronized (controller) {
+                this.activeOperations = controller.activeOperations();
+                this.queuedOperations = controller.queuedOperations();
+                this.admittedOperations = controller.admittedOperations();
+                this.totalWaitNanos = controller.totalWaitNanos();
+                this.maxWaitNanos = controller.maxWaitNanos();
+            }
+        }
 
-    @Override
-    public <K, S> Single<Integer> delete(DeleteInfo<K, S> delete) {
-        return super.delete(delete)
-                .doOnSubscribe(d -> doOnSubscribe())
-                .doFinally(this::doFinally);
-    }
+        public int activeOperations() {
+            return activeOperations;
+        }
 
-    @Override
-    public <K, S> Completable drop(MetaClassWithKey<K, S> metaClass) {
-        return super.drop(metaClass)
-                .doOnSubscribe(d -> doOnSubscribe())
-                .doFinally(this::doFinally);
-    }
+        public int queuedOperations() {
+            return queuedOperations;
+        }
 
-    @Override
-    public Completable dropAll() {
-        return super.dropAll()
-                .doOnSubscribe(d -> doOnSubscribe())
-                .doFinally(this::doFinally);
-    }
+        public long admittedOperations() {
+            return admittedOperations;
+        }
+
+        public Duration totalWaitTime() {
+            return Duration.ofNanos(totalWaitNanos);
+        }
 
-    private void doOnSubscribe() {
-        try {
-            availableOperations.acquire();
-        } catch (InterruptedException e) {
-            throw new RuntimeException(e);
+        public Duration averageWaitTime() {
+            return admittedOperations > 0 ? Duration.ofNanos(totalWaitNanos / admittedOperations) : Duration.ZERO;
+        }
+
+        public Duration maxWaitTime() {
+            return Duration.ofNanos(maxWaitNanos);
+        }
+
+        @Override
+        public String toString() {
+            return "Stats{" +
+                    "active=" + activeOperations +
+                    ", queued=" + queuedOperations +
+                    ", admitted=" + admittedOperations +
+                    ", averageWait=" + averageWaitTime() +
+                    ", maxWait=" + maxWaitTime() +
+                    '}';
         }
     }
 
-    private void doFinally() {
-        availableOperations.release();
+    private class DecoratedProvider extends AbstractQueryProviderDecorator {
+        private DecoratedProvider(QueryProvider underlyingProvider) {
+            super(underlyingProvider);
+        }
+
+        @Override
+        public <K, S> Completable insert(MetaClassWithKey<K, S> metaClass, Iterable<S> entities) {
+            return admit(OperationType.Write, metaClass, super.insert(metaClass, entities).toObservable()).ignoreElements();
+        }
+
+        @Override
+        public <K, S> Completable insertOrUpdateAll(MetaClassWithKey<K, S> metaClass, Iterable<S> entities) {
+            return admit(OperationType.Write, metaClass, super.insertOrUpdateAll(metaClass, entities).toObservable()).ignoreElements();
+        }
+
+        @Override
+        public <K, S> Single<S> insertOrUpdate(MetaClassWithKey<K, S> metaClass, S entity) {
+            return admit(OperationType.Write, metaClass, super.insertOrUpdate(metaClass, entity).toObservable()).singleOrError();
+        }
+
+        @Override
+        public <K, S> Maybe<S> insertOrUpdate(MetaClassWithKey<K, S> metaClass, K key, Function<Maybe<S>, Maybe<S>> entityUpdater) {
+            return admit(OperationType.Write, metaClass, super.insertOrUpdate(metaClass, key, entityUpdater).toObservable()).singleElement();
+        }
+
+        @Override
+        public <K, S, T> Observable<T> query(QueryInfo<K, S, T> query) {
+            return admit(OperationType.Read, query.metaClass(), super.query(query));
+        }
+
+        @Override
+        public <K, S, T, R> Maybe<R> aggregate(QueryInfo<K, S, T> query, Aggregator<T, T, R> aggregator) {
+            return admit(OperationType.Read, query.metaClass(), super.aggregate(query, aggregator).toObservable()).singleElement();
+        }
+
+        @Override
+        public <K, S, T> Observable<Notification<T>> liveQuery(QueryInfo<K, S, T> query) {
+            return admit(OperationType.Live, query.metaClass(), super.liveQuery(query));
+        }
+
+        @Override
+        public <K, S, T> Observable<Notification<T>> liveQuery(QueryInfo<K, S, T> query, long fromSequenceNum) {
+            return admit(OperationType.Live, query.metaClass(), super.liveQuery(query, fromSequenceNum));
+        }
+
+        @Override
+        public <K, S, T, R> Observable<R> liveAggregate(QueryInfo<K, S, T> query, Aggregator<T, T, R> aggregator, EmissionPolicy emissionPolicy) {
+            return admit(OperationType.Live, query.metaClass(), super.liveAggregate(query, aggregator, emissionPolicy));
+        }
+
+        @Override
+        public <K, S, T> Observable<List<T>> liveQueryAsList(QueryInfo<K, S, T> query, EmissionPolicy emissionPolicy) {
+            return admit(OperationType.Live, query.metaClass(), super.liveQueryAsList(query, emissionPolicy));
+        }
+
+        @Override
+        public <K, S> Single<Integer> update(UpdateInfo<K, S> update) {
+            return admit(OperationType.Write, update.metaClass(), super.update(update).toObservable()).singleOrError();
+        }
+
+        @Override
+        public <K, S> Single<Integer> delete(DeleteInfo<K, S> delete) {
+            return admit(OperationType.Write, delete.metaClass(), super.delete(delete).toObservable()).singleOrError();
+        }
+
+        @Override
+        public <K, S> Completable drop(MetaClassWithKey<K, S> metaClass) {
+            return admit(OperationType.Write, metaClass, super.drop(metaClass).toObservable()).ignoreElements();
+        }
+
+        @Override
+        public Completable dropAll() {
+            return admit(OperationType.Write, allClasses, super.dropAll().toObservable()).ignoreElements();
+        }
+
+        private <T> Observable<T> admit(OperationType operationType, Object fairnessKey, Observable<T> operation) {
+            return controllers.get(operationType).admit(fairnessKey, operation);
+        }
     }
 }
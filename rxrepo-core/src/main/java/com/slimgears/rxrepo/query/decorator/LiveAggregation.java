@@ -0,0 +1,411 @@
+package com.slimgears.rxrepo.query.decorator;
+
+import com.google.common.reflect.TypeToken;
+import com.slimgears.rxrepo.expressions.Aggregator;
+import com.slimgears.rxrepo.expressions.CollectionExpression;
+import com.slimgears.rxrepo.expressions.ObjectExpression;
+import com.slimgears.rxrepo.expressions.internal.MoreTypeTokens;
+import com.slimgears.rxrepo.query.EmissionPolicy;
+import com.slimgears.rxrepo.query.Notification;
+import com.slimgears.rxrepo.query.provider.QueryInfo;
+import com.slimgears.rxrepo.query.provider.QueryProvider;
+import io.reactivex.Flowable;
+import io.reactivex.Maybe;
+import io.reactivex.Observable;
+import io.reactivex.ObservableEmitter;
+import io.reactivex.Single;
+import io.reactivex.disposables.CompositeDisposable;
+import io.reactivex.subjects.PublishSubject;
+import io.reactivex.subjects.Subject;
+
+import java.util.Arrays;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+class LiveAggregation<K, S, T, R> {
+    private final static int maxReconcileAttempts = 3;
+    private final static long reconcileBackoffMillis = 10;
+    private final QueryProvider provider;
+    private final QueryInfo<K, S, T> query;
+    private final Aggregator<T, T, R> aggregator;
+    private final Observable<Notification<T>> notifications;
+    private final EmissionPolicy emissionPolicy;
+    private final long reconcileMillis;
+    private final Function<LiveAggregation<K, S, T, R>, Accumulator<T, R>> accumulatorFactory;
+
+    private LiveAggregation(
+            QueryProvider provider,
+            QueryInfo<K, S, T> query,
+            Aggregator<T, T, R> aggregator,
+            Observable<Notification<T>> notifications,
+            EmissionPolicy emissionPolicy,
+            long reconcileMillis,
+            Function<LiveAggregation<K, S, T, R>, Accumulator<T, R>> accumulatorFactory) {
+        this.provider = provider;
+        this.query = query;
+        this.aggregator = aggregator;
+        this.notifications = notifications;
+        this.emissionPolicy = emissionPolicy;
+        this.reconcileMillis = reconcileMillis;
+        this.accumulatorFactory = accumulatorFactory;
+    }
+
+    static <K, S, T, R> Optional<Observable<R>> tryCreate(
+            QueryProvider provider,
+            QueryInfo<K, S, T> query,
+            Aggregator<T, T, R> aggregator,
+            Observable<Notification<T>> notifications,
+            EmissionPolicy emissionPolicy,
+            long reconcileMillis) {
+        if (Boolean.TRUE.equals(query.distinct()) || query.limit() != null || (query.skip() != null && query.skip() > 0)) {
+            return Optional.empty();
+        }
+
+        ObjectExpression<T, R> aggregation = aggregator.apply(CollectionExpression.indirectArg(MoreTypeTokens.collection(query.objectType())));
+        Function<LiveAggregation<K, S, T, R>, Accumulator<T, R>> accumulatorFactory = accumulatorFactory(aggregation.type(), aggregation.objectType());
+        return Optional.ofNullable(accumulatorFactory)
+                .map(factory -> new LiveAggregation<>(provider, query, aggregator, notifications, emissionPolicy, reconcileMillis, factory).observe());
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <K, S, T, R> Function<LiveAggregation<K, S, T, R>, Accumulator<T, R>> accumulatorFactory(ObjectExpression.Type type, TypeToken<R> resultType) {
+        switch (type) {
+            case Count:
+                return la -> (Accumulator<T, R>)new CountAccumulator<>(la);
+            case Sum:
+                return NumericConverter.of(resultType.getRawType())
+                        .map(converter -> (Function<LiveAggregation<K, S, T, R>, Accumulator<T, R>>)la -> new SumAccumulator<>(la, converter))
+                        .orElse(null);
+            case Average:
+                return la -> (Accumulator<T, R>)new AverageAccumulator<>(la);
+            case Min:
+                return la -> (Accumulator<T, R>)new ExtremumAccumulator<>((LiveAggregation<K, S, T, T>)(LiveAggregation<?, ?, ?, ?>)la, 1);
+            case Max:
+                return la -> (Accumulator<T, R>)new ExtremumAccumulator<>((LiveAggregation<K, S, T, T>)(LiveAggregation<?, ?, ?, ?>)la, -1);
+            default:
+                return null;
+        }
+    }
+
+    private Observable<R> observe() {
+        return Observable.<R>create(emitter -> {
+            ObservableEmitter<R> serializedEmitter = emitter.serialize();
+            Accumulator<T, R> accumulator = accumulatorFactory.apply(this);
+            AtomicLong changes = new AtomicLong();
+            Subject<Long> reconcileRequests = PublishSubject.<Long>create().toSerialized();
+            Subject<R> changedValues = PublishSubject.<R>create().toSerialized();
+            CompositeDisposable disposable = new CompositeDisposable();
+            serializedEmitter.setDisposable(disposable);
+
+            disposable.add(changedValues
+                    .compose(emissionPolicy.<R>batch())
+                    .subscribe(values -> serializedEmitter.onNext(values.get(values.size() - 1))));
+
+            disposable.add(notifications.subscribe(
+                    notification -> {
+                        changes.incrementAndGet();
+                        synchronized (accumulator) {
+                            if (!accumulator.isLoaded()) {
+                                return;
+                            }
+                            if (!accumulator.apply(notification)) {
+                                reconcileRequests.onNext(0L);
+                                return;
+                            }
+                            accumulator.value().ifPresent(changedValues::onNext);
+                        }
+                    },
+                    serializedEmitter::onError,
+                    serializedEmitter::onComplete));
+
+            disposable.add(Observable
+                    .merge(Observable.interval(0, reconcileMillis, TimeUnit.MILLISECONDS), reconcileRequests)
+                    .switchMapMaybe(i -> reconcile(accumulator, changes, reconcileRequests))
+                    .subscribe(serializedEmitter::onNext, serializedEmitter::onError));
+        }).distinctUntilChanged();
+    }
+
+    // A snapshot that raced with changes is fetched again after a backoff. Once the attempts
+    // are used up the last snapshot is emitted anyway, and another reconcile is requested
+    // to correct the changes it may have missed
+    private Maybe<R> reconcile(Accumulator<T, R> accumulator, AtomicLong changes, Subject<Long> reconcileRequests) {
+        AtomicInteger attempts = new AtomicInteger();
+        AtomicBoolean raced = new AtomicBoolean();
+        return Single
+                .defer(() -> {
+                    long changesBefore = changes.get();
+                    return accumulator.fetch().map(snapshot -> {
+                        synchronized (accumulator) {
+                            if (changes.get() != changesBefore) {
+                                if (attempts.incrementAndGet() <= maxReconcileAttempts) {
+                                    throw new SnapshotRaceException();
+                                }
+                                raced.set(true);
+                            }
+                            accumulator.reset(snapshot);
+                            return accumulator.value();
+                        }
+                    });
+                })
+                .retryWhen(errors -> errors.flatMap(error -> error instanceof SnapshotRaceException
+                        ? Flowable.timer(reconcileBackoffMillis << (attempts.get() - 1), TimeUnit.MILLISECONDS)
+                        : Flowable.error(error)))
+                .flatMapMaybe(value -> value.map(Maybe::just).orElseGet(Maybe::empty))
+                .doAfterTerminate(() -> {
+                    if (raced.get()) {
+                        reconcileRequests.onNext(0L);
+                    }
+                });
+    }
+
+    private <V> Single<Optional<V>> aggregate(Aggregator<T, T, V> aggregator) {
+        return provider.aggregate(query, aggregator)
+                .map(Optional::of)
+                .defaultIfEmpty(Optional.empty())
+                .toSingle();
+    }
+
+    private interface Accumulator<T, R> {
+        Single<Object> fetch();
+        void reset(Object snapshot);
+        boolean isLoaded();
+        boolean apply(Notification<T> notification);
+        Optional<R> value();
+    }
+
+    private static class CountAccumulator<T> implements Accumulator<T, Long> {
+        private final LiveAggregation<?, ?, T, ?> aggregation;
+        private Long count;
+
+        private CountAccumulator(LiveAggregation<?, ?, T, ?> aggregation) {
+            this.aggregation = aggregation;
+        }
+
+        @Override
+        public Single<Object> fetch() {
+            return aggregation.<Long>aggregate(Aggregator.count()).<Object>map(c -> c.orElse(0L));
+        }
+
+        @Override
+        public void reset(Object snapshot) {
+            count = (Long)snapshot;
+        }
+
+        @Override
+        public boolean isLoaded() {
+            return count != null;
+        }
+
+        @Override
+        public boolean apply(Notification<T> notification) {
+            if (notification.isCreate()) {
+                ++count;
+            } else if (notification.isDelete()) {
+                --count;
+            }
+            return true;
+        }
+
+        @Override
+        public Optional<Long> value() {
+            return Optional.ofNullable(count);
+        }
+    }
+
+    private static class SumAccumulator<T, R> implements Accumulator<T, R> {
+        private final LiveAggregation<?, ?, T, R> aggregation;
+        private final NumericConverter converter;
+        private Number sum;
+
+        private SumAccumulator(LiveAggregation<?, ?, T, R> aggregation, NumericConverter converter) {
+            this.aggregation = aggregation;
+            this.converter = converter;
+        }
+
+        @Override
+        public Single<Object> fetch() {
+            return aggregation.aggregate(aggregation.aggregator).<Object>map(s -> s.map(Number.class::cast).orElse(0));
+        }
+
+        @Override
+        public void reset(Object snapshot) {
+            sum = converter.add((Number)snapshot, 0);
+        }
+
+        @Override
+        public boolean isLoaded() {
+            return sum != null;
+        }
+
+        @Override
+        public boolean apply(Notification<T> notification) {
+            sum = converter.add(converter.add(sum, (Number)notification.newValue()), converter.negate((Number)notification.oldValue()));
+            return true;
+        }
+
+        @SuppressWarnings("unchecked")
+        @Override
+        public Optional<R> value() {
+            return Optional.ofNullable(sum).map(s -> (R)converter.convert(s));
+        }
+    }
+
+    private static class AverageAccumulator<T> implements Accumulator<T, Double> {
+        private final LiveAggregation<?, ?, T, ?> aggregation;
+        private double sum;
+        private Long count;
+
+        private AverageAccumulator(LiveAggregation<?, ?, T, ?> aggregation) {
+            this.aggregation = aggregation;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public Single<Object> fetch() {
+            Aggregator<T, T, Number> sumAggregator = (Aggregator<T, T, Number>)(Aggregator<?, ?, ?>)Aggregator.<T, Double>sum();
+            return Single.<Double, Long, Object>zip(
+                    aggregation.aggregate(sumAggregator).map(s -> s.map(Number::doubleValue).orElse(0.0)),
+                    aggregation.<Long>aggregate(Aggregator.count()).map(c -> c.orElse(0L)),
+                    (s, c) -> new Object[] {s, c});
+        }
+
+        @Override
+        public void reset(Object snapshot) {
+            Object[] values = (Object[])snapshot;
+            sum = (Double)values[0];
+            count = (Long)values[1];
+        }
+
+        @Override
+        public boolean isLoaded() {
+            return count != null;
+        }
+
+        @Override
+        public boolean apply(Notification<T> notification) {
+            if (notification.oldValue() != null) {
+                sum -= ((Number)notification.oldValue()).doubleValue();
+                --count;
+            }
+            if (notification.newValue() != null) {
+                sum += ((Number)notification.newValue()).doubleValue();
+                ++count;
+            }
+            return true;
+        }
+
+        @Override
+        public Optional<Double> value() {
+            return count != null && count > 0
+                    ? Optional.of(sum / count)
+                    : Optional.empty();
+        }
+    }
+
+    private static class ExtremumAccumulator<T> implements Accumulator<T, T> {
+        private final LiveAggregation<?, ?, T, T> aggregation;
+        private final int sign;
+        private Optional<T> extremum;
+
+        private ExtremumAccumulator(LiveAggregation<?, ?, T, T> aggregation, int sign) {
+            this.aggregation = aggregation;
+            this.sign = sign;
+        }
+
+        @Override
+        public Single<Object> fetch() {
+            return aggregation.aggregate(aggregation.aggregator).<Object>map(e -> e);
+        }
+
+        @SuppressWarnings("unchecked")
+        @Override
+        public void reset(Object snapshot) {
+            extremum = (Optional<T>)snapshot;
+        }
+
+        @Override
+        public boolean isLoaded() {
+            return extremum != null;
+        }
+
+        @Override
+        public boolean apply(Notification<T> notification) {
+            T newValue = notification.newValue();
+            T oldValue = notification.oldValue();
+            if (oldValue != null && extremum.isPresent() && compare(oldValue, extremum.get()) == 0
+                    && (newValue == null || compare(newValue, extremum.get()) > 0)) {
+                extremum = null;
+                return false;
+            }
+            if (newValue != null && (!extremum.isPresent() || compare(newValue, extremum.get()) < 0)) {
+                extremum = Optional.of(newValue);
+            }
+            return true;
+        }
+
+        @Override
+        public Optional<T> value() {
+            return extremum != null ? extremum : Optional.empty();
+        }
+
+        @SuppressWarnings("unchecked")
+        private int compare(T first, T second) {
+            return sign * ((Comparable<T>)first).compareTo(second);
+        }
+    }
+
+    private static class SnapshotRaceException extends RuntimeException {
+        private SnapshotRaceException() {
+            super("Snapshot raced with changes", null, false, false);
+        }
+    }
+
+    private enum NumericConverter {
+        AsInteger(false, Number::intValue, Integer.class, int.class),
+        AsLong(false, Number::longValue, Long.class, long.class),
+        AsShort(false, Number::shortValue, Short.class, short.class),
+        AsByte(false, Number::byteValue, Byte.class, byte.class),
+        AsDouble(true, Number::doubleValue, Double.class, double.class),
+        AsFloat(true, Number::floatValue, Float.class, float.class);
+
+        private final boolean floating;
+        private final Function<Number, Number> converter;
+        private final Class<?>[] types;
+
+        NumericConverter(boolean floating, Function<Number, Number> converter, Class<?>... types) {
+            this.floating = floating;
+            this.converter = converter;
+            this.types = types;
+        }
+
+        static Optional<NumericConverter> of(Class<?> type) {
+            return Arrays.stream(values())
+                    .filter(c -> Arrays.asList(c.types).contains(type))
+                    .findFirst();
+        }
+
+        Number add(Number first, Number second) {
+            if (second == null) {
+                return first;
+            }
+            return floating
+                    ? (Number)(first.doubleValue() + second.doubleValue())
+                    : (Number)(first.longValue() + second.longValue());
+        }
+
+        Number negate(Number value) {
+            if (value == null) {
+                return null;
+            }
+            return floating ? (Number)(-value.doubleValue()) : (Number)(-value.longValue());
+        }
+
+        Number convert(Number value) {
+            return converter.apply(value);
+        }
+    }
+}
@@ -1,28 +1,130 @@
 package com.slimgears.rxrepo.query.decorator;
 
+import com.slimgears.rxrepo.expressions.Aggregator;
+import com.slimgears.rxrepo.expressions.CollectionExpression;
+import com.slimgears.rxrepo.expressions.internal.MoreTypeTokens;
+import com.slimgears.rxrepo.query.EmissionPolicy;
 import com.slimgears.rxrepo.query.Notification;
 import com.slimgears.rxrepo.query.Notifications;
 import com.slimgears.rxrepo.query.provider.QueryInfo;
 import com.slimgears.rxrepo.query.provider.QueryProvider;
+import com.slimgears.util.autovalue.annotations.MetaClassWithKey;
 import io.reactivex.Observable;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Supplier;
+
 public class LiveQueryProviderDecorator extends AbstractQueryProviderDecorator {
     private final static Logger log = LoggerFactory.getLogger(LiveQueryProviderDecorator.class);
-    private LiveQueryProviderDecorator(QueryProvider upstream) {
+    private final Map<MetaClassWithKey<?, ?>, LiveQueryRouter<?>> routers = new ConcurrentHashMap<>();
+    private final Map<Object, Observable<?>> sharedResults = new ConcurrentHashMap<>();
+    private final int journalSize;
+    private final long retainMillis;
+    private final long aggregateReconcileMillis;
+
+    private LiveQueryProviderDecorator(QueryProvider upstream, int journalSize, long retainMillis, long aggregateReconcileMillis) {
         super(upstream);
+        this.journalSize = journalSize;
+        this.retainMillis = retainMillis;
+        this.aggregateReconcileMillis = aggregateReconcileMillis;
     }
 
     public static QueryProvider.Decorator create() {
-        return LiveQueryProviderDecorator::new;
+        return create(Properties.journalSize(), Properties.retainMillis(), Properties.aggregateReconcileMillis());
+    }
+
+    public static QueryProvider.Decorator create(int journalSize, long retainMillis) {
+        return create(journalSize, retainMillis, Properties.aggregateReconcileMillis());
+    }
+
+    public static QueryProvider.Decorator create(int journalSize, long retainMillis, long aggregateReconcileMillis) {
+        return upstream -> new LiveQueryProviderDecorator(upstream, journalSize, retainMillis, aggregateReconcileMillis);
     }
 
     @Override
     public <K, S, T> Observable<Notification<T>> liveQuery(QueryInfo<K, S, T> query) {
-        return super.liveQuery(QueryInfo.<K, S, S>builder()
-                        .metaClass(query.metaClass())
-                        .build())
+        return routerOf(query.metaClass())
+                .route(query.predicate())
+                .compose(Notifications.applyQuery(query));
+    }
+
+    @Override
+    public <K, S, T> Observable<Notification<T>> liveQuery(QueryInfo<K, S, T> query, long fromSequenceNum) {
+        return routerOf(query.metaClass())
+                .route(query.predicate(), fromSequenceNum)
                 .compose(Notifications.applyQuery(query));
     }
+
+    @Override
+    public <K, S, T, R> Observable<R> liveAggregate(QueryInfo<K, S, T> query, Aggregator<T, T, R> aggregator, EmissionPolicy emissionPolicy) {
+        Object key = Arrays.asList(query, aggregator.apply(CollectionExpression.indirectArg(MoreTypeTokens.collection(query.objectType()))), emissionPolicy);
+        return shared(key, () -> LiveAggregation
+                .tryCreate(this, query, aggregator, liveQuery(query), emissionPolicy, aggregateReconcileMillis)
+                .orElseGet(() -> liveQuery(query)
+                        .compose(emissionPolicy.apply(n -> aggregate(query, aggregator).toObservable()))));
+    }
+
+    @Override
+    public <K, S, T> Observable<List<T>> liveQueryAsList(QueryInfo<K, S, T> query, EmissionPolicy emissionPolicy) {
+        return shared(Arrays.asList(query, emissionPolicy), () -> liveQuery(query)
+                .compose(emissionPolicy.apply(n -> query(query).toList().toObservable())));
+    }
+
+    @SuppressWarnings("unchecked")
+    private <R> Observable<R> shared(Object key, Supplier<Observable<R>> observableSupplier) {
+        return Observable.defer(() -> (Observable<R>)sharedResults.computeIfAbsent(key, k -> {
+            AtomicReference<Observable<R>> shared = new AtomicReference<>();
+            shared.set(observableSupplier.get()
+                    .doFinally(() -> sharedResults.remove(k, shared.get()))
+                    .replay(1)
+                    .refCount());
+            return shared.get();
+        }));
+    }
+
+    @SuppressWarnings("unchecked")
+    private <K, S> LiveQueryRouter<S> routerOf(MetaClassWithKey<K, S> metaClass) {
+        return (LiveQueryRouter<S>)routers.computeIfAbsent(metaClass, mc -> LiveQueryRouter.create(super.liveQuery(QueryInfo.<K, S, S>builder()
+                .metaClass(metaClass)
+                .build()), journalSize, retainMillis));
+    }
+
+    public static class Properties {
+        public static final String journalSize = "rxrepo.liveQuery.journalSize";
+        public static final String retainMillis = "rxrepo.liveQuery.retainMillis";
+        public static final String aggregateReconcileMillis = "rxrepo.liveQuery.aggregateReconcileMillis";
+        public static final String maxUpstreamRetries = "rxrepo.liveQuery.maxUpstreamRetries";
+        public static final String upstreamRetryDelayMillis = "rxrepo.liveQuery.upstreamRetryDelayMillis";
+        private static final int defaultJournalSize = 1024;
+        private static final long defaultRetainMillis = 10000;
+        private static final long defaultAggregateReconcileMillis = 60000;
+        private static final int defaultMaxUpstreamRetries = 10;
+        private static final long defaultUpstreamRetryDelayMillis = 1000;
+
+        public static int journalSize() {
+            return Integer.getInteger(Properties.journalSize, defaultJournalSize);
+        }
+
+        public static long retainMillis() {
+            return Long.getLong(Properties.retainMillis, defaultRetainMillis);
+        }
+
+        public static long aggregateReconcileMillis() {
+            return Long.getLong(Properties.aggregateReconcileMillis, defaultAggregateReconcileMillis);
+        }
+
+        public static int maxUpstreamRetries() {
+            return Integer.getInteger(Properties.maxUpstreamRetries, defaultMaxUpstreamRetries);
+        }
+
+        public static long upstreamRetryDelayMillis() {
+            return Long.getLong(Properties.upstreamRetryDelayMillis, defaultUpstreamRetryDelayMillis);
+        }
+    }
 }
@@ -0,0 +1,387 @@
+package com.slimgears.rxrepo.query.decorator;
+
+import com.slimgears.rxrepo.expressions.ArgumentExpression;
+import com.slimgears.rxrepo.expressions.BinaryOperationExpression;
+import com.slimgears.rxrepo.expressions.ConstantExpression;
+import com.slimgears.rxrepo.expressions.DelegateExpression;
+import com.slimgears.rxrepo.expressions.ObjectExpression;
+import com.slimgears.rxrepo.expressions.PropertyExpression;
+import com.slimgears.rxrepo.expressions.UnaryOperationExpression;
+import com.slimgears.rxrepo.query.Notification;
+import com.slimgears.rxrepo.query.ReplayUnavailableException;
+import com.slimgears.util.autovalue.annotations.PropertyMeta;
+import io.reactivex.Observable;
+import io.reactivex.ObservableEmitter;
+import io.reactivex.disposables.CompositeDisposable;
+import io.reactivex.disposables.Disposables;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.Nullable;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+class LiveQueryRouter<S> {
+    private final static Logger log = LoggerFactory.getLogger(LiveQueryRouter.class);
+    private final static Comparator<Object> valueComparator = LiveQueryRouter::compareValues;
+    private final Observable<Notification<S>> dispatcher;
+    private final NotificationJournal<S> journal;
+    private final Set<Subscriber<S>> unrouted = ConcurrentHashMap.newKeySet();
+    private final Map<String, PropertyRoutes<S>> propertyRoutes = new ConcurrentHashMap<>();
+
+    private LiveQueryRouter(Observable<Notification<S>> upstream, int journalSize, long retainMillis, int maxRetries, long retryDelayMillis) {
+        this.journal = NotificationJournal.create(journalSize);
+        AtomicBoolean connected = new AtomicBoolean();
+        AtomicInteger retries = new AtomicInteger();
+        this.dispatcher = Observable
+                .defer(() -> connected.getAndSet(true) ? reconnect(upstream) : upstream)
+                .doOnNext(notification -> retries.set(0))
+                .doOnNext(this::dispatch)
+                .retryWhen(errors -> errors.flatMap(error -> {
+                    if (retries.incrementAndGet() > maxRetries) {
+                        return Observable.error(error);
+                    }
+                    log.warn("Live query upstream failed, reconnecting (attempt {} of {})", retries.get(), maxRetries, error);
+                    return retryDelayMillis > 0
+                            ? Observable.timer(retryDelayMillis, TimeUnit.MILLISECONDS)
+                            : Observable.just(0L);
+                }))
+                .publish()
+                .refCount(retainMillis, TimeUnit.MILLISECONDS);
+    }
+
+    static <S> LiveQueryRouter<S> create(Observable<Notification<S>> upstream, int journalSize, long retainMillis) {
+        return create(
+                upstream,
+                journalSize,
+                retainMillis,
+                LiveQueryProviderDecorator.Properties.maxUpstreamRetries(),
+                LiveQueryProviderDecorator.Properties.upstreamRetryDelayMillis());
+    }
+
+    static <S> LiveQueryRouter<S> create(Observable<Notification<S>> upstream, int journalSize, long retainMillis, int maxRetries, long retryDelayMillis) {
+        return new LiveQueryRouter<>(upstream, journalSize, retainMillis, maxRetries, retryDelayMillis);
+    }
+
+    // Notifications may have been missed while the upstream was disconnected, so sequence numbers
+    // issued before can no longer be replayed from, and subscribers that stayed are sent an empty
+    // notification (unknown change) once the upstream is subscribed again
+    private Observable<Notification<S>> reconnect(Observable<Notification<S>> upstream) {
+        journal.reset();
+        return upstream.mergeWith(Observable.just(Notification.<S>ofModified(null, null)));
+    }
+
+    Observable<Notification<S>> route(ObjectExpression<S, Boolean> predicate) {
+        return route(predicate, null);
+    }
+
+    Observable<Notification<S>> route(ObjectExpression<S, Boolean> predicate, @Nullable Long fromSequenceNum) {
+        return Observable.create(emitter -> {
+            CompositeDisposable disposable = new CompositeDisposable();
+            emitter.setDisposable(disposable);
+            disposable.add(dispatcher.ignoreElements().subscribe(emitter::onComplete, emitter::onError));
+
+            Subscriber<S> subscriber = new Subscriber<>(emitter);
+            synchronized (this) {
+                List<Notification<S>> replay = Collections.emptyList();
+                if (fromSequenceNum != null) {
+                    Optional<List<Notification<S>>> missed = journal.since(fromSequenceNum);
+                    if (!missed.isPresent()) {
+                        emitter.onError(new ReplayUnavailableException(fromSequenceNum));
+                        return;
+                    }
+                    replay = missed.get();
+                }
+                disposable.add(Disposables.fromRunnable(register(subscriber, predicate)));
+                replay.forEach(emitter::onNext);
+            }
+        });
+    }
+
+    @SuppressWarnings("unchecked")
+    private Runnable register(Subscriber<S> subscriber, ObjectExpression<S, Boolean> predicate) {
+        Route route = Optional.ofNullable(predicate).flatMap(this::routeOf).orElse(null);
+        if (route == null) {
+            unrouted.add(subscriber);
+            return () -> unrouted.remove(subscriber);
+        }
+        PropertyRoutes<S> routes = propertyRoutes.computeIfAbsent(route.property.name(), name -> new PropertyRoutes<>((PropertyMeta<S, ?>)route.property));
+        return routes.add(subscriber, route);
+    }
+
+    // Only journaling and routing happen under the lock, so that a subscriber replaying from
+    // the journal neither misses nor duplicates a notification; emission runs outside of it
+    private void dispatch(Notification<S> upstreamNotification) {
+        Notification<S> notification;
+        Set<Subscriber<S>> candidates = Collections.newSetFromMap(new IdentityHashMap<>());
+        synchronized (this) {
+            notification = journal.append(upstreamNotification);
+            candidates.addAll(unrouted);
+            propertyRoutes.values().forEach(routes -> {
+                if (notification.oldValue() == null && notification.newValue() == null) {
+                    routes.collectAll(candidates);
+                    return;
+                }
+                routes.collect(notification.oldValue(), candidates);
+                routes.collect(notification.newValue(), candidates);
+            });
+        }
+        candidates.forEach(subscriber -> subscriber.emitter.onNext(notification));
+    }
+
+    private Optional<Route> routeOf(ObjectExpression<S, ?> expression) {
+        return routeOf(expression, false);
+    }
+
+    private Optional<Route> routeOf(ObjectExpression<S, ?> expression, boolean negated) {
+        if (expression instanceof DelegateExpression) {
+            return routeOf(((DelegateExpression<S, ?>)expression).delegate(), negated);
+        }
+
+        if (expression instanceof UnaryOperationExpression) {
+            return expression.type() == ObjectExpression.Type.Not
+                    ? routeOf(((UnaryOperationExpression<S, ?, ?>)expression).operand(), !negated)
+                    : Optional.empty();
+        }
+
+        if (!(expression instanceof BinaryOperationExpression)) {
+            return Optional.empty();
+        }
+
+        BinaryOperationExpression<S, ?, ?, ?> binary = (BinaryOperationExpression<S, ?, ?, ?>)expression;
+        switch (expression.type()) {
+            case And:
+                return negated ? Optional.empty() : intersection(routeOf(binary.left(), false), routeOf(binary.right(), false));
+            case Or:
+                return negated ? intersection(routeOf(binary.left(), true), routeOf(binary.right(), true)) : Optional.empty();
+            case Equals:
+                return negated ? Optional.empty() : equalTo(binary.left(), binary.right());
+            case ValueIn:
+                return negated ? Optional.empty() : valueIn(binary.left(), binary.right());
+            case LessThan:
+                return range(binary.left(), binary.right(), negated);
+            case GreaterThan:
+                return range(binary.right(), binary.left(), negated);
+            default:
+                return Optional.empty();
+        }
+    }
+
+    private Optional<Route> equalTo(ObjectExpression<S, ?> left, ObjectExpression<S, ?> right) {
+        if (right instanceof ConstantExpression) {
+            return equalTo(left, ((ConstantExpression<S, ?>)right).value());
+        }
+        if (left instanceof ConstantExpression) {
+            return equalTo(right, ((ConstantExpression<S, ?>)left).value());
+        }
+        return Optional.empty();
+    }
+
+    private Optional<Route> equalTo(ObjectExpression<S, ?> property, Object value) {
+        return value != null
+                ? propertyOf(property).map(p -> Route.values(p, Collections.singleton(value)))
+                : Optional.empty();
+    }
+
+    private Optional<Route> valueIn(ObjectExpression<S, ?> property, ObjectExpression<S, ?> values) {
+        if (!(values instanceof ConstantExpression) || !(((ConstantExpression<S, ?>)values).value() instanceof Collection)) {
+            return Optional.empty();
+        }
+        Collection<?> collection = (Collection<?>)((ConstantExpression<S, ?>)values).value();
+        return collection.contains(null)
+                ? Optional.empty()
+                : propertyOf(property).map(p -> Route.values(p, collection));
+    }
+
+    private Optional<Route> range(ObjectExpression<S, ?> lesser, ObjectExpression<S, ?> greater, boolean negated) {
+        if (greater instanceof ConstantExpression && ((ConstantExpression<S, ?>)greater).value() != null) {
+            Object value = ((ConstantExpression<S, ?>)greater).value();
+            return propertyOf(lesser).map(p -> negated ? Route.range(p, value, null) : Route.range(p, null, value));
+        }
+        if (lesser instanceof ConstantExpression && ((ConstantExpression<S, ?>)lesser).value() != null) {
+            Object value = ((ConstantExpression<S, ?>)lesser).value();
+            return propertyOf(greater).map(p -> negated ? Route.range(p, null, value) : Route.range(p, value, null));
+        }
+        return Optional.empty();
+    }
+
+    private Optional<Route> intersection(Optional<Route> first, Optional<Route> second) {
+        if (!first.isPresent() || !second.isPresent()) {
+            return first.isPresent() ? first : second;
+        }
+        if (first.get().values != null) {
+            return first;
+        }
+        if (second.get().values != null) {
+            return second;
+        }
+        return first.get().property == second.get().property
+                ? Optional.of(first.get().intersect(second.get()))
+                : first;
+    }
+
+    @SuppressWarnings("unchecked")
+    private Optional<PropertyMeta<S, ?>> propertyOf(ObjectExpression<S, ?> expression) {
+        if (expression instanceof DelegateExpression) {
+            return propertyOf(((DelegateExpression<S, ?>)expression).delegate());
+        }
+        return Optional.of(expression)
+                .filter(e -> e instanceof PropertyExpression)
+                .map(e -> (PropertyExpression<S, ?, ?>)e)
+                .filter(e -> e.target() instanceof ArgumentExpression)
+                .map(e -> (PropertyMeta<S, ?>)e.property());
+    }
+
+    private static Object normalize(Object value) {
+        if (value instanceof Double || value instanceof Float) {
+            double doubleValue = ((Number)value).doubleValue();
+            return doubleValue == Math.rint(doubleValue) && Math.abs(doubleValue) < Long.MAX_VALUE
+                    ? (Object)(long)doubleValue
+                    : (Object)doubleValue;
+        }
+        if (value instanceof Long || value instanceof Integer || value instanceof Short || value instanceof Byte) {
+            return ((Number)value).longValue();
+        }
+        return value;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static int compareValues(Object first, Object second) {
+        if (first instanceof Number && second instanceof Number) {
+            return Double.compare(((Number)first).doubleValue(), ((Number)second).doubleValue());
+        }
+        if (first instanceof Comparable && first.getClass() == second.getClass()) {
+            return ((Comparable<Object>)first).compareTo(second);
+        }
+        return first.getClass().getName().compareTo(second.getClass().getName());
+    }
+
+    private static class Subscriber<S> {
+        private final ObservableEmitter<Notification<S>> emitter;
+
+        private Subscriber(ObservableEmitter<Notification<S>> emitter) {
+            this.emitter = emitter;
+        }
+    }
+
+    private static class Route {
+        private final PropertyMeta<?, ?> property;
+        private final Collection<?> values;
+        private final Object from;
+        private final Object to;
+
+        private Route(PropertyMeta<?, ?> property, Collection<?> values, Object from, Object to) {
+            this.property = property;
+            this.values = values;
+            this.from = from;
+            this.to = to;
+        }
+
+        static Route values(PropertyMeta<?, ?> property, Collection<?> values) {
+            return new Route(property, values, null, null);
+        }
+
+        static Route range(PropertyMeta<?, ?> property, Object from, Object to) {
+            return new Route(property, null, from, to);
+        }
+
+        Route intersect(Route other) {
+            return range(property,
+                    from == null || (other.from != null && compareValues(other.from, from) > 0) ? other.from : from,
+                    to == null || (other.to != null && compareValues(other.to, to) < 0) ? other.to : to);
+        }
+    }
+
+    private static class RangeSubscriber<S> {
+        private final Subscriber<S> subscriber;
+        private final Object to;
+
+        private RangeSubscriber(Subscriber<S> subscriber, Object to) {
+            this.subscriber = subscriber;
+            this.to = to;
+        }
+    }
+
+    private static class PropertyRoutes<S> {
+        private final PropertyMeta<S, ?> property;
+        private final Map<Object, Set<Subscriber<S>>> byValue = new ConcurrentHashMap<>();
+        private final NavigableMap<Object, Set<RangeSubscriber<S>>> byLowerBound = new ConcurrentSkipListMap<>(valueComparator);
+        private final Set<RangeSubscriber<S>> unboundedBelow = ConcurrentHashMap.newKeySet();
+
+        private PropertyRoutes(PropertyMeta<S, ?> property) {
+            this.property = property;
+        }
+
+        Runnable add(Subscriber<S> subscriber, Route route) {
+            if (route.values != null) {
+                Set<Object> keys = route.values.stream().map(LiveQueryRouter::normalize).collect(Collectors.toSet());
+                keys.forEach(key -> byValue.computeIfAbsent(key, k -> ConcurrentHashMap.newKeySet()).add(subscriber));
+                return () -> keys.forEach(key -> byValue.computeIfPresent(key, (k, subscribers) -> {
+                    subscribers.remove(subscriber);
+                    return subscribers.isEmpty() ? null : subscribers;
+                }));
+            }
+
+            RangeSubscriber<S> rangeSubscriber = new RangeSubscriber<>(subscriber, route.to != null ? normalize(route.to) : null);
+            if (route.from == null) {
+                unboundedBelow.add(rangeSubscriber);
+                return () -> unboundedBelow.remove(rangeSubscriber);
+            }
+            Object from = normalize(route.from);
+            byLowerBound.computeIfAbsent(from, k -> ConcurrentHashMap.newKeySet()).add(rangeSubscriber);
+            return () -> byLowerBound.computeIfPresent(from, (k, subscribers) -> {
+                subscribers.remove(rangeSubscriber);
+                return subscribers.isEmpty() ? null : subscribers;
+            });
+        }
+
+        void collect(S entity, Set<Subscriber<S>> candidates) {
+            if (entity == null) {
+                return;
+            }
+
+            Object value = normalize(property.getValue(entity));
+            if (value == null) {
+                collectRanges(candidates);
+                return;
+            }
+
+            Optional.ofNullable(byValue.get(value)).ifPresent(candidates::addAll);
+            unboundedBelow.stream()
+                    .filter(rs -> isBelowUpperBound(value, rs))
+                    .forEach(rs -> candidates.add(rs.subscriber));
+            byLowerBound.headMap(value, true).values()
+                    .forEach(subscribers -> subscribers.stream()
+                            .filter(rs -> isBelowUpperBound(value, rs))
+                            .forEach(rs -> candidates.add(rs.subscriber)));
+        }
+
+        void collectAll(Set<Subscriber<S>> candidates) {
+            byValue.values().forEach(candidates::addAll);
+            collectRanges(candidates);
+        }
+
+        private void collectRanges(Set<Subscriber<S>> candidates) {
+            unboundedBelow.forEach(rs -> candidates.add(rs.subscriber));
+            byLowerBound.values().forEach(subscribers -> subscribers.forEach(rs -> candidates.add(rs.subscriber)));
+        }
+
+        private static boolean isBelowUpperBound(Object value, RangeSubscriber<?> rangeSubscriber) {
+            return rangeSubscriber.to == null || compareValues(value, rangeSubscriber.to) <= 0;
+        }
+    }
+}
@@ -39,6 +39,15 @@ public class MandatoryPropertiesQueryProviderDecorator extends AbstractQueryProv
                         .build());
     }
 
+    @Override
+    public <K, S, T> Observable<Notification<T>> liveQuery(QueryInfo<K, S, T> query, long fromSequenceNum) {
+        return query.properties().isEmpty()
+                ? super.liveQuery(query, fromSequenceNum)
+                : super.liveQuery(query.toBuilder()
+                        .apply(includeProperties(query.properties(), query.objectType()))
+                        .build(), fromSequenceNum);
+    }
+
     @Override
     public <K, S, T> Observable<Notification<T>> liveQuery(QueryInfo<K, S, T> query) {
         return query.properties().isEmpty()
@@ -0,0 +1,7 @@
+package com.slimgears.rxrepo.query.decorator;
+
+import java.util.List;
+
+public interface MetricsExporter {
+    void export(List<OperationMetrics> metrics);
+}
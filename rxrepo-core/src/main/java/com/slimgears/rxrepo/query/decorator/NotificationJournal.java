@@ -0,0 +1,55 @@
+package com.slimgears.rxrepo.query.decorator;
+
+import com.slimgears.rxrepo.query.Notification;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Collectors;
+
+class NotificationJournal<S> {
+    private final int capacity;
+    private final Deque<Notification<S>> entries = new ArrayDeque<>();
+    private long lastSequenceNum;
+    private long firstAvailableSequenceNum;
+
+    private NotificationJournal(int capacity) {
+        this.capacity = capacity;
+        this.lastSequenceNum = System.currentTimeMillis() * 1000;
+        this.firstAvailableSequenceNum = lastSequenceNum + 1;
+    }
+
+    static <S> NotificationJournal<S> create(int capacity) {
+        return new NotificationJournal<>(capacity);
+    }
+
+    synchronized Notification<S> append(Notification<S> notification) {
+        Notification<S> sequenced = notification.withSequenceNum(++lastSequenceNum);
+        if (capacity <= 0) {
+            firstAvailableSequenceNum = lastSequenceNum + 1;
+            return sequenced;
+        }
+        entries.addLast(sequenced);
+        if (entries.size() > capacity) {
+            entries.removeFirst();
+            firstAvailableSequenceNum = entries.getFirst().sequenceNum();
+        }
+        return sequenced;
+    }
+
+    synchronized Optional<List<Notification<S>>> since(long sequenceNum) {
+        if (sequenceNum < firstAvailableSequenceNum - 1 || sequenceNum > lastSequenceNum) {
+            return Optional.empty();
+        }
+        return Optional.of(entries.stream()
+                .filter(n -> n.sequenceNum() > sequenceNum)
+                .collect(Collectors.toList()));
+    }
+
+    synchronized void reset() {
+        entries.clear();
+        lastSequenceNum += 1;
+        firstAvailableSequenceNum = lastSequenceNum + 1;
+    }
+}
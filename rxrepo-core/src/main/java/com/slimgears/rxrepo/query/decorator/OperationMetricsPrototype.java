@@ -0,0 +1,39 @@
+package com.slimgears.rxrepo.query.decorator;
+
+import com.slimgears.rxrepo.annotations.PrototypeWithBuilder;
+
+import java.time.Duration;
+
+@PrototypeWithBuilder
+public interface OperationMetricsPrototype {
+    enum Operation {
+        Query,
+        Aggregate,
+        Insert,
+        InsertOrUpdate,
+        Update,
+        Delete,
+        Drop,
+        LiveQuery,
+        Notification,
+        Retry
+    }
+
+    String entityType();
+    Operation operation();
+    Duration interval();
+    long count();
+    long errorCount();
+    long cancelledCount();
+    long concurrencyConflictCount();
+    long rowCount();
+    Duration meanLatency();
+    Duration medianLatency();
+    Duration p90Latency();
+    Duration p99Latency();
+    Duration maxLatency();
+
+    default double throughputPerSecond() {
+        return interval().isZero() ? 0 : count() * 1e9 / interval().toNanos();
+    }
+}
@@ -0,0 +1,150 @@
+package com.slimgears.rxrepo.query.decorator;
+
+import com.google.common.cache.CacheBuilder;
+import com.google.common.collect.ImmutableList;
+import com.slimgears.rxrepo.expressions.Aggregator;
+import com.slimgears.rxrepo.expressions.CollectionExpression;
+import com.slimgears.rxrepo.expressions.internal.MoreTypeTokens;
+import com.slimgears.rxrepo.query.Notification;
+import com.slimgears.rxrepo.query.Notifications;
+import com.slimgears.rxrepo.query.provider.QueryInfo;
+import com.slimgears.rxrepo.query.provider.QueryProvider;
+import com.slimgears.util.autovalue.annotations.MetaClassWithKey;
+import io.reactivex.Maybe;
+import io.reactivex.Observable;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Predicate;
+
+public class QueryResultCacheQueryProviderDecorator extends AbstractCacheQueryProviderDecorator {
+    private final long maxEntriesPerClass;
+    private final Duration timeToLive;
+    private final int maxResultSize;
+
+    private QueryResultCacheQueryProviderDecorator(long maxEntriesPerClass, Duration timeToLive, int maxResultSize) {
+        this.maxEntriesPerClass = maxEntriesPerClass;
+        this.timeToLive = timeToLive;
+        this.maxResultSize = maxResultSize;
+    }
+
+    public static QueryResultCacheQueryProviderDecorator create() {
+        return create(Properties.maxEntriesPerClass(), Duration.ofMillis(Properties.timeToLiveMillis()), Properties.maxResultSize());
+    }
+
+    public static QueryResultCacheQueryProviderDecorator create(long maxEntriesPerClass, Duration timeToLive, int maxResultSize) {
+        return new QueryResultCacheQueryProviderDecorator(maxEntriesPerClass, timeToLive, maxResultSize);
+    }
+
+    @Override
+    protected CachingProvider createProvider(QueryProvider underlyingProvider) {
+        return new DecoratedProvider(underlyingProvider);
+    }
+
+    @Override
+    protected <K, S> ClassCache<K, S, ?> createCache(MetaClassWithKey<K, S> metaClass) {
+        return new ResultCache<>(metaClass, maxEntriesPerClass, timeToLive);
+    }
+
+    private class DecoratedProvider extends CachingProvider {
+        private DecoratedProvider(QueryProvider underlyingProvider) {
+            super(underlyingProvider);
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public <K, S, T> Observable<T> query(QueryInfo<K, S, T> query) {
+            ResultCache<K, S> cache = cacheOf(query.metaClass());
+            return Observable.defer(() -> {
+                Entry<S> entry = cache.getIfPresent(query);
+                if (entry != null) {
+                    return Observable.fromIterable((List<T>)entry.value);
+                }
+
+                long generation = cache.generation();
+                List<T> items = new ArrayList<>();
+                return super.query(query)
+                        .doOnNext(item -> {
+                            if (items.size() <= maxResultSize) {
+                                items.add(item);
+                            }
+                        })
+                        .doOnComplete(() -> {
+                            if (items.size() <= maxResultSize) {
+                                cache.putIfCurrent(query, new Entry<>(Notifications.affects(query.predicate()), ImmutableList.copyOf(items)), generation);
+                            }
+                        });
+            });
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public <K, S, T, R> Maybe<R> aggregate(QueryInfo<K, S, T> query, Aggregator<T, T, R> aggregator) {
+            ResultCache<K, S> cache = cacheOf(query.metaClass());
+            List<Object> key = Arrays.asList(query, aggregator.apply(CollectionExpression.indirectArg(MoreTypeTokens.collection(query.objectType()))));
+            return Maybe.defer(() -> {
+                Entry<S> entry = cache.getIfPresent(key);
+                if (entry != null) {
+                    return ((Optional<R>)entry.value).map(Maybe::just).orElseGet(Maybe::empty);
+                }
+
+                long generation = cache.generation();
+                return super.aggregate(query, aggregator)
+                        .map(Optional::of)
+                        .defaultIfEmpty(Optional.empty())
+                        .doOnSuccess(result -> cache.putIfCurrent(key, new Entry<>(Notifications.affects(query.predicate()), result), generation))
+                        .flatMap(result -> result.map(Maybe::just).orElseGet(Maybe::empty));
+            });
+        }
+    }
+
+    private static class Entry<S> {
+        private final Predicate<Notification<S>> affectedBy;
+        private final Object value;
+
+        private Entry(Predicate<Notification<S>> affectedBy, Object value) {
+            this.affectedBy = affectedBy;
+            this.value = value;
+        }
+    }
+
+    private static class ResultCache<K, S> extends ClassCache<K, S, Entry<S>> {
+        private ResultCache(MetaClassWithKey<K, S> metaClass, long maxSize, Duration timeToLive) {
+            super(metaClass, CacheBuilder.newBuilder()
+                    .maximumSize(maxSize)
+                    .expireAfterWrite(timeToLive.toMillis(), TimeUnit.MILLISECONDS)
+                    .recordStats()
+                    .<Object, Entry<S>>build());
+        }
+
+        @Override
+        protected void evict(Notification<S> notification) {
+            entries.asMap().values().removeIf(entry -> entry.affectedBy.test(notification));
+        }
+    }
+
+    public static class Properties {
+        public static final String maxEntriesPerClass = "rxrepo.queryCache.maxEntriesPerClass";
+        public static final String timeToLiveMillis = "rxrepo.queryCache.timeToLiveMillis";
+        public static final String maxResultSize = "rxrepo.queryCache.maxResultSize";
+        private static final long defaultMaxEntriesPerClass = 1000;
+        private static final long defaultTimeToLiveMillis = 60000;
+        private static final int defaultMaxResultSize = 1000;
+
+        public static long maxEntriesPerClass() {
+            return Long.getLong(Properties.maxEntriesPerClass, defaultMaxEntriesPerClass);
+        }
+
+        public static long timeToLiveMillis() {
+            return Long.getLong(Properties.timeToLiveMillis, defaultTimeToLiveMillis);
+        }
+
+        public static int maxResultSize() {
+            return Integer.getInteger(Properties.maxResultSize, defaultMaxResultSize);
+        }
+    }
+}
@@ -1,6 +1,7 @@
 package com.slimgears.rxrepo.query.decorator;
 
 import com.slimgears.rxrepo.expressions.Aggregator;
+import com.slimgears.rxrepo.query.EmissionPolicy;
 import com.slimgears.rxrepo.query.Notification;
 import com.slimgears.rxrepo.query.provider.DeleteInfo;
 import com.slimgears.rxrepo.query.provider.QueryInfo;
@@ -11,6 +12,8 @@ import io.reactivex.*;
 import io.reactivex.functions.Function;
 import io.reactivex.schedulers.Schedulers;
 
+import java.util.List;
+
 public class SchedulingQueryProviderDecorator extends AbstractQueryProviderDecorator {
     private final Scheduler updateScheduler;
     private final Scheduler queryScheduler;
@@ -47,6 +50,11 @@ public class SchedulingQueryProviderDecorator extends AbstractQueryProviderDecor
         return Completable.defer(() -> super.insert(metaClass, entities)).subscribeOn(updateScheduler);
     }
 
+    @Override
+    public <K, S> Completable insertOrUpdateAll(MetaClassWithKey<K, S> metaClass, Iterable<S> entities) {
+        return Completable.defer(() -> super.insertOrUpdateAll(metaClass, entities)).subscribeOn(updateScheduler);
+    }
+
     @Override
     public <K, S> Maybe<S> insertOrUpdate(MetaClassWithKey<K, S> metaClass, K key, Function<Maybe<S>, Maybe<S>> entityUpdater) {
         return Maybe.defer(() -> super.insertOrUpdate(metaClass, key, entityUpdater)).subscribeOn(updateScheduler);
@@ -93,7 +101,17 @@ public class SchedulingQueryProviderDecorator extends AbstractQueryProviderDecor
     }
 
     @Override
-    public <K, S, T, R> Observable<R> liveAggregate(QueryInfo<K, S, T> query, Aggregator<T, T, R> aggregator) {
-        return Observable.defer(() -> super.liveAggregate(query, aggregator)).subscribeOn(notificationScheduler);
+    public <K, S, T> Observable<Notification<T>> liveQuery(QueryInfo<K, S, T> query, long fromSequenceNum) {
+        return Observable.defer(() -> super.liveQuery(query, fromSequenceNum)).subscribeOn(notificationScheduler);
+    }
+
+    @Override
+    public <K, S, T, R> Observable<R> liveAggregate(QueryInfo<K, S, T> query, Aggregator<T, T, R> aggregator, EmissionPolicy emissionPolicy) {
+        return Observable.defer(() -> super.liveAggregate(query, aggregator, emissionPolicy)).subscribeOn(notificationScheduler);
+    }
+
+    @Override
+    public <K, S, T> Observable<List<T>> liveQueryAsList(QueryInfo<K, S, T> query, EmissionPolicy emissionPolicy) {
+        return Observable.defer(() -> super.liveQueryAsList(query, emissionPolicy)).subscribeOn(notificationScheduler);
     }
 }
@@ -0,0 +1,129 @@
+package com.slimgears.rxrepo.query.decorator;
+
+import com.slimgears.rxrepo.expressions.Aggregator;
+import com.slimgears.rxrepo.expressions.CollectionExpression;
+import com.slimgears.rxrepo.expressions.internal.MoreTypeTokens;
+import com.slimgears.rxrepo.query.provider.DeleteInfo;
+import com.slimgears.rxrepo.query.provider.QueryInfo;
+import com.slimgears.rxrepo.query.provider.QueryProvider;
+import com.slimgears.rxrepo.query.provider.UpdateInfo;
+import com.slimgears.util.autovalue.annotations.MetaClassWithKey;
+import io.reactivex.Completable;
+import io.reactivex.Maybe;
+import io.reactivex.Observable;
+import io.reactivex.Single;
+import io.reactivex.functions.Function;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Supplier;
+
+public class SingleFlightQueryProviderDecorator implements QueryProvider.Decorator {
+    @Override
+    public QueryProvider apply(QueryProvider queryProvider) {
+        return new DecoratedProvider(queryProvider);
+    }
+
+    public static QueryProvider.Decorator create() {
+        return new SingleFlightQueryProviderDecorator();
+    }
+
+    private static class DecoratedProvider extends AbstractQueryProviderDecorator {
+        private final Map<Object, Flight<?>> inFlight = new ConcurrentHashMap<>();
+        private final Map<MetaClassWithKey<?, ?>, AtomicLong> writeGenerations = new ConcurrentHashMap<>();
+
+        private DecoratedProvider(QueryProvider underlyingProvider) {
+            super(underlyingProvider);
+        }
+
+        @Override
+        public <K, S, T> Observable<T> query(QueryInfo<K, S, T> query) {
+            return Observable.defer(() -> join(query.metaClass(), query, () -> super.query(query)));
+        }
+
+        @Override
+        public <K, S, T, R> Maybe<R> aggregate(QueryInfo<K, S, T> query, Aggregator<T, T, R> aggregator) {
+            Object key = Arrays.asList(query, aggregator.apply(CollectionExpression.indirectArg(MoreTypeTokens.collection(query.objectType()))));
+            return Observable.defer(() -> join(query.metaClass(), key, () -> super.aggregate(query, aggregator).toObservable())).singleElement();
+        }
+
+        @Override
+        public <K, S> Completable insert(MetaClassWithKey<K, S> metaClass, Iterable<S> entities) {
+            return super.insert(metaClass, entities).doFinally(() -> onWrite(metaClass));
+        }
+
+        @Override
+        public <K, S> Completable insertOrUpdateAll(MetaClassWithKey<K, S> metaClass, Iterable<S> entities) {
+            return super.insertOrUpdateAll(metaClass, entities).doFinally(() -> onWrite(metaClass));
+        }
+
+        @Override
+        public <K, S> Single<S> insertOrUpdate(MetaClassWithKey<K, S> metaClass, S entity) {
+            return super.insertOrUpdate(metaClass, entity).doFinally(() -> onWrite(metaClass));
+        }
+
+        @Override
+        public <K, S> Maybe<S> insertOrUpdate(MetaClassWithKey<K, S> metaClass, K key, Function<Maybe<S>, Maybe<S>> entityUpdater) {
+            return super.insertOrUpdate(metaClass, key, entityUpdater).doFinally(() -> onWrite(metaClass));
+        }
+
+        @Override
+        public <K, S> Single<Integer> update(UpdateInfo<K, S> update) {
+            return super.update(update).doFinally(() -> onWrite(update.metaClass()));
+        }
+
+        @Override
+        public <K, S> Single<Integer> delete(DeleteInfo<K, S> delete) {
+            return super.delete(delete).doFinally(() -> onWrite(delete.metaClass()));
+        }
+
+        @Override
+        public <K, S> Completable drop(MetaClassWithKey<K, S> metaClass) {
+            return super.drop(metaClass).doFinally(() -> onWrite(metaClass));
+        }
+
+        @Override
+        public Completable dropAll() {
+            return super.dropAll().doFinally(() -> writeGenerations.values().forEach(AtomicLong::incrementAndGet));
+        }
+
+        private void onWrite(MetaClassWithKey<?, ?> metaClass) {
+            writeGeneration(metaClass).incrementAndGet();
+        }
+
+        private AtomicLong writeGeneration(MetaClassWithKey<?, ?> metaClass) {
+            return writeGenerations.computeIfAbsent(metaClass, mc -> new AtomicLong());
+        }
+
+        // A flight started before the caller's last write completed may return
+        // stale data, so callers only join flights of the current write generation
+        @SuppressWarnings("unchecked")
+        private <T> Observable<T> join(MetaClassWithKey<?, ?> metaClass, Object key, Supplier<Observable<T>> upstream) {
+            long generation = writeGeneration(metaClass).get();
+            return (Observable<T>)inFlight.compute(key, (k, current) -> {
+                if (current != null && current.generation == generation) {
+                    return current;
+                }
+                AtomicReference<Flight<T>> flight = new AtomicReference<>();
+                flight.set(new Flight<>(generation, upstream.get()
+                        .doFinally(() -> inFlight.remove(k, flight.get()))
+                        .replay()
+                        .refCount()));
+                return flight.get();
+            }).observable;
+        }
+    }
+
+    private static class Flight<T> {
+        private final long generation;
+        private final Observable<T> observable;
+
+        private Flight(long generation, Observable<T> observable) {
+            this.generation = generation;
+            this.observable = observable;
+        }
+    }
+}
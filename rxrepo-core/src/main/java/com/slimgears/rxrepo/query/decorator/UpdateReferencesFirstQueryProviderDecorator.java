@@ -33,6 +33,14 @@ public class UpdateReferencesFirstQueryProviderDecorator extends AbstractQueryPr
                 .andThen(super.insert(metaClass, entities));
     }
 
+    @Override
+    public <K, S> Completable insertOrUpdateAll(MetaClassWithKey<K, S> metaClass, Iterable<S> entities) {
+        return Observable.fromIterable(entities)
+                .concatMapEager(e -> insertOrUpdateReferences(metaClass, e).andThen(Observable.just(e)))
+                .ignoreElements()
+                .andThen(super.insertOrUpdateAll(metaClass, entities));
+    }
+
     @Override
     public <K, S> Single<S> insertOrUpdate(MetaClassWithKey<K, S> metaClass, S entity) {
         return insertOrUpdateReferences(metaClass, entity).andThen(super.insertOrUpdate(metaClass, entity));
@@ -1,6 +1,7 @@
 package com.slimgears.rxrepo.query.provider;
 
 import com.slimgears.rxrepo.expressions.Aggregator;
+import com.slimgears.rxrepo.query.EmissionPolicy;
 import com.slimgears.rxrepo.query.Notification;
 import com.slimgears.util.autovalue.annotations.MetaClassWithKey;
 import io.reactivex.Completable;
@@ -20,6 +21,11 @@ public abstract class AbstractEntityQueryProviderAdapter implements QueryProvide
         return entities(metaClass).insert(entities);
     }
 
+    @Override
+    public <K, S> Completable insertOrUpdateAll(MetaClassWithKey<K, S> metaClass, Iterable<S> entities) {
+        return entities(metaClass).insertOrUpdateAll(entities);
+    }
+
     @Override
     public <K, S> Maybe<S> insertOrUpdate(MetaClassWithKey<K, S> metaClass, K key, Function<Maybe<S>, Maybe<S>> entityUpdater) {
         return entities(metaClass)
@@ -73,8 +79,8 @@ public abstract class AbstractEntityQueryProviderAdapter implements QueryProvide
     }
 
     @Override
-    public <K, S, T, R> Observable<R> liveAggregate(QueryInfo<K, S, T> query, Aggregator<T, T, R> aggregator) {
-        return entities(query.metaClass()).liveAggregate(query, aggregator);
+    public <K, S, T, R> Observable<R> liveAggregate(QueryInfo<K, S, T> query, Aggregator<T, T, R> aggregator, EmissionPolicy emissionPolicy) {
+        return entities(query.metaClass()).liveAggregate(query, aggregator, emissionPolicy);
     }
 
     protected abstract Completable dropAllProviders();
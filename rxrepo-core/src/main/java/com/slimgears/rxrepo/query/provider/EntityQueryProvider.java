@@ -1,6 +1,7 @@
 package com.slimgears.rxrepo.query.provider;
 
 import com.slimgears.rxrepo.expressions.Aggregator;
+import com.slimgears.rxrepo.query.EmissionPolicy;
 import com.slimgears.rxrepo.query.Notification;
 import com.slimgears.util.autovalue.annotations.MetaClassWithKey;
 import com.slimgears.util.autovalue.annotations.MetaClasses;
@@ -10,7 +11,6 @@ import io.reactivex.Observable;
 import io.reactivex.Single;
 import io.reactivex.functions.Function;
 
-import java.util.concurrent.TimeUnit;
 
 public interface EntityQueryProvider<K, S> {
     MetaClassWithKey<K, S> metaClass();
@@ -28,6 +28,12 @@ public interface EntityQueryProvider<K, S> {
                 .ignoreElements();
     }
 
+    default Completable insertOrUpdateAll(Iterable<S> entities) {
+        return Observable.fromIterable(entities)
+                .concatMapSingle(this::insertOrUpdate)
+                .ignoreElements();
+    }
+
     default Single<S> insertOrUpdate(S entity) {
         K key = metaClass().keyOf(entity);
         return insertOrUpdate(key, val -> val
@@ -36,7 +42,7 @@ public interface EntityQueryProvider<K, S> {
                 .toSingle();
     }
 
-    default <T, R> Observable<R> liveAggregate(QueryInfo<K, S, T> query, Aggregator<T, T, R> aggregator) {
-        return liveQuery(query).debounce(500, TimeUnit.MILLISECONDS).switchMapMaybe(n -> aggregate(query, aggregator));
+    default <T, R> Observable<R> liveAggregate(QueryInfo<K, S, T> query, Aggregator<T, T, R> aggregator, EmissionPolicy emissionPolicy) {
+        return liveQuery(query).compose(emissionPolicy.apply(n -> aggregate(query, aggregator).toObservable()));
     }
 }
@@ -1,6 +1,7 @@
 package com.slimgears.rxrepo.query.provider;
 
 import com.slimgears.rxrepo.expressions.Aggregator;
+import com.slimgears.rxrepo.query.EmissionPolicy;
 import com.slimgears.rxrepo.query.Notification;
 import com.slimgears.util.autovalue.annotations.MetaClassWithKey;
 import com.slimgears.util.autovalue.annotations.MetaClasses;
@@ -10,8 +11,9 @@ import io.reactivex.Observable;
 import io.reactivex.Single;
 import io.reactivex.functions.Function;
 
+import java.time.Duration;
 import java.util.Arrays;
-import java.util.concurrent.TimeUnit;
+import java.util.List;
 import java.util.function.UnaryOperator;
 
 public interface QueryProvider extends AutoCloseable {
@@ -31,6 +33,12 @@ public interface QueryProvider extends AutoCloseable {
                 .ignoreElements();
     }
 
+    default <K, S> Completable insertOrUpdateAll(MetaClassWithKey<K, S> metaClass, Iterable<S> entities) {
+        return Observable.fromIterable(entities)
+                .concatMapSingle(e -> insertOrUpdate(metaClass, e))
+                .ignoreElements();
+    }
+
     default <K, S> Single<S> insertOrUpdate(MetaClassWithKey<K, S> metaClass, S entity) {
         K key = metaClass.keyOf(entity);
         return insertOrUpdate(metaClass, key, val -> val
@@ -39,8 +47,24 @@ public interface QueryProvider extends AutoCloseable {
                 .toSingle();
     }
 
+    default <K, S, T> Observable<Notification<T>> liveQuery(QueryInfo<K, S, T> query, long fromSequenceNum) {
+        return Observable.error(new UnsupportedOperationException("Resuming live query is not supported by " + getClass().getSimpleName()));
+    }
+
     default <K, S, T, R> Observable<R> liveAggregate(QueryInfo<K, S, T> query, Aggregator<T, T, R> aggregator) {
-        return liveQuery(query).debounce(500, TimeUnit.MILLISECONDS).switchMapMaybe(n -> aggregate(query, aggregator));
+        return liveAggregate(query, aggregator, EmissionPolicy.debounce(Duration.ofMillis(500)));
+    }
+
+    default <K, S, T, R> Observable<R> liveAggregate(QueryInfo<K, S, T> query, Aggregator<T, T, R> aggregator, EmissionPolicy emissionPolicy) {
+        return liveQuery(query).compose(emissionPolicy.apply(n -> aggregate(query, aggregator).toObservable()));
+    }
+
+    default <K, S, T> Observable<List<T>> liveQueryAsList(QueryInfo<K, S, T> query, EmissionPolicy emissionPolicy) {
+        return liveQuery(query).compose(emissionPolicy.apply(n -> query(query).toList().toObservable()));
+    }
+
+    // Called before a write that failed with a concurrency conflict is retried
+    default <K, S> void onRetry(MetaClassWithKey<K, S> metaClass, Throwable error) {
     }
 
     default void close() {
@@ -20,11 +20,45 @@ import java.util.stream.Stream;
 
 @SuppressWarnings("WeakerAccess")
 public class Expressions {
+    private static volatile CompileMode compileMode = Properties.compileMode();
+
+    public enum CompileMode {
+        Closures,
+        MethodHandles
+    }
+
+    public static class Properties {
+        public static final String compileMode = "rxrepo.expressions.compileMode";
+        public static final String compiledCacheSize = "rxrepo.expressions.compiledCacheSize";
+
+        public static CompileMode compileMode() {
+            return Optional.ofNullable(System.getProperty(compileMode))
+                    .map(CompileMode::valueOf)
+                    .orElse(CompileMode.Closures);
+        }
+    }
+
+    public static CompileMode compileMode() {
+        return compileMode;
+    }
+
+    public static void compileMode(CompileMode mode) {
+        compileMode = mode;
+    }
+
     @SuppressWarnings("unchecked")
     public static <S, T> Function<S, T> compile(ObjectExpression<S, T> exp) {
-        return exp != null
-                ? (Function<S, T>)new InternalVisitor().visit(exp, null)
-                : (Function<S, T>)Function.identity();
+        if (exp == null) {
+            return (Function<S, T>)Function.identity();
+        }
+        return compileMode == CompileMode.MethodHandles
+                ? MethodHandleExpressions.compile(exp)
+                : compileClosures(exp);
+    }
+
+    @SuppressWarnings("unchecked")
+    static <S, T> Function<S, T> compileClosures(ObjectExpression<S, T> exp) {
+        return (Function<S, T>)new InternalVisitor().visit(exp, null);
     }
 
     public static <S, V extends Comparable<V>> Comparator<S> compileComparator(PropertyExpression<S, ?, V> property, boolean ascending) {
@@ -36,9 +70,12 @@ public class Expressions {
     }
 
     public static <S> Predicate<S> compilePredicate(ObjectExpression<S, Boolean> predicateExp) {
-        return predicateExp != null
-                ? compile(predicateExp)::apply
-                : e -> true;
+        if (predicateExp == null) {
+            return e -> true;
+        }
+        return compileMode == CompileMode.MethodHandles
+                ? MethodHandleExpressions.compilePredicate(predicateExp)
+                : compileClosures(predicateExp)::apply;
     }
 
     public static <S> io.reactivex.functions.Predicate<S> compileRxPredicate(ObjectExpression<S, Boolean> predicateExp) {
@@ -49,6 +86,10 @@ public class Expressions {
         return compile(exp)::apply;
     }
 
+    static Function reduce(Expression.Type type, Function... functions) {
+        return InternalVisitor.reduce(type, functions);
+    }
+
     @SuppressWarnings("unchecked")
     private static <T, R> Function<Function[], Function> fromUnary(Function<T, R> func) {
         return funcs -> val -> func.apply((T)funcs[0].apply(val));
@@ -0,0 +1,371 @@
+package com.slimgears.rxrepo.util;
+
+import com.google.common.base.Throwables;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.primitives.Primitives;
+import com.google.common.reflect.TypeToken;
+import com.slimgears.rxrepo.expressions.ArgumentExpression;
+import com.slimgears.rxrepo.expressions.BinaryOperationExpression;
+import com.slimgears.rxrepo.expressions.ComposedExpression;
+import com.slimgears.rxrepo.expressions.Expression;
+import com.slimgears.rxrepo.expressions.ExpressionVisitor;
+import com.slimgears.rxrepo.expressions.ObjectExpression;
+import com.slimgears.rxrepo.expressions.PropertyExpression;
+import com.slimgears.rxrepo.expressions.UnaryOperationExpression;
+import com.slimgears.util.autovalue.annotations.PropertyMeta;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.Objects;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.function.Predicate;
+
+class MethodHandleExpressions {
+    private final static MethodHandles.Lookup lookup = MethodHandles.lookup();
+    private final static MethodType objectToObject = MethodType.methodType(Object.class, Object.class);
+    private final static MethodType objectToBoolean = MethodType.methodType(boolean.class, Object.class);
+    private final static Set<Class<?>> specializedTypes = ImmutableSet.of(int.class, long.class, double.class);
+    private final static MethodHandle functionApply = findVirtual(Function.class, "apply", objectToObject);
+    private final static MethodHandle propertyGetValue = findVirtual(PropertyMeta.class, "getValue", objectToObject);
+    private final static MethodHandle classIsInstance = findVirtual(Class.class, "isInstance", objectToBoolean);
+    private final static MethodHandle objectsIsNull = findStatic(Objects.class, "isNull", objectToBoolean);
+    private final static MethodHandle isFalse = findStatic(MethodHandleExpressions.class, "isFalse", objectToBoolean);
+    private final static MethodHandle not = findStatic(MethodHandleExpressions.class, "not", MethodType.methodType(boolean.class, boolean.class));
+    private final static MethodHandle valueIn = findStatic(MethodHandleExpressions.class, "valueIn", MethodType.methodType(boolean.class, Set.class, Object.class));
+    private final static Cache<ObjectExpression<?, ?>, CompiledExpression> cache = CacheBuilder.newBuilder()
+            .maximumSize(Integer.getInteger(Expressions.Properties.compiledCacheSize, 4096))
+            .build();
+
+    @SuppressWarnings("unchecked")
+    static <S, T> Function<S, T> compile(ObjectExpression<S, T> exp) {
+        return (Function<S, T>)(Function<?, ?>)compiled(exp);
+    }
+
+    @SuppressWarnings("unchecked")
+    static <S> Predicate<S> compilePredicate(ObjectExpression<S, Boolean> exp) {
+        return (Predicate<S>)(Predicate<?>)compiled(exp);
+    }
+
+    private static CompiledExpression compiled(ObjectExpression<?, ?> exp) {
+        CompiledExpression compiled = cache.getIfPresent(exp);
+        if (compiled == null) {
+            compiled = new CompiledExpression(exp);
+            cache.put(exp, compiled);
+        }
+        return compiled;
+    }
+
+    private static class CompiledExpression implements Function<Object, Object>, Predicate<Object> {
+        private final MethodHandle function;
+        private final MethodHandle predicate;
+
+        private CompiledExpression(ObjectExpression<?, ?> expression) {
+            InternalVisitor visitor = new InternalVisitor();
+            MethodHandle handle = visitor.visit(expression, true).handle;
+            MethodHandle function = handle.asType(objectToObject);
+            if (!visitor.requiredTypes.isEmpty()) {
+                // Closures may return null (e.g. for a null argument), so the function
+                // is guarded in its boxed form instead of unboxing the fallback result
+                MethodHandle guard = isInstanceOfAll(visitor.requiredTypes);
+                MethodHandle fallback = functionApply.bindTo(Expressions.compileClosures(expression));
+                function = MethodHandles.guardWithTest(guard, function, fallback);
+                handle = MethodHandles.guardWithTest(guard, handle, fallback.asType(handle.type()));
+            }
+            this.function = function;
+            this.predicate = handle.type().returnType() == boolean.class
+                    ? handle
+                    : function.asType(objectToBoolean);
+        }
+
+        @Override
+        public Object apply(Object o) {
+            try {
+                return (Object)function.invokeExact(o);
+            } catch (Throwable e) {
+                Throwables.throwIfUnchecked(e);
+                throw new RuntimeException(e);
+            }
+        }
+
+        @Override
+        public boolean test(Object o) {
+            try {
+                return (boolean)predicate.invokeExact(o);
+            } catch (Throwable e) {
+                Throwables.throwIfUnchecked(e);
+                throw new RuntimeException(e);
+            }
+        }
+    }
+
+    private static class Node {
+        private final MethodHandle handle;
+        private final boolean isConstant;
+        private final Object value;
+
+        private Node(MethodHandle handle, boolean isConstant, Object value) {
+            this.handle = handle;
+            this.isConstant = isConstant;
+            this.value = value;
+        }
+
+        static Node of(MethodHandle handle) {
+            return new Node(handle, false, null);
+        }
+
+        static Node constant(Class<?> type, Object value) {
+            return new Node(MethodHandles.dropArguments(MethodHandles.constant(type, value), 0, Object.class), true, value);
+        }
+
+        Class<?> type() {
+            return handle.type().returnType();
+        }
+
+        MethodHandle as(Class<?> type) {
+            MethodHandle adapted = type.isPrimitive() && type != type() ? handle.asType(objectToObject) : handle;
+            return adapted.asType(MethodType.methodType(type, Object.class));
+        }
+
+        Function<Object, Object> toFunction() {
+            return new CompiledFunction(as(Object.class));
+        }
+    }
+
+    private static class CompiledFunction implements Function<Object, Object> {
+        private final MethodHandle handle;
+
+        private CompiledFunction(MethodHandle handle) {
+            this.handle = handle;
+        }
+
+        @Override
+        public Object apply(Object o) {
+            try {
+                return (Object)handle.invokeExact(o);
+            } catch (Throwable e) {
+                Throwables.throwIfUnchecked(e);
+                throw new RuntimeException(e);
+            }
+        }
+    }
+
+    private static class InternalVisitor extends ExpressionVisitor<Boolean, Node> {
+        private final Set<Class<?>> requiredTypes = new LinkedHashSet<>();
+
+        @Override
+        protected <S, T, V> Node visitProperty(PropertyExpression<S, T, V> expression, Boolean isArgumentTrusted) {
+            if (isArgumentTrusted && expression.target() instanceof ArgumentExpression) {
+                requiredTypes.add(expression.property().declaringType().asClass());
+                MethodHandle getter = getter(expression.property());
+                return Node.of(getter.asType(getter.type().changeParameterType(0, Object.class)));
+            }
+            return super.visitProperty(expression, isArgumentTrusted);
+        }
+
+        @Override
+        protected <S, T, R> Node visitComposition(ComposedExpression<S, T, R> expression, Boolean isArgumentTrusted) {
+            Node source = visit(expression.source(), isArgumentTrusted);
+            Node composed = visit(expression.expression(), false);
+            return reduceBinary(expression, expression.type(), source, composed);
+        }
+
+        @Override
+        protected <S, T1, T2, R> Node visitBinaryOperator(BinaryOperationExpression<S, T1, T2, R> expression, Boolean isArgumentTrusted) {
+            Node left = visit(expression.left(), isArgumentTrusted);
+            Node right = visit(expression.right(), isArgumentTrusted);
+            switch (expression.type()) {
+                case And:
+                    return Node.of(MethodHandles.guardWithTest(left.as(boolean.class), right.as(boolean.class), constant(false)));
+                case Or:
+                    return Node.of(MethodHandles.guardWithTest(left.as(boolean.class), constant(true), right.as(boolean.class)));
+                case Equals:
+                    return compare("equal", left, right);
+                case GreaterThan:
+                    return compare("greaterThan", left, right);
+                case LessThan:
+                    return compare("lessThan", left, right);
+                case ValueIn:
+                    if (right.isConstant && right.value instanceof Collection) {
+                        Set<?> values = new HashSet<>((Collection<?>)right.value);
+                        return Node.of(MethodHandles.filterReturnValue(left.as(Object.class), valueIn.bindTo(values)));
+                    }
+                    return reduceBinary(expression, expression.type(), left, right);
+                default:
+                    return reduceBinary(expression, expression.type(), left, right);
+            }
+        }
+
+        @Override
+        protected <S, T, R> Node visitUnaryOperator(UnaryOperationExpression<S, T, R> expression, Boolean isArgumentTrusted) {
+            Node operand = visit(expression.operand(), isArgumentTrusted);
+            switch (expression.type()) {
+                case Not:
+                    return operand.type() == boolean.class
+                            ? Node.of(MethodHandles.filterReturnValue(operand.handle, not))
+                            : Node.of(MethodHandles.filterReturnValue(operand.as(Object.class), isFalse));
+                case IsNull:
+                    return operand.type().isPrimitive()
+                            ? Node.of(constant(false))
+                            : Node.of(MethodHandles.filterReturnValue(operand.as(Object.class), objectsIsNull));
+                default:
+                    return reduceUnary(expression, expression.type(), operand);
+            }
+        }
+
+        @Override
+        protected Node reduceBinary(ObjectExpression<?, ?> expression, Expression.Type type, Node first, Node second) {
+            if (type.operationType() == Expression.OperationType.Property || type.operationType() == Expression.OperationType.Composition) {
+                return Node.of(MethodHandles.filterReturnValue(first.as(Object.class), second.handle));
+            }
+            return Node.of(functionApply.bindTo(Expressions.reduce(type, first.toFunction(), second.toFunction())));
+        }
+
+        @Override
+        protected Node reduceUnary(ObjectExpression<?, ?> expression, Expression.Type type, Node first) {
+            return Node.of(functionApply.bindTo(Expressions.reduce(type, first.toFunction())));
+        }
+
+        @Override
+        protected <T, V> Node visitProperty(PropertyMeta<T, V> propertyMeta, Boolean isArgumentTrusted) {
+            Class<?> declaringClass = propertyMeta.declaringType().asClass();
+            return Node.of(MethodHandles.guardWithTest(
+                    classIsInstance.bindTo(declaringClass),
+                    getter(propertyMeta).asType(objectToObject),
+                    MethodHandles.dropArguments(MethodHandles.constant(Object.class, null), 0, Object.class)));
+        }
+
+        @Override
+        protected <V> Node visitConstant(Expression.Type type, V value, Boolean isArgumentTrusted) {
+            return Node.constant(Object.class, value);
+        }
+
+        @Override
+        protected <T> Node visitArgument(TypeToken<T> argType, Boolean isArgumentTrusted) {
+            return Node.of(MethodHandles.identity(Object.class));
+        }
+    }
+
+    private static Node compare(String name, Node left, Node right) {
+        if (left.type().isPrimitive() && right.isConstant && Primitives.wrap(left.type()).isInstance(right.value)) {
+            right = Node.constant(left.type(), right.value);
+        } else if (right.type().isPrimitive() && left.isConstant && Primitives.wrap(right.type()).isInstance(left.value)) {
+            left = Node.constant(right.type(), left.value);
+        }
+        Class<?> type = left.type() == right.type() && specializedTypes.contains(left.type())
+                ? left.type()
+                : Object.class;
+        MethodHandle comparison = findStatic(MethodHandleExpressions.class, name, MethodType.methodType(boolean.class, type, type));
+        MethodHandle filtered = MethodHandles.filterArguments(comparison, 0, left.as(type), right.as(type));
+        return Node.of(MethodHandles.permuteArguments(filtered, objectToBoolean, 0, 0));
+    }
+
+    private static MethodHandle constant(boolean value) {
+        return MethodHandles.dropArguments(MethodHandles.constant(boolean.class, value), 0, Object.class);
+    }
+
+    private static MethodHandle isInstanceOfAll(Collection<Class<?>> types) {
+        return types.stream()
+                .map(classIsInstance::bindTo)
+                .reduce((first, second) -> MethodHandles.guardWithTest(first, second, constant(false)))
+                .orElseGet(() -> constant(true));
+    }
+
+    private static MethodHandle getter(PropertyMeta<?, ?> propertyMeta) {
+        Class<?> declaringClass = propertyMeta.declaringType().asClass();
+        try {
+            Method method = declaringClass.getMethod(propertyMeta.name());
+            if (Modifier.isPublic(method.getDeclaringClass().getModifiers())) {
+                return MethodHandles.publicLookup().unreflect(method);
+            }
+        } catch (NoSuchMethodException | IllegalAccessException ignored) {
+        }
+        return propertyGetValue.bindTo(propertyMeta).asType(MethodType.methodType(Object.class, declaringClass));
+    }
+
+    private static MethodHandle findVirtual(Class<?> cls, String name, MethodType type) {
+        try {
+            return lookup.findVirtual(cls, name, type);
+        } catch (NoSuchMethodException | IllegalAccessException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private static MethodHandle findStatic(Class<?> cls, String name, MethodType type) {
+        try {
+            return lookup.findStatic(cls, name, type);
+        } catch (NoSuchMethodException | IllegalAccessException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private static boolean isFalse(Object value) {
+        return Boolean.FALSE.equals(value);
+    }
+
+    private static boolean not(boolean value) {
+        return !value;
+    }
+
+    private static boolean valueIn(Set<?> values, Object value) {
+        return value != null && values.contains(value);
+    }
+
+    private static boolean equal(int a, int b) {
+        return a == b;
+    }
+
+    private static boolean equal(long a, long b) {
+        return a == b;
+    }
+
+    private static boolean equal(double a, double b) {
+        return Double.compare(a, b) == 0;
+    }
+
+    private static boolean equal(Object a, Object b) {
+        return Objects.equals(a, b);
+    }
+
+    private static boolean greaterThan(int a, int b) {
+        return a > b;
+    }
+
+    private static boolean greaterThan(long a, long b) {
+        return a > b;
+    }
+
+    private static boolean greaterThan(double a, double b) {
+        return Double.compare(a, b) > 0;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static boolean greaterThan(Object a, Object b) {
+        return a != null && b != null && ((Comparable<Object>)a).compareTo(b) > 0;
+    }
+
+    private static boolean lessThan(int a, int b) {
+        return a < b;
+    }
+
+    private static boolean lessThan(long a, long b) {
+        return a < b;
+    }
+
+    private static boolean lessThan(double a, double b) {
+        return Double.compare(a, b) < 0;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static boolean lessThan(Object a, Object b) {
+        return a != null && b != null && ((Comparable<Object>)a).compareTo(b) < 0;
+    }
+}
@@ -0,0 +1,85 @@
+package com.slimgears.rxrepo.util;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import com.slimgears.rxrepo.expressions.PropertyExpression;
+import com.slimgears.rxrepo.query.provider.CollectionPropertyUpdateInfo;
+import com.slimgears.rxrepo.query.provider.HasPropertyUpdates;
+import com.slimgears.rxrepo.query.provider.PropertyUpdateInfo;
+import com.slimgears.util.autovalue.annotations.HasMetaClass;
+import com.slimgears.util.autovalue.annotations.MetaBuilder;
+import com.slimgears.util.autovalue.annotations.PropertyMeta;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import java.util.function.Function;
+
+@SuppressWarnings("WeakerAccess")
+public class PropertyUpdates {
+    public static <S> Function<S, S> toUpdater(HasPropertyUpdates<S> updates) {
+        List<Function<S, Function<S, S>>> updaters = new ArrayList<>();
+        updates.propertyUpdates().forEach(pu -> updaters.add(toUpdater(pu)));
+        updates.collectionPropertyUpdates().forEach(cpu -> updaters.add(toUpdater(cpu)));
+
+        return entity -> {
+            List<Function<S, S>> appliers = new ArrayList<>(updaters.size());
+            updaters.forEach(updater -> appliers.add(updater.apply(entity)));
+            S result = entity;
+            for (Function<S, S> applier : appliers) {
+                result = applier.apply(result);
+            }
+            return result;
+        };
+    }
+
+    private static <S, T, V> Function<S, Function<S, S>> toUpdater(PropertyUpdateInfo<S, T, V> propertyUpdate) {
+        Function<S, V> valueOf = Expressions.compile(propertyUpdate.updater());
+        return entity -> {
+            V value = valueOf.apply(entity);
+            return current -> withValue(current, propertyUpdate.property(), value);
+        };
+    }
+
+    private static <S, T, V, C extends Collection<V>> Function<S, Function<S, S>> toUpdater(CollectionPropertyUpdateInfo<S, T, V, C> collectionUpdate) {
+        Function<S, V> itemOf = Expressions.compile(collectionUpdate.item());
+        Function<S, C> collectionOf = Expressions.compile(collectionUpdate.property());
+        boolean isSet = Set.class.isAssignableFrom(collectionUpdate.property().property().type().getRawType());
+        return entity -> {
+            V item = itemOf.apply(entity);
+            return current -> {
+                C currentItems = collectionOf.apply(current);
+                List<V> items = currentItems != null ? new ArrayList<>(currentItems) : new ArrayList<>();
+                if (collectionUpdate.operation() == CollectionPropertyUpdateInfo.Operation.Add) {
+                    items.add(item);
+                } else {
+                    items.removeIf(i -> Objects.equals(i, item));
+                }
+                return withValue(current, collectionUpdate.property(), isSet ? ImmutableSet.copyOf(items) : ImmutableList.copyOf(items));
+            };
+        };
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <S> S withValue(S entity, PropertyExpression<S, ?, ?> property, Object value) {
+        if (!(property.target() instanceof PropertyExpression)) {
+            return (S)withValue(entity, property.property(), value);
+        }
+
+        PropertyExpression<S, ?, ?> parent = (PropertyExpression<S, ?, ?>)property.target();
+        Object parentValue = Expressions.compile(parent).apply(entity);
+        if (parentValue == null) {
+            throw new IllegalStateException("Cannot update " + PropertyExpressions.pathOf(property) + ": " + PropertyExpressions.pathOf(parent) + " is null");
+        }
+        return withValue(entity, parent, withValue(parentValue, property.property(), value));
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> T withValue(T object, PropertyMeta<?, ?> property, Object value) {
+        MetaBuilder<T> builder = ((HasMetaClass<T>)object).toBuilder();
+        ((PropertyMeta<T, Object>)property).setValue(builder, value);
+        return builder.build();
+    }
+}
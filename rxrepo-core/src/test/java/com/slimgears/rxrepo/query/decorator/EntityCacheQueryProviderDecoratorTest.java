@@ -0,0 +1,130 @@
+package com.slimgears.rxrepo.query.decorator;
+
+import com.slimgears.rxrepo.query.Notification;
+import com.slimgears.rxrepo.query.provider.QueryInfo;
+import com.slimgears.rxrepo.query.provider.QueryProvider;
+import com.slimgears.rxrepo.util.Expressions;
+import io.reactivex.Observable;
+import io.reactivex.Single;
+import io.reactivex.subjects.PublishSubject;
+import io.reactivex.subjects.Subject;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.mockito.ArgumentMatchers.any;
+
+public class EntityCacheQueryProviderDecoratorTest {
+    private final QueryProvider underlyingProvider = Mockito.mock(QueryProvider.class);
+    private final Subject<Notification<Product>> notifications = PublishSubject.create();
+    private final Map<Integer, Product> products = new ConcurrentHashMap<>();
+    private final AtomicInteger queries = new AtomicInteger();
+    private final EntityCacheQueryProviderDecorator entityCache = EntityCacheQueryProviderDecorator.create(100, Duration.ofMinutes(1));
+    private QueryProvider provider;
+
+    @Before
+    public void setUp() {
+        Mockito.doReturn(notifications).when(underlyingProvider).liveQuery(any());
+        Mockito.doAnswer(invocation -> query(invocation.getArgument(0))).when(underlyingProvider).query(any());
+        Mockito.doAnswer(invocation -> {
+            Product product = invocation.getArgument(1);
+            products.put(product.id(), product);
+            return Single.just(product);
+        }).when(underlyingProvider).insertOrUpdate(any(), any());
+        for (int id = 1; id <= 3; ++id) {
+            products.put(id, product(id, 100 + id));
+        }
+        provider = entityCache.apply(underlyingProvider);
+    }
+
+    @Test
+    public void testServesHotKeysAndStaysCoherent() {
+        Assert.assertEquals(products.get(2), find(2));
+        Assert.assertEquals(products.get(2), find(2));
+        Assert.assertEquals(1, queries.get());
+        Assert.assertEquals(1, entityCache.stats(Product.metaClass).hitCount());
+
+        Product updated = product(2, 1000);
+        provider.insertOrUpdate(Product.metaClass, updated).blockingGet();
+        Assert.assertEquals(updated, find(2));
+        Assert.assertEquals(2, queries.get());
+
+        Product modified = product(2, 2000);
+        products.put(2, modified);
+        notifications.onNext(Notification.ofModified(updated, modified));
+        Assert.assertEquals(modified, find(2));
+        Assert.assertEquals(2, queries.get());
+
+        products.remove(2);
+        notifications.onNext(Notification.ofDeleted(modified));
+        Assert.assertNull(find(2));
+        Assert.assertEquals(3, queries.get());
+    }
+
+    @Test
+    public void testCacheIsLookedUpOnSubscription() {
+        Assert.assertEquals(products.get(1), find(1));
+        Observable<Product> query = provider.query(byKey(1));
+
+        Product removed = products.remove(1);
+        notifications.onNext(Notification.ofDeleted(removed));
+        query.test().assertNoValues().assertComplete();
+        Assert.assertEquals(2, queries.get());
+    }
+
+    @Test
+    public void testReadOverlappingNotificationIsNotCached() {
+        Subject<Product> pending = PublishSubject.create();
+        Mockito.doReturn(pending).when(underlyingProvider).query(any());
+        provider.query(byKey(1)).test();
+
+        Product stale = products.get(1);
+        Product modified = product(1, 1000);
+        notifications.onNext(Notification.ofModified(stale, modified));
+        pending.onNext(stale);
+        pending.onComplete();
+
+        Mockito.doAnswer(invocation -> query(invocation.getArgument(0))).when(underlyingProvider).query(any());
+        products.put(1, modified);
+        Assert.assertEquals(modified, find(1));
+        Assert.assertEquals(0, entityCache.stats(Product.metaClass).hitCount());
+    }
+
+    @Test
+    public void testNothingIsCachedWithoutLiveQuery() {
+        Mockito.doReturn(Observable.error(new IllegalStateException("Live queries are not supported"))).when(underlyingProvider).liveQuery(any());
+
+        Assert.assertEquals(products.get(1), find(1));
+        Assert.assertEquals(products.get(1), find(1));
+        Assert.assertEquals(2, queries.get());
+        Assert.assertEquals(0, entityCache.stats().hitCount());
+    }
+
+    private Product find(int id) {
+        return provider.query(byKey(id)).singleElement().blockingGet();
+    }
+
+    private Observable<Product> query(QueryInfo<Integer, Product, Product> query) {
+        return Observable.defer(() -> {
+            queries.incrementAndGet();
+            return Observable.fromIterable(products.values()).filter(Expressions.compileRxPredicate(query.predicate()));
+        });
+    }
+
+    private static QueryInfo<Integer, Product, Product> byKey(int id) {
+        return QueryInfo.<Integer, Product, Product>builder()
+                .metaClass(Product.metaClass)
+                .predicate(Product.$.id.eq(id))
+                .build();
+    }
+
+    private static Product product(int id, int price) {
+        return Product.builder().id(id).name("Product " + id).price(price).build();
+    }
+}
@@ -0,0 +1,127 @@
+package com.slimgears.rxrepo.query.decorator;
+
+import com.slimgears.rxrepo.query.Notification;
+import com.slimgears.rxrepo.query.Repository;
+import com.slimgears.rxrepo.query.provider.QueryInfo;
+import com.slimgears.rxrepo.query.provider.QueryProvider;
+import io.reactivex.Completable;
+import io.reactivex.Maybe;
+import io.reactivex.Observable;
+import io.reactivex.Single;
+import io.reactivex.observers.TestObserver;
+import io.reactivex.subjects.PublishSubject;
+import io.reactivex.subjects.Subject;
+import org.junit.Assert;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+import java.time.Duration;
+import java.util.ConcurrentModificationException;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+
+public class InstrumentingQueryProviderDecoratorTest {
+    private final QueryProvider underlyingProvider = Mockito.mock(QueryProvider.class);
+    private final InMemoryMetricsExporter exporter = InMemoryMetricsExporter.create();
+    private final InstrumentingQueryProviderDecorator instrumentation = InstrumentingQueryProviderDecorator.create(Duration.ZERO, exporter);
+    private final QueryProvider provider = instrumentation.apply(underlyingProvider);
+
+    @Test
+    public void testRecordsOperationMetrics() {
+        List<Product> products = products(10);
+        Mockito.doReturn(Observable.fromIterable(products)).when(underlyingProvider).query(any());
+        Mockito.doReturn(Completable.complete()).when(underlyingProvider).insert(any(), any());
+
+        provider.insert(Product.metaClass, products).blockingAwait();
+        Assert.assertEquals(10, (long)provider.query(allProducts()).count().blockingGet());
+        instrumentation.export();
+
+        OperationMetrics queryMetrics = metrics(OperationMetrics.Operation.Query);
+        Assert.assertEquals(1, queryMetrics.count());
+        Assert.assertEquals(10, queryMetrics.rowCount());
+        Assert.assertEquals(0, queryMetrics.errorCount());
+        Assert.assertEquals(1, metrics(OperationMetrics.Operation.Insert).count());
+
+        instrumentation.export();
+        Assert.assertEquals(0, metrics(OperationMetrics.Operation.Query).count());
+    }
+
+    @Test
+    public void testRecordsCancelledOperations() {
+        Subject<Product> results = PublishSubject.create();
+        Mockito.doReturn(results).when(underlyingProvider).query(any());
+
+        TestObserver<Product> observer = provider.query(allProducts()).test();
+        results.onNext(products(1).get(0));
+        observer.dispose();
+        instrumentation.export();
+
+        OperationMetrics queryMetrics = metrics(OperationMetrics.Operation.Query);
+        Assert.assertEquals(1, queryMetrics.count());
+        Assert.assertEquals(1, queryMetrics.cancelledCount());
+        Assert.assertEquals(1, queryMetrics.rowCount());
+    }
+
+    @Test
+    public void testNotificationLatencyIsRecordedForEverySubscriber() throws InterruptedException {
+        Subject<Notification<Product>> notifications = PublishSubject.create();
+        Mockito.doReturn(notifications).when(underlyingProvider).liveQuery(any());
+        List<Product> products = products(2);
+        Mockito.doAnswer(invocation -> Single.just(invocation.getArgument(1))).when(underlyingProvider).insertOrUpdate(any(), any());
+
+        TestObserver<Notification<Product>> first = provider.liveQuery(allProducts()).test();
+        TestObserver<Notification<Product>> second = provider.liveQuery(allProducts()).test();
+
+        // A write that no notification matches must not be charged to later notifications
+        provider.insertOrUpdate(Product.metaClass, products.get(0)).blockingGet();
+        Thread.sleep(500);
+        provider.insertOrUpdate(Product.metaClass, products.get(1)).blockingGet();
+        notifications.onNext(Notification.ofCreated(products.get(1)));
+        first.assertValueCount(1);
+        second.assertValueCount(1);
+        first.dispose();
+        second.dispose();
+        instrumentation.export();
+
+        OperationMetrics notificationMetrics = metrics(OperationMetrics.Operation.Notification);
+        Assert.assertEquals(2, notificationMetrics.count());
+        Assert.assertTrue(notificationMetrics.medianLatency().compareTo(Duration.ZERO) > 0);
+        Assert.assertTrue(notificationMetrics.maxLatency().compareTo(Duration.ofMillis(500)) < 0);
+    }
+
+    @Test
+    public void testRecordsEntitySetRetries() {
+        Product product = products(1).get(0);
+        Mockito.when(underlyingProvider.insertOrUpdate(eq(Product.metaClass), eq(product.id()), any()))
+                .thenReturn(Maybe.error(new ConcurrentModificationException("Version changed")), Maybe.just(product));
+        Repository repository = Repository.fromProvider(underlyingProvider, instrumentation);
+
+        Assert.assertEquals(product, repository.entities(Product.metaClass).update(product.id(), maybe -> maybe).blockingGet());
+        instrumentation.export();
+
+        OperationMetrics retryMetrics = metrics(OperationMetrics.Operation.Retry);
+        Assert.assertEquals(1, retryMetrics.count());
+        Assert.assertEquals(1, retryMetrics.concurrencyConflictCount());
+        Assert.assertEquals(1, metrics(OperationMetrics.Operation.InsertOrUpdate).concurrencyConflictCount());
+    }
+
+    private OperationMetrics metrics(OperationMetrics.Operation operation) {
+        return exporter.metrics(Product.metaClass.simpleName(), operation).orElseThrow(AssertionError::new);
+    }
+
+    private static QueryInfo<Integer, Product, Product> allProducts() {
+        return QueryInfo.<Integer, Product, Product>builder()
+                .metaClass(Product.metaClass)
+                .build();
+    }
+
+    private static List<Product> products(int count) {
+        return IntStream.range(0, count)
+                .mapToObj(i -> Product.builder().id(i).name("Product " + i).price(100 + i).build())
+                .collect(Collectors.toList());
+    }
+}
@@ -0,0 +1,51 @@
+package com.slimgears.rxrepo.query.decorator;
+
+import com.slimgears.rxrepo.query.Notification;
+import com.slimgears.rxrepo.query.provider.QueryInfo;
+import com.slimgears.rxrepo.query.provider.QueryProvider;
+import io.reactivex.observers.TestObserver;
+import io.reactivex.subjects.PublishSubject;
+import org.junit.Assert;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+import static org.mockito.ArgumentMatchers.any;
+
+public class LimitConcurrentOperationsQueryProviderDecoratorTest {
+    @Test
+    public void testQueuesWithoutBlocking() {
+        PublishSubject<Notification<Product>> firstLiveQuery = PublishSubject.create();
+        PublishSubject<Notification<Product>> secondLiveQuery = PublishSubject.create();
+        QueryProvider underlyingProvider = Mockito.mock(QueryProvider.class);
+        Mockito.doReturn(firstLiveQuery, secondLiveQuery).when(underlyingProvider).liveQuery(any());
+
+        LimitConcurrentOperationsQueryProviderDecorator limiter = LimitConcurrentOperationsQueryProviderDecorator.create(1, 1, 1);
+        QueryProvider provider = limiter.apply(underlyingProvider);
+        QueryInfo<Integer, Product, Product> query = QueryInfo.<Integer, Product, Product>builder()
+                .metaClass(Product.metaClass)
+                .build();
+
+        TestObserver<Notification<Product>> first = provider.liveQuery(query).test();
+        TestObserver<Notification<Product>> second = provider.liveQuery(query).test();
+
+        LimitConcurrentOperationsQueryProviderDecorator.Stats stats = limiter.stats(LimitConcurrentOperationsQueryProviderDecorator.OperationType.Live);
+        Assert.assertEquals(1, stats.activeOperations());
+        Assert.assertEquals(1, stats.queuedOperations());
+        Assert.assertEquals(1, limiter.queuedOperations(LimitConcurrentOperationsQueryProviderDecorator.OperationType.Live, Product.metaClass));
+        Assert.assertTrue(firstLiveQuery.hasObservers());
+        Assert.assertFalse(secondLiveQuery.hasObservers());
+
+        firstLiveQuery.onNext(Notification.ofCreated(Product.builder().id(1).name("Product 1").price(100).build()));
+        first.assertValueCount(1);
+        second.assertNoValues();
+
+        first.dispose();
+        stats = limiter.stats(LimitConcurrentOperationsQueryProviderDecorator.OperationType.Live);
+        Assert.assertEquals(1, stats.activeOperations());
+        Assert.assertEquals(0, stats.queuedOperations());
+        Assert.assertEquals(2, stats.admittedOperations());
+        Assert.assertTrue(secondLiveQuery.hasObservers());
+        second.dispose();
+        Assert.assertFalse(secondLiveQuery.hasObservers());
+    }
+}
@@ -0,0 +1,178 @@
+package com.slimgears.rxrepo.query.decorator;
+
+import com.google.common.collect.ImmutableList;
+import com.slimgears.rxrepo.expressions.ObjectExpression;
+import com.slimgears.rxrepo.query.Notification;
+import com.slimgears.rxrepo.query.ReplayUnavailableException;
+import io.reactivex.Observable;
+import io.reactivex.observers.TestObserver;
+import io.reactivex.subjects.PublishSubject;
+import io.reactivex.subjects.Subject;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class LiveQueryRouterTest {
+    private final Subject<Notification<Product>> upstream = PublishSubject.create();
+    private final LiveQueryRouter<Product> router = LiveQueryRouter.create(upstream, 16, 0);
+
+    @Test
+    public void testRoutesByEquality() {
+        TestObserver<Notification<Product>> first = route(Product.$.name.eq("first"));
+        TestObserver<Notification<Product>> second = route(Product.$.name.eq("second"));
+
+        Product product = product(1, "first", 100);
+        upstream.onNext(Notification.ofCreated(product));
+        first.assertValueCount(1);
+        second.assertNoValues();
+
+        upstream.onNext(Notification.ofModified(product, product.toBuilder().name("second").build()));
+        first.assertValueCount(2);
+        second.assertValueCount(1);
+
+        upstream.onNext(Notification.ofCreated(product(2, "third", 100)));
+        first.assertValueCount(2);
+        second.assertValueCount(1);
+    }
+
+    @Test
+    public void testRoutesByRange() {
+        TestObserver<Notification<Product>> expensive = route(Product.$.price.greaterThan(200));
+        TestObserver<Notification<Product>> cheap = route(Product.$.price.lessThan(50));
+        TestObserver<Notification<Product>> notCheap = route(Product.$.price.lessThan(50).not());
+
+        upstream.onNext(Notification.ofCreated(product(1, "first", 300)));
+        expensive.assertValueCount(1);
+        cheap.assertNoValues();
+        notCheap.assertValueCount(1);
+
+        upstream.onNext(Notification.ofCreated(product(2, "second", 10)));
+        expensive.assertValueCount(1);
+        cheap.assertValueCount(1);
+        notCheap.assertValueCount(1);
+
+        upstream.onNext(Notification.ofCreated(product(3, "third", 100)));
+        expensive.assertValueCount(1);
+        cheap.assertValueCount(1);
+        notCheap.assertValueCount(2);
+    }
+
+    @Test
+    public void testRoutesByValueIn() {
+        TestObserver<Notification<Product>> observer = route(Product.$.name.in(ImmutableList.of("first", "third")));
+
+        upstream.onNext(Notification.ofCreated(product(1, "first", 100)));
+        upstream.onNext(Notification.ofCreated(product(2, "second", 100)));
+        upstream.onNext(Notification.ofCreated(product(3, "third", 100)));
+        observer.assertValueCount(2);
+        Assert.assertEquals("third", observer.values().get(1).newValue().name());
+    }
+
+    @Test
+    public void testRoutesCompoundPredicates() {
+        TestObserver<Notification<Product>> between = route(Product.$.price.greaterThan(100).and(Product.$.price.lessThan(200)));
+        TestObserver<Notification<Product>> notOutside = route(Product.$.price.lessThan(100).or(Product.$.price.greaterThan(200)).not());
+        TestObserver<Notification<Product>> byNameAndPrice = route(Product.$.name.eq("first").and(Product.$.price.greaterThan(100)));
+
+        upstream.onNext(Notification.ofCreated(product(1, "first", 150)));
+        between.assertValueCount(1);
+        notOutside.assertValueCount(1);
+        byNameAndPrice.assertValueCount(1);
+
+        upstream.onNext(Notification.ofCreated(product(2, "second", 250)));
+        between.assertValueCount(1);
+        notOutside.assertValueCount(1);
+        byNameAndPrice.assertValueCount(1);
+    }
+
+    @Test
+    public void testUnroutablePredicatesReceiveAllNotifications() {
+        TestObserver<Notification<Product>> all = route(null);
+        TestObserver<Notification<Product>> contains = route(Product.$.name.contains("irs"));
+        TestObserver<Notification<Product>> either = route(Product.$.name.eq("first").or(Product.$.price.greaterThan(200)));
+        TestObserver<Notification<Product>> byName = route(Product.$.name.eq("first"));
+
+        upstream.onNext(Notification.ofCreated(product(1, "second", 100)));
+        all.assertValueCount(1);
+        contains.assertValueCount(1);
+        either.assertValueCount(1);
+        byName.assertNoValues();
+    }
+
+    @Test
+    public void testSlowSubscriberDoesNotBlockRouting() throws Exception {
+        CountDownLatch entered = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        router.route(null).subscribe(notification -> {
+            entered.countDown();
+            release.await(10, TimeUnit.SECONDS);
+        });
+
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            executor.submit(() -> upstream.onNext(Notification.ofCreated(product(1, "first", 100))));
+            Assert.assertTrue(entered.await(10, TimeUnit.SECONDS));
+
+            Future<TestObserver<Notification<Product>>> late = executor.submit(() -> route(Product.$.name.eq("second")));
+            late.get(1, TimeUnit.SECONDS).assertNoErrors().assertNoValues();
+        } finally {
+            release.countDown();
+            executor.shutdown();
+            Assert.assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+        }
+    }
+
+    @Test
+    public void testUpstreamFailureIsRetriedWithoutLosingSubscribers() {
+        Subject<Notification<Product>> failing = PublishSubject.create();
+        Subject<Notification<Product>> reconnected = PublishSubject.create();
+        AtomicInteger subscriptions = new AtomicInteger();
+        LiveQueryRouter<Product> router = LiveQueryRouter.create(
+                Observable.defer(() -> subscriptions.getAndIncrement() == 0 ? failing : reconnected), 16, 0, 1, 0);
+
+        TestObserver<Notification<Product>> observer = router.route(Product.$.name.eq("first")).test();
+        failing.onNext(Notification.ofCreated(product(1, "first", 100)));
+        long beforeFailure = observer.values().get(0).sequenceNum();
+
+        failing.onError(new IllegalStateException("Backend disconnected"));
+        Assert.assertEquals(2, subscriptions.get());
+        observer.assertNoErrors().assertValueCount(2);
+        Notification<Product> reconnect = observer.values().get(1);
+        Assert.assertNull(reconnect.oldValue());
+        Assert.assertNull(reconnect.newValue());
+
+        reconnected.onNext(Notification.ofCreated(product(2, "first", 200)));
+        observer.assertValueCount(3);
+        router.route(Product.$.name.eq("first"), reconnect.sequenceNum()).test()
+                .assertNoErrors()
+                .assertValueCount(1)
+                .assertValue(n -> n.newValue().id() == 2);
+        router.route(Product.$.name.eq("first"), beforeFailure).test()
+                .assertError(ReplayUnavailableException.class);
+    }
+
+    @Test
+    public void testUpstreamFailureIsPropagatedWhenRetriesAreExhausted() {
+        AtomicInteger subscriptions = new AtomicInteger();
+        LiveQueryRouter<Product> router = LiveQueryRouter.create(
+                Observable.<Notification<Product>>error(new IllegalStateException("Backend unavailable"))
+                        .doOnSubscribe(d -> subscriptions.incrementAndGet()), 16, 0, 2, 0);
+
+        router.route(null).test().assertError(IllegalStateException.class);
+        Assert.assertEquals(3, subscriptions.get());
+    }
+
+    private TestObserver<Notification<Product>> route(ObjectExpression<Product, Boolean> predicate) {
+        return router.route(predicate).test();
+    }
+
+    private static Product product(int id, String name, int price) {
+        return Product.builder().id(id).name(name).price(price).build();
+    }
+}
@@ -0,0 +1,15 @@
+package com.slimgears.rxrepo.query.decorator;
+
+import com.slimgears.rxrepo.annotations.UseExpressions;
+import com.slimgears.util.autovalue.annotations.AutoValuePrototype;
+import com.slimgears.util.autovalue.annotations.Key;
+
+import javax.annotation.Nullable;
+
+@AutoValuePrototype
+@UseExpressions
+public interface ProductPrototype {
+    @Key int id();
+    @Nullable String name();
+    int price();
+}
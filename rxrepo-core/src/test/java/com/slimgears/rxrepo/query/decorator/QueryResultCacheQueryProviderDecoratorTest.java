@@ -0,0 +1,124 @@
+package com.slimgears.rxrepo.query.decorator;
+
+import com.google.common.collect.ImmutableList;
+import com.slimgears.rxrepo.query.Notification;
+import com.slimgears.rxrepo.query.provider.QueryInfo;
+import com.slimgears.rxrepo.query.provider.QueryProvider;
+import com.slimgears.rxrepo.util.Expressions;
+import io.reactivex.Observable;
+import io.reactivex.Single;
+import io.reactivex.subjects.PublishSubject;
+import io.reactivex.subjects.Subject;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+import static org.mockito.ArgumentMatchers.any;
+
+public class QueryResultCacheQueryProviderDecoratorTest {
+    private final QueryProvider underlyingProvider = Mockito.mock(QueryProvider.class);
+    private final Subject<Notification<Product>> notifications = PublishSubject.create();
+    private final Map<Integer, Product> products = new ConcurrentSkipListMap<>();
+    private final AtomicInteger queries = new AtomicInteger();
+    private final QueryResultCacheQueryProviderDecorator resultCache = QueryResultCacheQueryProviderDecorator.create(100, Duration.ofMinutes(1), 100);
+    private QueryProvider provider;
+
+    @Before
+    public void setUp() {
+        Mockito.doReturn(notifications).when(underlyingProvider).liveQuery(any());
+        Mockito.doAnswer(invocation -> query(invocation.getArgument(0))).when(underlyingProvider).query(any());
+        Mockito.doAnswer(invocation -> Single.just(invocation.getArgument(1))).when(underlyingProvider).insertOrUpdate(any(), any());
+        for (int id = 0; id < 10; ++id) {
+            products.put(id, product(id, 100 + id));
+        }
+        provider = resultCache.apply(underlyingProvider);
+    }
+
+    @Test
+    public void testIsInvalidatedByMatchingNotifications() {
+        Assert.assertEquals(ImmutableList.of(0, 1, 2), cheapProductIds());
+        Assert.assertEquals(ImmutableList.of(0, 1, 2), cheapProductIds());
+        Assert.assertEquals(1, resultCache.stats(Product.metaClass).hitCount());
+
+        modify(5, 1000);
+        Assert.assertEquals(ImmutableList.of(0, 1, 2), cheapProductIds());
+        Assert.assertEquals(2, resultCache.stats(Product.metaClass).hitCount());
+
+        modify(0, 1000);
+        Assert.assertEquals(ImmutableList.of(1, 2), cheapProductIds());
+        Assert.assertEquals(2, resultCache.stats(Product.metaClass).hitCount());
+        Assert.assertEquals(2, queries.get());
+    }
+
+    @Test
+    public void testWritesThroughDecoratorInvalidate() {
+        Assert.assertEquals(ImmutableList.of(0, 1, 2), cheapProductIds());
+
+        Product updated = product(1, 1000);
+        products.put(1, updated);
+        provider.insertOrUpdate(Product.metaClass, updated).blockingGet();
+        Assert.assertEquals(ImmutableList.of(0, 2), cheapProductIds());
+        Assert.assertEquals(2, queries.get());
+    }
+
+    @Test
+    public void testCacheIsLookedUpOnSubscription() {
+        Assert.assertEquals(ImmutableList.of(0, 1, 2), cheapProductIds());
+        Observable<Product> query = provider.query(cheapProducts());
+
+        modify(0, 1000);
+        Assert.assertEquals(ImmutableList.of(1, 2), query.map(Product::id).toList().blockingGet());
+        Assert.assertEquals(2, queries.get());
+    }
+
+    @Test
+    public void testNothingIsCachedWithoutLiveQuery() {
+        Mockito.doReturn(Observable.error(new IllegalStateException("Live queries are not supported"))).when(underlyingProvider).liveQuery(any());
+
+        Assert.assertEquals(ImmutableList.of(0, 1, 2), cheapProductIds());
+        Assert.assertEquals(ImmutableList.of(0, 1, 2), cheapProductIds());
+        Assert.assertEquals(2, queries.get());
+        Assert.assertEquals(0, resultCache.stats().hitCount());
+    }
+
+    private List<Integer> cheapProductIds() {
+        return provider.query(cheapProducts())
+                .map(Product::id)
+                .toList()
+                .blockingGet();
+    }
+
+    private void modify(int id, int price) {
+        Product modified = product(id, price);
+        Product previous = products.put(id, modified);
+        notifications.onNext(Notification.ofModified(previous, modified));
+    }
+
+    private Observable<Product> query(QueryInfo<Integer, Product, Product> query) {
+        return Observable.defer(() -> {
+            queries.incrementAndGet();
+            return Observable.fromIterable(products.values().stream()
+                    .filter(Expressions.compilePredicate(query.predicate()))
+                    .collect(Collectors.toList()));
+        });
+    }
+
+    private static QueryInfo<Integer, Product, Product> cheapProducts() {
+        return QueryInfo.<Integer, Product, Product>builder()
+                .metaClass(Product.metaClass)
+                .predicate(Product.$.price.lessThan(103))
+                .build();
+    }
+
+    private static Product product(int id, int price) {
+        return Product.builder().id(id).name("Product " + id).price(price).build();
+    }
+}
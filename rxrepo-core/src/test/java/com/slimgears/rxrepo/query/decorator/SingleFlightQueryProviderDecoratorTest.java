@@ -0,0 +1,60 @@
+package com.slimgears.rxrepo.query.decorator;
+
+import com.slimgears.rxrepo.query.provider.QueryInfo;
+import com.slimgears.rxrepo.query.provider.QueryProvider;
+import io.reactivex.Observable;
+import io.reactivex.Single;
+import io.reactivex.observers.TestObserver;
+import io.reactivex.subjects.PublishSubject;
+import org.junit.Assert;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+import static org.mockito.ArgumentMatchers.any;
+
+public class SingleFlightQueryProviderDecoratorTest {
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testCoalescesQueriesUntilCallerWrites() {
+        PublishSubject<Product> first = PublishSubject.create();
+        PublishSubject<Product> second = PublishSubject.create();
+        PublishSubject<Product> beforeWrite = PublishSubject.create();
+        PublishSubject<Product> afterWrite = PublishSubject.create();
+        Product product = Product.builder().id(1).name("Product 1").price(100).build();
+        QueryProvider underlyingProvider = Mockito.mock(QueryProvider.class);
+        Mockito.when(underlyingProvider.query(any())).thenReturn((Observable)first, (Observable)second, (Observable)beforeWrite, (Observable)afterWrite);
+        Mockito.when(underlyingProvider.insertOrUpdate(Product.metaClass, product)).thenReturn(Single.just(product));
+
+        QueryProvider provider = SingleFlightQueryProviderDecorator.create().apply(underlyingProvider);
+        QueryInfo<Integer, Product, Product> query = QueryInfo.<Integer, Product, Product>builder()
+                .metaClass(Product.metaClass)
+                .build();
+
+        TestObserver<Product> firstCaller = provider.query(query).test();
+        TestObserver<Product> secondCaller = provider.query(query).test();
+        Mockito.verify(underlyingProvider, Mockito.times(1)).query(any());
+        first.onNext(product);
+        first.onComplete();
+        firstCaller.assertValue(product).assertComplete();
+        secondCaller.assertValue(product).assertComplete();
+
+        TestObserver<Product> cancelledCaller = provider.query(query).test();
+        TestObserver<Product> remainingCaller = provider.query(query).test();
+        Mockito.verify(underlyingProvider, Mockito.times(2)).query(any());
+        cancelledCaller.dispose();
+        Assert.assertTrue(second.hasObservers());
+        remainingCaller.dispose();
+        Assert.assertFalse(second.hasObservers());
+
+        TestObserver<Product> staleCaller = provider.query(query).test();
+        provider.insertOrUpdate(Product.metaClass, product).test().assertValue(product);
+        TestObserver<Product> writingCaller = provider.query(query).test();
+        Mockito.verify(underlyingProvider, Mockito.times(4)).query(any());
+        Assert.assertTrue(beforeWrite.hasObservers());
+        afterWrite.onNext(product);
+        afterWrite.onComplete();
+        writingCaller.assertValue(product).assertComplete();
+        staleCaller.assertNoValues().assertNotComplete();
+        staleCaller.dispose();
+    }
+}
@@ -0,0 +1,63 @@
+package com.slimgears.rxrepo.jdbc;
+
+import com.google.common.collect.ImmutableMap;
+import com.google.common.primitives.Primitives;
+import com.google.common.reflect.TypeToken;
+
+import java.util.Date;
+import java.util.Map;
+import java.util.Optional;
+
+public enum JdbcDialect {
+    H2(ImmutableMap.<Class<?>, String>builder()
+            .put(Integer.class, "INTEGER")
+            .put(Long.class, "BIGINT")
+            .put(Double.class, "DOUBLE")
+            .put(Float.class, "REAL")
+            .put(Short.class, "SMALLINT")
+            .put(Byte.class, "TINYINT")
+            .put(Boolean.class, "BOOLEAN")
+            .put(String.class, "VARCHAR")
+            .put(Date.class, "TIMESTAMP")
+            .put(byte[].class, "BLOB")
+            .build(),
+            "VARCHAR",
+            "\""),
+    Oracle(ImmutableMap.<Class<?>, String>builder()
+            .put(Integer.class, "NUMBER(10)")
+            .put(Long.class, "NUMBER(19)")
+            .put(Double.class, "BINARY_DOUBLE")
+            .put(Float.class, "BINARY_FLOAT")
+            .put(Short.class, "NUMBER(5)")
+            .put(Byte.class, "NUMBER(3)")
+            .put(Boolean.class, "NUMBER(1)")
+            .put(String.class, "VARCHAR2(4000)")
+            .put(Date.class, "TIMESTAMP")
+            .put(byte[].class, "BLOB")
+            .build(),
+            "VARCHAR2(4000)",
+            "\"");
+
+    private final Map<Class<?>, String> columnTypes;
+    private final String defaultColumnType;
+    private final String quote;
+
+    JdbcDialect(Map<Class<?>, String> columnTypes, String defaultColumnType, String quote) {
+        this.columnTypes = columnTypes;
+        this.defaultColumnType = defaultColumnType;
+        this.quote = quote;
+    }
+
+    public String columnType(TypeToken<?> type) {
+        Class<?> cls = Primitives.wrap(type.getRawType());
+        return Optional.ofNullable(columnTypes.get(cls)).orElse(defaultColumnType);
+    }
+
+    public String quote(String identifier) {
+        return quote + identifier + quote;
+    }
+
+    public static JdbcDialect fromProductName(String productName) {
+        return productName.toLowerCase().contains("oracle") ? Oracle : H2;
+    }
+}
@@ -7,6 +7,7 @@ import java.sql.Date;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.sql.Timestamp;
 import java.sql.Types;
 import java.util.Arrays;
 import java.util.HashMap;
@@ -23,6 +24,7 @@ public class JdbcHelper {
     private final static Map<Class, ParamSetter<?>> paramSettersByClass = new HashMap<>();
     private final static Map<Integer, ColumnGetter<?>> columnGettersByType = new HashMap<>();
     private final static ParamSetter<?> defaultSetter = JdbcHelper::setSerializedParam;
+    private final static ColumnGetter<?> defaultGetter = ResultSet::getObject;
 
     interface ParamSetter<T> {
         void setParam(PreparedStatement preparedStatement, int index, T val) throws SQLException;
@@ -45,6 +47,11 @@ public class JdbcHelper {
         registerType(Types.CHAR, PreparedStatement::setString, ResultSet::getString);
         registerType(Types.BLOB, PreparedStatement::setBytes, ResultSet::getBytes, byte[].class);
         registerType(Types.DATE, PreparedStatement::setDate, ResultSet::getDate, Date.class);
+        registerType(Types.TIMESTAMP, PreparedStatement::setTimestamp, ResultSet::getTimestamp, Timestamp.class);
+        registerType(Types.BOOLEAN, PreparedStatement::setBoolean, ResultSet::getBoolean, Boolean.class, boolean.class);
+        registerType(Types.BIT, PreparedStatement::setBoolean, ResultSet::getBoolean);
+        registerType(Types.CLOB, PreparedStatement::setString, ResultSet::getString);
+        registerType(Types.NCLOB, PreparedStatement::setString, ResultSet::getString);
     }
 
     @SafeVarargs
@@ -53,14 +60,26 @@ public class JdbcHelper {
         Arrays.asList(classes).forEach(cls -> paramSettersByClass.put(cls, setter));
     }
 
-    private static void setSerializedParam(PreparedStatement preparedStatement, int index, Object val) {
-        throw new RuntimeException("Type is not supported: " + val.getClass());
+    private static void setSerializedParam(PreparedStatement preparedStatement, int index, Object val) throws SQLException {
+        if (val instanceof Enum) {
+            preparedStatement.setString(index, ((Enum<?>)val).name());
+        } else if (val instanceof java.util.Date) {
+            preparedStatement.setTimestamp(index, new Timestamp(((java.util.Date)val).getTime()));
+        } else if (val instanceof Number || val instanceof CharSequence) {
+            preparedStatement.setObject(index, val);
+        } else {
+            preparedStatement.setString(index, val.toString());
+        }
     }
 
     public static PreparedStatement prepareStatement(Connection connection, SqlStatement statement) {
         return prepareStatement(() -> connection.prepareStatement(statement.statement()), statement.args());
     }
 
+    public static void setParams(PreparedStatement preparedStatement, SqlStatement statement) throws SQLException {
+        setParams(preparedStatement, statement.args());
+    }
+
     public static PreparedStatement prepareStatement(Callable<PreparedStatement> supplier, Object[] params) {
         try {
             PreparedStatement preparedStatement = supplier.call();
@@ -74,7 +93,11 @@ public class JdbcHelper {
     @SuppressWarnings("unchecked")
     private static void setParams(PreparedStatement preparedStatement, Object[] params) throws SQLException {
         for (int i = 0; i < params.length; ++i) {
-            Object param = Optional.ofNullable(params[i]).orElse("NULL");
+            Object param = params[i];
+            if (param == null) {
+                preparedStatement.setNull(i + 1, Types.NULL);
+                continue;
+            }
             Class paramClass = param.getClass();
             ParamSetter<Object> setter = Optional
                     .ofNullable(paramSettersByClass.get(paramClass))
@@ -117,8 +140,9 @@ public class JdbcHelper {
 
     @SuppressWarnings("unchecked")
     public static <T> T getColumnValue(ResultSet resultSet, int columnType, int columnIndex) throws SQLException {
-        return (T)Optional.ofNullable(columnGettersByType.get(columnType))
-                .orElseThrow(() -> new RuntimeException("Not supported type: " + columnType))
+        Object value = Optional.<ColumnGetter<?>>ofNullable(columnGettersByType.get(columnType))
+                .orElse(defaultGetter)
                 .getValue(resultSet, columnIndex);
+        return resultSet.wasNull() ? null : (T)value;
     }
 }
@@ -0,0 +1,50 @@
+package com.slimgears.rxrepo.jdbc;
+
+import com.slimgears.rxrepo.util.PropertyResolver;
+
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+class JdbcRowPropertyResolver implements PropertyResolver {
+    private final Map<String, Object> values;
+
+    private JdbcRowPropertyResolver(Map<String, Object> values) {
+        this.values = values;
+    }
+
+    static PropertyResolver fromCurrentRow(ResultSet resultSet) throws SQLException {
+        ResultSetMetaData metaData = resultSet.getMetaData();
+        Map<String, Object> values = new LinkedHashMap<>();
+        for (int i = 1; i <= metaData.getColumnCount(); ++i) {
+            Object value = JdbcHelper.getColumnValue(resultSet, metaData.getColumnType(i), i);
+            if (value != null) {
+                values.put(metaData.getColumnLabel(i), value);
+            }
+        }
+        return new JdbcRowPropertyResolver(Collections.unmodifiableMap(values));
+    }
+
+    @Override
+    public Iterable<String> propertyNames() {
+        return values.keySet();
+    }
+
+    @Override
+    public Object getProperty(String name, Class type) {
+        return values.get(name);
+    }
+
+    @Override
+    public Object getKey(Class<?> keyClass) {
+        return null;
+    }
+
+    @Override
+    public String toString() {
+        return values.toString();
+    }
+}
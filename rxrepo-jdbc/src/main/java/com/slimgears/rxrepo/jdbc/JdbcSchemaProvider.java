@@ -0,0 +1,153 @@
+package com.slimgears.rxrepo.jdbc;
+
+import com.slimgears.rxrepo.annotations.Indexable;
+import com.slimgears.rxrepo.sql.SchemaProvider;
+import com.slimgears.util.autovalue.annotations.Key;
+import com.slimgears.util.autovalue.annotations.MetaClass;
+import com.slimgears.util.autovalue.annotations.MetaClassWithKey;
+import com.slimgears.util.autovalue.annotations.PropertyMeta;
+import com.slimgears.util.stream.Lazy;
+import com.slimgears.util.stream.Streams;
+import io.reactivex.Completable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+
+public class JdbcSchemaProvider implements SchemaProvider {
+    private final static Logger log = LoggerFactory.getLogger(JdbcSchemaProvider.class);
+    private final DataSource dataSource;
+    private final JdbcDialect dialect;
+    private final Lazy<String> databaseName;
+    private final Map<String, Completable> tables = new ConcurrentHashMap<>();
+
+    private JdbcSchemaProvider(DataSource dataSource, JdbcDialect dialect) {
+        this.dataSource = dataSource;
+        this.dialect = dialect;
+        this.databaseName = Lazy.of(this::readDatabaseName);
+    }
+
+    public static JdbcSchemaProvider create(DataSource dataSource, JdbcDialect dialect) {
+        return new JdbcSchemaProvider(dataSource, dialect);
+    }
+
+    public static JdbcSchemaProvider create(DataSource dataSource) {
+        try (Connection connection = dataSource.getConnection()) {
+            return create(dataSource, JdbcDialect.fromProductName(connection.getMetaData().getDatabaseProductName()));
+        } catch (SQLException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    public JdbcDialect dialect() {
+        return dialect;
+    }
+
+    @Override
+    public String databaseName() {
+        return databaseName.get();
+    }
+
+    @Override
+    public <T> Completable createOrUpdate(MetaClass<T> metaClass) {
+        return tables.computeIfAbsent(toTableName(metaClass), tableName -> Completable
+                .fromAction(() -> {
+                    try (Connection connection = dataSource.getConnection()) {
+                        createOrUpdate(connection, metaClass);
+                    }
+                })
+                .doOnError(e -> tables.remove(tableName))
+                .cache());
+    }
+
+    @Override
+    public <T> String tableName(MetaClass<T> metaClass) {
+        return dialect.quote(toTableName(metaClass));
+    }
+
+    private String readDatabaseName() {
+        try (Connection connection = dataSource.getConnection()) {
+            return connection.getCatalog();
+        } catch (SQLException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private synchronized <T> void createOrUpdate(Connection connection, MetaClass<T> metaClass) throws SQLException {
+        String tableName = toTableName(metaClass);
+        Set<String> existingColumns = existingColumns(connection, tableName);
+        try (Statement statement = connection.createStatement()) {
+            if (existingColumns.isEmpty()) {
+                log.debug("Creating table: {}", tableName);
+                statement.execute("create table " + dialect.quote(tableName) + " (" + Streams.fromIterable(metaClass.properties())
+                        .map(this::toColumnDefinition)
+                        .collect(Collectors.joining(", ")) + primaryKeyClause(metaClass) + ")");
+                Streams.fromIterable(metaClass.properties())
+                        .filter(p -> p.hasAnnotation(Indexable.class) && !p.hasAnnotation(Key.class))
+                        .forEach(p -> createIndex(statement, tableName, p));
+                return;
+            }
+
+            Streams.fromIterable(metaClass.properties())
+                    .filter(p -> !existingColumns.contains(p.name()))
+                    .forEach(p -> addColumn(statement, tableName, p));
+        }
+    }
+
+    private String toColumnDefinition(PropertyMeta<?, ?> propertyMeta) {
+        return dialect.quote(propertyMeta.name()) + " " + dialect.columnType(propertyMeta.type());
+    }
+
+    @SuppressWarnings("unchecked")
+    private <T> String primaryKeyClause(MetaClass<T> metaClass) {
+        return (metaClass instanceof MetaClassWithKey)
+                ? ", primary key (" + dialect.quote(((MetaClassWithKey<?, T>)metaClass).keyProperty().name()) + ")"
+                : "";
+    }
+
+    private void addColumn(Statement statement, String tableName, PropertyMeta<?, ?> propertyMeta) {
+        log.debug("Adding column {}.{}", tableName, propertyMeta.name());
+        execute(statement, "alter table " + dialect.quote(tableName) + " add " + toColumnDefinition(propertyMeta));
+    }
+
+    private void createIndex(Statement statement, String tableName, PropertyMeta<?, ?> propertyMeta) {
+        log.trace("{}: Adding property {} index", tableName, propertyMeta.name());
+        boolean unique = propertyMeta.getAnnotation(Indexable.class).unique();
+        execute(statement, (unique ? "create unique index " : "create index ") +
+                dialect.quote(tableName + "_" + propertyMeta.name() + "_idx") +
+                " on " + dialect.quote(tableName) + " (" + dialect.quote(propertyMeta.name()) + ")");
+    }
+
+    private static void execute(Statement statement, String sql) {
+        try {
+            statement.execute(sql);
+        } catch (SQLException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private static String toTableName(MetaClass<?> metaClass) {
+        return metaClass.asType().getRawType().getSimpleName();
+    }
+
+    private static Set<String> existingColumns(Connection connection, String tableName) throws SQLException {
+        DatabaseMetaData metaData = connection.getMetaData();
+        Set<String> columns = new HashSet<>();
+        try (ResultSet resultSet = metaData.getColumns(connection.getCatalog(), null, tableName, null)) {
+            while (resultSet.next()) {
+                columns.add(resultSet.getString("COLUMN_NAME"));
+            }
+        }
+        return columns;
+    }
+}
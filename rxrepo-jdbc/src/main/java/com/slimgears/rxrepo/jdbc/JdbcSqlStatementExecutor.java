@@ -5,48 +5,255 @@ import com.slimgears.rxrepo.sql.SqlStatement;
 import com.slimgears.rxrepo.sql.SqlStatementExecutor;
 import com.slimgears.rxrepo.util.PropertyResolver;
 import io.reactivex.Completable;
+import io.reactivex.Flowable;
+import io.reactivex.Maybe;
 import io.reactivex.Observable;
 import io.reactivex.Single;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
+import javax.sql.DataSource;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.SQLIntegrityConstraintViolationException;
+import java.util.ArrayList;
+import java.util.ConcurrentModificationException;
+import java.util.List;
+import java.util.Objects;
 
 public class JdbcSqlStatementExecutor implements SqlStatementExecutor {
-    private final Connection connection;
+    private final static Logger log = LoggerFactory.getLogger(JdbcSqlStatementExecutor.class);
+    private final DataSource dataSource;
+    private final int fetchSize;
 
-    public JdbcSqlStatementExecutor(Connection connection) {
-        this.connection = connection;
+    private interface ConnectionFunction<T> {
+        T apply(Connection connection) throws SQLException;
+    }
+
+    private interface StatementFunction<T> {
+        T apply(PreparedStatement statement) throws SQLException;
+    }
+
+    private JdbcSqlStatementExecutor(DataSource dataSource, int fetchSize) {
+        this.dataSource = dataSource;
+        this.fetchSize = fetchSize;
+    }
+
+    public static JdbcSqlStatementExecutor create(DataSource dataSource) {
+        return create(dataSource, Properties.fetchSize());
+    }
+
+    public static JdbcSqlStatementExecutor create(DataSource dataSource, int fetchSize) {
+        return new JdbcSqlStatementExecutor(dataSource, fetchSize);
+    }
+
+    public Flowable<PropertyResolver> queryFlowable(SqlStatement statement) {
+        return Flowable.generate(
+                () -> QueryCursor.open(dataSource.getConnection(), statement, fetchSize),
+                (cursor, emitter) -> {
+                    if (cursor.next()) {
+                        emitter.onNext(JdbcRowPropertyResolver.fromCurrentRow(cursor.resultSet));
+                    } else {
+                        emitter.onComplete();
+                    }
+                },
+                QueryCursor::close);
     }
 
     @Override
     public Observable<PropertyResolver> executeQuery(SqlStatement statement) {
-        return Observable.create(emitter -> {
-            PreparedStatement preparedStatement = JdbcHelper.prepareStatement(connection, statement);
-            JdbcHelper.toStream(preparedStatement.executeQuery());
-        });
+        return queryFlowable(statement).toObservable();
     }
 
     @Override
     public Observable<PropertyResolver> executeCommandReturnEntries(SqlStatement statement) {
-        return notImplemented();
+        return withConnection(connection -> withStatement(connection, statement, preparedStatement -> {
+            List<PropertyResolver> entries = new ArrayList<>();
+            if (preparedStatement.execute()) {
+                try (ResultSet resultSet = preparedStatement.getResultSet()) {
+                    while (resultSet.next()) {
+                        entries.add(JdbcRowPropertyResolver.fromCurrentRow(resultSet));
+                    }
+                }
+            }
+            return entries;
+        })).flattenAsObservable(entries -> entries);
     }
 
     @Override
     public Single<Integer> executeCommandReturnCount(SqlStatement statement) {
-        return notImplemented();
+        return withConnection(connection -> withStatement(connection, statement, PreparedStatement::executeUpdate));
     }
 
     @Override
     public Completable executeCommand(SqlStatement statement) {
-        return notImplemented();
+        return withConnection(connection -> withStatement(connection, statement, PreparedStatement::execute)).ignoreElement();
+    }
+
+    @Override
+    public Completable executeCommands(Iterable<SqlStatement> statements) {
+        return withConnection(connection -> {
+            boolean autoCommit = connection.getAutoCommit();
+            connection.setAutoCommit(false);
+            try {
+                int count = executeBatches(connection, statements);
+                connection.commit();
+                return count;
+            } catch (SQLException | RuntimeException e) {
+                connection.rollback();
+                throw e;
+            } finally {
+                connection.setAutoCommit(autoCommit);
+            }
+        }).ignoreElement();
     }
 
     @Override
     public Observable<Notification<PropertyResolver>> executeLiveQuery(SqlStatement statement) {
-        return notImplemented();
+        return Observable.error(new UnsupportedOperationException("Live queries are not supported by JDBC executor"));
+    }
+
+    @Override
+    public Maybe<String> explain(SqlStatement statement) {
+        SqlStatement explainStatement = SqlStatement.create("EXPLAIN " + statement.statement(), statement.args());
+        return withConnection(connection -> withStatement(connection, explainStatement, preparedStatement -> {
+            StringBuilder plan = new StringBuilder();
+            try (ResultSet resultSet = preparedStatement.executeQuery()) {
+                while (resultSet.next()) {
+                    plan.append(resultSet.getString(1)).append('\n');
+                }
+            }
+            return plan.toString().trim();
+        })).filter(plan -> !plan.isEmpty());
+    }
+
+    private int executeBatches(Connection connection, Iterable<SqlStatement> statements) throws SQLException {
+        PreparedStatement preparedStatement = null;
+        String currentStatement = null;
+        int count = 0;
+        try {
+            for (SqlStatement statement : statements) {
+                if (!Objects.equals(currentStatement, statement.statement())) {
+                    if (preparedStatement != null) {
+                        count += executeBatch(preparedStatement);
+                        preparedStatement.close();
+                    }
+                    currentStatement = statement.statement();
+                    preparedStatement = connection.prepareStatement(currentStatement);
+                }
+                JdbcHelper.setParams(preparedStatement, statement);
+                preparedStatement.addBatch();
+            }
+            if (preparedStatement != null) {
+                count += executeBatch(preparedStatement);
+            }
+            return count;
+        } finally {
+            if (preparedStatement != null) {
+                preparedStatement.close();
+            }
+        }
     }
 
-    private static <T> T notImplemented() {
-        throw new UnsupportedOperationException("Not implemented yet");
+    private static int executeBatch(PreparedStatement preparedStatement) throws SQLException {
+        int count = 0;
+        for (int res : preparedStatement.executeBatch()) {
+            count += Math.max(res, 0);
+        }
+        return count;
+    }
+
+    private static <T> T withStatement(Connection connection, SqlStatement statement, StatementFunction<T> function) throws SQLException {
+        try (PreparedStatement preparedStatement = prepare(connection, statement)) {
+            return function.apply(preparedStatement);
+        }
+    }
+
+    private static PreparedStatement prepare(Connection connection, SqlStatement statement) throws SQLException {
+        log.trace("Executing: {}", statement.statement());
+        PreparedStatement preparedStatement = connection.prepareStatement(statement.statement());
+        try {
+            JdbcHelper.setParams(preparedStatement, statement);
+            return preparedStatement;
+        } catch (SQLException | RuntimeException e) {
+            preparedStatement.close();
+            throw e;
+        }
+    }
+
+    private <T> Single<T> withConnection(ConnectionFunction<T> function) {
+        return Single.fromCallable(() -> {
+            try (Connection connection = dataSource.getConnection()) {
+                return function.apply(connection);
+            } catch (SQLException e) {
+                throw toRuntimeException(e);
+            }
+        });
+    }
+
+    private static RuntimeException toRuntimeException(SQLException e) {
+        if (e instanceof SQLIntegrityConstraintViolationException || (e.getSQLState() != null && e.getSQLState().startsWith("23"))) {
+            return new ConcurrentModificationException(e.getMessage(), e);
+        }
+        return new RuntimeException(e);
+    }
+
+    private static class QueryCursor {
+        private final Connection connection;
+        private final PreparedStatement preparedStatement;
+        private final ResultSet resultSet;
+
+        private QueryCursor(Connection connection, PreparedStatement preparedStatement, ResultSet resultSet) {
+            this.connection = connection;
+            this.preparedStatement = preparedStatement;
+            this.resultSet = resultSet;
+        }
+
+        static QueryCursor open(Connection connection, SqlStatement statement, int fetchSize) throws SQLException {
+            try {
+                PreparedStatement preparedStatement = prepare(connection, statement);
+                try {
+                    preparedStatement.setFetchSize(fetchSize);
+                    return new QueryCursor(connection, preparedStatement, preparedStatement.executeQuery());
+                } catch (SQLException | RuntimeException e) {
+                    preparedStatement.close();
+                    throw e;
+                }
+            } catch (SQLException | RuntimeException e) {
+                connection.close();
+                throw e;
+            }
+        }
+
+        boolean next() throws SQLException {
+            return resultSet.next();
+        }
+
+        void close() {
+            try {
+                resultSet.close();
+                preparedStatement.close();
+            } catch (SQLException e) {
+                log.debug("Failed to close result set", e);
+            } finally {
+                try {
+                    connection.close();
+                } catch (SQLException e) {
+                    log.warn("Failed to release connection", e);
+                }
+            }
+        }
+    }
+
+    @SuppressWarnings("WeakerAccess")
+    public static class Properties {
+        public static final String fetchSize = "rxrepo.jdbc.fetchSize";
+        private static final int defaultFetchSize = 256;
+
+        public static int fetchSize() {
+            return Integer.getInteger(Properties.fetchSize, defaultFetchSize);
+        }
     }
 }
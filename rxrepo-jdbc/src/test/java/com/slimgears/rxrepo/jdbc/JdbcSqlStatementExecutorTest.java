@@ -0,0 +1,142 @@
+package com.slimgears.rxrepo.jdbc;
+
+import com.slimgears.rxrepo.sql.SlowStatement;
+import com.slimgears.rxrepo.sql.SlowStatementRecorder;
+import com.slimgears.rxrepo.sql.SqlStatement;
+import com.slimgears.rxrepo.sql.SqlStatementExecutor;
+import com.slimgears.rxrepo.test.Product;
+import com.slimgears.rxrepo.test.ProductPrototype;
+import com.slimgears.rxrepo.util.PropertyResolver;
+import io.reactivex.subscribers.TestSubscriber;
+import org.h2.jdbcx.JdbcConnectionPool;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.time.Duration;
+import java.util.ConcurrentModificationException;
+import java.util.List;
+import java.util.UUID;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+public class JdbcSqlStatementExecutorTest {
+    private JdbcConnectionPool dataSource;
+    private JdbcSchemaProvider schemaProvider;
+    private JdbcSqlStatementExecutor executor;
+    private String tableName;
+
+    @Before
+    public void setUp() {
+        dataSource = JdbcConnectionPool.create("jdbc:h2:mem:" + UUID.randomUUID() + ";DB_CLOSE_DELAY=-1", "sa", "");
+        schemaProvider = JdbcSchemaProvider.create(dataSource);
+        executor = JdbcSqlStatementExecutor.create(dataSource, 16);
+        tableName = schemaProvider.tableName(Product.metaClass);
+        schemaProvider.createOrUpdate(Product.metaClass).blockingAwait();
+    }
+
+    @After
+    public void tearDown() {
+        dataSource.dispose();
+    }
+
+    @Test
+    public void testBatchInsertAndStreamingQuery() {
+        executor.executeCommands(insertStatements(1000)).blockingAwait();
+
+        Assert.assertEquals(1000, executor
+                .executeQuery(SqlStatement.of("select * from " + tableName))
+                .count()
+                .blockingGet()
+                .longValue());
+
+        PropertyResolver first = executor
+                .executeQuery(SqlStatement.of("select * from " + tableName + " where \"price\" = ?").withArgs(10))
+                .blockingFirst();
+        Assert.assertEquals("product-10", first.getProperty("name", String.class));
+        Assert.assertEquals(ProductPrototype.Type.ComputeHardware.name(), first.getProperty("type", String.class));
+        Assert.assertEquals(0, dataSource.getActiveConnections());
+    }
+
+    @Test
+    public void testQueryHonorsBackpressureAndReleasesConnection() {
+        executor.executeCommands(insertStatements(100)).blockingAwait();
+
+        TestSubscriber<PropertyResolver> subscriber = executor
+                .queryFlowable(SqlStatement.of("select * from " + tableName))
+                .test(0);
+        subscriber.assertNoValues();
+
+        subscriber.request(5);
+        subscriber.assertValueCount(5);
+        Assert.assertEquals(1, dataSource.getActiveConnections());
+
+        subscriber.cancel();
+        Assert.assertEquals(0, dataSource.getActiveConnections());
+    }
+
+    @Test
+    public void testSlowStatementRecorderCapturesSlowestQueriesWithPlan() {
+        executor.executeCommands(insertStatements(100)).blockingAwait();
+        SlowStatementRecorder recorder = SlowStatementRecorder.create(Duration.ZERO, 2, true);
+        SqlStatementExecutor recordingExecutor = recorder.decorate(executor);
+
+        recordingExecutor.executeQuery(SqlStatement.of("select * from " + tableName)).blockingSubscribe();
+        recordingExecutor.executeQuery(SqlStatement.of("select * from " + tableName + " where \"price\" < ?").withArgs(10)).blockingSubscribe();
+        recordingExecutor.executeQuery(SqlStatement.of("select * from " + tableName + " where \"price\" = ?").withArgs(10)).blockingSubscribe();
+
+        List<SlowStatement> slowStatements = recorder.slowStatements();
+        Assert.assertEquals(2, slowStatements.size());
+        Assert.assertTrue(slowStatements.get(0).duration().compareTo(slowStatements.get(1).duration()) >= 0);
+        Assert.assertTrue(slowStatements.stream().allMatch(s -> s.plan().isPresent()));
+        Assert.assertTrue(slowStatements.stream().allMatch(s -> s.rowCount() == 100 || s.rowCount() == 10 || s.rowCount() == 1));
+        Assert.assertEquals(0, dataSource.getActiveConnections());
+    }
+
+    @Test
+    public void testExecuteCommandReturnCount() {
+        executor.executeCommands(insertStatements(10)).blockingAwait();
+        int count = executor
+                .executeCommandReturnCount(SqlStatement.of("update " + tableName + " set \"price\" = \"price\" + 1 where \"price\" < ?").withArgs(5))
+                .blockingGet();
+        Assert.assertEquals(5, count);
+    }
+
+    @Test
+    public void testBatchIsRolledBackOnDuplicateKey() {
+        executor.executeCommands(insertStatements(10)).blockingAwait();
+        try {
+            executor.executeCommands(insertStatements(20)).blockingAwait();
+            Assert.fail("Expected failure");
+        } catch (ConcurrentModificationException e) {
+            // expected
+        }
+
+        Assert.assertEquals(10, executor
+                .executeQuery(SqlStatement.of("select * from " + tableName))
+                .count()
+                .blockingGet()
+                .longValue());
+    }
+
+    @Test
+    public void testSchemaUpdateIsIdempotent() {
+        Assert.assertSame(schemaProvider.createOrUpdate(Product.metaClass), schemaProvider.createOrUpdate(Product.metaClass));
+        JdbcSchemaProvider.create(dataSource).createOrUpdate(Product.metaClass).blockingAwait();
+        executor.executeCommands(insertStatements(1)).blockingAwait();
+        Assert.assertEquals(1, executor
+                .executeQuery(SqlStatement.of("select * from " + tableName))
+                .count()
+                .blockingGet()
+                .longValue());
+    }
+
+    private List<SqlStatement> insertStatements(int count) {
+        return IntStream.range(0, count)
+                .mapToObj(i -> SqlStatement
+                        .of("insert into " + tableName + " (\"key\", \"name\", \"type\", \"price\") values (?, ?, ?, ?)")
+                        .withArgs("key-" + i, "product-" + i, ProductPrototype.Type.values()[i % 3], i))
+                .collect(Collectors.toList());
+    }
+}
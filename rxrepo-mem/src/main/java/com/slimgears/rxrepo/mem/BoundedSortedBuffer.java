@@ -0,0 +1,53 @@
+package com.slimgears.rxrepo.mem;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.stream.Collectors;
+
+class BoundedSortedBuffer<T> {
+    private final Comparator<Entry<T>> comparator;
+    private final PriorityQueue<Entry<T>> heap;
+    private final long capacity;
+    private long sequence;
+
+    private BoundedSortedBuffer(Comparator<T> comparator, long capacity) {
+        this.comparator = Comparator.<Entry<T>, T>comparing(e -> e.value, comparator).thenComparingLong(e -> e.sequence);
+        this.heap = new PriorityQueue<>((int)Math.min(capacity + 1, 1024), this.comparator.reversed());
+        this.capacity = capacity;
+    }
+
+    static <T> BoundedSortedBuffer<T> create(Comparator<T> comparator, long capacity) {
+        return new BoundedSortedBuffer<>(comparator, capacity);
+    }
+
+    void add(T value) {
+        if (capacity <= 0) {
+            return;
+        }
+        Entry<T> entry = new Entry<>(value, sequence++);
+        if (heap.size() < capacity) {
+            heap.add(entry);
+        } else if (comparator.compare(entry, heap.peek()) < 0) {
+            heap.poll();
+            heap.add(entry);
+        }
+    }
+
+    List<T> toList() {
+        List<Entry<T>> entries = new ArrayList<>(heap);
+        entries.sort(comparator);
+        return entries.stream().map(e -> e.value).collect(Collectors.toList());
+    }
+
+    private static class Entry<T> {
+        private final T value;
+        private final long sequence;
+
+        private Entry(T value, long sequence) {
+            this.value = value;
+            this.sequence = sequence;
+        }
+    }
+}
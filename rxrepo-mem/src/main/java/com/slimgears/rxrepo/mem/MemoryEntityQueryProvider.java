@@ -8,6 +8,7 @@ import com.slimgears.rxrepo.query.provider.*;
 import com.slimgears.rxrepo.util.Expressions;
 import com.slimgears.rxrepo.util.PropertyExpressions;
 import com.slimgears.rxrepo.util.PropertyMetas;
+import com.slimgears.rxrepo.util.PropertyUpdates;
 import com.slimgears.util.autovalue.annotations.*;
 import com.slimgears.util.stream.Lazy;
 import com.slimgears.util.stream.Streams;
@@ -34,6 +35,7 @@ public class MemoryEntityQueryProvider<K, S> implements EntityQueryProvider<K, S
     private final MetaClassWithKey<K, S> metaClass;
     private final MetaObjectResolver objectResolver;
     private final Map<K, AtomicReference<S>> objects = new ConcurrentHashMap<>();
+    private final MemoryQueryPlanner<K, S> planner;
     private final Subject<Notification<S>> notificationSubject = PublishSubject.create();
     private final Lazy<List<PropertyMeta<S, ?>>> referenceProperties;
     private final Lazy<ExecutorService> notificationExecutor = Lazy.of(Executors::newSingleThreadExecutor);
@@ -43,6 +45,7 @@ public class MemoryEntityQueryProvider<K, S> implements EntityQueryProvider<K, S
                                       MetaObjectResolver objectResolver) {
         this.metaClass = metaClass;
         this.objectResolver = objectResolver;
+        this.planner = MemoryQueryPlanner.create(metaClass);
         this.referenceProperties = Lazy.of(() -> Streams
                 .fromIterable(metaClass.properties())
                 .filter(PropertyMetas::isReference)
@@ -67,7 +70,7 @@ public class MemoryEntityQueryProvider<K, S> implements EntityQueryProvider<K, S
             AtomicReference<S> oldValue = new AtomicReference<>(reference.get());
             return entityUpdater
                     .apply(Optional.ofNullable(reference.get()).map(Maybe::just).orElseGet(Maybe::empty))
-                    .flatMap(e -> reference.compareAndSet(oldValue.get(), e)
+                    .flatMap(e -> compareAndSet(key, reference, oldValue.get(), e)
                             ? Maybe.just(e)
                             : Maybe.error(new ConcurrentModificationException("Concurrent modification of " + metaClass.simpleName() + " detected")))
                     .doOnSuccess(e -> {
@@ -80,14 +83,73 @@ public class MemoryEntityQueryProvider<K, S> implements EntityQueryProvider<K, S
         });
     }
 
+    private boolean compareAndSet(K key, AtomicReference<S> reference, S oldValue, S newValue) {
+        synchronized (reference) {
+            if (!reference.compareAndSet(oldValue, newValue)) {
+                return false;
+            }
+            if (objects.get(key) == reference) {
+                planner.update(key, oldValue, newValue);
+            }
+            return true;
+        }
+    }
+
+    private Maybe<S> remove(K key) {
+        return Maybe.fromCallable(() -> {
+            AtomicReference<S> reference = objects.get(key);
+            if (reference == null) {
+                return null;
+            }
+            synchronized (reference) {
+                if (!objects.remove(key, reference)) {
+                    return null;
+                }
+                S entity = reference.get();
+                planner.update(key, entity, null);
+                return entity;
+            }
+        });
+    }
+
+    private Maybe<S> entityOf(K key) {
+        return Maybe.fromCallable(() -> Optional.ofNullable(objects.get(key)).map(AtomicReference::get).orElse(null));
+    }
+
+    private Observable<S> select(ObjectExpression<S, Boolean> predicateExp, List<SortingInfo<S, ?, ? extends Comparable<?>>> sorting, Long count) {
+        Predicate<S> predicate = Expressions.compileRxPredicate(predicateExp);
+        Optional<Comparator<S>> comparator = Optional.ofNullable(sorting).map(SortingInfos::toComparator);
+        ObservableTransformer<S, S> sorter = comparator.map(c -> sorted(c, count)).orElse(ob -> ob);
+        return planner.plan(predicateExp, sorting, count)
+                .map(plan -> Observable.fromIterable(plan.groups())
+                        .concatMap(keys -> Observable.fromIterable(keys)
+                                .concatMapMaybe(this::entityOf)
+                                .filter(predicate)
+                                .compose(ob -> plan.isOrdered() && sorting.size() > 1 ? ob.compose(sorter) : ob))
+                        .compose(ob -> plan.isUnique() ? ob : ob.distinct(metaClass::keyOf))
+                        .compose(ob -> plan.isOrdered() ? ob : ob.compose(sorter)))
+                .orElseGet(() -> Observable.fromIterable(objects.values())
+                        .flatMapMaybe(val -> Maybe.fromCallable(val::get))
+                        .filter(predicate)
+                        .compose(sorter));
+    }
+
+    private static <S> ObservableTransformer<S, S> sorted(Comparator<S> comparator, Long count) {
+        if (count == null) {
+            return src -> src.sorted(comparator);
+        }
+        return src -> src
+                .collect(() -> BoundedSortedBuffer.create(comparator, count), BoundedSortedBuffer::add)
+                .flattenAsObservable(BoundedSortedBuffer::toList);
+    }
+
     @Override
     public <T> Observable<T> query(QueryInfo<K, S, T> query) {
-        Predicate<S> predicate = Expressions.compileRxPredicate(query.predicate());
         Function<S, T> mapper = Expressions.compileRx(query.mapping());
-        return Observable.fromIterable(objects.values())
-                .flatMapMaybe(val -> Maybe.fromCallable(val::get))
-                .filter(predicate)
-                .compose(ob -> Optional.ofNullable(query.sorting()).map(SortingInfos::toComparator).map(ob::sorted).orElse(ob))
+        Long count = Optional.ofNullable(query.limit())
+                .map(limit -> limit + Optional.ofNullable(query.skip()).orElse(0L))
+                .orElse(null);
+        return select(query.predicate(), query.sorting(), count)
                 .compose(ob -> Optional.ofNullable(query.skip()).map(ob::skip).orElse(ob))
                 .compose(ob -> Optional.ofNullable(query.limit()).map(ob::take).orElse(ob))
                 .flatMapSingle(this::applyReferences)
@@ -180,34 +242,54 @@ public class MemoryEntityQueryProvider<K, S> implements EntityQueryProvider<K, S
 
     @Override
     public Single<Integer> update(UpdateInfo<K, S> update) {
-        return Single.error(() -> new UnsupportedOperationException("Not supported yet"));
+        java.util.function.Predicate<S> predicate = Expressions.compilePredicate(update.predicate());
+        java.util.function.Function<S, S> updater = PropertyUpdates.toUpdater(update);
+        return select(update.predicate(), ImmutableList.of(), null)
+                .compose(ob -> Optional.ofNullable(update.limit()).map(ob::take).orElse(ob))
+                .map(metaClass::keyOf)
+                .concatMapMaybe(key -> update(key, predicate, updater))
+                .doOnNext(notificationSubject::onNext)
+                .count()
+                .map(Long::intValue);
+    }
+
+    private Maybe<Notification<S>> update(K key, java.util.function.Predicate<S> predicate, java.util.function.Function<S, S> updater) {
+        return Maybe.fromCallable(() -> {
+            AtomicReference<S> reference = objects.get(key);
+            while (reference != null && objects.get(key) == reference) {
+                S oldValue = reference.get();
+                if (oldValue == null || !predicate.test(oldValue)) {
+                    return null;
+                }
+                S newValue = updater.apply(oldValue);
+                if (Objects.equals(oldValue, newValue)) {
+                    return null;
+                }
+                if (compareAndSet(key, reference, oldValue, newValue)) {
+                    return Notification.ofModified(oldValue, newValue);
+                }
+            }
+            return null;
+        });
     }
 
     @Override
     public Single<Integer> delete(DeleteInfo<K, S> delete) {
-        Predicate<S> predicate = Expressions.compileRxPredicate(delete.predicate());
-        return Observable
-                .fromIterable(objects.values())
-                .map(AtomicReference::get)
-                .filter(predicate)
+        return select(delete.predicate(), ImmutableList.of(), null)
                 .compose(ob -> Optional.ofNullable(delete.limit()).map(ob::take).orElse(ob))
                 .map(metaClass::keyOf)
-                .filter(key -> Optional
-                        .ofNullable(objects.remove(key))
-                        .map(AtomicReference::get)
-                        .map(e -> {
-                            notificationSubject.onNext(Notification.ofDeleted(e));
-                            return true;
-                        })
-                        .orElse(false)
-                )
+                .concatMapMaybe(this::remove)
+                .doOnNext(e -> notificationSubject.onNext(Notification.ofDeleted(e)))
                 .count()
                 .map(Long::intValue);
     }
 
     @Override
     public Completable drop() {
-        return Completable.fromAction(objects::clear);
+        return Completable.fromAction(() -> {
+            objects.clear();
+            planner.clear();
+        });
     }
 
     @SuppressWarnings("unchecked")
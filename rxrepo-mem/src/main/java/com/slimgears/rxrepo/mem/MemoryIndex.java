@@ -0,0 +1,147 @@
+package com.slimgears.rxrepo.mem;
+
+import com.google.common.collect.Iterables;
+import com.google.common.primitives.Primitives;
+import com.slimgears.util.autovalue.annotations.PropertyMeta;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+class MemoryIndex<K, S> {
+    private final PropertyMeta<S, ?> property;
+    private final Class<?> valueType;
+    private final Map<Object, Set<K>> hashIndex = new ConcurrentHashMap<>();
+    private final NavigableMap<Object, Set<K>> sortedIndex;
+    private final Set<K> nullKeys = ConcurrentHashMap.newKeySet();
+    private final AtomicInteger count = new AtomicInteger();
+
+    private MemoryIndex(PropertyMeta<S, ?> property) {
+        this.property = property;
+        this.valueType = Primitives.wrap(property.type().getRawType());
+        this.sortedIndex = Comparable.class.isAssignableFrom(valueType) ? new ConcurrentSkipListMap<>() : null;
+    }
+
+    static <K, S> MemoryIndex<K, S> create(PropertyMeta<S, ?> property) {
+        return new MemoryIndex<>(property);
+    }
+
+    PropertyMeta<S, ?> property() {
+        return property;
+    }
+
+    boolean isSorted() {
+        return sortedIndex != null;
+    }
+
+    boolean accepts(Object value) {
+        return valueType.isInstance(value);
+    }
+
+    int count() {
+        return count.get();
+    }
+
+    synchronized void update(K key, S oldEntity, S newEntity) {
+        if (oldEntity != null && newEntity != null && Objects.equals(property.getValue(oldEntity), property.getValue(newEntity))) {
+            return;
+        }
+        if (newEntity != null) {
+            add(key, property.getValue(newEntity));
+        }
+        if (oldEntity != null) {
+            remove(key, property.getValue(oldEntity));
+        }
+    }
+
+    synchronized void clear() {
+        hashIndex.clear();
+        nullKeys.clear();
+        count.set(0);
+        if (sortedIndex != null) {
+            sortedIndex.clear();
+        }
+    }
+
+    Set<K> equalTo(Object value) {
+        return hashIndex.getOrDefault(value, Collections.emptySet());
+    }
+
+    Set<K> nulls() {
+        return nullKeys;
+    }
+
+    @SuppressWarnings("unchecked")
+    Iterable<Set<K>> range(Object from, boolean fromInclusive, Object to, boolean toInclusive, boolean includeNulls, boolean ascending) {
+        NavigableMap<Object, Set<K>> map = sortedIndex;
+        if (from != null && to != null) {
+            int comparison = ((Comparable<Object>)from).compareTo(to);
+            map = comparison < 0 || (comparison == 0 && fromInclusive && toInclusive)
+                    ? map.subMap(from, fromInclusive, to, toInclusive)
+                    : Collections.emptyNavigableMap();
+        } else if (from != null) {
+            map = map.tailMap(from, fromInclusive);
+        } else if (to != null) {
+            map = map.headMap(to, toInclusive);
+        }
+
+        if (!includeNulls) {
+            return ascending ? map.values() : map.descendingMap().values();
+        }
+        return ascending
+                ? Iterables.concat(Collections.singleton(nullKeys), map.values())
+                : Iterables.concat(map.descendingMap().values(), Collections.singleton(nullKeys));
+    }
+
+    long count(Object from, boolean fromInclusive, Object to, boolean toInclusive, boolean includeNulls, long bound) {
+        long total = 0;
+        for (Set<K> keys : range(from, fromInclusive, to, toInclusive, includeNulls, true)) {
+            total += keys.size();
+            if (total > bound) {
+                break;
+            }
+        }
+        return total;
+    }
+
+    private void add(K key, Object value) {
+        count.incrementAndGet();
+        if (value == null) {
+            nullKeys.add(key);
+            return;
+        }
+        Set<K> keys = hashIndex.get(value);
+        if (keys == null) {
+            keys = ConcurrentHashMap.newKeySet();
+            hashIndex.put(value, keys);
+            if (sortedIndex != null) {
+                sortedIndex.put(value, keys);
+            }
+        }
+        keys.add(key);
+    }
+
+    private void remove(K key, Object value) {
+        count.decrementAndGet();
+        if (value == null) {
+            nullKeys.remove(key);
+            return;
+        }
+        Set<K> keys = hashIndex.get(value);
+        if (keys == null) {
+            return;
+        }
+        keys.remove(key);
+        if (keys.isEmpty()) {
+            hashIndex.remove(value);
+            if (sortedIndex != null) {
+                sortedIndex.remove(value);
+            }
+        }
+    }
+}
@@ -0,0 +1,373 @@
+package com.slimgears.rxrepo.mem;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Iterables;
+import com.slimgears.rxrepo.annotations.Indexable;
+import com.slimgears.rxrepo.expressions.*;
+import com.slimgears.rxrepo.query.provider.SortingInfo;
+import com.slimgears.rxrepo.util.PropertyMetas;
+import com.slimgears.util.autovalue.annotations.MetaClassWithKey;
+import com.slimgears.util.autovalue.annotations.PropertyMeta;
+import com.slimgears.util.stream.Streams;
+
+import java.util.*;
+
+class MemoryQueryPlanner<K, S> {
+    private final MetaClassWithKey<K, S> metaClass;
+    private final ImmutableMap<String, MemoryIndex<K, S>> indexes;
+
+    private MemoryQueryPlanner(MetaClassWithKey<K, S> metaClass) {
+        this.metaClass = metaClass;
+        this.indexes = Streams
+                .fromIterable(metaClass.properties())
+                .filter(p -> p.hasAnnotation(Indexable.class) && !PropertyMetas.isKey(p))
+                .collect(ImmutableMap.toImmutableMap(PropertyMeta::name, p -> MemoryIndex.<K, S>create(p)));
+    }
+
+    static <K, S> MemoryQueryPlanner<K, S> create(MetaClassWithKey<K, S> metaClass) {
+        return new MemoryQueryPlanner<>(metaClass);
+    }
+
+    void update(K key, S oldEntity, S newEntity) {
+        indexes.values().forEach(index -> index.update(key, oldEntity, newEntity));
+    }
+
+    void clear() {
+        indexes.values().forEach(MemoryIndex::clear);
+    }
+
+    Optional<Plan<K>> plan(ObjectExpression<S, Boolean> predicate, List<SortingInfo<S, ?, ? extends Comparable<?>>> sorting, Long limit) {
+        if (indexes.isEmpty() && predicate == null) {
+            return Optional.empty();
+        }
+
+        Optional<Candidates<K>> candidates = Optional.ofNullable(predicate).flatMap(p -> candidatesOf(p, false));
+        Optional<SortingInfo<S, ?, ? extends Comparable<?>>> firstSorting = Optional.ofNullable(sorting)
+                .filter(s -> !s.isEmpty())
+                .map(s -> s.get(0));
+        Optional<MemoryIndex<K, S>> sortIndex = firstSorting
+                .flatMap(s -> indexOf(s.property()))
+                .filter(MemoryIndex::isSorted);
+
+        if (sortIndex.isPresent()) {
+            boolean ascending = firstSorting.get().ascending();
+            if (!candidates.isPresent()) {
+                return Optional.of(new Plan<>(sortIndex.get().range(null, false, null, false, true, ascending), true, false));
+            }
+            if (candidates.get() instanceof RangeCandidates && ((RangeCandidates<K, S>)candidates.get()).index == sortIndex.get()) {
+                return Optional.of(new Plan<>(((RangeCandidates<K, S>)candidates.get()).groups(ascending), true, false));
+            }
+            if (limit != null && preferSortIndex(sortIndex.get().count(), candidates.get(), limit)) {
+                return Optional.of(new Plan<>(sortIndex.get().range(null, false, null, false, true, ascending), true, false));
+            }
+        }
+
+        return candidates.map(c -> new Plan<>(c.groups(), false, c.isUnique()));
+    }
+
+    // With n evenly spread matches, walking the sort index stops after about limit * total / n
+    // entries, while the candidate plan visits all n, so the walk wins once n exceeds sqrt(limit * total)
+    private static boolean preferSortIndex(long total, Candidates<?> candidates, long limit) {
+        long threshold = (long)Math.sqrt((double)limit * total);
+        return candidates.count(threshold) > threshold;
+    }
+
+    static class Plan<K> {
+        private final Iterable<? extends Collection<K>> groups;
+        private final boolean ordered;
+        private final boolean unique;
+
+        private Plan(Iterable<? extends Collection<K>> groups, boolean ordered, boolean unique) {
+            this.groups = groups;
+            this.ordered = ordered;
+            this.unique = unique;
+        }
+
+        Iterable<? extends Collection<K>> groups() {
+            return groups;
+        }
+
+        boolean isOrdered() {
+            return ordered;
+        }
+
+        boolean isUnique() {
+            return unique;
+        }
+    }
+
+    private Optional<Candidates<K>> candidatesOf(ObjectExpression<S, ?> expression, boolean negated) {
+        if (expression instanceof DelegateExpression) {
+            return candidatesOf(((DelegateExpression<S, ?>)expression).delegate(), negated);
+        }
+
+        if (expression instanceof UnaryOperationExpression) {
+            UnaryOperationExpression<S, ?, ?> unary = (UnaryOperationExpression<S, ?, ?>)expression;
+            switch (expression.type()) {
+                case Not:
+                    return candidatesOf(unary.operand(), !negated);
+                case IsNull:
+                    return negated
+                            ? Optional.empty()
+                            : indexOf(unary.operand()).map(index -> new KeyCandidates<>(index.nulls()));
+                default:
+                    return Optional.empty();
+            }
+        }
+
+        if (!(expression instanceof BinaryOperationExpression)) {
+            return Optional.empty();
+        }
+
+        BinaryOperationExpression<S, ?, ?, ?> binary = (BinaryOperationExpression<S, ?, ?, ?>)expression;
+        switch (expression.type()) {
+            case And:
+                return negated
+                        ? union(candidatesOf(binary.left(), true), candidatesOf(binary.right(), true))
+                        : intersection(candidatesOf(binary.left(), false), candidatesOf(binary.right(), false));
+            case Or:
+                return negated
+                        ? intersection(candidatesOf(binary.left(), true), candidatesOf(binary.right(), true))
+                        : union(candidatesOf(binary.left(), false), candidatesOf(binary.right(), false));
+            case Equals:
+                return negated ? Optional.empty() : equalTo(binary.left(), binary.right());
+            case ValueIn:
+                return negated ? Optional.empty() : valueIn(binary.left(), binary.right());
+            case LessThan:
+                return range(binary.left(), binary.right(), negated);
+            case GreaterThan:
+                return range(binary.right(), binary.left(), negated);
+            default:
+                return Optional.empty();
+        }
+    }
+
+    private Optional<Candidates<K>> equalTo(ObjectExpression<S, ?> left, ObjectExpression<S, ?> right) {
+        if (right instanceof ConstantExpression) {
+            return equalTo(left, ((ConstantExpression<S, ?>)right).value());
+        }
+        if (left instanceof ConstantExpression) {
+            return equalTo(right, ((ConstantExpression<S, ?>)left).value());
+        }
+        return Optional.empty();
+    }
+
+    @SuppressWarnings("unchecked")
+    private Optional<Candidates<K>> equalTo(ObjectExpression<S, ?> property, Object value) {
+        if (value == null) {
+            return Optional.empty();
+        }
+        if (isKeyProperty(property)) {
+            return Optional.of(new KeyCandidates<>(Collections.singleton((K)value)));
+        }
+        return indexOf(property).map(index -> new KeyCandidates<>(index.equalTo(value)));
+    }
+
+    @SuppressWarnings("unchecked")
+    private Optional<Candidates<K>> valueIn(ObjectExpression<S, ?> property, ObjectExpression<S, ?> values) {
+        if (!(values instanceof ConstantExpression) || !(((ConstantExpression<S, ?>)values).value() instanceof Collection)) {
+            return Optional.empty();
+        }
+        Collection<Object> collection = (Collection<Object>)((ConstantExpression<S, ?>)values).value();
+        if (isKeyProperty(property)) {
+            return Optional.of(new KeyCandidates<>(new LinkedHashSet<>((Collection<K>)(Collection<?>)collection)));
+        }
+        return indexOf(property).map(index -> new UnionCandidates<>(collection.stream()
+                .filter(Objects::nonNull)
+                .distinct()
+                .map(value -> new KeyCandidates<>(index.equalTo(value)))
+                .collect(ImmutableList.toImmutableList())));
+    }
+
+    private Optional<Candidates<K>> range(ObjectExpression<S, ?> lesser, ObjectExpression<S, ?> greater, boolean negated) {
+        if (greater instanceof ConstantExpression) {
+            Object value = ((ConstantExpression<S, ?>)greater).value();
+            return sortedIndexOf(lesser, value).map(index -> negated
+                    ? new RangeCandidates<>(index, value, true, null, false, true)
+                    : new RangeCandidates<>(index, null, false, value, false, false));
+        }
+        if (lesser instanceof ConstantExpression) {
+            Object value = ((ConstantExpression<S, ?>)lesser).value();
+            return sortedIndexOf(greater, value).map(index -> negated
+                    ? new RangeCandidates<>(index, null, false, value, true, true)
+                    : new RangeCandidates<>(index, value, false, null, false, false));
+        }
+        return Optional.empty();
+    }
+
+    private Optional<Candidates<K>> intersection(Optional<Candidates<K>> first, Optional<Candidates<K>> second) {
+        if (!first.isPresent() || !second.isPresent()) {
+            return first.isPresent() ? first : second;
+        }
+        if (first.get() instanceof RangeCandidates && second.get() instanceof RangeCandidates) {
+            RangeCandidates<K, S> firstRange = (RangeCandidates<K, S>)first.get();
+            RangeCandidates<K, S> secondRange = (RangeCandidates<K, S>)second.get();
+            if (firstRange.index == secondRange.index) {
+                return Optional.of(firstRange.intersect(secondRange));
+            }
+        }
+        return first.get().estimate() <= second.get().estimate() ? first : second;
+    }
+
+    private Optional<Candidates<K>> union(Optional<Candidates<K>> first, Optional<Candidates<K>> second) {
+        return first.isPresent() && second.isPresent()
+                ? Optional.of(new UnionCandidates<>(ImmutableList.of(first.get(), second.get())))
+                : Optional.empty();
+    }
+
+    private boolean isKeyProperty(ObjectExpression<S, ?> expression) {
+        return propertyOf(expression)
+                .map(PropertyMeta::name)
+                .filter(name -> name.equals(metaClass.keyProperty().name()))
+                .isPresent();
+    }
+
+    private Optional<MemoryIndex<K, S>> sortedIndexOf(ObjectExpression<S, ?> expression, Object value) {
+        return indexOf(expression)
+                .filter(MemoryIndex::isSorted)
+                .filter(index -> index.accepts(value));
+    }
+
+    private Optional<MemoryIndex<K, S>> indexOf(ObjectExpression<S, ?> expression) {
+        return propertyOf(expression).map(p -> indexes.get(p.name()));
+    }
+
+    private Optional<PropertyMeta<?, ?>> propertyOf(ObjectExpression<S, ?> expression) {
+        if (expression instanceof DelegateExpression) {
+            return propertyOf(((DelegateExpression<S, ?>)expression).delegate());
+        }
+        return Optional.of(expression)
+                .filter(e -> e instanceof PropertyExpression)
+                .map(e -> (PropertyExpression<S, ?, ?>)e)
+                .filter(e -> e.target() instanceof ArgumentExpression)
+                .map(PropertyExpression::property);
+    }
+
+    private static abstract class Candidates<K> {
+        abstract long estimate();
+        abstract Iterable<? extends Collection<K>> groups();
+
+        // Counts candidates, stopping as soon as the count exceeds the bound
+        long count(long bound) {
+            return estimate();
+        }
+
+        boolean isUnique() {
+            return false;
+        }
+    }
+
+    private static class KeyCandidates<K> extends Candidates<K> {
+        private final Collection<K> keys;
+
+        private KeyCandidates(Collection<K> keys) {
+            this.keys = keys;
+        }
+
+        @Override
+        long estimate() {
+            return keys.size();
+        }
+
+        @Override
+        Iterable<? extends Collection<K>> groups() {
+            return Collections.singleton(keys);
+        }
+
+        @Override
+        boolean isUnique() {
+            return true;
+        }
+    }
+
+    private static class UnionCandidates<K> extends Candidates<K> {
+        private final List<? extends Candidates<K>> candidates;
+
+        private UnionCandidates(List<? extends Candidates<K>> candidates) {
+            this.candidates = candidates;
+        }
+
+        @Override
+        long estimate() {
+            return candidates.stream().mapToLong(Candidates::estimate).sum();
+        }
+
+        @Override
+        long count(long bound) {
+            long total = 0;
+            for (Candidates<K> candidate : candidates) {
+                total += candidate.count(bound - total);
+                if (total > bound) {
+                    break;
+                }
+            }
+            return total;
+        }
+
+        @Override
+        Iterable<? extends Collection<K>> groups() {
+            return Iterables.concat(Iterables.transform(candidates, Candidates::groups));
+        }
+    }
+
+    private static class RangeCandidates<K, S> extends Candidates<K> {
+        private final MemoryIndex<K, S> index;
+        private final Object from;
+        private final boolean fromInclusive;
+        private final Object to;
+        private final boolean toInclusive;
+        private final boolean includeNulls;
+
+        private RangeCandidates(MemoryIndex<K, S> index, Object from, boolean fromInclusive, Object to, boolean toInclusive, boolean includeNulls) {
+            this.index = index;
+            this.from = from;
+            this.fromInclusive = fromInclusive;
+            this.to = to;
+            this.toInclusive = toInclusive;
+            this.includeNulls = includeNulls;
+        }
+
+        @Override
+        long estimate() {
+            return (from != null && to != null) ? index.count() / 4 : index.count() / 2;
+        }
+
+        @Override
+        long count(long bound) {
+            return index.count(from, fromInclusive, to, toInclusive, includeNulls, bound);
+        }
+
+        @Override
+        Iterable<? extends Collection<K>> groups() {
+            return groups(true);
+        }
+
+        Iterable<? extends Collection<K>> groups(boolean ascending) {
+            return index.range(from, fromInclusive, to, toInclusive, includeNulls, ascending);
+        }
+
+        RangeCandidates<K, S> intersect(RangeCandidates<K, S> other) {
+            int fromComparison = compareBounds(from, other.from, true);
+            int toComparison = compareBounds(to, other.to, false);
+            return new RangeCandidates<>(
+                    index,
+                    fromComparison >= 0 ? from : other.from,
+                    fromComparison > 0 ? fromInclusive : (fromComparison < 0 ? other.fromInclusive : fromInclusive && other.fromInclusive),
+                    toComparison <= 0 ? to : other.to,
+                    toComparison < 0 ? toInclusive : (toComparison > 0 ? other.toInclusive : toInclusive && other.toInclusive),
+                    includeNulls && other.includeNulls);
+        }
+
+        @SuppressWarnings("unchecked")
+        private static int compareBounds(Object first, Object second, boolean isLower) {
+            if (first == null || second == null) {
+                if (first == second) {
+                    return 0;
+                }
+                return (first == null) == isLower ? -1 : 1;
+            }
+            return ((Comparable<Object>)first).compareTo(second);
+        }
+    }
+}
@@ -0,0 +1,25 @@
+package com.slimgears.rxrepo.mem;
+
+import com.slimgears.rxrepo.annotations.Indexable;
+import com.slimgears.rxrepo.annotations.UseExpressions;
+import com.slimgears.util.autovalue.annotations.AutoValuePrototype;
+import com.slimgears.util.autovalue.annotations.Key;
+import com.slimgears.util.autovalue.annotations.UseCopyAnnotator;
+
+import javax.annotation.Nullable;
+
+@AutoValuePrototype
+@UseExpressions
+@UseCopyAnnotator
+public interface IndexedProductPrototype {
+    enum Type {
+        ConsumerElectronics,
+        ComputeHardware,
+        ComputerSoftware
+    }
+
+    @Key int id();
+    @Nullable String name();
+    @Nullable @Indexable Type type();
+    @Indexable int price();
+}
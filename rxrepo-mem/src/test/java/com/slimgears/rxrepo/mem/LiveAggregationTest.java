@@ -0,0 +1,170 @@
+package com.slimgears.rxrepo.mem;
+
+import com.google.common.base.Stopwatch;
+import com.google.common.collect.ImmutableList;
+import com.slimgears.rxrepo.expressions.Aggregator;
+import com.slimgears.rxrepo.expressions.ObjectExpression;
+import com.slimgears.rxrepo.query.EmissionPolicy;
+import com.slimgears.rxrepo.query.EntitySet;
+import com.slimgears.rxrepo.query.Repository;
+import com.slimgears.rxrepo.query.decorator.AbstractQueryProviderDecorator;
+import com.slimgears.rxrepo.query.decorator.LiveQueryProviderDecorator;
+import com.slimgears.rxrepo.query.decorator.UpdateReferencesFirstQueryProviderDecorator;
+import com.slimgears.rxrepo.query.provider.QueryInfo;
+import com.slimgears.rxrepo.query.provider.QueryProvider;
+import com.slimgears.rxrepo.test.Product;
+import com.slimgears.rxrepo.test.Products;
+import com.slimgears.rxrepo.test.UniqueId;
+import io.reactivex.Maybe;
+import io.reactivex.Observable;
+import io.reactivex.ObservableTransformer;
+import io.reactivex.functions.Function;
+import io.reactivex.observers.TestObserver;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Predicate;
+
+public class LiveAggregationTest {
+    private static final EmissionPolicy immediate = new EmissionPolicy() {
+        @Override
+        public <T, R> ObservableTransformer<T, R> apply(Function<List<T>, Observable<R>> handler) {
+            return src -> src.concatMap(item -> handler.apply(Collections.singletonList(item)));
+        }
+    };
+    private final AtomicInteger racingWrites = new AtomicInteger();
+    private Iterator<Product> racingProducts = Collections.emptyIterator();
+    private Repository repository;
+    private EntitySet<UniqueId, Product> productSet;
+
+    @Before
+    public void setUp() {
+        repository = Repository.fromProvider(
+                new MemoryQueryProvider(),
+                RacingWritesQueryProvider::new,
+                LiveQueryProviderDecorator.create(1024, 10000, TimeUnit.HOURS.toMillis(1)),
+                UpdateReferencesFirstQueryProviderDecorator.create());
+        productSet = repository.entities(Product.metaClass);
+    }
+
+    @After
+    public void tearDown() {
+        repository.clearAndClose();
+    }
+
+    @Test
+    public void testLiveCountTracksCreateModifyDelete() throws InterruptedException {
+        assertLiveAggregateTracksChanges(Product.$.price, Aggregator.count());
+    }
+
+    @Test
+    public void testLiveSumTracksCreateModifyDelete() throws InterruptedException {
+        assertLiveAggregateTracksChanges(Product.$.price, Aggregator.sum());
+    }
+
+    @Test
+    public void testLiveAverageTracksCreateModifyDelete() throws InterruptedException {
+        assertLiveAggregateTracksChanges(Product.$.price, Aggregator.average());
+    }
+
+    @Test
+    public void testLiveMinTracksCreateModifyDelete() throws InterruptedException {
+        assertLiveAggregateTracksChanges(Product.$.price, Aggregator.min());
+    }
+
+    @Test
+    public void testLiveMaxTracksCreateModifyDelete() throws InterruptedException {
+        assertLiveAggregateTracksChanges(Product.$.price, Aggregator.max());
+    }
+
+    @Test
+    public void testReconcileEmitsRacingSnapshotAfterRetriesAndCatchesUp() throws InterruptedException {
+        List<Product> products = ImmutableList.copyOf(Products.createMany(20));
+        productSet.update(products.subList(0, 5)).ignoreElement().blockingAwait();
+        racingProducts = products.subList(5, 20).iterator();
+        racingWrites.set(6);
+
+        TestObserver<Long> observer = productSet.query()
+                .liveSelect()
+                .emissionPolicy(immediate)
+                .count()
+                .test();
+
+        awaitLastValue(observer, count -> count == 11L);
+        Assert.assertEquals(0, racingWrites.get());
+        Assert.assertEquals(11L, (long)productSet.query().count().blockingGet());
+        // Every snapshot of the first reconcile raced, so its last one was emitted before the count caught up
+        Assert.assertTrue(observer.values().size() > 1);
+        Assert.assertTrue(observer.values().get(0) < 11L);
+        observer.dispose();
+    }
+
+    private <T, R> void assertLiveAggregateTracksChanges(ObjectExpression<Product, T> mapping, Aggregator<T, T, R> aggregator) throws InterruptedException {
+        List<Product> products = ImmutableList.copyOf(Products.createMany(10));
+        productSet.update(products.subList(0, 5)).ignoreElement().blockingAwait();
+        TestObserver<R> observer = productSet.query()
+                .liveSelect(mapping)
+                .emissionPolicy(immediate)
+                .aggregate(aggregator)
+                .test();
+        awaitCurrentAggregate(observer, mapping, aggregator);
+
+        productSet.update(products.subList(5, 10)).ignoreElement().blockingAwait();
+        awaitCurrentAggregate(observer, mapping, aggregator);
+
+        Product cheapest = products.stream().min(Comparator.comparing(Product::price)).orElseThrow(AssertionError::new);
+        Product priciest = products.stream().max(Comparator.comparing(Product::price)).orElseThrow(AssertionError::new);
+        productSet.update(cheapest.toBuilder().price(priciest.price() + 1).build()).ignoreElement().blockingAwait();
+        awaitCurrentAggregate(observer, mapping, aggregator);
+
+        productSet.delete().where(Product.$.key.eq(cheapest.key())).execute().blockingGet();
+        awaitCurrentAggregate(observer, mapping, aggregator);
+
+        productSet.delete().where(Product.$.key.eq(priciest.key())).execute().blockingGet();
+        awaitCurrentAggregate(observer, mapping, aggregator);
+        observer.dispose();
+    }
+
+    private <T, R> void awaitCurrentAggregate(TestObserver<R> observer, ObjectExpression<Product, T> mapping, Aggregator<T, T, R> aggregator) throws InterruptedException {
+        R expected = productSet.query().select(mapping).aggregate(aggregator).blockingGet();
+        awaitLastValue(observer, value -> Objects.equals(expected, value));
+    }
+
+    private static <T> void awaitLastValue(TestObserver<T> observer, Predicate<T> condition) throws InterruptedException {
+        Stopwatch stopwatch = Stopwatch.createStarted();
+        while (stopwatch.elapsed(TimeUnit.SECONDS) < 10) {
+            observer.assertNoErrors();
+            List<T> values = observer.values();
+            if (!values.isEmpty() && condition.test(values.get(values.size() - 1))) {
+                return;
+            }
+            Thread.sleep(50);
+        }
+        throw new AssertionError("Condition was not met by the last emitted value: " + observer.values());
+    }
+
+    private class RacingWritesQueryProvider extends AbstractQueryProviderDecorator {
+        private RacingWritesQueryProvider(QueryProvider underlyingProvider) {
+            super(underlyingProvider);
+        }
+
+        // Simulates a write landing while a snapshot is on its way back to the caller
+        @Override
+        public <K, S, T, R> Maybe<R> aggregate(QueryInfo<K, S, T> query, Aggregator<T, T, R> aggregator) {
+            return super.aggregate(query, aggregator).doOnEvent((value, error) -> {
+                if (racingWrites.getAndUpdate(count -> Math.max(0, count - 1)) > 0) {
+                    insertOrUpdate(Product.metaClass, racingProducts.next()).blockingGet();
+                }
+            });
+        }
+    }
+}
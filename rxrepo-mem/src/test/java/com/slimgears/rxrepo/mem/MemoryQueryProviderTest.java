@@ -1,11 +1,130 @@
 package com.slimgears.rxrepo.mem;
 
+import com.google.common.collect.ImmutableList;
+import com.slimgears.rxrepo.query.EntitySet;
 import com.slimgears.rxrepo.query.Repository;
+import com.slimgears.rxrepo.query.provider.SortingInfo;
 import com.slimgears.rxrepo.test.AbstractRepositoryTest;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 
 public class MemoryQueryProviderTest extends AbstractRepositoryTest {
     @Override
     protected Repository createRepository() {
         return MemoryRepository.create();
     }
+
+    @Test
+    public void testIndexedQueriesMatchFullScan() {
+        EntitySet<Integer, IndexedProduct> productSet = repository.entities(IndexedProduct.metaClass);
+        List<IndexedProduct> products = indexedProducts(1000);
+        productSet.update(products).ignoreElement().blockingAwait();
+
+        Assert.assertEquals(
+                products.stream()
+                        .filter(p -> p.price() >= 150 && p.price() < 200)
+                        .sorted(Comparator.comparing(IndexedProduct::price).reversed().thenComparing(IndexedProduct::id))
+                        .map(IndexedProduct::id)
+                        .collect(Collectors.toList()),
+                productSet.query()
+                        .where(IndexedProduct.$.price.greaterOrEqual(150).and(IndexedProduct.$.price.lessThan(200)))
+                        .orderBy(IndexedProduct.$.price, false)
+                        .orderBy(IndexedProduct.$.id)
+                        .retrieve()
+                        .map(IndexedProduct::id)
+                        .toList()
+                        .blockingGet());
+
+        Assert.assertEquals(
+                products.stream()
+                        .filter(p -> p.price() == 120 || p.type() == IndexedProductPrototype.Type.ComputerSoftware)
+                        .map(IndexedProduct::id)
+                        .sorted()
+                        .collect(Collectors.toList()),
+                productSet.query()
+                        .where(IndexedProduct.$.price.eq(120).or(IndexedProduct.$.type.in(IndexedProductPrototype.Type.ComputerSoftware)))
+                        .orderBy(IndexedProduct.$.id)
+                        .retrieve()
+                        .map(IndexedProduct::id)
+                        .toList()
+                        .blockingGet());
+
+        productSet.delete().where(IndexedProduct.$.price.lessThan(130)).execute().blockingGet();
+        Assert.assertEquals(
+                products.stream().filter(p -> p.price() >= 130).count(),
+                (long)productSet.query().where(IndexedProduct.$.price.greaterThan(0)).count().blockingGet());
+    }
+
+    @Test
+    public void testSortWithLimitMatchesFullSort() {
+        EntitySet<Integer, IndexedProduct> productSet = repository.entities(IndexedProduct.metaClass);
+        List<IndexedProduct> products = indexedProducts(1000);
+        productSet.update(products).ignoreElement().blockingAwait();
+
+        Assert.assertEquals(
+                products.stream()
+                        .filter(p -> p.price() > 120)
+                        .sorted(Comparator.comparing(IndexedProduct::name).reversed())
+                        .skip(15)
+                        .limit(50)
+                        .map(IndexedProduct::id)
+                        .collect(Collectors.toList()),
+                productSet.query()
+                        .where(IndexedProduct.$.price.greaterThan(120))
+                        .orderBy(IndexedProduct.$.name, false)
+                        .skip(15)
+                        .limit(50)
+                        .retrieve()
+                        .map(IndexedProduct::id)
+                        .toList()
+                        .blockingGet());
+
+        Assert.assertEquals(
+                products.stream()
+                        .sorted(Comparator.comparing(IndexedProduct::price).thenComparing(IndexedProduct::name))
+                        .limit(20)
+                        .map(IndexedProduct::id)
+                        .collect(Collectors.toList()),
+                productSet.query()
+                        .orderBy(IndexedProduct.$.price)
+                        .orderBy(IndexedProduct.$.name)
+                        .limit(20)
+                        .retrieve()
+                        .map(IndexedProduct::id)
+                        .toList()
+                        .blockingGet());
+    }
+
+    @Test
+    public void testLimitedSortPlanIsChosenByCandidateCount() {
+        MemoryQueryPlanner<Integer, IndexedProduct> planner = MemoryQueryPlanner.create(IndexedProduct.metaClass);
+        indexedProducts(1000).forEach(product -> planner.update(product.id(), null, product));
+        List<SortingInfo<IndexedProduct, ?, ? extends Comparable<?>>> byType = ImmutableList.of(SortingInfo.create(IndexedProduct.$.type, true));
+
+        Assert.assertFalse(planner
+                .plan(IndexedProduct.$.price.greaterOrEqual(150).and(IndexedProduct.$.price.lessThan(152)), byType, 10L)
+                .orElseThrow(AssertionError::new)
+                .isOrdered());
+        Assert.assertTrue(planner
+                .plan(IndexedProduct.$.price.greaterThan(100), byType, 10L)
+                .orElseThrow(AssertionError::new)
+                .isOrdered());
+    }
+
+    private static List<IndexedProduct> indexedProducts(int count) {
+        IndexedProductPrototype.Type[] types = IndexedProductPrototype.Type.values();
+        return IntStream.range(0, count)
+                .mapToObj(i -> IndexedProduct.builder()
+                        .id(i)
+                        .name("Product " + i)
+                        .type(types[i % types.length])
+                        .price(100 + (i % 7)*(i % 11) + i % 13)
+                        .build())
+                .collect(Collectors.toList());
+    }
 }
@@ -1,16 +1,30 @@
 package com.slimgears.rxrepo.mongodb;
 
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Maps;
 import com.google.common.reflect.TypeToken;
 import com.mongodb.DuplicateKeyException;
 import com.mongodb.ErrorCategory;
 import com.mongodb.MongoBulkWriteException;
+import com.mongodb.MongoCommandException;
+import com.mongodb.MongoException;
 import com.mongodb.MongoWriteException;
 import com.mongodb.bulk.BulkWriteError;
+import com.mongodb.client.model.BulkWriteOptions;
+import com.mongodb.client.model.FindOneAndUpdateOptions;
+import com.mongodb.client.model.IndexOptions;
+import com.mongodb.client.model.InsertManyOptions;
+import com.mongodb.client.model.InsertOneModel;
+import com.mongodb.client.model.ReplaceOneModel;
+import com.mongodb.client.model.WriteModel;
 import com.mongodb.client.model.changestream.ChangeStreamDocument;
 import com.mongodb.client.model.changestream.OperationType;
 import com.mongodb.client.result.DeleteResult;
 import com.mongodb.client.result.UpdateResult;
 import com.mongodb.reactivestreams.client.AggregatePublisher;
+import com.mongodb.reactivestreams.client.ChangeStreamPublisher;
 import com.mongodb.reactivestreams.client.MongoCollection;
 import com.mongodb.reactivestreams.client.MongoDatabase;
 import com.slimgears.rxrepo.encoding.MetaClassFieldMapper;
@@ -24,6 +38,7 @@ import com.slimgears.rxrepo.query.provider.UpdateInfo;
 import com.slimgears.rxrepo.util.Expressions;
 import com.slimgears.rxrepo.util.PropertyMetas;
 import com.slimgears.util.autovalue.annotations.MetaClassWithKey;
+import com.slimgears.util.autovalue.annotations.MetaClasses;
 import com.slimgears.util.reflect.TypeTokens;
 import com.slimgears.util.stream.Lazy;
 import com.slimgears.util.stream.Optionals;
@@ -42,32 +57,105 @@ import org.bson.codecs.configuration.CodecRegistry;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.ConcurrentModificationException;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.atomic.AtomicReference;
 import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static java.util.Objects.requireNonNull;
 
 class MongoEntityQueryProvider<K, S> implements EntityQueryProvider<K, S> {
     private final static Logger log = LoggerFactory.getLogger(MongoEntityQueryProvider.class);
+    private final static int maxBulkRetries = 10;
+    private final static int maxResumeAttempts = 10;
+    private final static int maxConcurrentUpdates = 16;
+    private final static int maxResumeTokens = 1000;
+    private final static int indexOptionsConflictCode = 85;
+    private final static Set<Integer> historyLostCodes = ImmutableSet.of(136, 280, 286);
+    private final static String timestampField = "timestamp";
+    private final static String keyField = "key";
+    private final static String deletedField = "deleted";
     private final MetaClassWithKey<K, S> metaClass;
     private final Lazy<MongoCollection<Document>> objectCollection;
     private final Lazy<MongoCollection<Document>> notificationCollection;
+    private final AtomicReference<Completable> notificationIndex = new AtomicReference<>();
+    private final Cache<List<Object>, BsonDocument> resumeTokens;
+    private final MongoDatabase database;
+    private final Duration notificationRetention;
     private final Lazy<Codec<S>> codec;
     private final Lazy<Codec<Document>> docCodec;
     private final CodecRegistry codecRegistry;
     private final MetaClassFieldMapper fieldMapper;
 
-    MongoEntityQueryProvider(MetaClassWithKey<K, S> metaClass, MongoDatabase database, MetaClassFieldMapper fieldMapper) {
+    MongoEntityQueryProvider(MetaClassWithKey<K, S> metaClass, MongoDatabase database, MetaClassFieldMapper fieldMapper, Duration notificationRetention) {
         this.metaClass = metaClass;
         this.codecRegistry = database.getCodecRegistry();
         this.codec = Lazy.of(() -> codecRegistry.get(metaClass.asClass()));
         this.docCodec = Lazy.of(() -> codecRegistry.get(Document.class));
         this.fieldMapper = fieldMapper;
+        this.database = database;
+        this.notificationRetention = notificationRetention;
         this.objectCollection = Lazy.of(() -> database.getCollection(metaClass.simpleName()));
-        this.notificationCollection = Lazy.of(() -> database.getCollection(metaClass.simpleName() + ".updates"));
+        this.notificationCollection = Lazy.of(() -> database.getCollection(notificationCollectionName()));
+        this.resumeTokens = CacheBuilder.newBuilder()
+                .expireAfterWrite(notificationRetention.toMillis(), TimeUnit.MILLISECONDS)
+                .maximumSize(maxResumeTokens)
+                .build();
+    }
+
+    private String notificationCollectionName() {
+        return metaClass.simpleName() + ".updates";
+    }
+
+    // Notifications are written only once the expiration index exists. A failed attempt is
+    // not cached, so the next write tries again
+    private Completable ensureNotificationIndex() {
+        return Completable.defer(() -> notificationIndex.updateAndGet(current -> current != null
+                ? current
+                : createNotificationIndex()
+                        .doOnError(e -> notificationIndex.set(null))
+                        .cache()));
+    }
+
+    private Completable createNotificationIndex() {
+        long retentionSeconds = notificationRetention.getSeconds();
+        return Completable
+                .fromPublisher(notificationCollection.get().createIndex(
+                        new Document(timestampField, 1),
+                        new IndexOptions().expireAfter(retentionSeconds, TimeUnit.SECONDS)))
+                .onErrorResumeNext(e -> isIndexOptionsConflict(e)
+                        ? Completable.fromPublisher(database.runCommand(new Document("collMod", notificationCollectionName())
+                                .append("index", new Document("keyPattern", new Document(timestampField, 1))
+                                        .append("expireAfterSeconds", retentionSeconds))))
+                        : Completable.error(e))
+                // Notifications written before the index was introduced have no timestamp and would never expire
+                .andThen(Completable.fromPublisher(notificationCollection.get().updateMany(
+                        new Document(timestampField, new Document("$exists", false)),
+                        new Document("$set", new Document(timestampField, new Date())))))
+                .doOnComplete(() -> log.debug("Notifications of {} expire after {}", metaClass.simpleName(), notificationRetention))
+                .doOnError(e -> log.warn("Could not create notification expiration index for {}", metaClass.simpleName(), e));
+    }
+
+    private Completable insertNotifications(List<Document> notifications) {
+        return notifications.isEmpty()
+                ? Completable.complete()
+                : ensureNotificationIndex().andThen(Completable.fromPublisher(notificationCollection.get()
+                        .insertMany(notifications, new InsertManyOptions().ordered(false))));
     }
 
     private Maybe<Document> findDocument(K key) {
@@ -150,6 +238,138 @@ class MongoEntityQueryProvider<K, S> implements EntityQueryProvider<K, S> {
                 .doOnError(e -> log.trace("Could not update object: ", e));
     }
 
+    @Override
+    public Completable insertOrUpdateAll(Iterable<S> entities) {
+        return insertOrUpdateAll(entities, maxBulkRetries);
+    }
+
+    private Completable insertOrUpdateAll(Iterable<S> entities, int retriesLeft) {
+        return Completable.defer(() -> {
+            Map<K, S> entitiesByKey = new LinkedHashMap<>();
+            entities.forEach(e -> entitiesByKey.merge(metaClass.keyOf(e), e, (a, b) -> MetaClasses.merge(metaClass, a, b)));
+            if (entitiesByKey.isEmpty()) {
+                return Completable.complete();
+            }
+
+            return findDocuments(entitiesByKey.keySet())
+                    .toMap(doc -> metaClass.keyOf(objectFromDocument(doc)))
+                    .map(existing -> toBulkItems(entitiesByKey, existing))
+                    .flatMapCompletable(items -> items.isEmpty()
+                            ? Completable.complete()
+                            : bulkWrite(items).flatMapCompletable(conflicts -> {
+                                List<BulkItem> written = new ArrayList<>();
+                                List<S> conflicting = new ArrayList<>();
+                                for (int i = 0; i < items.size(); ++i) {
+                                    if (conflicts.contains(i)) {
+                                        conflicting.add(items.get(i).entity);
+                                    } else {
+                                        written.add(items.get(i));
+                                    }
+                                }
+                                return publishBulkItems(written)
+                                        .andThen(conflicting.isEmpty()
+                                                ? Completable.complete()
+                                                : retriesLeft > 0
+                                                        ? insertOrUpdateAll(conflicting, retriesLeft - 1)
+                                                        : Completable.error(new ConcurrentModificationException("Concurrent modification of " + conflicting.size() + " object(s) detected")));
+                            }));
+        });
+    }
+
+    private Observable<Document> findDocuments(Collection<K> keys) {
+        return Observable.fromPublisher(objectCollection.get()
+                .aggregate(MongoPipeline.builder()
+                        .lookupAndUnwindReferences(metaClass)
+                        .match(filterForKeys(keys))
+                        .build()));
+    }
+
+    private List<BulkItem> toBulkItems(Map<K, S> entitiesByKey, Map<K, Document> existing) {
+        List<BulkItem> items = new ArrayList<>();
+        entitiesByKey.forEach((key, entity) -> {
+            Document oldDoc = existing.get(key);
+            if (oldDoc == null) {
+                Document newDoc = objectToDocument(entity, 0);
+                items.add(new BulkItem(key, entity, entity, null, newDoc, new InsertOneModel<>(newDoc)));
+                return;
+            }
+            S oldObject = objectFromDocument(oldDoc);
+            S newObject = MetaClasses.merge(metaClass, oldObject, entity);
+            if (Objects.equals(oldObject, newObject)) {
+                return;
+            }
+            long version = oldDoc.getLong(fieldMapper.versionField());
+            Document newDoc = objectToDocument(newObject, version + 1);
+            items.add(new BulkItem(key, entity, newObject, oldDoc, newDoc, new ReplaceOneModel<>(
+                    MongoPipeline.filterForKeyAndVersion(key, version),
+                    newDoc)));
+        });
+        return items;
+    }
+
+    private Single<Set<Integer>> bulkWrite(List<BulkItem> items) {
+        List<WriteModel<Document>> models = items.stream().map(item -> item.model).collect(Collectors.toList());
+        return Single
+                .fromPublisher(objectCollection.get().bulkWrite(models, new BulkWriteOptions().ordered(false)))
+                .doOnSuccess(res -> log.trace("Bulk write result: {}", res))
+                .flatMap(res -> withUnmatchedReplacements(items, res.getMatchedCount(), Collections.emptySet()))
+                .onErrorResumeNext(e -> isDuplicateKeyOnly(e)
+                        ? withUnmatchedReplacements(
+                                items,
+                                ((MongoBulkWriteException)e).getWriteResult().getMatchedCount(),
+                                ((MongoBulkWriteException)e)
+                                        .getWriteErrors()
+                                        .stream()
+                                        .map(BulkWriteError::getIndex)
+                                        .collect(Collectors.toSet()))
+                        : Single.error(convertError(e)));
+    }
+
+    // Replacements are filtered by key and version and never upsert, so one whose object was
+    // concurrently modified or deleted matches nothing; such items are reported as conflicts,
+    // the same way a single insertOrUpdate fails when its replaceOne matches nothing
+    private Single<Set<Integer>> withUnmatchedReplacements(List<BulkItem> items, int matchedCount, Set<Integer> conflicts) {
+        List<Integer> replacements = IntStream.range(0, items.size())
+                .filter(i -> items.get(i).oldDoc != null && !conflicts.contains(i))
+                .boxed()
+                .collect(Collectors.toList());
+        if (matchedCount >= replacements.size()) {
+            return Single.just(conflicts);
+        }
+
+        return findDocuments(replacements.stream().map(i -> items.get(i).key).collect(Collectors.toList()))
+                .toMap(doc -> metaClass.keyOf(objectFromDocument(doc)))
+                .map(current -> {
+                    Set<Integer> unmatched = new HashSet<>(conflicts);
+                    replacements.stream()
+                            .filter(i -> !isWritten(items.get(i), current.get(items.get(i).key)))
+                            .forEach(unmatched::add);
+                    return unmatched;
+                });
+    }
+
+    private boolean isWritten(BulkItem item, Document currentDoc) {
+        return currentDoc != null &&
+                Objects.equals(currentDoc.getLong(fieldMapper.versionField()), item.newDoc.getLong(fieldMapper.versionField())) &&
+                Objects.equals(objectFromDocument(currentDoc), item.newObject);
+    }
+
+    private Completable publishBulkItems(List<BulkItem> items) {
+        List<Document> notifications = items.stream()
+                .filter(item -> item.oldDoc != null)
+                .map(item -> createNotification(item.oldDoc, item.newDoc))
+                .collect(Collectors.toList());
+        return insertNotifications(notifications);
+    }
+
+    private static boolean isDuplicateKeyOnly(Throwable e) {
+        return e instanceof MongoBulkWriteException && ((MongoBulkWriteException)e)
+                .getWriteErrors()
+                .stream()
+                .map(BulkWriteError::getCategory)
+                .allMatch(ErrorCategory.DUPLICATE_KEY::equals);
+    }
+
     @Override
     public <T> Observable<T> query(QueryInfo<K, S, T> query) {
         return queryDocuments(query)
@@ -179,26 +399,79 @@ class MongoEntityQueryProvider<K, S> implements EntityQueryProvider<K, S> {
     public <T> Observable<Notification<T>> liveQuery(QueryInfo<K, S, T> query) {
         java.util.function.Function<S, T> mapper = Expressions.compile(query.mapping());
 
-        Observable<Notification<S>> modifications = Observable.fromPublisher(notificationCollection.get().watch())
-                .map(ChangeStreamDocument::getFullDocument)
-                .doOnNext(d -> log.trace("New update: {}", d.toJson()))
-                .map(this::notificationFromDocument)
-                .filter(n -> !Objects.equals(n.oldValue(), n.newValue()));
+        Observable<Notification<S>> modifications = watch(
+                notificationCollection,
+                Collections.singletonList(new Document("$match", new Document("operationType", OperationType.INSERT.getValue())
+                        .append("fullDocument." + deletedField, new Document("$ne", true)))),
+                Arrays.asList(notificationCollectionName(), query),
+                changeDoc -> Observable.just(requireNonNull(changeDoc.getFullDocument()))
+                        .doOnNext(d -> log.trace("New update: {}", d.toJson()))
+                        .map(this::notificationFromDocument)
+                        .filter(n -> !Objects.equals(n.oldValue(), n.newValue())));
+
+        Observable<Notification<S>> insertionsAndDeletions = watch(
+                objectCollection,
+                Collections.singletonList(new Document("$match", new Document("operationType", new Document("$in", Arrays.asList(
+                        OperationType.INSERT.getValue(),
+                        OperationType.DELETE.getValue()))))),
+                Arrays.asList(metaClass.simpleName(), query),
+                changeDoc -> {
+                    log.trace("Change detected: {}", changeDoc);
+                    return changeDoc.getOperationType() == OperationType.DELETE
+                            ? deleteNotification(changeDoc).toObservable()
+                            : Observable.just(notificationFromChangeDocument(changeDoc));
+                });
+
+        return modifications.mergeWith(insertionsAndDeletions)
+                .map(n -> n.map(mapper));
+    }
 
-        Observable<Notification<S>> insertions = Observable
-                .fromPublisher(objectCollection
-                        .get()
-                        .watch())
-                .doOnNext(d -> log.trace("Change detected: {}", d))
-                .flatMapMaybe(this::notificationFromChangeDocument);
+    // The resume token is kept per collection and query, so a live query subscribed again after
+    // a failure resumes where it stopped. If the token is too old to resume from, the stream
+    // starts over and emits an empty notification, which subscribers treat as an unknown change
+    private Observable<Notification<S>> watch(
+            Lazy<MongoCollection<Document>> collection,
+            List<Document> pipeline,
+            List<Object> resumeKey,
+            Function<ChangeStreamDocument<Document>, Observable<Notification<S>>> toNotifications) {
+        return Observable
+                .defer(() -> {
+                    BsonDocument resumeToken = resumeTokens.getIfPresent(resumeKey);
+                    ChangeStreamPublisher<Document> publisher = collection.get().watch(pipeline);
+                    return Observable.fromPublisher(resumeToken != null ? publisher.resumeAfter(resumeToken) : publisher)
+                            .concatMap(changeDoc -> toNotifications.apply(changeDoc)
+                                    .doOnComplete(() -> resumeTokens.put(resumeKey, changeDoc.getResumeToken())))
+                            .onErrorResumeNext((Throwable e) -> {
+                                if (resumeToken == null || !isHistoryLost(e)) {
+                                    return Observable.error(e);
+                                }
+                                log.warn("Change stream of {} cannot be resumed, changes may have been missed", metaClass.simpleName(), e);
+                                resumeTokens.invalidate(resumeKey);
+                                return Observable.just(Notification.<S>ofModified(null, null)).concatWith(Observable.error(e));
+                            });
+                })
+                .retry(maxResumeAttempts, e -> e instanceof MongoException)
+                .doOnDispose(() -> resumeTokens.invalidate(resumeKey))
+                .doOnError(e -> log.warn("Change stream of {} terminated", metaClass.simpleName(), e));
+    }
 
-        return modifications.mergeWith(insertions)
-                .map(n -> n.map(mapper));
+    // Deletions are written to the notification collection before the objects are deleted, and
+    // only the delete event of the object itself publishes the notification. A delete that fails
+    // half way leaves pending entries that expire, instead of losing notifications
+    private Maybe<Notification<S>> deleteNotification(ChangeStreamDocument<Document> changeDoc) {
+        BsonValue id = requireNonNull(changeDoc.getDocumentKey()).get("_id");
+        return Observable
+                .fromPublisher(notificationCollection.get()
+                        .find(new Document(keyField, id).append(deletedField, true))
+                        .sort(new Document(timestampField, -1))
+                        .limit(1))
+                .firstElement()
+                .map(doc -> Notification.ofDeleted(toObject(doc.get("oldValue"), metaClass.asType())))
+                .defaultIfEmpty(Notification.<S>ofModified(null, null));
     }
 
     private Completable publish(Document oldDoc, Document newDoc) {
-        return Completable.fromPublisher(notificationCollection.get()
-                .insertOne(createNotification(oldDoc, newDoc)));
+        return insertNotifications(Collections.singletonList(createNotification(oldDoc, newDoc)));
     }
 
     private Document createNotification(Document oldDoc, Document newDoc) {
@@ -208,28 +481,87 @@ class MongoEntityQueryProvider<K, S> implements EntityQueryProvider<K, S> {
                 .map(doc -> doc.get("_id"))
                 .orElse(null);
 
-        return new Document("key", id)
+        return new Document(keyField, id)
+                .append(timestampField, new Date())
+                .append(deletedField, newDoc == null)
                 .append("oldValue", oldDoc)
                 .append("newValue", newDoc);
     }
 
-    private Completable publishNotification(Document notificationDocument) {
-        return Completable
-                .fromPublisher(notificationCollection.get()
-                .insertOne(notificationDocument));
-    }
-
     @Override
     public Single<Integer> update(UpdateInfo<K, S> updateInfo) {
-        return Single.error(() -> new UnsupportedOperationException("Not supported yet"));
-//        return Observable.fromPublisher(objectCollection.get()
-//                .updateMany(
-//                        MongoPipeline.expr(updateInfo.predicate()),
-//                        MongoPipeline.setFields(updateInfo.propertyUpdates())))
-//                .map(UpdateResult::getModifiedCount)
-//                .firstElement()
-//                .map(Long::intValue)
-//                .toSingle(0);
+        return queryDocuments(QueryInfo
+                .<K, S, S>builder()
+                .metaClass(updateInfo.metaClass())
+                .predicate(updateInfo.predicate())
+                .limit(updateInfo.limit())
+                .build())
+                .toList()
+                .flatMap(oldDocs -> update(updateInfo, oldDocs, maxBulkRetries))
+                .onErrorResumeNext(e -> Single.error(convertError(e)));
+    }
+
+    // Each document is updated only if it still has the version it was read with, so the
+    // published notification never carries a stale old value. Documents modified in between
+    // are read again and updated if they still match the predicate
+    private Single<Integer> update(UpdateInfo<K, S> updateInfo, List<Document> oldDocs, int retriesLeft) {
+        if (oldDocs.isEmpty()) {
+            return Single.just(0);
+        }
+
+        List<Document> updatePipeline = MongoPipeline.updatePipeline(updateInfo);
+        return Observable.fromIterable(oldDocs)
+                .flatMap(oldDoc -> Observable
+                        .fromPublisher(objectCollection.get().findOneAndUpdate(
+                                MongoPipeline.filterForKeyAndVersion(oldDoc.get("_id"), oldDoc.getLong(fieldMapper.versionField())),
+                                updatePipeline,
+                                new FindOneAndUpdateOptions().projection(new Document("_id", 1))))
+                        .isEmpty()
+                        .map(unmatched -> Maps.immutableEntry(oldDoc, !unmatched))
+                        .toObservable(), maxConcurrentUpdates)
+                .toList()
+                .flatMap(results -> {
+                    Map<Object, Document> updated = new LinkedHashMap<>();
+                    List<Object> conflicting = new ArrayList<>();
+                    results.forEach(res -> {
+                        if (res.getValue()) {
+                            updated.put(res.getKey().get("_id"), res.getKey());
+                        } else {
+                            conflicting.add(res.getKey().get("_id"));
+                        }
+                    });
+                    log.trace("Updated {} documents, {} modified concurrently", updated.size(), conflicting.size());
+                    return publishUpdates(updated)
+                            .andThen(conflicting.isEmpty()
+                                    ? Single.just(0)
+                                    : retriesLeft > 0
+                                            ? findDocuments(conflicting, updateInfo).toList().flatMap(docs -> update(updateInfo, docs, retriesLeft - 1))
+                                            : Single.<Integer>error(new ConcurrentModificationException("Concurrent modification of " + conflicting.size() + " object(s) detected")))
+                            .map(count -> count + updated.size());
+                });
+    }
+
+    private Observable<Document> findDocuments(Collection<?> keys, UpdateInfo<K, S> updateInfo) {
+        MongoPipeline.Builder pipeline = MongoPipeline.builder()
+                .lookupAndUnwindReferences(metaClass)
+                .match(filterForKeys(keys));
+        Optional.ofNullable(updateInfo.predicate()).ifPresent(pipeline::match);
+        return Observable.fromPublisher(objectCollection.get().aggregate(pipeline.build()));
+    }
+
+    private Completable publishUpdates(Map<Object, Document> oldDocs) {
+        return Observable.fromPublisher(objectCollection.get()
+                .aggregate(MongoPipeline.builder()
+                        .lookupAndUnwindReferences(metaClass)
+                        .match(filterForKeys(oldDocs.keySet()))
+                        .build()))
+                .map(newDoc -> createNotification(oldDocs.get(newDoc.get("_id")), newDoc))
+                .toList()
+                .flatMapCompletable(this::insertNotifications);
+    }
+
+    private static Document filterForKeys(Collection<?> keys) {
+        return new Document("_id", new Document("$in", new ArrayList<>(keys)));
     }
 
     @Override
@@ -240,14 +572,16 @@ class MongoEntityQueryProvider<K, S> implements EntityQueryProvider<K, S> {
                 .predicate(deleteInfo.predicate())
                 .limit(deleteInfo.limit())
                 .build())
-                .map(doc -> createNotification(doc, doc))
-                .flatMapCompletable(this::publishNotification)
-                .andThen(Observable.fromPublisher(objectCollection.get()
-                        .deleteMany(MongoPipeline.expr(deleteInfo.predicate())))
-                        .map(DeleteResult::getDeletedCount)
-                        .firstElement()
-                        .map(Long::intValue)
-                        .toSingle(0));
+                .toList()
+                .flatMap(docs -> docs.isEmpty()
+                        ? Single.just(0)
+                        : insertNotifications(docs.stream()
+                                .map(doc -> createNotification(doc, null))
+                                .collect(Collectors.toList()))
+                                .andThen(Single.fromPublisher(objectCollection.get()
+                                        .deleteMany(filterForKeys(docs.stream().map(doc -> doc.get("_id")).collect(Collectors.toList())))))
+                                .map(DeleteResult::getDeletedCount)
+                                .map(Long::intValue));
     }
 
     @Override
@@ -261,6 +595,14 @@ class MongoEntityQueryProvider<K, S> implements EntityQueryProvider<K, S> {
                 : e;
     }
 
+    private static boolean isIndexOptionsConflict(Throwable e) {
+        return e instanceof MongoCommandException && ((MongoCommandException)e).getErrorCode() == indexOptionsConflictCode;
+    }
+
+    private static boolean isHistoryLost(Throwable e) {
+        return e instanceof MongoException && historyLostCodes.contains(((MongoException)e).getCode());
+    }
+
     private static boolean isDuplicateKeyException(Throwable e) {
         return e instanceof DuplicateKeyException ||
                 (e instanceof MongoWriteException && ((MongoWriteException)e).getError().getCategory() == ErrorCategory.DUPLICATE_KEY) ||
@@ -278,6 +620,10 @@ class MongoEntityQueryProvider<K, S> implements EntityQueryProvider<K, S> {
     }
 
     private <T> T toObject(Object object, TypeToken<T> type) {
+        if (object == null) {
+            return null;
+        }
+
         if (object instanceof Document) {
             return objectFromDocument((Document)object, type);
         }
@@ -296,30 +642,8 @@ class MongoEntityQueryProvider<K, S> implements EntityQueryProvider<K, S> {
         return res;
     }
 
-    private Maybe<Notification<S>> notificationFromChangeDocument(ChangeStreamDocument<Document> changeDoc) {
-        if (changeDoc.getOperationType() == OperationType.INSERT) {
-            S object = Optional
-                    .ofNullable(changeDoc.getFullDocument())
-                    .map(this::objectFromDocument)
-                    .orElse(null);
-            return Maybe.just(Notification.ofCreated(object));
-        } else if (changeDoc.getOperationType() == OperationType.DELETE) {
-            Object key = Optional.of(changeDoc.getDocumentKey())
-                    .map(doc -> doc.get("_id"))
-                    .orElse(null);
-
-            return Observable.fromPublisher(notificationCollection.get()
-                    .aggregate(MongoPipeline.builder()
-                            .match(MongoPipeline.filterForField("key", key))
-                            .replaceRoot("$newValue")
-                            .sort(new Document(fieldMapper.versionField(), -1))
-                            .limit(1L)
-                            .build()))
-                    .firstElement()
-                    .map(this::objectFromDocument)
-                    .map(Notification::ofDeleted);
-        }
-        return Maybe.empty();
+    private Notification<S> notificationFromChangeDocument(ChangeStreamDocument<Document> changeDoc) {
+        return Notification.ofCreated(objectFromDocument(requireNonNull(changeDoc.getFullDocument())));
     }
 
     private Document objectToDocument(S obj, long version) {
@@ -357,6 +681,24 @@ class MongoEntityQueryProvider<K, S> implements EntityQueryProvider<K, S> {
         return new AggregationResultDecoder<>(decoder).decode(doc.asBsonReader(), AggregationResultDecoder.defaultContext);
     }
 
+    private class BulkItem {
+        private final K key;
+        private final S entity;
+        private final S newObject;
+        private final Document oldDoc;
+        private final Document newDoc;
+        private final WriteModel<Document> model;
+
+        private BulkItem(K key, S entity, S newObject, Document oldDoc, Document newDoc, WriteModel<Document> model) {
+            this.key = key;
+            this.entity = entity;
+            this.newObject = newObject;
+            this.oldDoc = oldDoc;
+            this.newDoc = newDoc;
+            this.model = model;
+        }
+    }
+
     static class AggregationResultDecoder<T> implements Decoder<T>  {
         private final static DecoderContext defaultContext = DecoderContext.builder().build();
         private final Decoder<T> typeDecoder;
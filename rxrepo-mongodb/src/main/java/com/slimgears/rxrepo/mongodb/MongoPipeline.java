@@ -8,6 +8,8 @@ import com.slimgears.rxrepo.encoding.MetaClassFieldMapper;
 import com.slimgears.rxrepo.expressions.*;
 import com.slimgears.rxrepo.expressions.internal.MoreTypeTokens;
 import com.slimgears.rxrepo.mongodb.adapter.MongoFieldMapper;
+import com.slimgears.rxrepo.query.provider.CollectionPropertyUpdateInfo;
+import com.slimgears.rxrepo.query.provider.HasPropertyUpdates;
 import com.slimgears.rxrepo.query.provider.PropertyUpdateInfo;
 import com.slimgears.rxrepo.query.provider.QueryInfo;
 import com.slimgears.rxrepo.query.provider.SortingInfo;
@@ -212,6 +214,22 @@ public class MongoPipeline {
         return new Document("$set", fields);
     }
 
+    static <T> List<Document> updatePipeline(HasPropertyUpdates<T> updates) {
+        Document fields = new Document();
+        updates.propertyUpdates().forEach(pu -> fields.append(propertyToString(pu.property()), toExpression(pu.updater())));
+        updates.collectionPropertyUpdates().forEach(cpu -> fields.append(propertyToString(cpu.property()), toCollectionUpdate(cpu)));
+        fields.append(fieldMapper.versionField(), new Document("$add", Arrays.asList("$" + fieldMapper.versionField(), 1L)));
+        return Collections.singletonList(new Document("$set", fields));
+    }
+
+    private static Document toCollectionUpdate(CollectionPropertyUpdateInfo<?, ?, ?, ?> collectionUpdate) {
+        Document current = new Document("$ifNull", Arrays.asList("$" + propertyToString(collectionUpdate.property()), Collections.emptyList()));
+        Object item = toExpression(collectionUpdate.item());
+        return collectionUpdate.operation() == CollectionPropertyUpdateInfo.Operation.Add
+                ? new Document("$concatArrays", Arrays.asList(current, Collections.singletonList(item)))
+                : new Document("$filter", new Document("input", current).append("cond", new Document("$ne", Arrays.asList("$$this", item))));
+    }
+
     static <T> Document aggregation(TypeToken<T> type, Aggregator<T, T, ?> aggregator) {
         UnaryOperationExpression<T, Collection<T>, ?> expression = aggregator
                 .apply(CollectionExpression.indirectArg(MoreTypeTokens.collection(type)));
@@ -18,14 +18,22 @@ import com.slimgears.util.autovalue.annotations.MetaClassWithKey;
 import io.reactivex.Completable;
 import io.reactivex.Maybe;
 
+import java.time.Duration;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.UnaryOperator;
 
 public class MongoQueryProvider extends AbstractEntityQueryProviderAdapter {
     private final MongoClient client;
     private final MongoDatabase database;
     private final AtomicBoolean isClosed = new AtomicBoolean(false);
+    private final Duration notificationRetention;
 
-    MongoQueryProvider(String connectionString, String dbName, int maxConnections) {
+    MongoQueryProvider(String connectionString, String dbName, int maxConnections, Duration notificationRetention) {
+        this(connectionString, dbName, maxConnections, notificationRetention, UnaryOperator.identity());
+    }
+
+    MongoQueryProvider(String connectionString, String dbName, int maxConnections, Duration notificationRetention, UnaryOperator<MongoDatabase> databaseDecorator) {
+        this.notificationRetention = notificationRetention;
         MetaObjectResolver objectResolver = new ObjectResolver();
         this.client = MetaClassCodec.withResolver(
                 objectResolver,
@@ -35,7 +43,7 @@ public class MongoQueryProvider extends AbstractEntityQueryProviderAdapter {
                         .applyConnectionString(new ConnectionString(connectionString))
                         .codecRegistry(StandardCodecs.registry())
                         .build()));
-        this.database = client.getDatabase(dbName);
+        this.database = databaseDecorator.apply(client.getDatabase(dbName));
     }
 
     @Override
@@ -46,7 +54,7 @@ public class MongoQueryProvider extends AbstractEntityQueryProviderAdapter {
 
     @Override
     protected <K, S> EntityQueryProvider<K, S> createProvider(MetaClassWithKey<K, S> metaClass) {
-        return new MongoEntityQueryProvider<>(metaClass, database, MongoFieldMapper.instance);
+        return new MongoEntityQueryProvider<>(metaClass, database, MongoFieldMapper.instance, notificationRetention);
     }
 
     @Override
@@ -7,6 +7,8 @@ import com.slimgears.rxrepo.query.decorator.UpdateReferencesFirstQueryProviderDe
 import com.slimgears.rxrepo.query.provider.QueryProvider;
 import com.slimgears.util.generic.MoreStrings;
 
+import java.time.Duration;
+
 public class MongoRepository {
     public static Builder builder() {
         return new Builder();
@@ -19,6 +21,7 @@ public class MongoRepository {
         private int port = 27017;
         private String user = null;
         private String password = null;
+        private Duration notificationRetention = Duration.ofHours(1);
         private QueryProvider.Decorator decorator = QueryProvider.Decorator.identity();
 
         private Builder() {
@@ -54,6 +57,11 @@ public class MongoRepository {
             return this;
         }
 
+        public Builder notificationRetention(Duration notificationRetention) {
+            this.notificationRetention = notificationRetention;
+            return this;
+        }
+
         public Builder decorate(QueryProvider.Decorator... decorators) {
             decorator = QueryProvider.Decorator.of(this.decorator, QueryProvider.Decorator.of(decorators));
             return this;
@@ -61,7 +69,7 @@ public class MongoRepository {
 
         public Repository build() {
             String connectionString = createConnectionString();
-            QueryProvider queryProvider = new MongoQueryProvider(connectionString, dbName, maxConcurrentRequests * 2);
+            QueryProvider queryProvider = new MongoQueryProvider(connectionString, dbName, maxConcurrentRequests * 2, notificationRetention);
             return Repository.fromProvider(queryProvider,
                     LiveQueryProviderDecorator.create(),
                     decorator,
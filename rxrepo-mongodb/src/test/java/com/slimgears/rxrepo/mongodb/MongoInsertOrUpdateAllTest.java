@@ -0,0 +1,169 @@
+package com.slimgears.rxrepo.mongodb;
+
+import com.google.common.collect.ImmutableList;
+import com.mongodb.client.model.BulkWriteOptions;
+import com.mongodb.reactivestreams.client.MongoCollection;
+import com.mongodb.reactivestreams.client.MongoDatabase;
+import com.slimgears.rxrepo.mongodb.adapter.MongoFieldMapper;
+import com.slimgears.rxrepo.query.EntitySet;
+import com.slimgears.rxrepo.query.Repository;
+import com.slimgears.rxrepo.query.decorator.LiveQueryProviderDecorator;
+import com.slimgears.rxrepo.query.decorator.UpdateReferencesFirstQueryProviderDecorator;
+import com.slimgears.rxrepo.test.Product;
+import com.slimgears.rxrepo.test.Products;
+import com.slimgears.rxrepo.test.UniqueId;
+import io.reactivex.Completable;
+import io.reactivex.Flowable;
+import org.bson.Document;
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.mockito.AdditionalAnswers;
+import org.mockito.ArgumentMatchers;
+import org.mockito.Mockito;
+import org.reactivestreams.Publisher;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+public class MongoInsertOrUpdateAllTest {
+    private static AutoCloseable mongoProcess;
+    private final AtomicInteger bulkWrites = new AtomicInteger();
+    private volatile Function<MongoCollection<Document>, Publisher<?>> beforeBulkWrite;
+    private Repository repository;
+    private EntitySet<UniqueId, Product> productSet;
+
+    @BeforeClass
+    public static void setUpClass() {
+        mongoProcess = MongoTestUtils.startMongo();
+    }
+
+    @AfterClass
+    public static void tearDownClass() throws Exception {
+        if (mongoProcess != null) {
+            mongoProcess.close();
+        }
+    }
+
+    @Before
+    public void setUp() {
+        repository = Repository.fromProvider(
+                new MongoQueryProvider(MongoTestUtils.connectionString.getConnectionString(), "bulkTest", 10, Duration.ofHours(1), this::interceptBulkWrites),
+                LiveQueryProviderDecorator.create(),
+                UpdateReferencesFirstQueryProviderDecorator.create());
+        productSet = repository.entities(Product.metaClass);
+    }
+
+    @After
+    public void tearDown() {
+        repository.clearAndClose();
+    }
+
+    @Test
+    public void testBulkUpdateWritesNewAndChangedEntities() {
+        List<Product> products = ImmutableList.copyOf(Products.createMany(10));
+        productSet.update(products.subList(0, 5)).ignoreElement().blockingAwait();
+
+        List<Product> updated = ImmutableList.<Product>builder()
+                .add(withPrice(products.get(0), 1000))
+                .add(withPrice(products.get(1), 1001))
+                .add(products.get(2))
+                .addAll(products.subList(5, 10))
+                .build();
+        productSet.update(updated).ignoreElement().blockingAwait();
+
+        Assert.assertEquals(1, bulkWrites.get());
+        Assert.assertEquals(10L, (long)productSet.query().count().blockingGet());
+        Assert.assertEquals(1000, productSet.find(products.get(0).key()).blockingGet().price());
+        Assert.assertEquals(1001, productSet.find(products.get(1).key()).blockingGet().price());
+        Assert.assertEquals(products.get(9), productSet.find(products.get(9).key()).blockingGet());
+    }
+
+    @Test
+    public void testEntityDeletedBeforeBulkWriteIsRetriedAsConflict() {
+        List<Product> products = ImmutableList.copyOf(Products.createMany(3));
+        productSet.update(products.subList(0, 2)).ignoreElement().blockingAwait();
+        Product deleted = products.get(0);
+        beforeBulkWrite = collection -> {
+            beforeBulkWrite = null;
+            return collection.deleteOne(MongoPipeline.filterForKey(deleted.key()));
+        };
+
+        productSet.update(ImmutableList.of(withPrice(deleted, 1000), withPrice(products.get(1), 1001), products.get(2))).ignoreElement().blockingAwait();
+
+        Assert.assertEquals(2, bulkWrites.get());
+        Assert.assertEquals(1000, productSet.find(deleted.key()).blockingGet().price());
+        Assert.assertEquals(1001, productSet.find(products.get(1).key()).blockingGet().price());
+        Assert.assertEquals(products.get(2), productSet.find(products.get(2).key()).blockingGet());
+    }
+
+    @Test
+    public void testConcurrentlyModifiedEntityIsRetried() {
+        List<Product> products = ImmutableList.copyOf(Products.createMany(2));
+        productSet.update(products).ignoreElement().blockingAwait();
+        Product modified = products.get(0);
+        beforeBulkWrite = collection -> {
+            beforeBulkWrite = null;
+            return bumpVersion(collection, modified.key());
+        };
+
+        productSet.update(ImmutableList.of(withPrice(modified, 1000), withPrice(products.get(1), 1001))).ignoreElement().blockingAwait();
+
+        Assert.assertEquals(2, bulkWrites.get());
+        Assert.assertEquals(1000, productSet.find(modified.key()).blockingGet().price());
+        Assert.assertEquals(1001, productSet.find(products.get(1).key()).blockingGet().price());
+    }
+
+    @Test
+    public void testEntitySetFallsBackToSingleUpdatesWhenBulkRetriesAreExhausted() {
+        List<Product> products = ImmutableList.copyOf(Products.createMany(2));
+        productSet.update(products).ignoreElement().blockingAwait();
+        Product contended = products.get(0);
+        beforeBulkWrite = collection -> bumpVersion(collection, contended.key());
+
+        List<Product> updated = productSet.update(ImmutableList.of(withPrice(contended, 1000), withPrice(products.get(1), 1001))).blockingGet();
+
+        Assert.assertEquals(2, updated.size());
+        Assert.assertEquals(11, bulkWrites.get());
+        Assert.assertEquals(1000, productSet.find(contended.key()).blockingGet().price());
+        Assert.assertEquals(1001, productSet.find(products.get(1).key()).blockingGet().price());
+    }
+
+    private static Product withPrice(Product product, int price) {
+        return product.toBuilder().price(price).build();
+    }
+
+    private static Publisher<?> bumpVersion(MongoCollection<Document> collection, UniqueId key) {
+        return collection.updateOne(
+                MongoPipeline.filterForKey(key),
+                new Document("$inc", new Document(MongoFieldMapper.instance.versionField(), 1L)));
+    }
+
+    // Runs beforeBulkWrite against the product collection after the bulk path has read the
+    // current documents and right before its bulkWrite is sent
+    @SuppressWarnings("unchecked")
+    private MongoDatabase interceptBulkWrites(MongoDatabase database) {
+        MongoDatabase interceptingDatabase = Mockito.mock(MongoDatabase.class, AdditionalAnswers.delegatesTo(database));
+        Mockito.doAnswer(getCollection -> {
+            String name = getCollection.getArgument(0);
+            MongoCollection<Document> collection = database.getCollection(name);
+            if (!Product.metaClass.simpleName().equals(name)) {
+                return collection;
+            }
+            MongoCollection<Document> interceptingCollection = Mockito.mock(MongoCollection.class, AdditionalAnswers.delegatesTo(collection));
+            Mockito.doAnswer(bulkWrite -> {
+                bulkWrites.incrementAndGet();
+                Function<MongoCollection<Document>, Publisher<?>> hook = beforeBulkWrite;
+                return (hook != null ? Completable.fromPublisher(hook.apply(collection)) : Completable.complete())
+                        .andThen(Flowable.fromPublisher(collection.bulkWrite(bulkWrite.getArgument(0), bulkWrite.<BulkWriteOptions>getArgument(1))));
+            }).when(interceptingCollection).bulkWrite(ArgumentMatchers.anyList(), ArgumentMatchers.any(BulkWriteOptions.class));
+            return interceptingCollection;
+        }).when(interceptingDatabase).getCollection(ArgumentMatchers.anyString());
+        return interceptingDatabase;
+    }
+}
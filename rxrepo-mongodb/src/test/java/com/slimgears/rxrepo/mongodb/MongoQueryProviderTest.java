@@ -1,13 +1,48 @@
 package com.slimgears.rxrepo.mongodb;
 
+import com.google.common.collect.ImmutableList;
+import com.mongodb.MongoException;
+import com.mongodb.reactivestreams.client.ChangeStreamPublisher;
+import com.mongodb.reactivestreams.client.MongoClient;
+import com.mongodb.reactivestreams.client.MongoClients;
+import com.mongodb.reactivestreams.client.MongoCollection;
+import com.mongodb.reactivestreams.client.MongoDatabase;
+import com.slimgears.rxrepo.query.EntitySet;
+import com.slimgears.rxrepo.query.Notification;
 import com.slimgears.rxrepo.query.Repository;
+import com.slimgears.rxrepo.query.decorator.LiveQueryProviderDecorator;
 import com.slimgears.rxrepo.query.decorator.SchedulingQueryProviderDecorator;
+import com.slimgears.rxrepo.query.decorator.UpdateReferencesFirstQueryProviderDecorator;
 import com.slimgears.rxrepo.test.AbstractRepositoryTest;
+import com.slimgears.rxrepo.test.Product;
+import com.slimgears.rxrepo.test.Products;
+import com.slimgears.rxrepo.test.UniqueId;
 import com.slimgears.util.test.logging.LogLevel;
 import com.slimgears.util.test.logging.UseLogLevel;
 import com.slimgears.util.test.logging.UseLogLevels;
+import io.reactivex.Completable;
+import io.reactivex.Flowable;
+import io.reactivex.Observable;
+import io.reactivex.Single;
+import io.reactivex.observers.BaseTestConsumer.TestWaitStrategy;
+import io.reactivex.observers.TestObserver;
+import org.bson.Document;
 import org.junit.AfterClass;
+import org.junit.Assert;
 import org.junit.BeforeClass;
+import org.junit.Test;
+import org.mockito.AdditionalAnswers;
+import org.mockito.ArgumentMatchers;
+import org.mockito.Mockito;
+import org.reactivestreams.Subscriber;
+
+import java.time.Duration;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Predicate;
+import java.util.function.UnaryOperator;
 
 @UseLogLevels(
         @UseLogLevel(logger = "org.mongodb.driver", value = LogLevel.INFO)
@@ -35,4 +70,132 @@ public class MongoQueryProviderTest extends AbstractRepositoryTest {
                 .decorate(SchedulingQueryProviderDecorator.createDefault())
                 .build();
     }
+
+    @Test
+    public void testNotificationsExpireByTimestamp() {
+        MongoClient client = MongoClients.create(MongoTestUtils.connectionString);
+        MongoCollection<Document> notifications = client
+                .getDatabase("notificationExpirationTest")
+                .getCollection(Product.metaClass.simpleName() + ".updates");
+        Repository repository = createRepository("notificationExpirationTest", Duration.ofMinutes(10), UnaryOperator.identity());
+        try {
+            Completable.fromPublisher(notifications.insertOne(new Document("key", "legacy"))).blockingAwait();
+            EntitySet<UniqueId, Product> productSet = repository.entities(Product.metaClass);
+            Product product = Products.createOne();
+            productSet.update(product).ignoreElement().blockingAwait();
+            productSet.update(product.toBuilder().price(product.price() + 1).build()).ignoreElement().blockingAwait();
+
+            List<Document> indexes = Observable.fromPublisher(notifications.listIndexes()).toList().blockingGet();
+            Assert.assertTrue(indexes.stream().anyMatch(index ->
+                    new Document("timestamp", 1).equals(index.get("key")) &&
+                    ((Number)index.get("expireAfterSeconds")).longValue() == 600L));
+            Assert.assertEquals(0L, (long)Single
+                    .fromPublisher(notifications.countDocuments(new Document("timestamp", new Document("$exists", false))))
+                    .blockingGet());
+        } finally {
+            repository.clearAndClose();
+            client.close();
+        }
+    }
+
+    @Test
+    public void testDeleteNotifiesWithOldValue() {
+        Repository repository = createRepository("deleteNotificationTest", Duration.ofHours(1), UnaryOperator.identity());
+        try {
+            EntitySet<UniqueId, Product> productSet = repository.entities(Product.metaClass);
+            Iterator<Product> products = Products.createMany(51).iterator();
+            TestObserver<Notification<Product>> observer = productSet.observe().test();
+            awaitLiveQuery(productSet, observer, products);
+
+            Product deleted = products.next();
+            productSet.update(deleted).ignoreElement().blockingAwait();
+            productSet.delete().where(Product.$.key.eq(deleted.key())).execute().ignoreElement().blockingAwait();
+
+            awaitValue(observer, n -> n.isDelete() && deleted.key().equals(n.oldValue().key()));
+            observer.assertNoErrors();
+        } finally {
+            repository.clearAndClose();
+        }
+    }
+
+    @Test
+    public void testLiveQueryResumesAfterChangeStreamFailure() {
+        AtomicBoolean intercepted = new AtomicBoolean();
+        Repository repository = createRepository("changeStreamResumeTest", Duration.ofHours(1), database -> failFirstProductWatch(database, intercepted));
+        try {
+            EntitySet<UniqueId, Product> productSet = repository.entities(Product.metaClass);
+            List<Product> products = ImmutableList.copyOf(Products.createMany(53));
+            TestObserver<Notification<Product>> observer = productSet.observe().test();
+            awaitLiveQuery(productSet, observer, products.subList(0, 50).iterator());
+            Assert.assertTrue(intercepted.get());
+
+            List<Product> inserted = products.subList(50, 53);
+            productSet.update(inserted).ignoreElement().blockingAwait();
+
+            inserted.forEach(product -> awaitValue(observer, n -> n.isCreate() && product.key().equals(n.newValue().key())));
+            inserted.forEach(product -> Assert.assertEquals(1, observer.values().stream()
+                    .filter(n -> n.isCreate() && product.key().equals(n.newValue().key()))
+                    .count()));
+            observer.assertNoErrors();
+        } finally {
+            repository.clearAndClose();
+        }
+    }
+
+    private static Repository createRepository(String dbName, Duration notificationRetention, UnaryOperator<MongoDatabase> databaseDecorator) {
+        return Repository.fromProvider(
+                new MongoQueryProvider(MongoTestUtils.connectionString.getConnectionString(), dbName, 10, notificationRetention, databaseDecorator),
+                LiveQueryProviderDecorator.create(),
+                UpdateReferencesFirstQueryProviderDecorator.create());
+    }
+
+    // Change streams are opened asynchronously, so new products are inserted one by one
+    // until the live query reports one of them
+    private static void awaitLiveQuery(EntitySet<UniqueId, Product> productSet, TestObserver<Notification<Product>> observer, Iterator<Product> probes) {
+        while (observer.values().stream().noneMatch(Notification::isCreate)) {
+            Assert.assertTrue("Live query did not receive any notification", probes.hasNext());
+            productSet.update(probes.next()).ignoreElement().blockingAwait();
+            observer.awaitCount(observer.valueCount() + 1, TestWaitStrategy.SLEEP_10MS, 100);
+        }
+    }
+
+    private static <T> void awaitValue(TestObserver<T> observer, Predicate<T> predicate) {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (observer.values().stream().noneMatch(predicate)) {
+            Assert.assertTrue("Expected notification was not received", System.nanoTime() < deadline);
+            observer.awaitCount(observer.valueCount() + 1, TestWaitStrategy.SLEEP_10MS, 100);
+        }
+    }
+
+    // The first change stream opened on the product collection fails right after its first
+    // event, so the live query has to resume it from that event's resume token
+    @SuppressWarnings("unchecked")
+    private static MongoDatabase failFirstProductWatch(MongoDatabase database, AtomicBoolean intercepted) {
+        MongoDatabase interceptingDatabase = Mockito.mock(MongoDatabase.class, AdditionalAnswers.delegatesTo(database));
+        Mockito.doAnswer(getCollection -> {
+            String name = getCollection.getArgument(0);
+            MongoCollection<Document> collection = database.getCollection(name);
+            if (!Product.metaClass.simpleName().equals(name)) {
+                return collection;
+            }
+            MongoCollection<Document> interceptingCollection = Mockito.mock(MongoCollection.class, AdditionalAnswers.delegatesTo(collection));
+            Mockito.doAnswer(watch -> {
+                ChangeStreamPublisher<Document> publisher = collection.watch(watch.<List<Document>>getArgument(0));
+                if (!intercepted.compareAndSet(false, true)) {
+                    return publisher;
+                }
+                ChangeStreamPublisher<Document> failingPublisher = Mockito.mock(ChangeStreamPublisher.class, AdditionalAnswers.delegatesTo(publisher));
+                Mockito.doAnswer(subscribe -> {
+                    Flowable.fromPublisher(publisher)
+                            .take(1)
+                            .concatWith(Flowable.error(new MongoException("Change stream cursor killed")))
+                            .subscribe(subscribe.<Subscriber<Object>>getArgument(0));
+                    return null;
+                }).when(failingPublisher).subscribe(ArgumentMatchers.any());
+                return failingPublisher;
+            }).when(interceptingCollection).watch(ArgumentMatchers.anyList());
+            return interceptingCollection;
+        }).when(interceptingDatabase).getCollection(ArgumentMatchers.anyString());
+        return interceptingDatabase;
+    }
 }
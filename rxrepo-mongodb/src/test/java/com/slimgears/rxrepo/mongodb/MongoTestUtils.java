@@ -10,7 +10,7 @@ class MongoTestUtils {
     static AutoCloseable startMongo() {
         return MongoService.builder()
                 .port(port)
-                .version("4.0.12")
+                .version("4.2.1")
                 .enableReplica()
                 .build()
                 .start();
@@ -0,0 +1,64 @@
+package com.slimgears.rxrepo.orientdb;
+
+import io.reactivex.Observable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+class OrientDbLiveQueryMultiplexer<K, T> {
+    private final static Logger log = LoggerFactory.getLogger(OrientDbLiveQueryMultiplexer.class);
+    private final Map<K, Entry<T>> liveQueries = new ConcurrentHashMap<>();
+
+    private static class Entry<T> {
+        private final Observable<T> shared;
+        private int subscribers;
+
+        private Entry(Observable<T> shared) {
+            this.shared = shared;
+        }
+    }
+
+    static <K, T> OrientDbLiveQueryMultiplexer<K, T> create() {
+        return new OrientDbLiveQueryMultiplexer<>();
+    }
+
+    Observable<T> observe(K key, Supplier<Observable<T>> liveQuerySupplier) {
+        return Observable.defer(() -> {
+            Entry<T> entry = acquire(key, liveQuerySupplier);
+            return entry.shared.doFinally(() -> release(key, entry));
+        });
+    }
+
+    int activeCount() {
+        return liveQueries.size();
+    }
+
+    // Subscriber counting runs inside the map's compute methods, so an entry is removed
+    // only by the release of its last subscriber, and never while another one is joining it
+    private Entry<T> acquire(K key, Supplier<Observable<T>> liveQuerySupplier) {
+        return liveQueries.compute(key, (k, entry) -> {
+            Entry<T> current = entry != null ? entry : new Entry<>(share(k, liveQuerySupplier));
+            current.subscribers++;
+            return current;
+        });
+    }
+
+    private void release(K key, Entry<T> entry) {
+        liveQueries.computeIfPresent(key, (k, current) -> {
+            if (current != entry) {
+                return current;
+            }
+            return --current.subscribers > 0 ? current : null;
+        });
+    }
+
+    private Observable<T> share(K key, Supplier<Observable<T>> liveQuerySupplier) {
+        return Observable.defer(liveQuerySupplier::get)
+                .doOnSubscribe(d -> log.debug("Opening shared live query: {}", key))
+                .doFinally(() -> log.debug("Closing shared live query: {}", key))
+                .share();
+    }
+}
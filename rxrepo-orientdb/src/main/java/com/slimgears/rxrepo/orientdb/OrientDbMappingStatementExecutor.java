@@ -4,10 +4,14 @@ import com.slimgears.rxrepo.query.Notification;
 import com.slimgears.rxrepo.sql.SqlStatement;
 import com.slimgears.rxrepo.sql.SqlStatementExecutor;
 import com.slimgears.rxrepo.util.PropertyResolver;
+import com.slimgears.util.stream.Streams;
 import io.reactivex.Completable;
+import io.reactivex.Maybe;
 import io.reactivex.Observable;
 import io.reactivex.Single;
 
+import java.util.stream.Collectors;
+
 import static com.slimgears.rxrepo.orientdb.OrientDbObjectConverter.toOrientDb;
 
 public class OrientDbMappingStatementExecutor implements SqlStatementExecutor {
@@ -41,8 +45,20 @@ public class OrientDbMappingStatementExecutor implements SqlStatementExecutor {
         return underlyingExecutor.executeCommand(toOrientDb(statement));
     }
 
+    @Override
+    public Completable executeCommands(Iterable<SqlStatement> statements) {
+        return underlyingExecutor.executeCommands(Streams.fromIterable(statements)
+                .map(OrientDbObjectConverter::toOrientDb)
+                .collect(Collectors.toList()));
+    }
+
     @Override
     public Observable<Notification<PropertyResolver>> executeLiveQuery(SqlStatement statement) {
         return underlyingExecutor.executeLiveQuery(toOrientDb(statement));
     }
+
+    @Override
+    public Maybe<String> explain(SqlStatement statement) {
+        return underlyingExecutor.explain(toOrientDb(statement));
+    }
 }
@@ -5,6 +5,7 @@ import com.orientechnologies.orient.core.db.ODatabaseType;
 import com.orientechnologies.orient.core.db.OrientDB;
 import com.orientechnologies.orient.core.db.OrientDBConfig;
 import com.orientechnologies.orient.core.db.document.ODatabaseDocument;
+import com.slimgears.rxrepo.query.EmissionPolicy;
 import com.slimgears.rxrepo.query.Repository;
 import com.slimgears.rxrepo.query.RepositoryConfig;
 import com.slimgears.rxrepo.query.RepositoryConfigModelBuilder;
@@ -12,18 +13,15 @@ import com.slimgears.rxrepo.query.decorator.LiveQueryProviderDecorator;
 import com.slimgears.rxrepo.query.decorator.UpdateReferencesFirstQueryProviderDecorator;
 import com.slimgears.rxrepo.query.provider.QueryProvider;
 import com.slimgears.rxrepo.sql.DefaultSqlStatementProvider;
+import com.slimgears.rxrepo.sql.SlowStatementRecorder;
 import com.slimgears.rxrepo.sql.SqlServiceFactory;
 import com.slimgears.util.stream.Lazy;
-import io.reactivex.Observable;
-import io.reactivex.internal.functions.Functions;
 import io.reactivex.subjects.CompletableSubject;
 
 import javax.annotation.Nonnull;
-import java.util.Map;
+import java.time.Duration;
 import java.util.Objects;
 import java.util.Optional;
-import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.TimeUnit;
 import java.util.function.Consumer;
 import java.util.function.Supplier;
 
@@ -51,7 +49,12 @@ public class OrientDbRepository {
         private ODatabaseType dbType = ODatabaseType.MEMORY;
         private String user = "admin";
         private String password = "admin";
+        private int batchSize = SqlServiceFactory.Properties.batchSize();
         private QueryProvider.Decorator decorator = QueryProvider.Decorator.identity();
+        private SlowStatementRecorder slowStatementRecorder;
+        private int sessionPoolSize = OrientDbSessionPool.Properties.maxSize();
+        private Duration sessionIdleTimeout = Duration.ofMillis(OrientDbSessionPool.Properties.idleTimeoutMillis());
+        private Consumer<OrientDbSessionPool> sessionPoolListener = pool -> {};
         private RepositoryConfig.Builder configBuilder = RepositoryConfig
                 .builder()
                 .retryCount(10)
@@ -82,6 +85,31 @@ public class OrientDbRepository {
             return this;
         }
 
+        public final Builder batchSize(int batchSize) {
+            this.batchSize = batchSize;
+            return this;
+        }
+
+        public final Builder slowStatementRecorder(@Nonnull SlowStatementRecorder slowStatementRecorder) {
+            this.slowStatementRecorder = slowStatementRecorder;
+            return this;
+        }
+
+        public final Builder sessionPoolSize(int sessionPoolSize) {
+            this.sessionPoolSize = sessionPoolSize;
+            return this;
+        }
+
+        public final Builder sessionIdleTimeout(@Nonnull Duration sessionIdleTimeout) {
+            this.sessionIdleTimeout = sessionIdleTimeout;
+            return this;
+        }
+
+        public final Builder onSessionPoolCreated(@Nonnull Consumer<OrientDbSessionPool> sessionPoolListener) {
+            this.sessionPoolListener = sessionPoolListener;
+            return this;
+        }
+
         public final Builder decorate(@Nonnull QueryProvider.Decorator... decorators) {
             this.decorator = this.decorator.andThen(QueryProvider.Decorator.of(decorators));
             return this;
@@ -95,18 +123,17 @@ public class OrientDbRepository {
             Objects.requireNonNull(password);
 
             Lazy<OrientDB> dbClient = Lazy.of(() -> createClient(url, dbName, dbType));
-            Map<ODatabaseDocument, CompletableSubject> sessions = new ConcurrentHashMap<>();
             CompletableSubject shutdownSubject = CompletableSubject.create();
+            OrientDbSessionPool sessionPool = OrientDbSessionPool.create(
+                    () -> createSession(dbClient, dbName, user, password),
+                    sessionPoolSize,
+                    sessionIdleTimeout);
+            sessionPoolListener.accept(sessionPool);
 
-            return serviceFactoryBuilder(
-                    () -> {
-                        ODatabaseDocument session = createSession(dbClient, dbName, user, password);
-                        sessions.put(session, CompletableSubject.create());
-                        return session;
-                    },
-                    session -> Optional.ofNullable(sessions.remove(session))
-                            .ifPresent(CompletableSubject::onComplete))
+            return serviceFactoryBuilder(sessionPool)
                     .shutdownSignal(shutdownSubject)
+                    .batchSize(batchSize)
+                    .slowStatementRecorder(Optional.ofNullable(slowStatementRecorder).orElseGet(SlowStatementRecorder::create))
                     .decorate(
                             LiveQueryProviderDecorator.create(),
                             decorator,
@@ -115,14 +142,7 @@ public class OrientDbRepository {
                     .buildRepository(configBuilder.build())
                     .onClose(repo -> {
                         shutdownSubject.onComplete();
-                        if (!Observable.fromIterable(sessions.values())
-                                .flatMapCompletable(Functions.identity())
-                                .blockingAwait(4, TimeUnit.SECONDS)) {
-                            sessions.keySet().forEach(dbSession -> {
-                                dbSession.activateOnCurrentThread();
-                                dbSession.close();
-                            });
-                        }
+                        sessionPool.close(Duration.ofSeconds(4));
                         dbClient.close();
                     });
         }
@@ -158,10 +178,16 @@ public class OrientDbRepository {
             configBuilder.retryInitialDurationMillis(value);
             return this;
         }
+
+        @Override
+        public Builder emissionPolicy(EmissionPolicy value) {
+            configBuilder.emissionPolicy(value);
+            return this;
+        }
     }
 
-    private static SqlServiceFactory.Builder serviceFactoryBuilder(Supplier<ODatabaseDocument> sessionProvider, Consumer<ODatabaseDocument> sessionCloser) {
-        OrientDbSessionProvider dbSessionProvider = OrientDbSessionProvider.create(sessionProvider, sessionCloser);
+    private static SqlServiceFactory.Builder serviceFactoryBuilder(OrientDbSessionPool sessionPool) {
+        OrientDbSessionProvider dbSessionProvider = OrientDbSessionProvider.create(sessionPool);
         return SqlServiceFactory.builder()
                 .schemaProvider(svc -> new OrientDbSchemaProvider(dbSessionProvider))
                 .statementExecutor(svc -> OrientDbMappingStatementExecutor.decorate(new OrientDbStatementExecutor(dbSessionProvider, svc.shutdownSignal())))
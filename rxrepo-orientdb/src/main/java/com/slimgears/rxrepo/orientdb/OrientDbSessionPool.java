@@ -0,0 +1,458 @@
+package com.slimgears.rxrepo.orientdb;
+
+import com.orientechnologies.orient.core.db.document.ODatabaseDocument;
+import io.reactivex.Scheduler;
+import io.reactivex.disposables.Disposable;
+import io.reactivex.disposables.Disposables;
+import io.reactivex.schedulers.Schedulers;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+public class OrientDbSessionPool {
+    private final static Logger log = LoggerFactory.getLogger(OrientDbSessionPool.class);
+    private final static Object abandoned = new Object();
+    private final Supplier<ODatabaseDocument> sessionFactory;
+    private final Consumer<ODatabaseDocument> sessionCloser;
+    private final int maxSize;
+    private final long idleTimeoutNanos;
+    private final Duration acquireTimeout;
+    private final Deque<IdleSession> idleSessions = new ArrayDeque<>();
+    private final Set<ODatabaseDocument> activeSessions = Collections.newSetFromMap(new IdentityHashMap<>());
+    private final Queue<Waiter> waiters = new ArrayDeque<>();
+    private final Scheduler handoffScheduler;
+    private final ThreadLocal<ODatabaseDocument> currentSession = new ThreadLocal<>();
+    private final Disposable evictor;
+    private int pendingSessions;
+    private long createdSessions;
+    private long closedSessions;
+    private long acquiredSessions;
+    private long totalWaitNanos;
+    private long maxWaitNanos;
+    private boolean closed;
+
+    private OrientDbSessionPool(Supplier<ODatabaseDocument> sessionFactory,
+                                Consumer<ODatabaseDocument> sessionCloser,
+                                int maxSize,
+                                Duration idleTimeout,
+                                Duration acquireTimeout,
+                                Scheduler handoffScheduler) {
+        this.sessionFactory = sessionFactory;
+        this.sessionCloser = sessionCloser;
+        this.maxSize = maxSize;
+        this.idleTimeoutNanos = idleTimeout.toNanos();
+        this.acquireTimeout = acquireTimeout;
+        this.handoffScheduler = handoffScheduler;
+        this.evictor = !idleTimeout.isZero()
+                ? Schedulers.computation().schedulePeriodicallyDirect(this::evictIdle, idleTimeout.toMillis(), idleTimeout.toMillis(), TimeUnit.MILLISECONDS)
+                : Disposables.disposed();
+    }
+
+    static OrientDbSessionPool create(Supplier<ODatabaseDocument> sessionFactory) {
+        return create(sessionFactory, Properties.maxSize(), Duration.ofMillis(Properties.idleTimeoutMillis()));
+    }
+
+    static OrientDbSessionPool create(Supplier<ODatabaseDocument> sessionFactory, int maxSize, Duration idleTimeout) {
+        return create(sessionFactory, ODatabaseDocument::close, maxSize, idleTimeout);
+    }
+
+    static OrientDbSessionPool create(Supplier<ODatabaseDocument> sessionFactory, Consumer<ODatabaseDocument> sessionCloser, int maxSize, Duration idleTimeout) {
+        return create(sessionFactory, sessionCloser, maxSize, idleTimeout, Duration.ofMillis(Properties.acquireTimeoutMillis()));
+    }
+
+    static OrientDbSessionPool create(Supplier<ODatabaseDocument> sessionFactory, Consumer<ODatabaseDocument> sessionCloser, int maxSize, Duration idleTimeout, Duration acquireTimeout) {
+        return new OrientDbSessionPool(sessionFactory, sessionCloser, maxSize, idleTimeout, acquireTimeout, Schedulers.io());
+    }
+
+    public synchronized Stats stats() {
+        return new Stats(
+                activeSessions.size(),
+                idleSessions.size(),
+                waiters.size(),
+                createdSessions,
+                closedSessions,
+                acquiredSessions,
+                totalWaitNanos,
+                maxWaitNanos);
+    }
+
+    public int maxSize() {
+        return maxSize;
+    }
+
+    <T> T withSession(Function<ODatabaseDocument, T> func) {
+        ODatabaseDocument session = currentSession.get();
+        if (session != null) {
+            session.activateOnCurrentThread();
+            return func.apply(session);
+        }
+
+        session = acquireBlocking();
+        try {
+            return run(session, func);
+        } finally {
+            release(session);
+        }
+    }
+
+    Disposable withSessionAsync(Consumer<ODatabaseDocument> func, Consumer<Throwable> onError) {
+        ODatabaseDocument session = currentSession.get();
+        if (session != null) {
+            session.activateOnCurrentThread();
+            func.accept(session);
+            return Disposables.disposed();
+        }
+
+        return acquire(
+                acquired -> {
+                    try {
+                        run(acquired, s -> {
+                            func.accept(s);
+                            return null;
+                        });
+                    } catch (Throwable e) {
+                        onError.accept(e);
+                    } finally {
+                        release(acquired);
+                    }
+                },
+                onError,
+                handoffScheduler);
+    }
+
+    void close(Duration timeout) {
+        List<ODatabaseDocument> sessionsToClose = new ArrayList<>();
+        List<Waiter> waitersToFail;
+        synchronized (this) {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            idleSessions.forEach(idle -> sessionsToClose.add(idle.session));
+            idleSessions.clear();
+            waitersToFail = new ArrayList<>(waiters);
+            waiters.clear();
+        }
+        evictor.dispose();
+        waitersToFail.forEach(waiter -> waiter.onError.accept(new IllegalStateException("Session pool is closed")));
+        sessionsToClose.forEach(this::closeSession);
+
+        long deadline = System.nanoTime() + timeout.toNanos();
+        synchronized (this) {
+            try {
+                for (long remaining = timeout.toNanos(); !activeSessions.isEmpty() && remaining > 0; remaining = deadline - System.nanoTime()) {
+                    TimeUnit.NANOSECONDS.timedWait(this, remaining);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            sessionsToClose.clear();
+            sessionsToClose.addAll(activeSessions);
+            activeSessions.clear();
+        }
+        if (!sessionsToClose.isEmpty()) {
+            log.warn("Closing {} OrientDB sessions that are still in use", sessionsToClose.size());
+        }
+        sessionsToClose.forEach(this::closeSession);
+    }
+
+    private <T> T run(ODatabaseDocument session, Function<ODatabaseDocument, T> func) {
+        ODatabaseDocument previous = currentSession.get();
+        currentSession.set(session);
+        try {
+            session.activateOnCurrentThread();
+            return func.apply(session);
+        } finally {
+            if (previous != null) {
+                currentSession.set(previous);
+                previous.activateOnCurrentThread();
+            } else {
+                currentSession.remove();
+            }
+        }
+    }
+
+    private ODatabaseDocument acquireBlocking() {
+        CountDownLatch latch = new CountDownLatch(1);
+        AtomicReference<Object> acquired = new AtomicReference<>();
+        AtomicReference<Throwable> error = new AtomicReference<>();
+        Disposable waiting = acquire(
+                session -> {
+                    if (acquired.compareAndSet(null, session)) {
+                        latch.countDown();
+                    } else {
+                        release(session);
+                    }
+                },
+                e -> {
+                    error.set(e);
+                    latch.countDown();
+                },
+                Schedulers.trampoline());
+
+        try {
+            if (!latch.await(acquireTimeout.toMillis(), TimeUnit.MILLISECONDS) && acquired.compareAndSet(null, abandoned)) {
+                waiting.dispose();
+                throw new IllegalStateException("Timed out waiting for OrientDB session after " + acquireTimeout);
+            }
+        } catch (InterruptedException e) {
+            if (acquired.compareAndSet(null, abandoned)) {
+                waiting.dispose();
+            } else {
+                release((ODatabaseDocument)acquired.get());
+            }
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(e);
+        }
+
+        if (error.get() != null) {
+            throw new IllegalStateException(error.get());
+        }
+        return (ODatabaseDocument)acquired.get();
+    }
+
+    private Disposable acquire(Consumer<ODatabaseDocument> onAcquired, Consumer<Throwable> onError, Scheduler waiterScheduler) {
+        IdleSession idle;
+        synchronized (this) {
+            if (closed) {
+                onError.accept(new IllegalStateException("Session pool is closed"));
+                return Disposables.disposed();
+            }
+            idle = idleSessions.pollFirst();
+            if (idle == null && activeSessions.size() + pendingSessions >= maxSize) {
+                Waiter waiter = new Waiter(onAcquired, onError, waiterScheduler);
+                waiters.add(waiter);
+                return Disposables.fromAction(() -> cancel(waiter));
+            }
+            if (idle != null) {
+                activeSessions.add(idle.session);
+                ++acquiredSessions;
+            } else {
+                ++pendingSessions;
+            }
+        }
+
+        if (idle != null) {
+            onAcquired.accept(idle.session);
+            return Disposables.disposed();
+        }
+
+        ODatabaseDocument session;
+        try {
+            session = sessionFactory.get();
+        } catch (RuntimeException e) {
+            synchronized (this) {
+                --pendingSessions;
+            }
+            onError.accept(e);
+            return Disposables.disposed();
+        }
+
+        synchronized (this) {
+            --pendingSessions;
+            ++createdSessions;
+            ++acquiredSessions;
+            activeSessions.add(session);
+        }
+        onAcquired.accept(session);
+        return Disposables.disposed();
+    }
+
+    private synchronized void cancel(Waiter waiter) {
+        waiters.remove(waiter);
+    }
+
+    private void release(ODatabaseDocument session) {
+        Waiter waiter;
+        synchronized (this) {
+            if (!activeSessions.contains(session)) {
+                return;
+            }
+            if (closed) {
+                activeSessions.remove(session);
+                notifyAll();
+                waiter = null;
+            } else {
+                waiter = waiters.poll();
+                if (waiter != null) {
+                    long waitNanos = System.nanoTime() - waiter.enqueuedNanos;
+                    ++acquiredSessions;
+                    totalWaitNanos += waitNanos;
+                    maxWaitNanos = Math.max(maxWaitNanos, waitNanos);
+                } else {
+                    activeSessions.remove(session);
+                    idleSessions.addFirst(new IdleSession(session, System.nanoTime()));
+                    return;
+                }
+            }
+        }
+
+        if (waiter != null) {
+            waiter.handoff(session);
+        } else {
+            closeSession(session);
+        }
+    }
+
+    private void evictIdle() {
+        List<ODatabaseDocument> evicted = new ArrayList<>();
+        synchronized (this) {
+            long now = System.nanoTime();
+            for (Iterator<IdleSession> iterator = idleSessions.iterator(); iterator.hasNext(); ) {
+                IdleSession idle = iterator.next();
+                if (now - idle.idleSinceNanos >= idleTimeoutNanos) {
+                    iterator.remove();
+                    evicted.add(idle.session);
+                }
+            }
+        }
+        evicted.forEach(this::closeSession);
+    }
+
+    private void closeSession(ODatabaseDocument session) {
+        try {
+            session.activateOnCurrentThread();
+            sessionCloser.accept(session);
+        } catch (RuntimeException e) {
+            log.debug("Failed to close OrientDB session", e);
+        }
+        synchronized (this) {
+            ++closedSessions;
+        }
+    }
+
+    private static class IdleSession {
+        private final ODatabaseDocument session;
+        private final long idleSinceNanos;
+
+        private IdleSession(ODatabaseDocument session, long idleSinceNanos) {
+            this.session = session;
+            this.idleSinceNanos = idleSinceNanos;
+        }
+    }
+
+    private class Waiter {
+        private final Consumer<ODatabaseDocument> onAcquired;
+        private final Consumer<Throwable> onError;
+        private final Scheduler scheduler;
+        private final long enqueuedNanos = System.nanoTime();
+
+        private Waiter(Consumer<ODatabaseDocument> onAcquired, Consumer<Throwable> onError, Scheduler scheduler) {
+            this.onAcquired = onAcquired;
+            this.onError = onError;
+            this.scheduler = scheduler;
+        }
+
+        private void handoff(ODatabaseDocument session) {
+            try {
+                scheduler.scheduleDirect(() -> onAcquired.accept(session));
+            } catch (RuntimeException e) {
+                release(session);
+                onError.accept(e);
+            }
+        }
+    }
+
+    public static class Stats {
+        private final int activeSessions;
+        private final int idleSessions;
+        private final int waitingAcquisitions;
+        private final long createdSessions;
+        private final long closedSessions;
+        private final long acquiredSessions;
+        private final long totalWaitNanos;
+        private final long maxWaitNanos;
+
+        private Stats(int activeSessions, int idleSessions, int waitingAcquisitions, long createdSessions, long closedSessions, long acquiredSessions, long totalWaitNanos, long maxWaitNanos) {
+            this.activeSessions = activeSessions;
+            this.idleSessions = idleSessions;
+            this.waitingAcquisitions = waitingAcquisitions;
+            this.createdSessions = createdSessions;
+            this.closedSessions = closedSessions;
+            this.acquiredSessions = acquiredSessions;
+            this.totalWaitNanos = totalWaitNanos;
+            this.maxWaitNanos = maxWaitNanos;
+        }
+
+        public int activeSessions() {
+            return activeSessions;
+        }
+
+        public int idleSessions() {
+            return idleSessions;
+        }
+
+        public int waitingAcquisitions() {
+            return waitingAcquisitions;
+        }
+
+        public long createdSessions() {
+            return createdSessions;
+        }
+
+        public long closedSessions() {
+            return closedSessions;
+        }
+
+        public long acquiredSessions() {
+            return acquiredSessions;
+        }
+
+        public Duration averageWaitTime() {
+            return acquiredSessions > 0 ? Duration.ofNanos(totalWaitNanos / acquiredSessions) : Duration.ZERO;
+        }
+
+        public Duration maxWaitTime() {
+            return Duration.ofNanos(maxWaitNanos);
+        }
+
+        @Override
+        public String toString() {
+            return "Stats{" +
+                    "active=" + activeSessions +
+                    ", idle=" + idleSessions +
+                    ", waiting=" + waitingAcquisitions +
+                    ", created=" + createdSessions +
+                    ", closed=" + closedSessions +
+                    ", averageWait=" + averageWaitTime() +
+                    ", maxWait=" + maxWaitTime() +
+                    '}';
+        }
+    }
+
+    public static class Properties {
+        public static final String maxSize = "rxrepo.orientdb.sessionPool.maxSize";
+        public static final String idleTimeoutMillis = "rxrepo.orientdb.sessionPool.idleTimeoutMillis";
+        public static final String acquireTimeoutMillis = "rxrepo.orientdb.sessionPool.acquireTimeoutMillis";
+        private static final long defaultIdleTimeoutMillis = 60000;
+        private static final long defaultAcquireTimeoutMillis = 30000;
+
+        public static int maxSize() {
+            return Integer.getInteger(Properties.maxSize, Math.max(16, Runtime.getRuntime().availableProcessors() * 4));
+        }
+
+        public static long idleTimeoutMillis() {
+            return Long.getLong(Properties.idleTimeoutMillis, defaultIdleTimeoutMillis);
+        }
+
+        public static long acquireTimeoutMillis() {
+            return Long.getLong(Properties.acquireTimeoutMillis, defaultAcquireTimeoutMillis);
+        }
+    }
+}
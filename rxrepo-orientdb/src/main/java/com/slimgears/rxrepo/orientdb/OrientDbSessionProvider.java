@@ -1,45 +1,41 @@
 package com.slimgears.rxrepo.orientdb;
 
 import com.orientechnologies.orient.core.db.document.ODatabaseDocument;
-import com.slimgears.util.generic.RecurrentThreadLocal;
+import io.reactivex.Observable;
+import io.reactivex.ObservableEmitter;
 
+import java.util.function.BiConsumer;
 import java.util.function.Consumer;
 import java.util.function.Function;
 import java.util.function.Supplier;
 
 class OrientDbSessionProvider {
-    private final RecurrentThreadLocal<ODatabaseDocument> databaseSessionProvider;
+    private final OrientDbSessionPool sessionPool;
+    private final ODatabaseDocument session;
 
-    private OrientDbSessionProvider(Supplier<ODatabaseDocument> databaseSessionProvider,
-                                    Consumer<ODatabaseDocument> onRelease) {
-        this.databaseSessionProvider = RecurrentThreadLocal
-                .of(databaseSessionProvider)
-                .onRelease(onRelease);
+    private OrientDbSessionProvider(OrientDbSessionPool sessionPool, ODatabaseDocument session) {
+        this.sessionPool = sessionPool;
+        this.session = session;
     }
 
-    static OrientDbSessionProvider create(Supplier<ODatabaseDocument> dbSessionSupplier) {
-        return new OrientDbSessionProvider(dbSessionSupplier, ODatabaseDocument::close);
+    static OrientDbSessionProvider create(OrientDbSessionPool sessionPool) {
+        return new OrientDbSessionProvider(sessionPool, null);
     }
 
-    static OrientDbSessionProvider create(Supplier<ODatabaseDocument> dbSessionSupplier, Consumer<ODatabaseDocument> onClose) {
-        return new OrientDbSessionProvider(dbSessionSupplier, session -> {
-            onClose.accept(session);
-            session.close();
-        });
+    static OrientDbSessionProvider create(Supplier<ODatabaseDocument> dbSessionSupplier) {
+        return create(OrientDbSessionPool.create(dbSessionSupplier));
     }
 
-    static OrientDbSessionProvider create(ODatabaseDocument dbSessionSupplier) {
-        return new OrientDbSessionProvider(() -> dbSessionSupplier, db -> {});
+    static OrientDbSessionProvider create(ODatabaseDocument dbSession) {
+        return new OrientDbSessionProvider(null, dbSession);
     }
 
     <T> T withSession(Function<ODatabaseDocument, T> func) {
-        try {
-            ODatabaseDocument dbSession = databaseSessionProvider.acquire();
-            dbSession.activateOnCurrentThread();
-            return func.apply(dbSession);
-        } finally {
-            databaseSessionProvider.release();
+        if (session != null) {
+            session.activateOnCurrentThread();
+            return func.apply(session);
         }
+        return sessionPool.withSession(func);
     }
 
     void withSession(Consumer<ODatabaseDocument> func) {
@@ -48,4 +44,20 @@ class OrientDbSessionProvider {
             return null;
         });
     }
+
+    <T> Observable<T> observe(BiConsumer<ODatabaseDocument, ObservableEmitter<T>> func) {
+        if (session != null) {
+            return Observable.create(emitter -> {
+                session.activateOnCurrentThread();
+                func.accept(session, emitter);
+            });
+        }
+        return Observable.create(emitter -> emitter.setDisposable(sessionPool.withSessionAsync(
+                dbSession -> {
+                    if (!emitter.isDisposed()) {
+                        func.accept(dbSession, emitter);
+                    }
+                },
+                emitter::tryOnError)));
+    }
 }
@@ -12,12 +12,15 @@ import com.slimgears.rxrepo.sql.SqlStatementExecutor;
 import com.slimgears.rxrepo.util.PropertyResolver;
 import com.slimgears.util.generic.MoreStrings;
 import io.reactivex.Completable;
+import io.reactivex.Maybe;
 import io.reactivex.Observable;
 import io.reactivex.Single;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.Arrays;
 import java.util.ConcurrentModificationException;
+import java.util.List;
 import java.util.Optional;
 import java.util.function.Function;
 import java.util.stream.Collectors;
@@ -29,6 +32,7 @@ class OrientDbStatementExecutor implements SqlStatementExecutor {
     private final static Logger log = LoggerFactory.getLogger(OrientDbStatementExecutor.class);
     private final OrientDbSessionProvider sessionProvider;
     private final Completable shutdown;
+    private final OrientDbLiveQueryMultiplexer<List<Object>, Notification<PropertyResolver>> liveQueryMultiplexer = OrientDbLiveQueryMultiplexer.create();
 
     OrientDbStatementExecutor(OrientDbSessionProvider sessionProvider, Completable shutdown) {
         this.shutdown = shutdown;
@@ -76,8 +80,43 @@ class OrientDbStatementExecutor implements SqlStatementExecutor {
                 .ignoreElements();
     }
 
+    @Override
+    public Completable executeCommands(Iterable<SqlStatement> statements) {
+        return sessionProvider.<Object>observe((dbSession, emitter) -> {
+            try {
+                dbSession.begin();
+                for (SqlStatement statement : statements) {
+                    logStatement("Executing batch command", statement);
+                    dbSession.command(statement.statement(), statement.args()).close();
+                }
+                dbSession.commit();
+                emitter.onComplete();
+            } catch (OConcurrentModificationException | ORecordDuplicatedException e) {
+                dbSession.rollback();
+                emitter.onError(new ConcurrentModificationException(e.getMessage(), e));
+            } catch (Throwable e) {
+                log.debug("Error when executing batch", e);
+                dbSession.rollback();
+                emitter.onError(e);
+            }
+        }).ignoreElements();
+    }
+
     @Override
     public Observable<Notification<PropertyResolver>> executeLiveQuery(SqlStatement statement) {
+        return liveQueryMultiplexer.observe(
+                Arrays.asList(statement.statement(), Arrays.asList(statement.args())),
+                () -> liveQuery(statement));
+    }
+
+    @Override
+    public Maybe<String> explain(SqlStatement statement) {
+        return executeQuery(SqlStatement.create("EXPLAIN " + statement.statement(), statement.args()))
+                .firstElement()
+                .map(res -> (String)res.getProperty("executionPlanAsString", String.class));
+    }
+
+    private Observable<Notification<PropertyResolver>> liveQuery(SqlStatement statement) {
         return Observable.<OrientDbLiveQueryListener.LiveQueryNotification>create(
                 emitter -> {
                     logStatement("Live querying", statement);
@@ -100,15 +139,14 @@ class OrientDbStatementExecutor implements SqlStatementExecutor {
     }
 
     private Observable<PropertyResolver> toObservable(Function<ODatabaseDocument, OResultSet> resultSetSupplier) {
-        return Observable.<OResult>create(
-                emitter -> sessionProvider.withSession(dbSession -> {
+        return sessionProvider.<OResult>observe((dbSession, emitter) -> {
                     OResultSet resultSet = resultSetSupplier.apply(dbSession);
                     resultSet.stream()
                             .peek(res -> log.trace("Received: {}", res))
                             .forEach(emitter::onNext);
                     resultSet.close();
                     emitter.onComplete();
-                }))
+                })
                 .map(res -> OResultPropertyResolver.create(sessionProvider, res));
     }
 
@@ -0,0 +1,86 @@
+package com.slimgears.rxrepo.orientdb;
+
+import com.google.common.collect.ImmutableList;
+import com.slimgears.rxrepo.query.EntitySet;
+import com.slimgears.rxrepo.query.Repository;
+import com.slimgears.rxrepo.query.provider.QueryProvider;
+import com.slimgears.rxrepo.test.Product;
+import com.slimgears.rxrepo.test.Products;
+import com.slimgears.rxrepo.test.UniqueId;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ConcurrentModificationException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.stream.Collectors;
+
+public class OrientDbBatchInsertTest {
+    private static final String dbUrl = "embedded:db";
+    private final AtomicReference<QueryProvider> queryProvider = new AtomicReference<>();
+    private Repository repository;
+    private EntitySet<UniqueId, Product> productSet;
+
+    @Before
+    public void setUp() {
+        repository = OrientDbRepository
+                .builder()
+                .url(dbUrl)
+                .type(OrientDbRepository.Type.Memory)
+                .name("batchInsertTestDb")
+                .batchSize(3)
+                .decorate(provider -> {
+                    queryProvider.set(provider);
+                    return provider;
+                })
+                .build();
+        productSet = repository.entities(Product.metaClass);
+    }
+
+    @After
+    public void tearDown() {
+        repository.clearAndClose();
+    }
+
+    @Test
+    public void testInsertStoresAllBatches() {
+        List<Product> products = products(7);
+
+        queryProvider.get().insert(Product.metaClass, products).blockingAwait();
+
+        Assert.assertEquals(7L, (long)productSet.query().count().blockingGet());
+        products.forEach(product -> Assert.assertEquals(product, productSet.find(product.key()).blockingGet()));
+    }
+
+    @Test
+    public void testFailingRowRollsBackItsBatch() {
+        List<Product> products = products(6);
+        Product duplicate = products.get(1).toBuilder().name("Duplicate").build();
+        List<Product> inserted = ImmutableList.<Product>builder()
+                .addAll(products.subList(0, 4))
+                .add(duplicate)
+                .add(products.get(5))
+                .build();
+
+        queryProvider.get().insert(Product.metaClass, inserted)
+                .test()
+                .awaitDone(10, TimeUnit.SECONDS)
+                .assertError(ConcurrentModificationException.class);
+
+        Assert.assertEquals(3L, (long)productSet.query().count().blockingGet());
+        products.subList(0, 3).forEach(product -> Assert.assertEquals(product, productSet.find(product.key()).blockingGet()));
+        Assert.assertNull(productSet.find(products.get(3).key()).blockingGet());
+        Assert.assertNull(productSet.find(products.get(5).key()).blockingGet());
+    }
+
+    // References are left out as the captured provider bypasses the reference-inserting decorator
+    private static List<Product> products(int count) {
+        return ImmutableList.copyOf(Products.createMany(count))
+                .stream()
+                .map(product -> product.toBuilder().inventory(null).vendor(null).build())
+                .collect(Collectors.toList());
+    }
+}
@@ -0,0 +1,74 @@
+package com.slimgears.rxrepo.orientdb;
+
+import io.reactivex.Observable;
+import io.reactivex.observers.TestObserver;
+import io.reactivex.subjects.PublishSubject;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class OrientDbLiveQueryMultiplexerTest {
+    @Test
+    public void testSubscribersShareSingleLiveQuery() {
+        OrientDbLiveQueryMultiplexer<String, Integer> multiplexer = OrientDbLiveQueryMultiplexer.create();
+        PublishSubject<Integer> source = PublishSubject.create();
+        AtomicInteger subscriptions = new AtomicInteger();
+        AtomicInteger disposals = new AtomicInteger();
+        Observable<Integer> liveQuery = source
+                .doOnSubscribe(d -> subscriptions.incrementAndGet())
+                .doOnDispose(disposals::incrementAndGet);
+
+        TestObserver<Integer> first = multiplexer.observe("Product", () -> liveQuery).test();
+        TestObserver<Integer> second = multiplexer.observe("Product", () -> liveQuery).test();
+        source.onNext(1);
+
+        Assert.assertEquals(1, subscriptions.get());
+        Assert.assertEquals(1, multiplexer.activeCount());
+        first.assertValues(1);
+        second.assertValues(1);
+
+        first.dispose();
+        source.onNext(2);
+        second.assertValues(1, 2);
+        Assert.assertEquals(0, disposals.get());
+
+        second.dispose();
+        Assert.assertEquals(1, disposals.get());
+        Assert.assertEquals(0, multiplexer.activeCount());
+
+        multiplexer.observe("Product", () -> liveQuery).test();
+        Assert.assertEquals(2, subscriptions.get());
+    }
+
+    @Test
+    public void testFailedLiveQueryIsReopenedForNextSubscriber() {
+        OrientDbLiveQueryMultiplexer<String, Integer> multiplexer = OrientDbLiveQueryMultiplexer.create();
+        AtomicInteger subscriptions = new AtomicInteger();
+        PublishSubject<Integer> failing = PublishSubject.create();
+        PublishSubject<Integer> reopened = PublishSubject.create();
+        Observable<Integer> liveQuery = Observable.defer(() -> subscriptions.incrementAndGet() == 1 ? failing : reopened);
+
+        TestObserver<Integer> first = multiplexer.observe("Product", () -> liveQuery).test();
+        TestObserver<Integer> second = multiplexer.observe("Product", () -> liveQuery).test();
+        failing.onError(new IllegalStateException("Disconnected"));
+
+        first.assertError(IllegalStateException.class);
+        second.assertError(IllegalStateException.class);
+        Assert.assertEquals(0, multiplexer.activeCount());
+
+        TestObserver<Integer> third = multiplexer.observe("Product", () -> liveQuery).test();
+        TestObserver<Integer> fourth = multiplexer.observe("Product", () -> liveQuery).test();
+        reopened.onNext(1);
+
+        Assert.assertEquals(2, subscriptions.get());
+        Assert.assertEquals(1, multiplexer.activeCount());
+        third.assertValues(1);
+        fourth.assertValues(1);
+
+        third.dispose();
+        Assert.assertEquals(1, multiplexer.activeCount());
+        fourth.dispose();
+        Assert.assertEquals(0, multiplexer.activeCount());
+    }
+}
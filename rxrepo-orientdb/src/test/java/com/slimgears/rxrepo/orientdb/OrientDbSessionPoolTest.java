@@ -0,0 +1,256 @@
+package com.slimgears.rxrepo.orientdb;
+
+import com.orientechnologies.orient.core.db.ODatabaseType;
+import com.orientechnologies.orient.core.db.OrientDB;
+import com.orientechnologies.orient.core.db.OrientDBConfig;
+import com.orientechnologies.orient.core.db.document.ODatabaseDocument;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+public class OrientDbSessionPoolTest {
+    private static final String dbUrl = "embedded:db";
+    private static final String dbName = "sessionPoolTestDb";
+    private final Queue<Throwable> asyncFailures = new ConcurrentLinkedQueue<>();
+    private OrientDB dbClient;
+    private ExecutorService executor;
+
+    @Before
+    public void setUp() {
+        dbClient = new OrientDB(dbUrl, OrientDBConfig.defaultConfig());
+        dbClient.createIfNotExists(dbName, ODatabaseType.MEMORY);
+        executor = Executors.newCachedThreadPool();
+    }
+
+    @After
+    public void tearDown() {
+        executor.shutdownNow();
+        dbClient.drop(dbName);
+        dbClient.close();
+    }
+
+    @Test
+    public void testConcurrentSessionsAreBoundedByMaxSize() throws Exception {
+        OrientDbSessionPool pool = createPool(2, Duration.ZERO, Duration.ofSeconds(10));
+        AtomicInteger concurrent = new AtomicInteger();
+        AtomicInteger maxConcurrent = new AtomicInteger();
+        CountDownLatch started = new CountDownLatch(1);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int i = 0; i < 6; ++i) {
+            futures.add(executor.submit(() -> pool.withSession(session -> {
+                maxConcurrent.accumulateAndGet(concurrent.incrementAndGet(), Math::max);
+                started.countDown();
+                sleep(100);
+                concurrent.decrementAndGet();
+                return null;
+            })));
+        }
+        for (Future<?> future : futures) {
+            future.get(10, TimeUnit.SECONDS);
+        }
+
+        OrientDbSessionPool.Stats stats = pool.stats();
+        Assert.assertEquals(2, maxConcurrent.get());
+        Assert.assertEquals(2, stats.createdSessions());
+        Assert.assertEquals(6, stats.acquiredSessions());
+        Assert.assertEquals(0, stats.activeSessions());
+        Assert.assertEquals(2, stats.idleSessions());
+        pool.close(Duration.ofSeconds(1));
+        Assert.assertEquals(2, pool.stats().closedSessions());
+    }
+
+    @Test
+    public void testNestedCallsReuseCurrentSession() {
+        OrientDbSessionPool pool = createPool(1, Duration.ZERO, Duration.ofMillis(200));
+        ODatabaseDocument inner = pool.withSession(outer -> pool.withSession(session -> {
+            Assert.assertSame(outer, session);
+            return session;
+        }));
+        Assert.assertNotNull(inner);
+        Assert.assertEquals(1, pool.stats().createdSessions());
+        pool.close(Duration.ofSeconds(1));
+    }
+
+    @Test
+    public void testAsyncWaiterIsHandedReleasedSessionWithoutBlocking() throws Exception {
+        OrientDbSessionPool pool = createPool(1, Duration.ZERO, Duration.ofSeconds(10));
+        CountDownLatch holding = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicReference<ODatabaseDocument> heldSession = new AtomicReference<>();
+        Future<?> holder = executor.submit(() -> pool.withSession(session -> {
+            heldSession.set(session);
+            holding.countDown();
+            await(release);
+            return null;
+        }));
+        Assert.assertTrue(holding.await(10, TimeUnit.SECONDS));
+
+        CountDownLatch acquired = new CountDownLatch(1);
+        AtomicReference<ODatabaseDocument> handedSession = new AtomicReference<>();
+        AtomicReference<Thread> handedThread = new AtomicReference<>();
+        pool.withSessionAsync(session -> {
+            handedSession.set(session);
+            handedThread.set(Thread.currentThread());
+            acquired.countDown();
+        }, asyncFailures::add);
+
+        Assert.assertEquals(1, pool.stats().waitingAcquisitions());
+        Assert.assertEquals(1, acquired.getCount());
+
+        release.countDown();
+        holder.get(10, TimeUnit.SECONDS);
+        Assert.assertTrue(acquired.await(10, TimeUnit.SECONDS));
+        Assert.assertSame(heldSession.get(), handedSession.get());
+        Assert.assertNotSame(Thread.currentThread(), handedThread.get());
+
+        OrientDbSessionPool.Stats stats = pool.stats();
+        Assert.assertEquals(1, stats.createdSessions());
+        Assert.assertEquals(0, stats.waitingAcquisitions());
+        Assert.assertTrue(stats.maxWaitTime().compareTo(Duration.ZERO) > 0);
+        pool.close(Duration.ofSeconds(1));
+        assertNoAsyncFailures();
+    }
+
+    @Test
+    public void testSlowAsyncOperationDoesNotSerializeOtherAcquisitions() throws Exception {
+        OrientDbSessionPool pool = createPool(2, Duration.ZERO, Duration.ofSeconds(10));
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch slowStarted = new CountDownLatch(1);
+        executor.submit(() -> pool.withSessionAsync(session -> {
+            slowStarted.countDown();
+            await(release);
+        }, asyncFailures::add));
+        Assert.assertTrue(slowStarted.await(10, TimeUnit.SECONDS));
+
+        CountDownLatch fastDone = new CountDownLatch(1);
+        pool.withSessionAsync(session -> fastDone.countDown(), asyncFailures::add);
+        Assert.assertTrue(fastDone.await(1, TimeUnit.SECONDS));
+
+        release.countDown();
+        pool.close(Duration.ofSeconds(1));
+        assertNoAsyncFailures();
+    }
+
+    @Test
+    public void testAcquireTimesOutWhenPoolIsExhausted() throws Exception {
+        OrientDbSessionPool pool = createPool(1, Duration.ZERO, Duration.ofMillis(200));
+        CountDownLatch holding = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        Future<?> holder = executor.submit(() -> pool.withSession(session -> {
+            holding.countDown();
+            await(release);
+            return null;
+        }));
+        Assert.assertTrue(holding.await(10, TimeUnit.SECONDS));
+
+        try {
+            pool.withSession(session -> null);
+            Assert.fail("Expected acquisition to time out");
+        } catch (IllegalStateException e) {
+            Assert.assertTrue(e.getMessage().contains("Timed out"));
+        }
+        Assert.assertEquals(0, pool.stats().waitingAcquisitions());
+
+        release.countDown();
+        holder.get(10, TimeUnit.SECONDS);
+        OrientDbSessionPool.Stats stats = pool.stats();
+        Assert.assertEquals(0, stats.activeSessions());
+        Assert.assertEquals(1, stats.idleSessions());
+        pool.close(Duration.ofSeconds(1));
+    }
+
+    @Test
+    public void testIdleSessionsAreEvicted() throws Exception {
+        OrientDbSessionPool pool = createPool(2, Duration.ofMillis(50), Duration.ofSeconds(10));
+        pool.withSession(session -> null);
+        Assert.assertEquals(1, pool.stats().idleSessions());
+
+        for (int i = 0; i < 100 && pool.stats().idleSessions() > 0; ++i) {
+            Thread.sleep(20);
+        }
+
+        OrientDbSessionPool.Stats stats = pool.stats();
+        Assert.assertEquals(0, stats.idleSessions());
+        Assert.assertEquals(1, stats.closedSessions());
+
+        pool.withSession(session -> null);
+        Assert.assertEquals(2, pool.stats().createdSessions());
+        pool.close(Duration.ofSeconds(1));
+    }
+
+    @Test
+    public void testCloseFailsWaitersAndForceClosesActiveSessions() throws Exception {
+        OrientDbSessionPool pool = createPool(1, Duration.ZERO, Duration.ofSeconds(10));
+        CountDownLatch holding = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        Future<?> holder = executor.submit(() -> pool.withSession(session -> {
+            holding.countDown();
+            await(release);
+            return null;
+        }));
+        Assert.assertTrue(holding.await(10, TimeUnit.SECONDS));
+
+        AtomicReference<Throwable> waiterError = new AtomicReference<>();
+        pool.withSessionAsync(session -> Assert.fail("Waiter should not be handed a session"), waiterError::set);
+        Assert.assertEquals(1, pool.stats().waitingAcquisitions());
+
+        pool.close(Duration.ofMillis(100));
+        Assert.assertTrue(waiterError.get() instanceof IllegalStateException);
+
+        OrientDbSessionPool.Stats stats = pool.stats();
+        Assert.assertEquals(0, stats.activeSessions());
+        Assert.assertEquals(0, stats.waitingAcquisitions());
+        Assert.assertEquals(1, stats.closedSessions());
+
+        release.countDown();
+        holder.get(10, TimeUnit.SECONDS);
+        Assert.assertEquals(1, pool.stats().closedSessions());
+
+        AtomicReference<Throwable> lateError = new AtomicReference<>();
+        pool.withSessionAsync(session -> Assert.fail("Closed pool should not hand out sessions"), lateError::set);
+        Assert.assertTrue(lateError.get() instanceof IllegalStateException);
+    }
+
+    private OrientDbSessionPool createPool(int maxSize, Duration idleTimeout, Duration acquireTimeout) {
+        return OrientDbSessionPool.create(
+                () -> dbClient.open(dbName, "admin", "admin"),
+                ODatabaseDocument::close,
+                maxSize,
+                idleTimeout,
+                acquireTimeout);
+    }
+
+    private void assertNoAsyncFailures() {
+        Assert.assertTrue("Async operations failed: " + asyncFailures, asyncFailures.isEmpty());
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            throw new RuntimeException(e);
+        }
+    }
+}
@@ -7,6 +7,7 @@ import io.reactivex.Scheduler;
 import io.reactivex.schedulers.Schedulers;
 
 import javax.annotation.Nonnull;
+import java.util.Optional;
 import java.util.function.Function;
 
 import static java.util.Objects.requireNonNull;
@@ -20,6 +21,7 @@ public class DefaultSqlServiceFactory implements SqlServiceFactory {
     private final Lazy<SqlAssignmentGenerator> assignmentGenerator;
     private final Lazy<QueryProvider> queryProvider;
     private final Completable shutdownSignal;
+    private final SlowStatementRecorder slowStatementRecorder;
 
     private DefaultSqlServiceFactory(
             @Nonnull Function<SqlServiceFactory, SqlStatementProvider> statementProvider,
@@ -28,10 +30,13 @@ public class DefaultSqlServiceFactory implements SqlServiceFactory {
             @Nonnull Function<SqlServiceFactory, SchemaProvider> schemaProvider,
             @Nonnull Function<SqlServiceFactory, SqlExpressionGenerator> expressionGenerator,
             @Nonnull Function<SqlServiceFactory, SqlAssignmentGenerator> assignmentGenerator,
-            @Nonnull Completable shutdownSignal) {
+            @Nonnull Completable shutdownSignal,
+            @Nonnull SlowStatementRecorder slowStatementRecorder,
+            int batchSize) {
 
+        this.slowStatementRecorder = slowStatementRecorder;
         this.statementProvider = Lazy.of(() -> statementProvider.apply(this));
-        this.statementExecutor = Lazy.of(() -> statementExecutor.apply(this));
+        this.statementExecutor = Lazy.of(() -> slowStatementRecorder.decorate(statementExecutor.apply(this)));
         this.referenceResolver = Lazy.of(() -> referenceResolver.apply(this));
         this.schemaProvider = Lazy.of(() -> CacheSchemaProviderDecorator.decorate(schemaProvider.apply(this)));
         this.expressionGenerator = Lazy.of(() -> expressionGenerator.apply(this));
@@ -41,7 +46,8 @@ public class DefaultSqlServiceFactory implements SqlServiceFactory {
                 statementProvider(),
                 statementExecutor(),
                 schemaProvider(),
-                referenceResolver()));
+                referenceResolver(),
+                batchSize));
     }
 
     @Override
@@ -84,6 +90,11 @@ public class DefaultSqlServiceFactory implements SqlServiceFactory {
         return queryProvider.get();
     }
 
+    @Override
+    public SlowStatementRecorder slowStatementRecorder() {
+        return slowStatementRecorder;
+    }
+
     public static SqlServiceFactory.Builder builder() {
         return new Builder()
                 .expressionGenerator(DefaultSqlExpressionGenerator::new)
@@ -102,6 +113,8 @@ public class DefaultSqlServiceFactory implements SqlServiceFactory {
         private Function<SqlServiceFactory, SqlAssignmentGenerator> assignmentGenerator;
         private Scheduler scheduler = Schedulers.single();
         private Completable shutdownSignal = Completable.never();
+        private int batchSize = Properties.batchSize();
+        private SlowStatementRecorder slowStatementRecorder;
 
         @Override
         public SqlServiceFactory.Builder statementProvider(Function<SqlServiceFactory, SqlStatementProvider> statementProvider) {
@@ -145,6 +158,18 @@ public class DefaultSqlServiceFactory implements SqlServiceFactory {
             return this;
         }
 
+        @Override
+        public SqlServiceFactory.Builder batchSize(int batchSize) {
+            this.batchSize = batchSize;
+            return this;
+        }
+
+        @Override
+        public SqlServiceFactory.Builder slowStatementRecorder(SlowStatementRecorder slowStatementRecorder) {
+            this.slowStatementRecorder = slowStatementRecorder;
+            return this;
+        }
+
         @Override
         public SqlServiceFactory build() {
             return new DefaultSqlServiceFactory(
@@ -154,7 +179,9 @@ public class DefaultSqlServiceFactory implements SqlServiceFactory {
                     requireNonNull(schemaProvider),
                     requireNonNull(expressionGenerator),
                     requireNonNull(assignmentGenerator),
-                    shutdownSignal);
+                    shutdownSignal,
+                    Optional.ofNullable(slowStatementRecorder).orElseGet(SlowStatementRecorder::create),
+                    batchSize);
         }
     }
 }
@@ -28,6 +28,7 @@ public class DefaultSqlStatementProvider implements SqlStatementProvider {
     private final SqlExpressionGenerator sqlExpressionGenerator;
     private final SqlAssignmentGenerator sqlAssignmentGenerator;
     private final SchemaProvider schemaProvider;
+    private final SqlStatementTemplateCache templateCache = SqlStatementTemplateCache.create(SqlServiceFactory.Properties.statementCacheSize());
 
     public DefaultSqlStatementProvider(SqlExpressionGenerator sqlExpressionGenerator,
                                        SqlAssignmentGenerator sqlAssignmentGenerator,
@@ -39,21 +40,21 @@ public class DefaultSqlStatementProvider implements SqlStatementProvider {
 
     @Override
     public <K, S, T> SqlStatement forQuery(QueryInfo<K, S, T> queryInfo) {
-        return statement(() -> of(
+        return templateCache.forQuery(queryInfo, () -> statement(() -> of(
                 selectClause(queryInfo),
                 fromClause(queryInfo),
                 whereClause(queryInfo),
                 orderClause(queryInfo),
                 limitClause(queryInfo),
-                skipClause(queryInfo)));
+                skipClause(queryInfo))));
     }
 
     @Override
     public <K, S, T, R> SqlStatement forAggregation(QueryInfo<K, S, T> queryInfo, ObjectExpression<T, R> aggregation, String projectedName) {
-        return statement(() -> of(
+        return templateCache.forAggregation(queryInfo, aggregation, projectedName, () -> statement(() -> of(
                 selectClause(queryInfo, aggregation, projectedName),
                 fromClause(queryInfo),
-                whereClause(queryInfo)));
+                whereClause(queryInfo))));
     }
 
     @Override
@@ -0,0 +1,82 @@
+package com.slimgears.rxrepo.sql;
+
+import com.google.common.collect.ImmutableList;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+
+public class SlowStatement {
+    private final String statement;
+    private final List<Object> args;
+    private final long rowCount;
+    private final Duration duration;
+    private final boolean cancelled;
+    private final Instant timestamp;
+    private volatile String plan;
+
+    private SlowStatement(String statement, List<Object> args, long rowCount, Duration duration, boolean cancelled, Instant timestamp) {
+        this.statement = statement;
+        this.args = args;
+        this.rowCount = rowCount;
+        this.duration = duration;
+        this.cancelled = cancelled;
+        this.timestamp = timestamp;
+    }
+
+    static SlowStatement create(SqlStatement statement, long rowCount, Duration duration, boolean cancelled) {
+        return new SlowStatement(
+                statement.statement(),
+                ImmutableList.copyOf(Arrays.asList(statement.args())),
+                rowCount,
+                duration,
+                cancelled,
+                Instant.now());
+    }
+
+    public String statement() {
+        return statement;
+    }
+
+    public List<Object> args() {
+        return args;
+    }
+
+    public long rowCount() {
+        return rowCount;
+    }
+
+    public Duration duration() {
+        return duration;
+    }
+
+    public boolean cancelled() {
+        return cancelled;
+    }
+
+    public Instant timestamp() {
+        return timestamp;
+    }
+
+    public Optional<String> plan() {
+        return Optional.ofNullable(plan);
+    }
+
+    void plan(String plan) {
+        this.plan = plan;
+    }
+
+    @Override
+    public String toString() {
+        return "SlowStatement{" +
+                "statement='" + statement + '\'' +
+                ", args=" + args +
+                ", rowCount=" + rowCount +
+                ", duration=" + duration +
+                ", cancelled=" + cancelled +
+                ", timestamp=" + timestamp +
+                '}';
+    }
+}
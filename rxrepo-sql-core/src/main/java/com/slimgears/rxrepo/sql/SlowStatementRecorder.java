@@ -0,0 +1,176 @@
+package com.slimgears.rxrepo.sql;
+
+import com.google.common.collect.ImmutableList;
+import com.slimgears.rxrepo.query.Notification;
+import com.slimgears.rxrepo.util.PropertyResolver;
+import io.reactivex.Completable;
+import io.reactivex.Maybe;
+import io.reactivex.Observable;
+import io.reactivex.Single;
+import io.reactivex.schedulers.Schedulers;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.Duration;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.stream.Collectors;
+
+public class SlowStatementRecorder {
+    private final static Logger log = LoggerFactory.getLogger(SlowStatementRecorder.class);
+    private final long thresholdNanos;
+    private final int capacity;
+    private final boolean explain;
+    private final PriorityQueue<SlowStatement> slowest = new PriorityQueue<>(Comparator.comparing(SlowStatement::duration));
+
+    private SlowStatementRecorder(Duration threshold, int capacity, boolean explain) {
+        this.thresholdNanos = threshold.toNanos();
+        this.capacity = capacity;
+        this.explain = explain;
+    }
+
+    public static SlowStatementRecorder create() {
+        return create(
+                Duration.ofMillis(SqlServiceFactory.Properties.slowStatementThresholdMillis()),
+                SqlServiceFactory.Properties.slowStatementLogSize(),
+                SqlServiceFactory.Properties.explainSlowStatements());
+    }
+
+    public static SlowStatementRecorder create(Duration threshold, int capacity, boolean explain) {
+        return new SlowStatementRecorder(threshold, capacity, explain);
+    }
+
+    public SqlStatementExecutor decorate(SqlStatementExecutor executor) {
+        return capacity > 0 ? new RecordingExecutor(executor) : executor;
+    }
+
+    public synchronized List<SlowStatement> slowStatements() {
+        return slowest.stream()
+                .sorted(Comparator.comparing(SlowStatement::duration).reversed())
+                .collect(Collectors.toList());
+    }
+
+    public synchronized void clear() {
+        slowest.clear();
+    }
+
+    private void record(SqlStatementExecutor executor, SqlStatement statement, long rowCount, long durationNanos, boolean explainable, boolean cancelled) {
+        if (durationNanos < thresholdNanos) {
+            return;
+        }
+
+        SlowStatement slowStatement = SlowStatement.create(statement, rowCount, Duration.ofNanos(durationNanos), cancelled);
+        log.debug("Slow statement: {}", slowStatement);
+        synchronized (this) {
+            slowest.add(slowStatement);
+            if (slowest.size() > capacity && slowest.poll() == slowStatement) {
+                return;
+            }
+        }
+
+        if (explain && explainable) {
+            executor.explain(statement)
+                    .subscribeOn(Schedulers.io())
+                    .subscribe(slowStatement::plan, e -> log.debug("Could not explain statement: {}", statement.statement(), e));
+        }
+    }
+
+    private class RecordingExecutor implements SqlStatementExecutor {
+        private final SqlStatementExecutor underlyingExecutor;
+
+        private RecordingExecutor(SqlStatementExecutor underlyingExecutor) {
+            this.underlyingExecutor = underlyingExecutor;
+        }
+
+        @Override
+        public Observable<PropertyResolver> executeQuery(SqlStatement statement) {
+            return recorded(statement, underlyingExecutor.executeQuery(statement), true);
+        }
+
+        @Override
+        public Observable<PropertyResolver> executeCommandReturnEntries(SqlStatement statement) {
+            return recorded(statement, underlyingExecutor.executeCommandReturnEntries(statement), false);
+        }
+
+        @Override
+        public Single<Integer> executeCommandReturnCount(SqlStatement statement) {
+            return Single.defer(() -> {
+                long startNanos = System.nanoTime();
+                return underlyingExecutor.executeCommandReturnCount(statement)
+                        .doOnSuccess(count -> record(underlyingExecutor, statement, count, System.nanoTime() - startNanos, false, false))
+                        .doOnDispose(() -> record(underlyingExecutor, statement, 0, System.nanoTime() - startNanos, false, true));
+            });
+        }
+
+        @Override
+        public Completable executeCommand(SqlStatement statement) {
+            return recorded(statement, underlyingExecutor.executeCommand(statement).toObservable(), false).ignoreElements();
+        }
+
+        @Override
+        public Completable executeCommands(Iterable<SqlStatement> statements) {
+            return Completable.defer(() -> {
+                long startNanos = System.nanoTime();
+                return underlyingExecutor.executeCommands(statements)
+                        .doOnComplete(() -> recordBatch(statements, System.nanoTime() - startNanos, false))
+                        .doOnDispose(() -> recordBatch(statements, System.nanoTime() - startNanos, true));
+            });
+        }
+
+        @Override
+        public Observable<Notification<PropertyResolver>> executeLiveQuery(SqlStatement statement) {
+            return underlyingExecutor.executeLiveQuery(statement);
+        }
+
+        @Override
+        public Maybe<String> explain(SqlStatement statement) {
+            return underlyingExecutor.explain(statement);
+        }
+
+        // Rows are handed to the consumer synchronously, so the time the consumer spends
+        // on each row is left out to time the statement alone
+        private <T> Observable<T> recorded(SqlStatement statement, Observable<T> observable, boolean explainable) {
+            return Observable.defer(() -> {
+                ExecutionTiming timing = new ExecutionTiming();
+                return observable
+                        .doAfterNext(row -> timing.onRowConsumed())
+                        .doOnNext(row -> timing.onRow())
+                        .doOnComplete(() -> record(underlyingExecutor, statement, timing.rowCount, timing.executionNanos(), explainable, false))
+                        .doOnDispose(() -> record(underlyingExecutor, statement, timing.rowCount, timing.executionNanos(), explainable, true));
+            });
+        }
+
+        private void recordBatch(Iterable<SqlStatement> statements, long durationNanos, boolean cancelled) {
+            if (durationNanos < thresholdNanos) {
+                return;
+            }
+            List<SqlStatement> statementList = ImmutableList.copyOf(statements);
+            String batch = statementList.stream()
+                    .map(SqlStatement::statement)
+                    .distinct()
+                    .collect(Collectors.joining(";\n"));
+            record(underlyingExecutor, SqlStatement.create(batch), statementList.size(), durationNanos, false, cancelled);
+        }
+    }
+
+    private static class ExecutionTiming {
+        private final long startNanos = System.nanoTime();
+        private volatile long rowCount;
+        private volatile long consumerNanos;
+        private long rowStartNanos;
+
+        void onRow() {
+            ++rowCount;
+            rowStartNanos = System.nanoTime();
+        }
+
+        void onRowConsumed() {
+            consumerNanos += System.nanoTime() - rowStartNanos;
+        }
+
+        long executionNanos() {
+            return System.nanoTime() - startNanos - consumerNanos;
+        }
+    }
+}
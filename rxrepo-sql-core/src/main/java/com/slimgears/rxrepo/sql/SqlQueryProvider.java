@@ -22,6 +22,7 @@ import io.reactivex.functions.Function;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.List;
 import java.util.Optional;
 import java.util.concurrent.atomic.AtomicReference;
 
@@ -34,15 +35,18 @@ public class SqlQueryProvider implements QueryProvider {
     private final SqlStatementExecutor statementExecutor;
     private final SchemaProvider schemaProvider;
     private final ReferenceResolver referenceResolver;
+    private final int batchSize;
 
     SqlQueryProvider(SqlStatementProvider statementProvider,
                      SqlStatementExecutor statementExecutor,
                      SchemaProvider schemaProvider,
-                     ReferenceResolver referenceResolver) {
+                     ReferenceResolver referenceResolver,
+                     int batchSize) {
         this.statementProvider = statementProvider;
         this.statementExecutor = statementExecutor;
         this.schemaProvider = schemaProvider;
         this.referenceResolver = referenceResolver;
+        this.batchSize = Math.max(batchSize, 1);
     }
 
     @Override
@@ -54,8 +58,9 @@ public class SqlQueryProvider implements QueryProvider {
                         .doOnSubscribe(d -> log.debug("Beginning creating class {}", lazy(metaClass::simpleName)))
                         .doOnComplete(() -> log.debug("Finished creating class {}", lazy(metaClass::simpleName)))
                         .andThen(Observable.fromIterable(entities)
-                                .flatMapSingle(e -> insert(metaClass, e))
-                                .ignoreElements()))
+                                .map(e -> PropertyResolver.fromObject(metaClass, e))
+                                .buffer(batchSize)
+                                .concatMapCompletable(batch -> insertBatch(metaClass, batch))))
                 .orElseGet(Completable::complete);
     }
 
@@ -116,6 +121,15 @@ public class SqlQueryProvider implements QueryProvider {
         return insertOrUpdate(metaClass, statement);
     }
 
+    private <K, S> Completable insertBatch(MetaClassWithKey<K, S> metaClass, List<PropertyResolver> propertyResolvers) {
+        return Completable.defer(() -> {
+            List<SqlStatement> statements = statementProvider.forBatchInsert(metaClass, propertyResolvers, referenceResolver);
+            return statementExecutor.executeCommands(statements)
+                    .doOnSubscribe(d -> log.trace("Inserting batch of {} {} entities", statements.size(), metaClass.simpleName()))
+                    .doOnError(e -> log.trace("Failed to insert batch of {} entities", metaClass.simpleName(), e));
+        });
+    }
+
     @Override
     public <K, S, T> Observable<T> query(QueryInfo<K, S, T> query) {
         TypeToken<? extends T> objectType = HasMapping.objectType(query);
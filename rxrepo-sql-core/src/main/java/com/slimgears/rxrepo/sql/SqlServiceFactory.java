@@ -19,6 +19,7 @@ public interface SqlServiceFactory {
     Completable shutdownSignal();
     ReferenceResolver referenceResolver();
     QueryProvider queryProvider();
+    SlowStatementRecorder slowStatementRecorder();
 
     static Builder builder() {
         return DefaultSqlServiceFactory.builder();
@@ -34,6 +35,8 @@ public interface SqlServiceFactory {
         public abstract Builder expressionGenerator(Function<SqlServiceFactory, SqlExpressionGenerator> expressionGenerator);
         public abstract Builder assignmentGenerator(Function<SqlServiceFactory, SqlAssignmentGenerator> assignmentGenerator);
         public abstract Builder shutdownSignal(Completable shutdown);
+        public abstract Builder batchSize(int batchSize);
+        public abstract Builder slowStatementRecorder(SlowStatementRecorder slowStatementRecorder);
         public abstract SqlServiceFactory build();
 
         public final Repository buildRepository(RepositoryConfigModel config, QueryProvider.Decorator... decorators) {
@@ -69,4 +72,37 @@ public interface SqlServiceFactory {
             return assignmentGenerator(f -> assignmentGenerator.get());
         }
     }
+
+    @SuppressWarnings("WeakerAccess")
+    class Properties {
+        public static final String batchSize = "rxrepo.sql.batchSize";
+        public static final String statementCacheSize = "rxrepo.sql.statementCacheSize";
+        public static final String slowStatementThresholdMillis = "rxrepo.sql.slowStatementThresholdMillis";
+        public static final String slowStatementLogSize = "rxrepo.sql.slowStatementLogSize";
+        public static final String explainSlowStatements = "rxrepo.sql.explainSlowStatements";
+        private static final int defaultBatchSize = 100;
+        private static final int defaultStatementCacheSize = 1024;
+        private static final long defaultSlowStatementThresholdMillis = 1000;
+        private static final int defaultSlowStatementLogSize = 50;
+
+        public static int batchSize() {
+            return Integer.getInteger(Properties.batchSize, defaultBatchSize);
+        }
+
+        public static int statementCacheSize() {
+            return Integer.getInteger(Properties.statementCacheSize, defaultStatementCacheSize);
+        }
+
+        public static long slowStatementThresholdMillis() {
+            return Long.getLong(Properties.slowStatementThresholdMillis, defaultSlowStatementThresholdMillis);
+        }
+
+        public static int slowStatementLogSize() {
+            return Integer.getInteger(Properties.slowStatementLogSize, defaultSlowStatementLogSize);
+        }
+
+        public static boolean explainSlowStatements() {
+            return Boolean.getBoolean(Properties.explainSlowStatements);
+        }
+    }
 }
@@ -3,6 +3,7 @@ package com.slimgears.rxrepo.sql;
 import com.slimgears.rxrepo.query.Notification;
 import com.slimgears.rxrepo.util.PropertyResolver;
 import io.reactivex.Completable;
+import io.reactivex.Maybe;
 import io.reactivex.Observable;
 import io.reactivex.Single;
 
@@ -12,4 +13,12 @@ public interface SqlStatementExecutor {
     Single<Integer> executeCommandReturnCount(SqlStatement statement);
     Completable executeCommand(SqlStatement statement);
     Observable<Notification<PropertyResolver>> executeLiveQuery(SqlStatement statement);
+
+    default Completable executeCommands(Iterable<SqlStatement> statements) {
+        return Observable.fromIterable(statements).concatMapCompletable(this::executeCommand);
+    }
+
+    default Maybe<String> explain(SqlStatement statement) {
+        return Maybe.empty();
+    }
 }
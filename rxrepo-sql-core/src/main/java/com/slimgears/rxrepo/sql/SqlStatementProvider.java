@@ -6,6 +6,11 @@ import com.slimgears.rxrepo.query.provider.QueryInfo;
 import com.slimgears.rxrepo.query.provider.UpdateInfo;
 import com.slimgears.rxrepo.util.PropertyResolver;
 import com.slimgears.util.autovalue.annotations.MetaClassWithKey;
+import com.slimgears.util.stream.Streams;
+
+import java.util.List;
+
+import static java.util.stream.Collectors.toList;
 
 public interface SqlStatementProvider {
     <K, S, T> SqlStatement forQuery(QueryInfo<K, S, T> queryInfo);
@@ -31,4 +36,12 @@ public interface SqlStatementProvider {
     default <K, S> SqlStatement forInsert(MetaClassWithKey<K, S> metaClass, S entity, ReferenceResolver referenceResolver) {
         return forInsert(metaClass, PropertyResolver.fromObject(metaClass, entity), referenceResolver);
     }
+
+    default <K, S> List<SqlStatement> forBatchInsert(MetaClassWithKey<K, S> metaClass,
+                                                     Iterable<PropertyResolver> propertyResolvers,
+                                                     ReferenceResolver referenceResolver) {
+        return Streams.fromIterable(propertyResolvers)
+                .map(pr -> forInsert(metaClass, pr, referenceResolver))
+                .collect(toList());
+    }
 }
@@ -0,0 +1,240 @@
+package com.slimgears.rxrepo.sql;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.collect.ImmutableList;
+import com.google.common.reflect.TypeToken;
+import com.slimgears.rxrepo.expressions.ConstantExpression;
+import com.slimgears.rxrepo.expressions.Expression;
+import com.slimgears.rxrepo.expressions.ExpressionVisitor;
+import com.slimgears.rxrepo.expressions.ObjectExpression;
+import com.slimgears.rxrepo.query.provider.QueryInfo;
+import com.slimgears.util.autovalue.annotations.HasMetaClass;
+import com.slimgears.util.autovalue.annotations.PropertyMeta;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+class SqlStatementTemplateCache {
+    private final static Logger log = LoggerFactory.getLogger(SqlStatementTemplateCache.class);
+    private final Cache<String, Optional<Template>> templates;
+
+    private SqlStatementTemplateCache(long maxSize) {
+        this.templates = CacheBuilder.newBuilder().maximumSize(maxSize).build();
+    }
+
+    static SqlStatementTemplateCache create(long maxSize) {
+        return new SqlStatementTemplateCache(maxSize);
+    }
+
+    <K, S, T> SqlStatement forQuery(QueryInfo<K, S, T> queryInfo, Supplier<SqlStatement> generator) {
+        return statement(() -> Shape.builder("query", queryInfo)
+                .add(queryInfo.mapping())
+                .addAll(queryInfo.properties())
+                .add(queryInfo.predicate())
+                .addAll(queryInfo.sorting(), si -> si.property(), si -> si.ascending() ? "asc" : "desc")
+                .add(queryInfo.limit())
+                .add(queryInfo.skip())
+                .build(), generator);
+    }
+
+    <K, S, T, R> SqlStatement forAggregation(QueryInfo<K, S, T> queryInfo, ObjectExpression<T, R> aggregation, String projectedName, Supplier<SqlStatement> generator) {
+        return statement(() -> Shape.builder("aggregation", queryInfo)
+                .add(projectedName)
+                .add(aggregation)
+                .add(queryInfo.mapping())
+                .add(queryInfo.predicate())
+                .build(), generator);
+    }
+
+    private SqlStatement statement(Supplier<Shape> shapeSupplier, Supplier<SqlStatement> generator) {
+        Shape shape;
+        try {
+            shape = shapeSupplier.get();
+        } catch (IllegalArgumentException e) {
+            return generator.get();
+        }
+
+        Optional<Template> template = templates.getIfPresent(shape.key);
+        if (template != null) {
+            return template.map(t -> t.apply(shape.constants)).orElseGet(generator);
+        }
+
+        SqlStatement statement = generator.get();
+        if (hasDuplicates(shape.constants) || hasDuplicates(Arrays.asList(statement.args()))) {
+            return statement;
+        }
+
+        Optional<Template> newTemplate = Template.tryCreate(statement, shape.constants);
+        if (!newTemplate.isPresent()) {
+            log.trace("Statement {} is not cacheable", statement.statement());
+        }
+        templates.put(shape.key, newTemplate);
+        return statement;
+    }
+
+    private static boolean hasDuplicates(List<Object> values) {
+        return new HashSet<>(values).size() < values.size();
+    }
+
+    private enum ArgConverter {
+        Identity(Function.identity()),
+        AsString(String::valueOf),
+        ElementsAsString(value -> (value instanceof Collection)
+                ? ((Collection<?>)value).stream()
+                        .map(val -> val instanceof HasMetaClass ? val.toString() : val)
+                        .collect(ImmutableList.toImmutableList())
+                : value);
+
+        private final Function<Object, Object> converter;
+
+        ArgConverter(Function<Object, Object> converter) {
+            this.converter = converter;
+        }
+
+        static Optional<ArgConverter> resolve(Object constant, Object arg) {
+            return Arrays.stream(values())
+                    .filter(c -> Objects.equals(c.converter.apply(constant), arg))
+                    .findFirst();
+        }
+    }
+
+    private static class Template {
+        private final String statement;
+        private final ArgConverter[] converters;
+
+        private Template(String statement, ArgConverter[] converters) {
+            this.statement = statement;
+            this.converters = converters;
+        }
+
+        static Optional<Template> tryCreate(SqlStatement statement, List<Object> constants) {
+            Object[] args = statement.args();
+            if (args.length != constants.size()) {
+                return Optional.empty();
+            }
+            ArgConverter[] converters = new ArgConverter[args.length];
+            for (int i = 0; i < args.length; ++i) {
+                Optional<ArgConverter> converter = ArgConverter.resolve(constants.get(i), args[i]);
+                if (!converter.isPresent()) {
+                    return Optional.empty();
+                }
+                converters[i] = converter.get();
+            }
+            return Optional.of(new Template(statement.statement(), converters));
+        }
+
+        SqlStatement apply(List<Object> constants) {
+            Object[] args = new Object[converters.length];
+            for (int i = 0; i < args.length; ++i) {
+                args[i] = converters[i].converter.apply(constants.get(i));
+            }
+            return SqlStatement.create(statement, args);
+        }
+    }
+
+    private static class Shape {
+        private final String key;
+        private final List<Object> constants;
+
+        private Shape(String key, List<Object> constants) {
+            this.key = key;
+            this.constants = constants;
+        }
+
+        static Builder builder(String kind, QueryInfo<?, ?, ?> queryInfo) {
+            return new Builder()
+                    .add(kind)
+                    .add(queryInfo.metaClass().asType().toString())
+                    .add(queryInfo.distinct());
+        }
+
+        static class Builder {
+            private final StringBuilder key = new StringBuilder();
+            private final List<Object> constants = new ArrayList<>();
+            private final ShapeVisitor visitor = new ShapeVisitor();
+
+            Builder add(Object value) {
+                key.append(value).append('|');
+                return this;
+            }
+
+            Builder add(ObjectExpression<?, ?> expression) {
+                return add(expression != null ? visitor.visit(expression, constants) : null);
+            }
+
+            Builder addAll(Collection<? extends ObjectExpression<?, ?>> expressions) {
+                expressions.forEach(this::add);
+                return this;
+            }
+
+            <E> Builder addAll(Collection<E> items, Function<E, ObjectExpression<?, ?>> expression, Function<E, String> suffix) {
+                items.forEach(item -> add(expression.apply(item)).add(suffix.apply(item)));
+                return this;
+            }
+
+            Shape build() {
+                return new Shape(key.toString(), constants);
+            }
+        }
+    }
+
+    private static class ShapeVisitor extends ExpressionVisitor<List<Object>, String> {
+        @Override
+        protected String reduceBinary(ObjectExpression<?, ?> expression, Expression.Type type, String first, String second) {
+            return type + "(" + first + "," + second + ")";
+        }
+
+        @Override
+        protected String reduceUnary(ObjectExpression<?, ?> expression, Expression.Type type, String first) {
+            return type + "(" + first + ")";
+        }
+
+        @Override
+        protected <S, T> String visitConstant(ConstantExpression<S, T> constantExpression, List<Object> constants) {
+            constants.add(constantExpression.value());
+            return "?" + constantExpression.type() + "<" + constantExpression.objectType() + ">" + valueKind(constantExpression.value());
+        }
+
+        // Converters that agree on one value may disagree on another (e.g. an empty
+        // list vs. a list of embedded objects), so values that differ in how they
+        // convert must not share a template
+        private static String valueKind(Object value) {
+            if (value == null) {
+                return "#null";
+            }
+            if (value instanceof Collection) {
+                Collection<?> collection = (Collection<?>)value;
+                if (collection.isEmpty()) {
+                    return "#empty";
+                }
+                return collection.stream().anyMatch(HasMetaClass.class::isInstance) ? "#objects" : "#values";
+            }
+            return value instanceof HasMetaClass ? "#object" : "";
+        }
+
+        @Override
+        protected <T, V> String visitProperty(PropertyMeta<T, V> propertyMeta, List<Object> constants) {
+            return propertyMeta.name();
+        }
+
+        @Override
+        protected <V> String visitConstant(Expression.Type type, V value, List<Object> constants) {
+            throw new IllegalStateException();
+        }
+
+        @Override
+        protected <T> String visitArgument(TypeToken<T> argType, List<Object> constants) {
+            return "arg<" + argType + ">";
+        }
+    }
+}
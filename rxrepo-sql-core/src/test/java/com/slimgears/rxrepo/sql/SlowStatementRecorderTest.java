@@ -0,0 +1,51 @@
+package com.slimgears.rxrepo.sql;
+
+import com.slimgears.rxrepo.util.PropertyResolver;
+import io.reactivex.Observable;
+import io.reactivex.observers.TestObserver;
+import org.junit.Assert;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+import java.time.Duration;
+import java.util.List;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.when;
+
+public class SlowStatementRecorderTest {
+    private final SqlStatementExecutor statementExecutor = Mockito.mock(SqlStatementExecutor.class);
+    private final PropertyResolver row = Mockito.mock(PropertyResolver.class);
+
+    @Test
+    public void testConsumerTimeIsNotCountedAsExecutionTime() {
+        when(statementExecutor.executeQuery(any())).thenReturn(Observable.just(row, row, row));
+        SlowStatementRecorder recorder = SlowStatementRecorder.create(Duration.ofMillis(100), 10, false);
+
+        recorder.decorate(statementExecutor)
+                .executeQuery(SqlStatement.create("select"))
+                .doOnNext(r -> Thread.sleep(50))
+                .test()
+                .assertValueCount(3)
+                .assertComplete();
+
+        Assert.assertTrue(recorder.slowStatements().isEmpty());
+    }
+
+    @Test
+    public void testCancelledQueryIsRecorded() throws InterruptedException {
+        when(statementExecutor.executeQuery(any())).thenReturn(Observable.concat(Observable.just(row), Observable.never()));
+        SlowStatementRecorder recorder = SlowStatementRecorder.create(Duration.ofMillis(10), 10, false);
+
+        TestObserver<PropertyResolver> observer = recorder.decorate(statementExecutor)
+                .executeQuery(SqlStatement.create("select"))
+                .test();
+        Thread.sleep(50);
+        observer.dispose();
+
+        List<SlowStatement> slowStatements = recorder.slowStatements();
+        Assert.assertEquals(1, slowStatements.size());
+        Assert.assertTrue(slowStatements.get(0).cancelled());
+        Assert.assertEquals(1, slowStatements.get(0).rowCount());
+    }
+}
@@ -0,0 +1,91 @@
+package com.slimgears.rxrepo.sql;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Iterables;
+import com.slimgears.rxrepo.util.PropertyResolver;
+import io.reactivex.Completable;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mockito;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.when;
+
+public class SqlQueryProviderTest {
+    private final SqlStatementProvider statementProvider = Mockito.mock(SqlStatementProvider.class);
+    private final SqlStatementExecutor statementExecutor = Mockito.mock(SqlStatementExecutor.class);
+    private final SchemaProvider schemaProvider = Mockito.mock(SchemaProvider.class);
+    private final ReferenceResolver referenceResolver = Mockito.mock(ReferenceResolver.class);
+
+    @Before
+    public void setUp() {
+        when(schemaProvider.createOrUpdate(any())).thenReturn(Completable.complete());
+        when(statementProvider.forBatchInsert(any(), any(), any())).then(invocation -> {
+            Iterable<PropertyResolver> propertyResolvers = invocation.getArgument(1);
+            return ImmutableList.copyOf(Iterables.transform(propertyResolvers, pr -> SqlStatement.create("insert", pr.getProperty("id", Integer.class))));
+        });
+    }
+
+    @Test
+    public void testInsertIsSplitIntoBatchesOfBatchSize() {
+        when(statementExecutor.executeCommands(any())).thenReturn(Completable.complete());
+
+        createProvider(3).insert(Product.metaClass, products(7)).test().assertComplete();
+
+        Assert.assertEquals(ImmutableList.of(3, 3, 1), executedBatchSizes(3));
+    }
+
+    @Test
+    public void testFailedBatchStopsRemainingBatches() {
+        when(statementExecutor.executeCommands(any())).thenReturn(
+                Completable.complete(),
+                Completable.error(new IllegalStateException("Row failed")),
+                Completable.complete());
+
+        createProvider(3).insert(Product.metaClass, products(7)).test().assertError(IllegalStateException.class);
+
+        Assert.assertEquals(ImmutableList.of(3, 3), executedBatchSizes(2));
+    }
+
+    @Test
+    public void testDefaultExecuteCommandsStopsAtFailingStatement() {
+        SqlStatementExecutor executor = Mockito.mock(SqlStatementExecutor.class, Mockito.CALLS_REAL_METHODS);
+        List<String> executed = new ArrayList<>();
+        Mockito.doAnswer(invocation -> {
+            SqlStatement statement = invocation.getArgument(0);
+            return "fail".equals(statement.statement())
+                    ? Completable.error(new IllegalStateException("Row failed"))
+                    : Completable.fromAction(() -> executed.add(statement.statement()));
+        }).when(executor).executeCommand(any());
+
+        executor.executeCommands(ImmutableList.of(SqlStatement.create("first"), SqlStatement.create("fail"), SqlStatement.create("last")))
+                .test()
+                .assertError(IllegalStateException.class);
+
+        Assert.assertEquals(ImmutableList.of("first"), executed);
+    }
+
+    private SqlQueryProvider createProvider(int batchSize) {
+        return new SqlQueryProvider(statementProvider, statementExecutor, schemaProvider, referenceResolver, batchSize);
+    }
+
+    @SuppressWarnings("unchecked")
+    private List<Integer> executedBatchSizes(int batchCount) {
+        ArgumentCaptor<Iterable<SqlStatement>> batches = ArgumentCaptor.forClass(Iterable.class);
+        Mockito.verify(statementExecutor, Mockito.times(batchCount)).executeCommands(batches.capture());
+        return batches.getAllValues().stream().map(Iterables::size).collect(Collectors.toList());
+    }
+
+    private static List<Product> products(int count) {
+        return IntStream.range(0, count)
+                .mapToObj(i -> Product.builder().id(i).name("Product " + i).price(100 + i).build())
+                .collect(Collectors.toList());
+    }
+}
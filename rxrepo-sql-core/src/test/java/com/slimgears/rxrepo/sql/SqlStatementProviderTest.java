@@ -12,6 +12,7 @@ import org.junit.Test;
 import org.mockito.Mockito;
 
 import java.util.Arrays;
+import java.util.List;
 import java.util.Objects;
 
 import static org.mockito.ArgumentMatchers.any;
@@ -53,6 +54,54 @@ public class SqlStatementProviderTest {
                 new Object[]{"substr", 100, Arrays.asList(ProductPrototype.Type.ComputeHardware, ProductPrototype.Type.ComputerSoftware)});
     }
 
+    @Test
+    public void testQueryStatementTemplateIsReusedForDifferentConstants() {
+        SqlStatement first = statementProvider.forQuery(QueryInfo.<Integer, Product, Product>builder()
+                .metaClass(Product.metaClass)
+                .predicate(Product.$.id.eq(1).and(Product.$.name.eq("first")))
+                .limit(1L)
+                .build());
+        SqlStatement second = statementProvider.forQuery(QueryInfo.<Integer, Product, Product>builder()
+                .metaClass(Product.metaClass)
+                .predicate(Product.$.id.eq(2).and(Product.$.name.eq("second")))
+                .limit(1L)
+                .build());
+        SqlStatement third = statementProvider.forQuery(QueryInfo.<Integer, Product, Product>builder()
+                .metaClass(Product.metaClass)
+                .predicate(Product.$.id.eq(3).and(Product.$.name.eq("third")))
+                .limit(2L)
+                .build());
+
+        Assert.assertTrue(first.statement().endsWith("where ((`id` = ?) and (`name` = ?)) limit 1"));
+        Assert.assertEquals(first.statement(), second.statement());
+        Assert.assertArrayEquals(new Object[]{2, "second"}, second.args());
+        Assert.assertTrue(third.statement().endsWith("where ((`id` = ?) and (`name` = ?)) limit 2"));
+        Assert.assertArrayEquals(new Object[]{3, "third"}, third.args());
+    }
+
+    @Test
+    public void testQueryTemplateIsNotSharedBetweenDifferentlyConvertedConstants() {
+        SqlStatementTemplateCache templateCache = SqlStatementTemplateCache.create(16);
+        Inventory inventory = Inventory.builder().id(1).name("inv1").build();
+        String statement = "select from Product where (`inventory` in (?))";
+
+        templateCache.forQuery(
+                inventoryInQuery(ImmutableList.of()),
+                () -> SqlStatement.create(statement, ImmutableList.of()));
+        SqlStatement withObjects = templateCache.forQuery(
+                inventoryInQuery(ImmutableList.of(inventory)),
+                () -> SqlStatement.create(statement, ImmutableList.of(inventory.toString())));
+
+        Assert.assertArrayEquals(new Object[]{ImmutableList.of(inventory.toString())}, withObjects.args());
+    }
+
+    private static QueryInfo<Integer, Product, Product> inventoryInQuery(List<Inventory> inventories) {
+        return QueryInfo.<Integer, Product, Product>builder()
+                .metaClass(Product.metaClass)
+                .predicate(Product.$.inventory.in(inventories))
+                .build();
+    }
+
     @Test
     public void testQueryWithMappingStatementGeneration() {
         SqlStatement statement = statementProvider.forQuery(QueryInfo.<Integer, Product, Integer>builder()
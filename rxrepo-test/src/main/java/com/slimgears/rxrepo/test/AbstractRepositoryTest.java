@@ -5,9 +5,13 @@ import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
 import com.slimgears.rxrepo.expressions.Aggregator;
 import com.slimgears.rxrepo.expressions.ObjectExpression;
+import com.slimgears.rxrepo.query.EmissionPolicy;
 import com.slimgears.rxrepo.query.EntitySet;
+import com.slimgears.rxrepo.query.ListChange;
+import com.slimgears.rxrepo.query.ListChangePrototype;
 import com.slimgears.rxrepo.query.Notification;
 import com.slimgears.rxrepo.query.NotificationPrototype;
+import com.slimgears.rxrepo.query.ReplayUnavailableException;
 import com.slimgears.rxrepo.query.Repository;
 import com.slimgears.util.stream.Streams;
 import com.slimgears.util.test.AnnotationRulesJUnit;
@@ -28,6 +32,7 @@ import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
+import java.util.stream.Collectors;
 
 import static com.slimgears.rxrepo.test.TestUtils.*;
 import static java.util.Objects.requireNonNull;
@@ -407,6 +412,29 @@ public abstract class AbstractRepositoryTest {
                 .assertValue(l -> l.size() == 1);
     }
 
+    @Test
+    public void testBulkUpdate() {
+        EntitySet<UniqueId, Product> productSet = repository.entities(Product.metaClass);
+        productSet.update(Products.createMany(20)).ignoreElement().blockingAwait();
+
+        productSet
+                .update()
+                .set(Product.$.price, 1000)
+                .where(Product.$.key.id.lessThan(10))
+                .execute()
+                .test()
+                .awaitDone(10, TimeUnit.SECONDS)
+                .assertNoErrors()
+                .assertValue(10);
+
+        productSet
+                .query()
+                .where(Product.$.price.eq(1000))
+                .retrieve()
+                .test()
+                .assertOf(countExactly(10));
+    }
+
     @Test @Ignore
     public void testInsertThenUpdate() throws InterruptedException {
         EntitySet<UniqueId, Product> productSet = repository.entities(Product.metaClass);
@@ -816,6 +844,167 @@ public abstract class AbstractRepositoryTest {
                 .assertValueAt(1, l -> Objects.equals(l.get(2).name(), "Product 3-1"));
     }
 
+    @Test
+    public void testObserveAsListChanges() {
+        EntitySet<UniqueId, Product> products = repository.entities(Product.metaClass);
+        products.update(Products.createMany(5)).ignoreElement().blockingAwait();
+        TestObserver<List<ListChange<Product>>> changesTestObserver = products.query()
+                .orderBy(Product.$.name)
+                .liveSelect()
+                .toListChanges()
+                .test()
+                .assertOf(countAtLeast(1))
+                .assertValueAt(0, c -> c.size() == 5)
+                .assertValueAt(0, c -> c.stream().allMatch(lc -> lc.type() == ListChangePrototype.Type.Insert));
+
+        products.update(Product.builder()
+                        .name("Product 0-1")
+                        .key(UniqueId.productId(10))
+                        .price(100)
+                        .type(ProductPrototype.Type.ComputeHardware)
+                        .build())
+                .ignoreElement().blockingAwait();
+
+        changesTestObserver
+                .assertOf(countAtLeast(2))
+                .assertValueAt(1, c -> c.size() == 1)
+                .assertValueAt(1, c -> c.get(0).type() == ListChangePrototype.Type.Insert)
+                .assertValueAt(1, c -> c.get(0).toIndex() == 1);
+    }
+
+    @Test
+    public void testObserveAsListChangesWithSkip() throws InterruptedException {
+        EntitySet<UniqueId, Product> products = repository.entities(Product.metaClass);
+        products.update(Products.createMany(5)).ignoreElement().blockingAwait();
+        TestObserver<List<ListChange<Product>>> changesTestObserver = products.query()
+                .orderBy(Product.$.name)
+                .skip(2)
+                .liveSelect()
+                .toListChanges()
+                .test()
+                .assertOf(countAtLeast(1))
+                .assertValueAt(0, c -> c.size() == 3)
+                .assertValueAt(0, c -> Objects.equals(requireNonNull(c.get(0).newValue()).name(), "Product 2"));
+
+        products.update(Product.builder()
+                        .name("Product 0-1")
+                        .key(UniqueId.productId(10))
+                        .price(100)
+                        .type(ProductPrototype.Type.ComputeHardware)
+                        .build())
+                .ignoreElement().blockingAwait();
+        products.update(Product.builder()
+                        .name("Product 2-1")
+                        .key(UniqueId.productId(11))
+                        .price(100)
+                        .type(ProductPrototype.Type.ComputeHardware)
+                        .build())
+                .ignoreElement().blockingAwait();
+
+        awaitLastValue(changesTestObserver, c -> c.stream().anyMatch(lc -> lc.newValue() != null && Objects.equals(lc.newValue().name(), "Product 2-1")));
+        List<ListChange<Product>> changes = changesTestObserver.values()
+                .stream()
+                .skip(1)
+                .flatMap(List::stream)
+                .collect(Collectors.toList());
+
+        Assert.assertTrue(changes.stream().noneMatch(lc -> lc.newValue() != null && Objects.equals(lc.newValue().name(), "Product 0-1")));
+        Assert.assertEquals(1, changes.size());
+        Assert.assertEquals(ListChangePrototype.Type.Insert, changes.get(0).type());
+        Assert.assertEquals(1, changes.get(0).toIndex());
+    }
+
+    @Test
+    public void testLiveListIncludesItemSortingBeforeFirst() throws InterruptedException {
+        List<Product> productList = ImmutableList.copyOf(Products.createMany(10));
+        EntitySet<UniqueId, Product> products = repository.entities(Product.metaClass);
+        products.update(productList.subList(5, 10)).ignoreElement().blockingAwait();
+        TestObserver<List<Product>> listObserver = products.query()
+                .liveSelect()
+                .toList()
+                .test()
+                .assertOf(countAtLeast(1))
+                .assertValueAt(0, l -> l.size() == 5);
+
+        UniqueId firstKey = productList.get(0).key();
+        products.update(productList.get(0)).ignoreElement().blockingAwait();
+        List<Product> list = awaitLastValue(listObserver, l -> l.size() == 6);
+        Assert.assertTrue(list.stream().anyMatch(p -> p.key().equals(firstKey)));
+    }
+
+    @Test
+    public void testLiveListTracksCreateModifyDelete() throws InterruptedException {
+        List<Product> productList = ImmutableList.copyOf(Products.createMany(4));
+        EntitySet<UniqueId, Product> products = repository.entities(Product.metaClass);
+        products.update(productList.subList(0, 3)).ignoreElement().blockingAwait();
+        TestObserver<List<Product>> listObserver = products.query()
+                .liveSelect()
+                .toList()
+                .test()
+                .assertOf(countAtLeast(1))
+                .assertValueAt(0, l -> l.size() == 3);
+
+        products.update(productList.get(3)).ignoreElement().blockingAwait();
+        awaitLastValue(listObserver, l -> l.size() == 4);
+
+        UniqueId modifiedKey = productList.get(1).key();
+        products.update(productList.get(1).toBuilder().price(999).build()).ignoreElement().blockingAwait();
+        awaitLastValue(listObserver, l -> l.size() == 4 && l.stream().anyMatch(p -> p.key().equals(modifiedKey) && p.price() == 999));
+
+        UniqueId deletedKey = productList.get(2).key();
+        products.delete().where(Product.$.key.eq(deletedKey)).execute().ignoreElement().blockingAwait();
+        List<Product> list = awaitLastValue(listObserver, l -> l.size() == 3);
+        Assert.assertTrue(list.stream().noneMatch(p -> p.key().equals(deletedKey)));
+    }
+
+    @Test
+    public void testLiveCountWithAdaptiveEmissionPolicy() {
+        EntitySet<UniqueId, Product> products = repository.entities(Product.metaClass);
+        TestObserver<Long> countObserver = products.query()
+                .liveSelect()
+                .emissionPolicy(EmissionPolicy.adaptive(Duration.ofMillis(10)))
+                .count()
+                .test()
+                .assertOf(countAtLeast(1))
+                .assertValueAt(0, 0L);
+
+        products.update(Products.createMany(10)).ignoreElement().blockingAwait();
+        countObserver
+                .assertOf(countAtLeast(2))
+                .awaitDone(1, TimeUnit.SECONDS);
+        Assert.assertEquals(Long.valueOf(10), countObserver.values().get(countObserver.valueCount() - 1));
+    }
+
+    @Test
+    public void testObserveFromSequenceNum() {
+        EntitySet<UniqueId, Product> products = repository.entities(Product.metaClass);
+        TestObserver<Notification<Product>> productObserver = products.query()
+                .liveSelect()
+                .observe()
+                .test();
+        products.update(Products.createMany(5)).ignoreElement().blockingAwait();
+        productObserver.assertOf(countAtLeast(5));
+
+        Long sequenceNum = productObserver.values().get(productObserver.valueCount() - 1).sequenceNum();
+        Assert.assertNotNull(sequenceNum);
+        productObserver.dispose();
+
+        products.update(Products.createMany(8)).ignoreElement().blockingAwait();
+        products.query()
+                .liveSelect()
+                .observeFrom(sequenceNum)
+                .test()
+                .assertOf(countAtLeast(3))
+                .assertValueAt(0, n -> n.sequenceNum() != null && n.sequenceNum() > sequenceNum);
+
+        products.query()
+                .liveSelect()
+                .observeFrom(0)
+                .test()
+                .awaitDone(1, TimeUnit.SECONDS)
+                .assertError(ReplayUnavailableException.class);
+    }
+
     @Test
     public void testObserveAsListWithProperties() {
         EntitySet<UniqueId, Product> products = repository.entities(Product.metaClass);
@@ -993,4 +1182,17 @@ public abstract class AbstractRepositoryTest {
                 .assertNoErrors()
                 .assertValueCount(1);
     }
+
+    private static <T> T awaitLastValue(TestObserver<T> observer, java.util.function.Predicate<T> condition) throws InterruptedException {
+        Stopwatch stopwatch = Stopwatch.createStarted();
+        while (stopwatch.elapsed(TimeUnit.SECONDS) < 10) {
+            observer.assertNoErrors();
+            List<T> values = observer.values();
+            if (!values.isEmpty() && condition.test(values.get(values.size() - 1))) {
+                return values.get(values.size() - 1);
+            }
+            Thread.sleep(50);
+        }
+        throw new AssertionError("Condition was not met by the last emitted value: " + observer.values());
+    }
 }